@@ -0,0 +1,290 @@
+package hackathonproj.benchmarks;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import hackathonproj.CheckInJobs;
+import hackathonproj.DirectUploads;
+import hackathonproj.ParticipationHandler;
+import hackathonproj.ParticipationJobHandler;
+import hackathonproj.RekognitionFaceCollection;
+import hackathonproj.UploadedImageHandler;
+import hackathonproj.local.ClassFixture;
+import hackathonproj.local.Latency;
+import hackathonproj.local.LocalAws;
+import hackathonproj.local.LocalContext;
+
+// End-to-end handleRequest against the local stand-ins, in a warm container (static caches persist between
+// invocations, as they do in Lambda). Scenarios:
+//   name      - the student signed the sheet, so no face call is needed
+//   face      - the student did not sign and is recognised by face
+//   stranger  - nobody matches; pairwise mode has to compare against every reference face
+//   diagnostics - full_diagnostics: every reference face is analysed and compared
+//   duplicate - the face check-in submitted again, answered from the stored result
+//   class     - one photo of up to 40 students checks in the whole class through /process-image/class-photo
+// Every other scenario checks in for a new class date on each invocation, so no result is replayed.
+// `detail` is sent as ?detail= (verdict, summary or full); empty leaves the handler's default.
+// `delivery` async submits with ?async=true, runs the queued job through ParticipationJobHandler and polls
+// its status, i.e. the whole asynchronous round trip without the queue's polling delay. `delivery` direct asks
+// POST /process-image/uploads for a presigned URL, stores the photo as the browser's PUT would, and hands the
+// S3 notification to UploadedImageHandler before running and polling the job the same way.
+// `throttleRate` is the share of Rekognition calls rejected as throttled once setup is done.
+// The school has `classes` classes of `students` each; the check-in is for the first one. With the flat layout
+// all of them share the school-wide prefixes, with the section layout each class is its own section.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HandlerBenchmark {
+
+    // Faces in the class photo of the class scenario
+    private static final int CLASS_PHOTO_FACES = 40;
+
+    @Param({"30", "150"})
+    public int students;
+
+    // Simulated round trip of every S3/Textract/Rekognition/DynamoDB call
+    @Param({"0", "15"})
+    public double latencyMillis;
+
+    @Param({"pairwise", "collection"})
+    public String mode;
+
+    @Param({"name", "face", "stranger", "diagnostics", "duplicate", "class"})
+    public String scenario;
+
+    @Param({"640"})
+    public int photoEdge;
+
+    @Param({"1"})
+    public int classes;
+
+    @Param({"flat"})
+    public String layout;
+
+    @Param({""})
+    public String detail;
+
+    @Param({"0"})
+    public double throttleRate;
+
+    @Param({"sync"})
+    public String delivery;
+
+    private LocalAws aws;
+    private ParticipationHandler handler;
+    private ParticipationJobHandler worker;
+    private UploadedImageHandler uploads;
+    private String body;
+    private byte[] photo;
+    private boolean replay;
+    private LocalDate classDate = LocalDate.of(2025, 3, 10);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        aws = new LocalAws(Latency.millis(latencyMillis, latencyMillis / 5));
+        boolean sectioned = "section".equals(layout);
+        List<ClassFixture> school = new ArrayList<>();
+        for (int c = 0; c < classes; c++) {
+            school.add(new ClassFixture(aws, sectioned ? "section-" + (c + 1) : null, c * students,
+                    students, students * 4 / 5, Math.max(1, students / 30), photoEdge));
+        }
+        ClassFixture fixture = school.get(0);
+
+        // A collection id per trial, so no registry state carries over from a previous trial
+        RekognitionFaceCollection collection = null;
+        if ("collection".equals(mode)) {
+            collection = new RekognitionFaceCollection(aws.clients(), "bench-" + UUID.randomUUID(), ClassFixture.BUCKET);
+            for (ClassFixture classFixture : school) {
+                classFixture.indexInto(collection);
+            }
+        }
+        CheckInJobs jobs = new CheckInJobs(aws.clients(), "", "", 0);
+        if (!"sync".equals(delivery)) {
+            aws.dynamoDB().createTable("bench-jobs", "job_id", null);
+            jobs = new CheckInJobs(aws.clients(), "bench-jobs", "bench-job-queue", 3600);
+        }
+        handler = new ParticipationHandler(aws.clients(), collection, jobs);
+        worker = new ParticipationJobHandler(handler, jobs);
+        uploads = new UploadedImageHandler(aws.clients(), jobs, 15L * 1024 * 1024);
+
+        int listedStudent = fixture.listed() / 2;
+        int unlistedStudent = fixture.students() - 1;
+        replay = "duplicate".equals(scenario);
+        switch (scenario) {
+            case "name":
+                photo = fixture.photo(listedStudent);
+                body = fixture.checkInBody(listedStudent, "2025-03-10", photo, false);
+                break;
+            case "face":
+            case "duplicate":
+                photo = fixture.photo(unlistedStudent);
+                body = fixture.checkInBody(unlistedStudent, "2025-03-10", photo, false);
+                break;
+            case "stranger":
+                photo = fixture.strangerPhoto();
+                body = ClassFixture.checkInBody(fixture.section(), "Walk In Visitor", "2025-03-10", photo, false);
+                break;
+            case "diagnostics":
+                photo = fixture.photo(unlistedStudent);
+                body = fixture.checkInBody(unlistedStudent, "2025-03-10", photo, true);
+                break;
+            case "class":
+                if (!"sync".equals(delivery)) {
+                    throw new IllegalArgumentException("The class scenario is only delivered synchronously");
+                }
+                photo = fixture.classPhoto(Math.min(fixture.students(), CLASS_PHOTO_FACES));
+                body = fixture.classPhotoBody("2025-03-10", photo);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown scenario " + scenario);
+        }
+
+        if ("direct".equals(delivery)) {
+            // The photo goes to S3 instead of into the request body
+            try {
+                ObjectNode upload = (ObjectNode) new ObjectMapper().readTree(body);
+                upload.remove("uploaded_image_data");
+                upload.put("content_type", "image/jpeg");
+                upload.put("content_length", photo.length);
+                body = new ObjectMapper().writeValueAsString(upload);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        LocalContext context = new LocalContext(30000, true);
+        APIGatewayProxyResponseEvent response = deliver(body, context);
+        if (!"sync".equals(delivery)) {
+            try {
+                JsonNode status = new ObjectMapper().readTree(response.getBody());
+                if (!CheckInJobs.COMPLETED.equals(status.path("status").asText()) || !status.path("result").has("verdict")) {
+                    throw new IllegalStateException("Check-in job did not complete during setup: " + status);
+                }
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Unparseable job status", e);
+            }
+        } else if (response.getStatusCode() != 200) {
+            throw new IllegalStateException("Handler failed during setup: " + response.getBody());
+        } else if ("class".equals(scenario)) {
+            // Students outside the photo signed the sheet, so everyone is present
+            try {
+                JsonNode result = new ObjectMapper().readTree(response.getBody());
+                if (result.path("present").asInt() != fixture.students()) {
+                    throw new IllegalStateException("Class photo did not check in the whole class: " + result);
+                }
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Unparseable class photo response", e);
+            }
+        }
+        // CloudWatch drops EMF lines it cannot parse, so the setup request's line is read back once
+        try {
+            JsonNode emf = new ObjectMapper().readTree(context.logged().get(context.logged().size() - 1));
+            if (!emf.has("_aws") || !emf.has("HandlerTime")) {
+                throw new IllegalStateException("No EMF metrics logged: " + emf);
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unparseable EMF line", e);
+        }
+        aws.rekognition().throttle(throttleRate);
+    }
+
+    @Benchmark
+    public APIGatewayProxyResponseEvent handleRequest() {
+        if (replay) {
+            return deliver(body, new LocalContext(30000, false));
+        }
+        classDate = classDate.plusDays(1);
+        return deliver(body.replace("\"2025-03-10\"", "\"" + classDate + "\""), new LocalContext(30000, false));
+    }
+
+    // The check-in's response, or the finished job's status for the async and direct deliveries
+    private APIGatewayProxyResponseEvent deliver(String body, LocalContext context) {
+        switch (delivery) {
+            case "sync":
+                return handler.handleRequest("class".equals(scenario)
+                        ? checkIn(body).withResource("/process-image/class-photo") : checkIn(body), context);
+            case "async":
+                return awaitJob(jobId(handler.handleRequest(checkIn(body), context), 202));
+            case "direct":
+                APIGatewayProxyResponseEvent response = handler.handleRequest(checkIn(body).withResource("/process-image/uploads"), context);
+                String jobId = jobId(response, 200);
+                String key;
+                try {
+                    key = new ObjectMapper().readTree(response.getBody()).path("uploaded_image_key").asText();
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException("Unparseable upload response", e);
+                }
+                aws.s3().store(ClassFixture.BUCKET, key, photo, "image/jpeg", Map.of(DirectUploads.JOB_ID_METADATA, jobId));
+                uploads.handleRequest(aws.s3().createdEvent(ClassFixture.BUCKET, key), new LocalContext(30000, false));
+                return awaitJob(jobId);
+            default:
+                throw new IllegalArgumentException("Unknown delivery " + delivery);
+        }
+    }
+
+    private APIGatewayProxyRequestEvent checkIn(String body) {
+        Map<String, String> query = new HashMap<>();
+        if (!detail.isEmpty()) {
+            query.put("detail", detail);
+        }
+        if ("async".equals(delivery)) {
+            query.put("async", "true");
+        }
+        APIGatewayProxyRequestEvent event = new APIGatewayProxyRequestEvent().withHttpMethod("POST").withBody(body);
+        return query.isEmpty() ? event : event.withQueryStringParameters(query);
+    }
+
+    private static String jobId(APIGatewayProxyResponseEvent submitted, int expectedStatus) {
+        if (submitted.getStatusCode() != expectedStatus) {
+            throw new IllegalStateException("Check-in was not queued: " + submitted.getBody());
+        }
+        try {
+            return new ObjectMapper().readTree(submitted.getBody()).path("job_id").asText();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unparseable job response", e);
+        }
+    }
+
+    // Runs the queued job like the SQS event source would, redelivering failed messages, then reads its status
+    private APIGatewayProxyResponseEvent awaitJob(String jobId) {
+        while (aws.sqs().size() > 0) {
+            SQSEvent batch = aws.sqs().drain(1);
+            SQSBatchResponse result = worker.handleRequest(batch, new LocalContext(120000, false));
+            if (!result.getBatchItemFailures().isEmpty()) {
+                aws.sqs().redeliver(batch.getRecords());
+            }
+        }
+        return handler.handleRequest(new APIGatewayProxyRequestEvent().withHttpMethod("GET")
+                .withPathParameters(Map.of("jobId", jobId)), new LocalContext(30000, false));
+    }
+}
@@ -0,0 +1,172 @@
+package hackathonproj.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import hackathonproj.NameMatcher;
+import hackathonproj.RosterIndex;
+
+// Name lookup against the OCR'd sign-in sheets: the NameMatcher of each sheet for a name spelt exactly, one
+// misspelt by OCR and one that is not on the sheets, against the per-line substring scan the handler used to do,
+// and the cost of building the matchers. The sheets are generated with OCR noise (reordered "Last, First" names,
+// confused characters, dropped letters); setup checks that each lookup takes the path it is named after. The
+// matcher's results on real OCR lines are covered by NameMatcherTest in the lambda module.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NameMatchingBenchmark {
+
+    private static final float THRESHOLD = 0.9f;
+
+    private static final String[] SYLLABLES = {"ka", "ro", "mi", "le", "sa", "no", "ti", "va", "de", "lu", "pe", "zo"};
+
+    @Param({"30", "300", "3000"})
+    public int rosterSize;
+
+    @Param({"5"})
+    public int sheets;
+
+    private List<RosterIndex.Sheet> sheetList;
+    private List<List<String>> lines;
+    private RosterIndex index;
+    private String present;
+    private String misspelt;
+    private String absent;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        sheetList = new ArrayList<>();
+        lines = new ArrayList<>();
+        int perSheet = (rosterSize + sheets - 1) / sheets;
+        for (int sheet = 0; sheet < sheets; sheet++) {
+            List<String> sheetLines = new ArrayList<>();
+            sheetLines.add("CS 5330 Attendance - Sheet " + (sheet + 1));
+            sheetLines.add("No.  Name  Signature");
+            for (int i = sheet * perSheet; i < Math.min(rosterSize, (sheet + 1) * perSheet); i++) {
+                sheetLines.add((i + 1) + ".  " + noisy(i, random) + "  ~signed~");
+            }
+            sheetList.add(new RosterIndex.Sheet("names/sheet-" + sheet + ".png", "\"etag\"", sheetLines));
+            lines.add(sheetLines);
+        }
+        index = new RosterIndex(sheetList);
+
+        // Students 4k are written as they are, 4k + 3 lose a letter (see noisy)
+        int last = (rosterSize - 1) / 4 * 4;
+        present = name(last);
+        misspelt = name(last - 1);
+        absent = "walk in visitor";
+        check(index.match(present, THRESHOLD).getScore() == 1f, "exact lookup of " + present);
+        check(index.match(misspelt, THRESHOLD).isMatch(), "fuzzy lookup of " + misspelt);
+        check(!index.match(absent, THRESHOLD).isMatch(), "lookup of " + absent);
+    }
+
+    @Benchmark
+    public NameMatcher.Match lookupPresent() {
+        return index.match(present, THRESHOLD);
+    }
+
+    @Benchmark
+    public NameMatcher.Match lookupMisspelt() {
+        return index.match(misspelt, THRESHOLD);
+    }
+
+    @Benchmark
+    public NameMatcher.Match lookupAbsent() {
+        return index.match(absent, THRESHOLD);
+    }
+
+    @Benchmark
+    public boolean lineScanPresent() {
+        return scan(present.toLowerCase());
+    }
+
+    @Benchmark
+    public boolean lineScanAbsent() {
+        return scan(absent);
+    }
+
+    // Folding every line into its matcher, as on a cold start or a changed sheet
+    @Benchmark
+    public int buildMatchers() {
+        int phrases = 0;
+        for (List<String> sheet : lines) {
+            phrases += new NameMatcher(sheet).phraseCount();
+        }
+        return phrases;
+    }
+
+    private boolean scan(String name) {
+        for (List<String> sheet : lines) {
+            for (String line : sheet) {
+                if (line.toLowerCase().contains(name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Student i as written on the sheet: as is, as "Last, First", with OCR confusions, or missing a letter
+    private static String noisy(int student, Random random) {
+        String first = first(student);
+        String last = last(student);
+        switch (student % 4) {
+            case 1:
+                return last + ", " + first;
+            case 2:
+                return first.replace('l', '1').replace('o', '0') + " " + last.replace("m", "rn");
+            case 3:
+                int drop = 1 + random.nextInt(last.length() - 1);
+                return first + " " + last.substring(0, drop) + last.substring(drop + 1);
+            default:
+                return first + " " + last;
+        }
+    }
+
+    private static String name(int student) {
+        return first(student) + " " + last(student);
+    }
+
+    // Distinct for the first 144 * 1728 students: two syllables for the first name, three for the surname
+    private static String first(int student) {
+        return word(student % 144, 2);
+    }
+
+    private static String last(int student) {
+        return word(student / 144 * 37 % 1728, 3);
+    }
+
+    private static String word(int value, int syllables) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[value % SYLLABLES.length]);
+            value /= SYLLABLES.length;
+        }
+        word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+        return word.toString();
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new IllegalStateException("Name matching failed during setup: " + what);
+        }
+    }
+}
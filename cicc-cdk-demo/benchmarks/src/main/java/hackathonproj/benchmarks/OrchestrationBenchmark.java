@@ -0,0 +1,88 @@
+package hackathonproj.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import hackathonproj.Deadline;
+import hackathonproj.FanOut;
+import hackathonproj.local.Latency;
+
+// Orchestration of the per-reference remote calls (S3 fetch + CompareFaces) with simulated latency:
+// sequential calls, FanOut.map over all references, and FanOut.first stopping at the matching reference.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrchestrationBenchmark {
+
+    @Param({"30", "150"})
+    public int references;
+
+    @Param({"10"})
+    public double latencyMillis;
+
+    @Param({"4", "10", "32"})
+    public int concurrency;
+
+    // Position of the matching reference, as a fraction of the list
+    @Param({"0.5"})
+    public double matchPosition;
+
+    private FanOut fanOut;
+    private Latency latency;
+    private List<Integer> inputs;
+    private int matchIndex;
+
+    @Setup
+    public void setUp() {
+        fanOut = new FanOut(concurrency);
+        latency = Latency.millis(latencyMillis, latencyMillis / 5);
+        inputs = new ArrayList<>();
+        for (int i = 0; i < references; i++) {
+            inputs.add(i);
+        }
+        matchIndex = (int) (references * matchPosition);
+    }
+
+    @Benchmark
+    public int sequential() {
+        for (Integer input : inputs) {
+            if (call(input)) {
+                return input;
+            }
+        }
+        return -1;
+    }
+
+    @Benchmark
+    public List<Boolean> mapAll() {
+        return fanOut.map(inputs, this::call, false, Deadline.after(30000, 10000));
+    }
+
+    @Benchmark
+    public Integer firstMatch() {
+        return fanOut.first(inputs, input -> call(input) ? input : null, result -> result != null, null, Deadline.after(30000, 10000));
+    }
+
+    // One simulated S3 GET followed by one CompareFaces call
+    private boolean call(int input) {
+        latency.pause();
+        latency.pause();
+        return input == matchIndex;
+    }
+}
@@ -0,0 +1,87 @@
+package hackathonproj.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+
+import hackathonproj.ConditionalParticipationWriter;
+import hackathonproj.Deadline;
+import hackathonproj.FanOut;
+import hackathonproj.ParticipationRecord;
+import hackathonproj.local.ClassFixture;
+import hackathonproj.local.Latency;
+import hackathonproj.local.LocalAws;
+
+// Writing the participation records of a whole class: one conditional PutItem after the other against the
+// concurrent conditional PutItems of ConditionalParticipationWriter, with a share of the writes throttled.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParticipationWriteBenchmark {
+
+    @Param({"100"})
+    public int records;
+
+    @Param({"8"})
+    public double latencyMillis;
+
+    @Param({"0", "0.2"})
+    public double throttleRate;
+
+    private LocalAws aws;
+    private ConditionalParticipationWriter writer;
+    private List<ParticipationRecord> batch;
+
+    @Setup
+    public void setUp() {
+        aws = new LocalAws(Latency.millis(latencyMillis, latencyMillis / 4));
+        aws.dynamoDB().createTable(ClassFixture.PARTICIPATION_TABLE, "class_date", ParticipationRecord.SORT_KEY);
+        aws.dynamoDB().throttle(throttleRate);
+        writer = new ConditionalParticipationWriter(aws.clients(), ClassFixture.PARTICIPATION_TABLE, new FanOut(16), 8, 10, 200);
+
+        batch = new ArrayList<>();
+        for (int i = 0; i < records; i++) {
+            String email = "student" + i + "@example.edu";
+            batch.add(new ParticipationRecord("student " + i, email, "2025-03-10", true, true, false,
+                    "proj/proj-images/uploads/2025-03-10/student " + i + ".jpg", null));
+        }
+    }
+
+    // Without retries, so throttled records are simply not written
+    @Benchmark
+    public int putItemEach() {
+        int written = 0;
+        for (ParticipationRecord record : batch) {
+            try {
+                aws.dynamoDB().putItem(record.putRequest(ClassFixture.PARTICIPATION_TABLE));
+                written++;
+            } catch (ProvisionedThroughputExceededException e) {
+                // Throttled
+            }
+        }
+        return written;
+    }
+
+    @Benchmark
+    public int batchWriter() {
+        List<ParticipationRecord> failed = writer.write(batch, Deadline.after(30000, 5000));
+        return batch.size() - failed.size();
+    }
+}
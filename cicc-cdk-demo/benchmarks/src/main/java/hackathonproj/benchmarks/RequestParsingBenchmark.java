@@ -0,0 +1,85 @@
+package hackathonproj.benchmarks;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import hackathonproj.CheckInRequest;
+import hackathonproj.local.ClassFixture;
+import hackathonproj.local.FaceImages;
+
+// Request body handling: the streaming CheckInRequest parser (which decodes the image in place) against
+// the tree-based parse plus String-based base64 decode it replaced, and serialization of the response.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestParsingBenchmark {
+
+    // Longest edge of the uploaded photo, which sets the size of the base64 payload
+    @Param({"640", "1600", "3000"})
+    public int photoEdge;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private String body;
+    private String encodedImage;
+    private ObjectNode response;
+
+    @Setup
+    public void setUp() throws Exception {
+        byte[] photo = FaceImages.photo("Maria Garcia", 1, photoEdge, photoEdge * 3 / 4);
+        body = ClassFixture.checkInBody("Maria Garcia", "2025-03-10", photo, false);
+        encodedImage = Base64.getEncoder().encodeToString(photo);
+
+        response = mapper.createObjectNode();
+        response.put("participation", true);
+        response.put("name", "maria garcia");
+        response.put("email", "maria.garcia@example.edu");
+        response.put("class_date", "2025-03-10");
+        response.put("name_match", true);
+        response.put("face_match", false);
+        response.set("extracted_names", mapper.valueToTree(List.of(
+                List.of("CS 5330 Attendance - Sheet 1", "No.  Name  Signature", "1.  Maria Garcia  ~signed~"))));
+        response.set("similarity_scores", mapper.createArrayNode());
+    }
+
+    @Benchmark
+    public CheckInRequest streamingParse() throws Exception {
+        return CheckInRequest.parse(mapper.getFactory(), body);
+    }
+
+    @Benchmark
+    public byte[] treeParseAndDecode() throws Exception {
+        JsonNode json = mapper.readTree(body);
+        String data = json.get("uploaded_image_data").asText();
+        return Base64.getDecoder().decode(data.substring(data.indexOf(',') + 1));
+    }
+
+    @Benchmark
+    public byte[] base64DecodeOnly() {
+        return Base64.getDecoder().decode(encodedImage);
+    }
+
+    @Benchmark
+    public String serializeResponse() throws Exception {
+        return mapper.writeValueAsString(response);
+    }
+}
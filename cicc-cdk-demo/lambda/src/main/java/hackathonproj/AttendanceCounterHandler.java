@@ -0,0 +1,111 @@
+package hackathonproj;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue;
+
+// Keeps the attendance counts up to date from the participation table's stream, whichever path wrote the records
+// (direct PutItem, the batch writer, class photos). The old and new image of each change say how the counts move:
+// a new record adds one present or absent, a replaced verdict moves one between them. The changes of a batch are
+// summed per class date and section, so a class checking in together costs one update. When an update fails, the
+// batch is reported failed from that class's first change on; classes already updated skip what they counted.
+public class AttendanceCounterHandler implements RequestHandler<DynamodbEvent, StreamsEventResponse> {
+
+    private final AttendanceCounts counts;
+
+    public AttendanceCounterHandler() {
+        this(AttendanceCounts.fromEnvironment(AwsClients.shared()));
+    }
+
+    public AttendanceCounterHandler(AttendanceCounts counts) {
+        this.counts = counts;
+    }
+
+    @Override
+    public StreamsEventResponse handleRequest(DynamodbEvent event, Context context) {
+        RequestMetrics metrics = RequestMetrics.begin(context.getLogger());
+        // Changes per class date and section, with the sequence number of the first record behind them
+        Map<List<String>, List<AttendanceCounts.Change>> byClass = new LinkedHashMap<>();
+        Map<List<String>, String> firstSequence = new LinkedHashMap<>();
+        for (DynamodbEvent.DynamodbStreamRecord record : event.getRecords()) {
+            String sequence = record.getDynamodb().getSequenceNumber();
+            Map<String, AttributeValue> before = record.getDynamodb().getOldImage();
+            Map<String, AttributeValue> after = record.getDynamodb().getNewImage();
+            List<String> beforeClass = classOf(before);
+            List<String> afterClass = classOf(after);
+            if (beforeClass != null && beforeClass.equals(afterClass)) {
+                add(byClass, firstSequence, beforeClass, sequence, present(after) - present(before), absent(after) - absent(before));
+                continue;
+            }
+            if (beforeClass != null) {
+                add(byClass, firstSequence, beforeClass, sequence, -present(before), -absent(before));
+            }
+            if (afterClass != null) {
+                add(byClass, firstSequence, afterClass, sequence, present(after), absent(after));
+            }
+        }
+
+        String retryFrom = null;
+        int updated = 0;
+        for (Map.Entry<List<String>, List<AttendanceCounts.Change>> entry : byClass.entrySet()) {
+            if (counts.apply(entry.getKey().get(0), entry.getKey().get(1), entry.getValue())) {
+                updated++;
+                continue;
+            }
+            String sequence = firstSequence.get(entry.getKey());
+            if (retryFrom == null || new BigInteger(sequence).compareTo(new BigInteger(retryFrom)) < 0) {
+                retryFrom = sequence;
+            }
+        }
+        context.getLogger().log("Updated the attendance counts of " + updated + " classes from " + event.getRecords().size()
+                + " changes" + (retryFrom != null ? ", retrying from " + retryFrom : ""));
+        metrics.finish();
+        context.getLogger().log(metrics.toEmf(context.getFunctionName(), context.getAwsRequestId()));
+
+        List<StreamsEventResponse.BatchItemFailure> failures = new ArrayList<>();
+        if (retryFrom != null) {
+            failures.add(new StreamsEventResponse.BatchItemFailure(retryFrom));
+        }
+        return new StreamsEventResponse(failures);
+    }
+
+    private static void add(Map<List<String>, List<AttendanceCounts.Change>> byClass, Map<List<String>, String> firstSequence,
+                            List<String> classKey, String sequence, int present, int absent) {
+        AttendanceCounts.Change change = new AttendanceCounts.Change(sequence, present, absent);
+        if (!change.isEmpty()) {
+            byClass.computeIfAbsent(classKey, k -> new ArrayList<>()).add(change);
+            firstSequence.putIfAbsent(classKey, sequence);
+        }
+    }
+
+    // Class date and section (null without one) of a record image; null for no image
+    private static List<String> classOf(Map<String, AttributeValue> image) {
+        if (image == null || image.isEmpty() || image.get("class_date") == null) {
+            return null;
+        }
+        AttributeValue section = image.get("section_id");
+        return Arrays.asList(image.get("class_date").getS(), section != null ? section.getS() : null);
+    }
+
+    private static int present(Map<String, AttributeValue> image) {
+        return image != null && !image.isEmpty() && participated(image) ? 1 : 0;
+    }
+
+    private static int absent(Map<String, AttributeValue> image) {
+        return image != null && !image.isEmpty() && !participated(image) ? 1 : 0;
+    }
+
+    private static boolean participated(Map<String, AttributeValue> image) {
+        AttributeValue participation = image.get("participation");
+        return participation != null && Boolean.TRUE.equals(participation.getBOOL());
+    }
+}
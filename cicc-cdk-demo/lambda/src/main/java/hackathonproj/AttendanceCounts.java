@@ -0,0 +1,215 @@
+package hackathonproj;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+// Precomputed attendance counts, one item per class date and section in the counts table. AttendanceCounterHandler
+// adds the changes of the participation table's stream to them, so a roster reads a class's counts with one small
+// Query instead of going through every record. Each item keeps the stream sequence number of the last change it
+// includes, and a change at or below it is skipped, so a stream batch retried after a partial failure is not
+// counted twice.
+public class AttendanceCounts {
+
+    // Sort key of records without a section; section ids start with a letter or digit
+    static final String NO_SECTION = "-";
+
+    // Conditional updates lost to a concurrent one before giving up on a class
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final AwsClients clients;
+    private final String tableName;
+
+    public AttendanceCounts(AwsClients clients, String tableName) {
+        this.clients = clients;
+        this.tableName = tableName;
+    }
+
+    // Configured from COUNTS_TABLE
+    public static AttendanceCounts fromEnvironment(AwsClients clients) {
+        return new AttendanceCounts(clients, ParticipationConfig.COUNTS_TABLE);
+    }
+
+    // Without a counts table rosters come without counts
+    public boolean isEnabled() {
+        return !tableName.isEmpty();
+    }
+
+    // The counts of one class date, one per section; null when they could not be read
+    public List<Count> read(String classDate) {
+        try {
+            List<Count> counts = new ArrayList<>();
+            Map<String, AttributeValue> startKey = null;
+            do {
+                QueryRequest.Builder request = QueryRequest.builder()
+                        .tableName(tableName)
+                        .keyConditionExpression("class_date = :date")
+                        .expressionAttributeValues(Map.of(":date", AttributeValue.fromS(classDate)));
+                if (startKey != null) {
+                    request.exclusiveStartKey(startKey);
+                }
+                QueryResponse response = clients.dynamoDB().query(request.build());
+                for (Map<String, AttributeValue> item : response.items()) {
+                    String section = item.get("section_id").s();
+                    counts.add(new Count(NO_SECTION.equals(section) ? null : section,
+                            number(item.get("present")), number(item.get("absent"))));
+                }
+                startKey = response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                        ? response.lastEvaluatedKey() : null;
+            } while (startKey != null);
+            return counts;
+        } catch (Exception e) {
+            RequestMetrics.current().failure("Failed to read attendance counts of " + classDate + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Adds the changes of one class date and section, in stream order; false when the counts could not be updated
+    public boolean apply(String classDate, String section, List<Change> changes) {
+        Map<String, AttributeValue> key = Map.of(
+                "class_date", AttributeValue.fromS(classDate),
+                "section_id", AttributeValue.fromS(section != null ? section : NO_SECTION));
+        BigInteger applied = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            long present = 0;
+            long absent = 0;
+            BigInteger first = null;
+            BigInteger last = null;
+            for (Change change : changes) {
+                if (applied != null && change.sequence.compareTo(applied) <= 0) {
+                    continue;
+                }
+                present += change.present;
+                absent += change.absent;
+                first = first == null ? change.sequence : first;
+                last = change.sequence;
+            }
+            if (first == null) {
+                return true;
+            }
+            try {
+                clients.dynamoDB().updateItem(UpdateItemRequest.builder()
+                        .tableName(tableName)
+                        .key(key)
+                        .updateExpression("ADD present :present, absent :absent SET last_sequence = :last, updated_at = :now")
+                        .conditionExpression("attribute_not_exists(last_sequence) OR last_sequence < :first")
+                        .expressionAttributeValues(Map.of(
+                                ":present", AttributeValue.fromN(String.valueOf(present)),
+                                ":absent", AttributeValue.fromN(String.valueOf(absent)),
+                                ":first", AttributeValue.fromN(first.toString()),
+                                ":last", AttributeValue.fromN(last.toString()),
+                                ":now", AttributeValue.fromN(String.valueOf(System.currentTimeMillis() / 1000))))
+                        .build());
+                return true;
+            } catch (ConditionalCheckFailedException e) {
+                // Some of the changes are already counted: read how far, and add the rest
+                applied = lastSequence(key);
+                if (applied == null) {
+                    return false;
+                }
+            } catch (Exception e) {
+                RequestMetrics.current().failure("Failed to update attendance counts of " + classDate + ": " + e.getMessage());
+                return false;
+            }
+        }
+        RequestMetrics.current().failure("Gave up updating attendance counts of " + classDate + " after " + MAX_ATTEMPTS + " attempts");
+        return false;
+    }
+
+    // The sequence number of the last change counted, -1 for none; null when it could not be read
+    private BigInteger lastSequence(Map<String, AttributeValue> key) {
+        try {
+            Map<String, AttributeValue> item = clients.dynamoDB().getItem(GetItemRequest.builder()
+                    .tableName(tableName)
+                    .key(key)
+                    .consistentRead(true)
+                    .build()).item();
+            AttributeValue last = item != null ? item.get("last_sequence") : null;
+            return last != null ? new BigInteger(last.n()) : BigInteger.valueOf(-1);
+        } catch (Exception e) {
+            RequestMetrics.current().failure("Failed to read attendance counts: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static long number(AttributeValue value) {
+        return value != null && value.n() != null ? Long.parseLong(value.n()) : 0;
+    }
+
+    // One stream record's effect on the counts of one class date and section: +1/-1 present or absent.
+    // A changed verdict is one change; a record moved to another section is one change for each.
+    public static class Change {
+
+        private final BigInteger sequence;
+        private final int present;
+        private final int absent;
+
+        public Change(String sequenceNumber, int present, int absent) {
+            this.sequence = new BigInteger(sequenceNumber);
+            this.present = present;
+            this.absent = absent;
+        }
+
+        public boolean isEmpty() {
+            return present == 0 && absent == 0;
+        }
+    }
+
+    @JsonPropertyOrder({"section_id", "present", "absent", "total"})
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Count {
+
+        private final String sectionId;
+        private final long present;
+        private final long absent;
+
+        public Count(String sectionId, long present, long absent) {
+            this.sectionId = sectionId;
+            this.present = present;
+            this.absent = absent;
+        }
+
+        // The counts of a whole class date, over its sections
+        public static Count total(List<Count> counts) {
+            long present = 0;
+            long absent = 0;
+            for (Count count : counts) {
+                present += count.present;
+                absent += count.absent;
+            }
+            return new Count(null, present, absent);
+        }
+
+        @JsonProperty("section_id")
+        public String getSectionId() {
+            return sectionId;
+        }
+
+        @JsonProperty("present")
+        public long getPresent() {
+            return present;
+        }
+
+        @JsonProperty("absent")
+        public long getAbsent() {
+            return absent;
+        }
+
+        @JsonProperty("total")
+        public long getTotal() {
+            return present + absent;
+        }
+    }
+}
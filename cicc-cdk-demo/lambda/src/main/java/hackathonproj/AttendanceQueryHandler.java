@@ -0,0 +1,353 @@
+package hackathonproj;
+
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+
+// Read side of the participation table for instructor dashboards, one page per request:
+//   GET /attendance/classes/{classDate}?section_id=&limit=&next=  the class's records in section and email order,
+//       with the precomputed counts on the first page
+//   GET /attendance/students/{email}?from=&to=&limit=&next=  one student's records in class date order, from the
+//       email index
+// Both are a single Query on the key of the class or the student, never a scan. next is the opaque token of the
+// previous page's next_token; a page without next_token is the last. A section is a range of the sort key
+// (ParticipationRecord.SORT_KEY), so it is selected by the key condition and every page but the last is full.
+public class AttendanceQueryHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
+
+    static final String EMAIL_INDEX = ParticipationConfig.EMAIL_INDEX;
+
+    private static final int DEFAULT_PAGE_SIZE = ParticipationConfig.DEFAULT_PAGE_SIZE;
+    private static final int MAX_PAGE_SIZE = 1000;
+    // LastEvaluatedKey of a table query, and of an index query, which adds the index's keys
+    private static final Set<String> TABLE_KEY = Set.of("class_date", ParticipationRecord.SORT_KEY);
+    private static final Set<String> INDEX_KEY = Set.of("class_date", ParticipationRecord.SORT_KEY, "email");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final AwsClients clients;
+    private final String tableName;
+    private final String emailIndex;
+    private final AttendanceCounts counts;
+
+    public AttendanceQueryHandler() {
+        this(AwsClients.shared(), ParticipationConfig.TABLE, EMAIL_INDEX, AttendanceCounts.fromEnvironment(AwsClients.shared()));
+    }
+
+    public AttendanceQueryHandler(AwsClients clients, String tableName, String emailIndex, AttendanceCounts counts) {
+        this.clients = clients;
+        this.tableName = tableName;
+        this.emailIndex = emailIndex;
+        this.counts = counts;
+    }
+
+    @Override
+    public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent event, Context context) {
+        if ("OPTIONS".equalsIgnoreCase(event.getHttpMethod())) {
+            return createResponse(200, "{\"message\": \"CORS preflight successful\"}");
+        }
+        Map<String, String> path = event.getPathParameters() != null ? event.getPathParameters() : Map.of();
+        Map<String, String> query = event.getQueryStringParameters() != null ? event.getQueryStringParameters() : Map.of();
+        RequestMetrics metrics = RequestMetrics.begin(context.getLogger());
+        try {
+            Integer limit = pageSize(query.get("limit"));
+            if (limit == null) {
+                return error(400, "Invalid limit: use a number from 1 to " + MAX_PAGE_SIZE);
+            }
+            if (path.get("classDate") != null) {
+                return roster(decode(path.get("classDate")), query.get("section_id"), limit, query.get("next"));
+            }
+            if (path.get("email") != null) {
+                return history(decode(path.get("email")), query.get("from"), query.get("to"), limit, query.get("next"));
+            }
+            return error(404, "Unknown attendance route");
+        } catch (Exception e) {
+            context.getLogger().log("Attendance query failed: " + e.getMessage());
+            return error(500, "Attendance query failed");
+        } finally {
+            metrics.finish();
+            context.getLogger().log(metrics.toEmf(context.getFunctionName(), context.getAwsRequestId()));
+        }
+    }
+
+    // One page of a class's records; the first page also carries the class's counts
+    private APIGatewayProxyResponseEvent roster(String classDate, String section, int limit, String next) {
+        if (section != null && !ReferenceLayout.isValidSection(section)) {
+            return error(400, "Invalid section_id: use letters, digits, '-' and '_'");
+        }
+        Map<String, AttributeValue> startKey = startKey(next, TABLE_KEY, "class_date", classDate);
+        if (next != null && startKey == null) {
+            return error(400, "Invalid next token");
+        }
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":date", AttributeValue.fromS(classDate));
+        String condition = "class_date = :date";
+        if (section != null) {
+            condition += " AND begins_with(" + ParticipationRecord.SORT_KEY + ", :section)";
+            values.put(":section", AttributeValue.fromS(ParticipationRecord.sectionPrefix(section)));
+        }
+        QueryRequest.Builder request = QueryRequest.builder()
+                .tableName(tableName)
+                .keyConditionExpression(condition)
+                .expressionAttributeValues(values)
+                .limit(limit);
+        if (startKey != null) {
+            request.exclusiveStartKey(startKey);
+        }
+        QueryResponse response = clients.dynamoDB().query(request.build());
+
+        Page page = page(response);
+        page.classDate = classDate;
+        page.sectionId = section;
+        if (next == null && counts.isEnabled()) {
+            List<AttendanceCounts.Count> sections = counts.read(classDate);
+            if (sections != null) {
+                if (section != null) {
+                    sections.removeIf(count -> !section.equals(count.getSectionId()));
+                }
+                page.counts = new Counts(AttendanceCounts.Count.total(sections), sections);
+            }
+        }
+        return createResponse(200, serialize(page));
+    }
+
+    // One page of a student's records, optionally between two class dates (inclusive)
+    private APIGatewayProxyResponseEvent history(String email, String from, String to, int limit, String next) {
+        if (from != null && to != null && from.compareTo(to) > 0) {
+            return error(400, "Invalid range: from is after to");
+        }
+        Map<String, AttributeValue> startKey = startKey(next, INDEX_KEY, "email", email);
+        if (next != null && startKey == null) {
+            return error(400, "Invalid next token");
+        }
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":email", AttributeValue.fromS(email));
+        String condition = "email = :email";
+        if (from != null && to != null) {
+            condition += " AND class_date BETWEEN :from AND :to";
+            values.put(":from", AttributeValue.fromS(from));
+            values.put(":to", AttributeValue.fromS(to));
+        } else if (from != null) {
+            condition += " AND class_date >= :from";
+            values.put(":from", AttributeValue.fromS(from));
+        } else if (to != null) {
+            condition += " AND class_date <= :to";
+            values.put(":to", AttributeValue.fromS(to));
+        }
+        QueryRequest.Builder request = QueryRequest.builder()
+                .tableName(tableName)
+                .indexName(emailIndex)
+                .keyConditionExpression(condition)
+                .expressionAttributeValues(values)
+                .limit(limit);
+        if (startKey != null) {
+            request.exclusiveStartKey(startKey);
+        }
+        Page page = page(clients.dynamoDB().query(request.build()));
+        page.email = email;
+        return createResponse(200, serialize(page));
+    }
+
+    private Page page(QueryResponse response) {
+        Page page = new Page();
+        for (Map<String, AttributeValue> item : response.items()) {
+            page.records.add(record(item));
+        }
+        if (response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()) {
+            page.nextToken = token(response.lastEvaluatedKey());
+        }
+        return page;
+    }
+
+    // The attributes of a stored record as JSON values, without the sort key, which repeats section and email
+    private static Map<String, Object> record(Map<String, AttributeValue> item) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        for (Map.Entry<String, AttributeValue> attribute : item.entrySet()) {
+            if (attribute.getKey().equals(ParticipationRecord.SORT_KEY)) {
+                continue;
+            }
+            AttributeValue value = attribute.getValue();
+            if (value.s() != null) {
+                record.put(attribute.getKey(), value.s());
+            } else if (value.bool() != null) {
+                record.put(attribute.getKey(), value.bool());
+            } else if (value.n() != null) {
+                record.put(attribute.getKey(), new BigDecimal(value.n()));
+            }
+        }
+        return record;
+    }
+
+    // The page's LastEvaluatedKey as URL-safe base64 of a JSON object; its attributes are all strings
+    private String token(Map<String, AttributeValue> lastKey) {
+        Map<String, String> key = new HashMap<>();
+        lastKey.forEach((name, value) -> key.put(name, value.s()));
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(mapper.writeValueAsBytes(key));
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to encode the next token", e);
+        }
+    }
+
+    // The ExclusiveStartKey of a next token, or null when it is absent, malformed or not from the same query
+    private Map<String, AttributeValue> startKey(String next, Set<String> keyAttributes, String partitionKey,
+            String partitionValue) {
+        if (next == null) {
+            return null;
+        }
+        try {
+            JsonNode root = mapper.readTree(Base64.getUrlDecoder().decode(next));
+            Map<String, AttributeValue> key = new HashMap<>();
+            for (Iterator<Map.Entry<String, JsonNode>> fields = root.fields(); fields.hasNext(); ) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (!keyAttributes.contains(field.getKey()) || !field.getValue().isTextual()) {
+                    return null;
+                }
+                key.put(field.getKey(), AttributeValue.fromS(field.getValue().asText()));
+            }
+            boolean complete = key.keySet().equals(keyAttributes);
+            return complete && partitionValue.equals(key.get(partitionKey).s()) ? key : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // DEFAULT_PAGE_SIZE when not given; null when out of range
+    private static Integer pageSize(String limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        try {
+            int parsed = Integer.parseInt(limit.trim());
+            return parsed >= 1 && parsed <= MAX_PAGE_SIZE ? parsed : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Path parameters may arrive percent-encoded (an email's '@'); a literal '+' is kept
+    private static String decode(String value) {
+        return value.indexOf('%') >= 0 ? URLDecoder.decode(value.replace("+", "%2B"), StandardCharsets.UTF_8) : value;
+    }
+
+    private APIGatewayProxyResponseEvent error(int statusCode, String message) {
+        Map<String, String> body = Map.of("error", message);
+        return createResponse(statusCode, serialize(body));
+    }
+
+    private String serialize(Object response) {
+        try {
+            return mapper.writeValueAsString(response);
+        } catch (Exception e) {
+            return "{\"error\": \"Failed to serialize response\"}";
+        }
+    }
+
+    private APIGatewayProxyResponseEvent createResponse(int statusCode, String body) {
+        return new APIGatewayProxyResponseEvent()
+                .withStatusCode(statusCode)
+                .withHeaders(Map.of(
+                        "Content-Type", "application/json",
+                        "Access-Control-Allow-Origin", "*",
+                        "Access-Control-Allow-Methods", "OPTIONS,GET",
+                        "Access-Control-Allow-Headers", "Content-Type, Authorization, X-Amz-Date, X-Api-Key, X-Amz-Security-Token"
+                ))
+                .withBody(body);
+    }
+
+    @JsonPropertyOrder({"class_date", "email", "section_id", "counts", "records", "next_token"})
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Page {
+
+        private String classDate;
+        private String email;
+        private String sectionId;
+        private Counts counts;
+        private final List<Map<String, Object>> records = new ArrayList<>();
+        private String nextToken;
+
+        @JsonProperty("class_date")
+        public String getClassDate() {
+            return classDate;
+        }
+
+        @JsonProperty("email")
+        public String getEmail() {
+            return email;
+        }
+
+        @JsonProperty("section_id")
+        public String getSectionId() {
+            return sectionId;
+        }
+
+        @JsonProperty("counts")
+        public Counts getCounts() {
+            return counts;
+        }
+
+        @JsonProperty("records")
+        public List<Map<String, Object>> getRecords() {
+            return records;
+        }
+
+        @JsonProperty("next_token")
+        public String getNextToken() {
+            return nextToken;
+        }
+    }
+
+    // A class's counts over the sections shown, and per section
+    @JsonPropertyOrder({"present", "absent", "total", "sections"})
+    public static class Counts {
+
+        private final AttendanceCounts.Count total;
+        private final List<AttendanceCounts.Count> sections;
+
+        public Counts(AttendanceCounts.Count total, List<AttendanceCounts.Count> sections) {
+            this.total = total;
+            this.sections = sections;
+        }
+
+        @JsonProperty("present")
+        public long getPresent() {
+            return total.getPresent();
+        }
+
+        @JsonProperty("absent")
+        public long getAbsent() {
+            return total.getAbsent();
+        }
+
+        @JsonProperty("total")
+        public long getTotal() {
+            return total.getTotal();
+        }
+
+        @JsonProperty("sections")
+        public List<AttendanceCounts.Count> getSections() {
+            return sections;
+        }
+    }
+}
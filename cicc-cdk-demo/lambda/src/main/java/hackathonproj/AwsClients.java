@@ -0,0 +1,189 @@
+package hackathonproj;
+
+import java.util.function.Supplier;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryMode;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.rekognition.RekognitionClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.textract.TextractClient;
+
+// Builds the SDK clients lazily, on first use, so an invocation only pays for the clients it needs.
+// All clients of the container share one credentials provider and one URL-connection HTTP client,
+// which starts much faster than the default Apache client. Their calls are counted into the running
+// invocation's RequestMetrics. Rekognition and Textract calls go through a ServiceGuard per service, which
+// retries them within the request deadline; their clients only rate-limit themselves (adaptive retry mode
+// with no SDK retries of their own), so throttled calls are not retried twice.
+public class AwsClients {
+
+    private static final Region REGION = ParticipationConfig.REGION;
+
+    private static volatile AwsClients shared;
+
+    private final Supplier<S3Client> s3;
+    private final Supplier<TextractClient> textract;
+    private final Supplier<RekognitionClient> rekognition;
+    private final Supplier<DynamoDbClient> dynamoDB;
+    private final Supplier<SqsClient> sqs;
+    private final Supplier<S3Presigner> s3Presigner;
+    private final ServiceGuard rekognitionGuard = ServiceGuard.forService("Rekognition");
+    private final ServiceGuard textractGuard = ServiceGuard.forService("Textract");
+
+    private AwsClients(Supplier<S3Client> s3, Supplier<TextractClient> textract,
+            Supplier<RekognitionClient> rekognition, Supplier<DynamoDbClient> dynamoDB, Supplier<SqsClient> sqs,
+            Supplier<S3Presigner> s3Presigner) {
+        this.s3 = s3;
+        this.textract = textract;
+        this.rekognition = rekognition;
+        this.dynamoDB = dynamoDB;
+        this.sqs = sqs;
+        this.s3Presigner = s3Presigner;
+    }
+
+    // Container-wide instance backed by the real AWS services
+    public static AwsClients shared() {
+        AwsClients clients = shared;
+        if (clients == null) {
+            synchronized (AwsClients.class) {
+                clients = shared;
+                if (clients == null) {
+                    clients = create();
+                    shared = clients;
+                }
+            }
+        }
+        return clients;
+    }
+
+    // Fixed clients, e.g. local stand-ins for tests and benchmarks. URLs are presigned with placeholder
+    // credentials, as nothing checks their signature.
+    public static AwsClients of(S3Client s3, TextractClient textract, RekognitionClient rekognition, DynamoDbClient dynamoDB,
+            SqsClient sqs) {
+        return new AwsClients(() -> s3, () -> textract, () -> rekognition, () -> dynamoDB, () -> sqs,
+                lazy(() -> S3Presigner.builder()
+                        .region(REGION)
+                        .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("local", "local")))
+                        .build()));
+    }
+
+    private static AwsClients create() {
+        Supplier<SdkHttpClient> httpClient = lazy(() -> UrlConnectionHttpClient.builder().build());
+        Supplier<AwsCredentialsProvider> credentials = lazy(DefaultCredentialsProvider::create);
+        ClientOverrideConfiguration overrides = ClientOverrideConfiguration.builder()
+                .addExecutionInterceptor(new MetricsInterceptor())
+                .build();
+        ClientOverrideConfiguration rateLimited = overrides.toBuilder()
+                .retryPolicy(RetryPolicy.builder(RetryMode.ADAPTIVE).numRetries(0).build())
+                .build();
+
+        return new AwsClients(
+                lazy(() -> S3Client.builder()
+                        .region(REGION)
+                        .credentialsProvider(credentials.get())
+                        .httpClient(httpClient.get())
+                        .overrideConfiguration(overrides)
+                        .build()),
+                lazy(() -> TextractClient.builder()
+                        .region(REGION)
+                        .credentialsProvider(credentials.get())
+                        .httpClient(httpClient.get())
+                        .overrideConfiguration(rateLimited)
+                        .build()),
+                lazy(() -> RekognitionClient.builder()
+                        .region(REGION)
+                        .credentialsProvider(credentials.get())
+                        .httpClient(httpClient.get())
+                        .overrideConfiguration(rateLimited)
+                        .build()),
+                lazy(() -> DynamoDbClient.builder()
+                        .region(REGION)
+                        .credentialsProvider(credentials.get())
+                        .httpClient(httpClient.get())
+                        .overrideConfiguration(overrides)
+                        .build()),
+                lazy(() -> SqsClient.builder()
+                        .region(REGION)
+                        .credentialsProvider(credentials.get())
+                        .httpClient(httpClient.get())
+                        .overrideConfiguration(overrides)
+                        .build()),
+                // Signs locally, without any call to S3
+                lazy(() -> S3Presigner.builder()
+                        .region(REGION)
+                        .credentialsProvider(credentials.get())
+                        .build()));
+    }
+
+    public S3Client s3() {
+        return s3.get();
+    }
+
+    public TextractClient textract() {
+        return textract.get();
+    }
+
+    public RekognitionClient rekognition() {
+        return rekognition.get();
+    }
+
+    public DynamoDbClient dynamoDB() {
+        return dynamoDB.get();
+    }
+
+    public SqsClient sqs() {
+        return sqs.get();
+    }
+
+    public S3Presigner s3Presigner() {
+        return s3Presigner.get();
+    }
+
+    public ServiceGuard rekognitionGuard() {
+        return rekognitionGuard;
+    }
+
+    public ServiceGuard textractGuard() {
+        return textractGuard;
+    }
+
+    // Builds every client up front; used by the priming hook before a SnapStart snapshot is taken
+    public void initializeAll() {
+        s3();
+        textract();
+        rekognition();
+        dynamoDB();
+        sqs();
+    }
+
+    private static <T> Supplier<T> lazy(Supplier<T> factory) {
+        return new Supplier<T>() {
+            private volatile T value;
+
+            @Override
+            public T get() {
+                T result = value;
+                if (result == null) {
+                    synchronized (this) {
+                        result = value;
+                        if (result == null) {
+                            result = factory.get();
+                            value = result;
+                        }
+                    }
+                }
+                return result;
+            }
+        };
+    }
+}
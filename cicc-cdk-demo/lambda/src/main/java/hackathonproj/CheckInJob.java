@@ -0,0 +1,110 @@
+package hackathonproj;
+
+// A check-in submitted with ?async=true or through a presigned upload, as queued for ParticipationJobHandler.
+// The photo is stored under uploadedKey, so the message only carries the fields of the request and the
+// resolved detail level.
+public class CheckInJob {
+
+    private String jobId;
+    private String name;
+    private String email;
+    private String classDate;
+    private String sectionId;
+    private String uploadedKey;
+    private String uploadedETag;
+    private boolean fullDiagnostics;
+    private String detail;
+
+    public CheckInJob() {
+    }
+
+    public CheckInJob(String jobId, CheckInRequest request, String detail) {
+        this.jobId = jobId;
+        this.name = request.getName();
+        this.email = request.getEmail();
+        this.classDate = request.getClassDate();
+        this.sectionId = request.getSectionId();
+        this.uploadedKey = request.getUploadedKey();
+        this.uploadedETag = request.getUploadedETag();
+        this.fullDiagnostics = request.isFullDiagnostics();
+        this.detail = detail;
+    }
+
+    // The check-in as the request path runs it, against the stored photo
+    public CheckInRequest toRequest() {
+        return CheckInRequest.stored(name, email, classDate, sectionId, uploadedKey, uploadedETag, fullDiagnostics);
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getClassDate() {
+        return classDate;
+    }
+
+    public void setClassDate(String classDate) {
+        this.classDate = classDate;
+    }
+
+    public String getSectionId() {
+        return sectionId;
+    }
+
+    public void setSectionId(String sectionId) {
+        this.sectionId = sectionId;
+    }
+
+    public String getUploadedKey() {
+        return uploadedKey;
+    }
+
+    public void setUploadedKey(String uploadedKey) {
+        this.uploadedKey = uploadedKey;
+    }
+
+    // The stored photo's ETag; set once the photo of a presigned upload has arrived
+    public String getUploadedETag() {
+        return uploadedETag;
+    }
+
+    public void setUploadedETag(String uploadedETag) {
+        this.uploadedETag = uploadedETag;
+    }
+
+    public boolean isFullDiagnostics() {
+        return fullDiagnostics;
+    }
+
+    public void setFullDiagnostics(boolean fullDiagnostics) {
+        this.fullDiagnostics = fullDiagnostics;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    public void setDetail(String detail) {
+        this.detail = detail;
+    }
+}
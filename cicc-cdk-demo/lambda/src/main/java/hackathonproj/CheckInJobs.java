@@ -0,0 +1,276 @@
+package hackathonproj;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+
+// Asynchronous check-ins: the API stores the photo, records the job as queued in the jobs table and sends it to
+// the job queue; ParticipationJobHandler runs it and stores the response body, which the client polls for with
+// GET /process-image/jobs/{jobId}. A job for a photo uploaded straight to S3 is reserved first, with the request
+// kept in the item, and queued when the upload arrives. Items are replaced whole under a condition on the attempt count, so two
+// deliveries of the same message cannot both start the job.
+public class CheckInJobs {
+
+    // status values of a job
+    public static final String AWAITING_UPLOAD = "awaiting_upload";
+    public static final String QUEUED = "queued";
+    public static final String RUNNING = "running";
+    public static final String COMPLETED = "completed";
+    public static final String FAILED = "failed";
+
+    // DynamoDB items are limited to 400 KB; larger responses are replaced by an error
+    private static final int MAX_STORED_RESPONSE_CHARS = 300 * 1024;
+
+    private final AwsClients clients;
+    private final String tableName;
+    private final String queueUrl;
+    private final long ttlSeconds;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public CheckInJobs(AwsClients clients, String tableName, String queueUrl, long ttlSeconds) {
+        this.clients = clients;
+        this.tableName = tableName;
+        this.queueUrl = queueUrl;
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    // Configured from JOBS_TABLE, JOB_QUEUE_URL and JOB_TTL_SECONDS
+    public static CheckInJobs fromEnvironment(AwsClients clients) {
+        return new CheckInJobs(clients, ParticipationConfig.JOBS_TABLE, ParticipationConfig.JOB_QUEUE_URL,
+                ParticipationConfig.JOB_TTL_SECONDS);
+    }
+
+    // Without a table and a queue, ?async=true check-ins run synchronously
+    public boolean isEnabled() {
+        return !tableName.isEmpty() && !queueUrl.isEmpty();
+    }
+
+    // Records the job as queued and queues it; false when either fails
+    public boolean submit(CheckInJob job) {
+        try {
+            clients.dynamoDB().putItem(PutItemRequest.builder()
+                    .tableName(tableName)
+                    .item(item(job, QUEUED, 0))
+                    .build());
+            send(job, 0);
+            return true;
+        } catch (Exception e) {
+            RequestMetrics.current().failure("Failed to submit check-in job: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Records a job whose photo the client uploads with a presigned URL; false when it could not be written
+    public boolean reserve(CheckInJob job) {
+        try {
+            Map<String, AttributeValue> item = item(job, AWAITING_UPLOAD, 0);
+            item.put("request", AttributeValue.fromS(mapper.writeValueAsString(job)));
+            clients.dynamoDB().putItem(PutItemRequest.builder()
+                    .tableName(tableName)
+                    .item(item)
+                    .build());
+            return true;
+        } catch (Exception e) {
+            RequestMetrics.current().failure("Failed to reserve check-in job: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // The reserved job still waiting for its photo; null when it is unknown, expired or already queued
+    public CheckInJob awaitingUpload(String jobId) {
+        try {
+            Map<String, AttributeValue> item = read(jobId);
+            if (item == null || !AWAITING_UPLOAD.equals(item.get("status").s())) {
+                return null;
+            }
+            return mapper.readValue(item.get("request").s(), CheckInJob.class);
+        } catch (Exception e) {
+            RequestMetrics.current().failure("Job lookup failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Queues a reserved job once its photo is stored; false when another delivery of the upload event queued it
+    // first. Errors are thrown with the job still reserved, so a retried event queues it.
+    public boolean uploaded(CheckInJob job) throws Exception {
+        try {
+            clients.dynamoDB().putItem(PutItemRequest.builder()
+                    .tableName(tableName)
+                    .item(item(job, QUEUED, 0))
+                    .conditionExpression("#status = :awaiting")
+                    .expressionAttributeNames(Map.of("#status", "status"))
+                    .expressionAttributeValues(Map.of(":awaiting", AttributeValue.fromS(AWAITING_UPLOAD)))
+                    .build());
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+        try {
+            send(job, 0);
+            return true;
+        } catch (Exception e) {
+            reserve(job);
+            throw e;
+        }
+    }
+
+    // Marks the job running and returns its attempt number, starting at 1; 0 when the job already finished or
+    // another delivery of it started at the same time. DynamoDB errors are thrown, so the message is redelivered.
+    public int start(CheckInJob job) {
+        Map<String, AttributeValue> current = read(job.getJobId());
+        String status = current != null ? current.get("status").s() : QUEUED;
+        if (COMPLETED.equals(status) || FAILED.equals(status)) {
+            return 0;
+        }
+        int attempt = current != null ? Integer.parseInt(current.get("attempts").n()) + 1 : 1;
+        PutItemRequest.Builder request = PutItemRequest.builder()
+                .tableName(tableName)
+                .item(item(job, RUNNING, attempt));
+        if (current != null) {
+            request.conditionExpression("attempts = :attempts")
+                    .expressionAttributeValues(Map.of(":attempts", current.get("attempts")));
+        } else {
+            request.conditionExpression("attribute_not_exists(job_id)");
+        }
+        try {
+            clients.dynamoDB().putItem(request.build());
+            return attempt;
+        } catch (ConditionalCheckFailedException e) {
+            return 0;
+        }
+    }
+
+    // Queues the job again to run after delaySeconds, e.g. once a throttled Rekognition has recovered
+    public boolean requeue(CheckInJob job, int attempts, int delaySeconds) {
+        try {
+            clients.dynamoDB().putItem(PutItemRequest.builder()
+                    .tableName(tableName)
+                    .item(item(job, QUEUED, attempts))
+                    .build());
+            send(job, delaySeconds);
+            return true;
+        } catch (Exception e) {
+            RequestMetrics.current().failure("Failed to requeue check-in job " + job.getJobId() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Stores the final response of the job; false when it could not be written
+    public boolean finish(CheckInJob job, int attempts, String status, String response) {
+        if (response.length() > MAX_STORED_RESPONSE_CHARS) {
+            status = FAILED;
+            response = "{\"error\": \"Result too large to store, use a lower detail level\"}";
+        }
+        Map<String, AttributeValue> item = item(job, status, attempts);
+        item.put("response", AttributeValue.fromS(response));
+        try {
+            clients.dynamoDB().putItem(PutItemRequest.builder()
+                    .tableName(tableName)
+                    .item(item)
+                    .build());
+            return true;
+        } catch (Exception e) {
+            RequestMetrics.current().failure("Failed to store check-in job " + job.getJobId() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Null for an unknown or expired job
+    public Status status(String jobId) {
+        try {
+            Map<String, AttributeValue> item = read(jobId);
+            if (item == null) {
+                return null;
+            }
+            AttributeValue response = item.get("response");
+            return new Status(jobId, item.get("status").s(), Integer.parseInt(item.get("attempts").n()),
+                    response != null ? response.s() : null);
+        } catch (Exception e) {
+            RequestMetrics.current().failure("Job lookup failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void send(CheckInJob job, int delaySeconds) throws Exception {
+        clients.sqs().sendMessage(SendMessageRequest.builder()
+                .queueUrl(queueUrl)
+                .messageBody(mapper.writeValueAsString(job))
+                .delaySeconds(delaySeconds)
+                .build());
+    }
+
+    private Map<String, AttributeValue> item(CheckInJob job, String status, int attempts) {
+        long now = System.currentTimeMillis() / 1000;
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("job_id", AttributeValue.fromS(job.getJobId()));
+        item.put("status", AttributeValue.fromS(status));
+        item.put("attempts", AttributeValue.fromN(Integer.toString(attempts)));
+        item.put("email", AttributeValue.fromS(job.getEmail()));
+        item.put("class_date", AttributeValue.fromS(job.getClassDate()));
+        item.put("updated_at", AttributeValue.fromN(Long.toString(now)));
+        item.put("expires_at", AttributeValue.fromN(Long.toString(now + ttlSeconds)));
+        return item;
+    }
+
+    private Map<String, AttributeValue> read(String jobId) {
+        GetItemRequest request = GetItemRequest.builder()
+                .tableName(tableName)
+                .key(Map.of("job_id", AttributeValue.fromS(jobId)))
+                .consistentRead(true)
+                .build();
+        Map<String, AttributeValue> item = clients.dynamoDB().getItem(request).item();
+        return item == null || item.isEmpty() ? null : item;
+    }
+
+    // Body of the job status response; result is the check-in response, embedded as it was stored
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonPropertyOrder({"job_id", "status", "attempts", "result"})
+    public static class Status {
+
+        private final String jobId;
+        private final String status;
+        private final int attempts;
+        private final String result;
+
+        public Status(String jobId, String status, int attempts, String result) {
+            this.jobId = jobId;
+            this.status = status;
+            this.attempts = attempts;
+            this.result = result;
+        }
+
+        @JsonProperty("job_id")
+        public String getJobId() {
+            return jobId;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        @JsonRawValue
+        public String getResult() {
+            return result;
+        }
+
+        @JsonIgnore
+        public boolean isFinished() {
+            return COMPLETED.equals(status) || FAILED.equals(status);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package hackathonproj;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+// Fields of a check-in request body, read with the streaming parser.
+// The base64 image is decoded straight out of the body string into an exactly sized array,
+// without building a JSON tree or any intermediate copy of the encoded text.
+public class CheckInRequest {
+
+    private String name;
+    private String email;
+    private String classDate;
+    private String sectionId;
+    private String uploadedKey;
+    // Identifies the stored photo's content once it is in the bucket
+    private String uploadedETag;
+    private boolean fullDiagnostics;
+    private byte[] image;
+    // Declared by a request for a presigned upload URL
+    private String contentType;
+    private long contentLength;
+    // The class list of a class photo check-in
+    private List<Student> students;
+
+    // A check-in whose photo is already in the bucket, e.g. a queued job
+    static CheckInRequest stored(String name, String email, String classDate, String sectionId, String uploadedKey,
+            String uploadedETag, boolean fullDiagnostics) {
+        CheckInRequest request = new CheckInRequest();
+        request.name = name;
+        request.email = email;
+        request.classDate = classDate;
+        request.sectionId = sectionId;
+        request.uploadedKey = uploadedKey;
+        request.uploadedETag = uploadedETag;
+        request.fullDiagnostics = fullDiagnostics;
+        return request;
+    }
+
+    public static CheckInRequest parse(JsonFactory factory, String body) throws IOException {
+        CheckInRequest request = new CheckInRequest();
+        try (JsonParser parser = factory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Request body must be a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.START_ARRAY && "students".equals(field)) {
+                    request.students = students(parser);
+                    continue;
+                }
+                if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                switch (field) {
+                    case "name":
+                        request.name = text(parser);
+                        request.name = request.name != null ? request.name.trim().toLowerCase() : null;
+                        break;
+                    case "email":
+                        request.email = text(parser);
+                        break;
+                    case "class_date":
+                        request.classDate = text(parser);
+                        break;
+                    case "section_id":
+                        request.sectionId = text(parser);
+                        request.sectionId = request.sectionId != null && !request.sectionId.isBlank() ? request.sectionId.trim() : null;
+                        break;
+                    case "uploaded_image_key":
+                        request.uploadedKey = text(parser);
+                        break;
+                    case "content_type":
+                        request.contentType = text(parser);
+                        break;
+                    case "content_length":
+                        request.contentLength = parser.getValueAsLong(0);
+                        break;
+                    case "full_diagnostics":
+                        request.fullDiagnostics = parser.getValueAsBoolean(false);
+                        break;
+                    case "uploaded_image_data":
+                        if (value == JsonToken.VALUE_STRING) {
+                            int tokenStart = (int) parser.getTokenLocation().getCharOffset();
+                            if (hasEscapes(body, tokenStart)) {
+                                // Escaped line breaks and the like are rare; the parser unescapes those values
+                                request.image = decodeImage(parser.getText());
+                            } else {
+                                // The string token is left unread; the next nextToken() skips it without buffering it
+                                request.image = decodeImage(body, tokenStart);
+                            }
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return request;
+    }
+
+    // [{"name": ..., "email": ...}, ...]; entries without both fields are dropped
+    private static List<Student> students(JsonParser parser) throws IOException {
+        List<Student> students = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String name = null;
+            String email = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                if (parser.nextToken().isStructStart()) {
+                    parser.skipChildren();
+                } else if ("name".equals(field)) {
+                    name = text(parser);
+                } else if ("email".equals(field)) {
+                    email = text(parser);
+                }
+            }
+            if (name != null && !name.isBlank() && email != null) {
+                students.add(new Student(name.trim().toLowerCase(), email));
+            }
+        }
+        if (parser.currentToken() != JsonToken.END_ARRAY) {
+            throw new IOException("students must be a list of objects with name and email");
+        }
+        return students;
+    }
+
+    private static String text(JsonParser parser) throws IOException {
+        return parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+    }
+
+    // Whether the JSON string starting at the opening quote at tokenStart contains an escape sequence; an escaped
+    // quote is preceded by its backslash, so the scan can stop at the first quote
+    static boolean hasEscapes(String body, int tokenStart) {
+        for (int i = tokenStart + 1; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (c == '\\') {
+                return true;
+            }
+            if (c == '"') {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    // Decodes an unescaped image string, dropping a data URL prefix if present; the MIME decoder skips line breaks
+    static byte[] decodeImage(String text) throws IOException {
+        int comma = text.indexOf(',');
+        String data = comma >= 0 ? text.substring(comma + 1) : text;
+        if (data.isEmpty()) {
+            return null;
+        }
+        try {
+            return Base64.getMimeDecoder().decode(data);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid base64 image data", e);
+        }
+    }
+
+    // Decodes the JSON string starting at the opening quote at tokenStart, which must not contain escape
+    // sequences, dropping a data URL prefix ("data:image/jpeg;base64,") if present. The MIME decoder skips
+    // raw line breaks.
+    static byte[] decodeImage(String body, int tokenStart) throws IOException {
+        int start = tokenStart + 1;
+        int end = body.indexOf('"', start);
+        if (end < 0) {
+            throw new IOException("Unterminated uploaded_image_data");
+        }
+        int comma = body.indexOf(',', start);
+        if (comma >= 0 && comma < end) {
+            start = comma + 1;
+        }
+        if (start == end) {
+            return null;
+        }
+
+        int length = decodedLength(body, start, end);
+        byte[] image = new byte[length];
+        int read;
+        try (InputStream decoder = Base64.getMimeDecoder().wrap(new AsciiInputStream(body, start, end))) {
+            read = decoder.readNBytes(image, 0, length);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid base64 image data", e);
+        }
+        return read == length ? image : Arrays.copyOf(image, read);
+    }
+
+    private static int decodedLength(String body, int start, int end) {
+        long symbols = 0;
+        for (int i = start; i < end; i++) {
+            char c = body.charAt(i);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '+' || c == '/') {
+                symbols++;
+            }
+        }
+        return (int) (symbols * 6 / 8);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getClassDate() {
+        return classDate;
+    }
+
+    // Null when the check-in is not for a particular section
+    public String getSectionId() {
+        return sectionId;
+    }
+
+    public String getUploadedKey() {
+        return uploadedKey;
+    }
+
+    // Null until the photo is stored, and for a key sent by the client
+    public String getUploadedETag() {
+        return uploadedETag;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    // Null unless the request lists students
+    public List<Student> getStudents() {
+        return students;
+    }
+
+    public boolean isFullDiagnostics() {
+        return fullDiagnostics;
+    }
+
+    public byte[] getImage() {
+        return image;
+    }
+
+    // Replaces the submitted photo with its normalized form once that is stored under key
+    void setStoredImage(byte[] image, String key, String eTag) {
+        this.image = image;
+        this.uploadedKey = key;
+        this.uploadedETag = eTag;
+    }
+
+    // Reads a range of an ASCII string as bytes, without copying it
+    private static class AsciiInputStream extends InputStream {
+
+        private final String text;
+        private final int end;
+        private int position;
+
+        AsciiInputStream(String text, int start, int end) {
+            this.text = text;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() {
+            return position < end ? text.charAt(position++) & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                return -1;
+            }
+            int count = Math.min(length, end - position);
+            for (int i = 0; i < count; i++) {
+                buffer[offset + i] = (byte) text.charAt(position++);
+            }
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return end - position;
+        }
+    }
+
+    public static class Student {
+
+        private final String name;
+        private final String email;
+
+        public Student(String name, String email) {
+            this.name = name;
+            this.email = email;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+    }
+}
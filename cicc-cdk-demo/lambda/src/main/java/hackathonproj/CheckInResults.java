@@ -0,0 +1,231 @@
+package hackathonproj;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+// Results of completed check-ins keyed by (email, class_date, content hash), so a retried or double-submitted
+// check-in gets the first verdict back instead of running recognition again. Results are looked up in a
+// container-local LRU first and then in the idempotency table, where a request also claims its key while it
+// runs: a duplicate arriving in the meantime waits for that result instead of starting a second run.
+// DynamoDB errors never fail a check-in; they only mean the duplicate is computed again.
+public class CheckInResults {
+
+    private static final String STATUS_IN_PROGRESS = "IN_PROGRESS";
+    private static final String STATUS_COMPLETED = "COMPLETED";
+    private static final long POLL_INTERVAL_MILLIS = 250;
+    // DynamoDB items are limited to 400 KB; larger responses are only cached locally
+    private static final int MAX_STORED_RESPONSE_CHARS = 300 * 1024;
+
+    private final AwsClients clients;
+    private final String tableName;
+    private final long ttlSeconds;
+    private final long claimSeconds;
+    private final int maxLocalEntries;
+    private final LinkedHashMap<String, LocalResult> local = new LinkedHashMap<>(64, 0.75f, true);
+
+    // An empty tableName keeps results in the local cache only
+    public CheckInResults(AwsClients clients, String tableName, long ttlSeconds, long claimSeconds, int maxLocalEntries) {
+        this.clients = clients;
+        this.tableName = tableName;
+        this.ttlSeconds = ttlSeconds;
+        this.claimSeconds = claimSeconds;
+        this.maxLocalEntries = maxLocalEntries;
+    }
+
+    // The response depends on the section, submitted name, diagnostics flag and detail level as well as the
+    // photo, so all of them are part of the content hash. A stored photo is identified by its key and its ETag,
+    // since a student's upload key is the same for every photo sent on a class date; callers that cannot read
+    // the ETag skip idempotency rather than key on the object name alone
+    public static String key(String email, String classDate, String section, String name, boolean fullDiagnostics,
+                             String detail, byte[] image, String uploadedKey, String uploadedETag) {
+        try {
+            MessageDigest content = MessageDigest.getInstance("SHA-256");
+            if (section != null) {
+                content.update(section.getBytes(StandardCharsets.UTF_8));
+            }
+            content.update((byte) 0);
+            content.update(name.getBytes(StandardCharsets.UTF_8));
+            content.update((byte) 0);
+            content.update((byte) (fullDiagnostics ? 1 : 0));
+            content.update(detail.getBytes(StandardCharsets.UTF_8));
+            content.update((byte) 0);
+            if (image != null) {
+                content.update(image);
+            } else if (uploadedKey != null) {
+                content.update(uploadedKey.getBytes(StandardCharsets.UTF_8));
+                if (uploadedETag != null) {
+                    content.update((byte) 0);
+                    content.update(uploadedETag.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            return email + "|" + classDate + "|" + HexFormat.of().formatHex(content.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // The stored response body of a completed check-in, or null
+    public String lookup(String key) {
+        String cached = localResult(key);
+        if (cached != null || tableName.isEmpty()) {
+            return cached;
+        }
+        Map<String, AttributeValue> item = read(key);
+        if (item != null && STATUS_COMPLETED.equals(text(item.get("status")))) {
+            String response = text(item.get("response"));
+            remember(key, response);
+            return response;
+        }
+        return null;
+    }
+
+    // Claims the key for this request; false when another request holds an unexpired claim or result
+    public boolean claim(String key) {
+        if (tableName.isEmpty()) {
+            return true;
+        }
+        long now = nowSeconds();
+        try {
+            PutItemRequest request = PutItemRequest.builder()
+                    .tableName(tableName)
+                    .item(Map.of(
+                            "idempotency_key", AttributeValue.fromS(key),
+                            "status", AttributeValue.fromS(STATUS_IN_PROGRESS),
+                            "expires_at", AttributeValue.fromN(Long.toString(now + claimSeconds))))
+                    .conditionExpression("attribute_not_exists(idempotency_key) OR expires_at < :now")
+                    .expressionAttributeValues(Map.of(":now", AttributeValue.fromN(Long.toString(now))))
+                    .build();
+            clients.dynamoDB().putItem(request);
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        } catch (Exception e) {
+            RequestMetrics.current().failure("Idempotency claim failed: " + e.getMessage());
+            return true;
+        }
+    }
+
+    // Waits for the request holding the claim to store its result; null when it does not arrive in time
+    public String await(String key, Deadline deadline) {
+        long waitUntil = System.currentTimeMillis() + Math.min(claimSeconds * 1000, deadline.remainingMillis() / 2);
+        while (System.currentTimeMillis() + POLL_INTERVAL_MILLIS < waitUntil) {
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            String response = lookup(key);
+            if (response != null) {
+                return response;
+            }
+        }
+        return null;
+    }
+
+    public void complete(String key, String email, String classDate, String response) {
+        remember(key, response);
+        if (tableName.isEmpty() || response.length() > MAX_STORED_RESPONSE_CHARS) {
+            return;
+        }
+        try {
+            PutItemRequest request = PutItemRequest.builder()
+                    .tableName(tableName)
+                    .item(Map.of(
+                            "idempotency_key", AttributeValue.fromS(key),
+                            "status", AttributeValue.fromS(STATUS_COMPLETED),
+                            "response", AttributeValue.fromS(response),
+                            "email", AttributeValue.fromS(email),
+                            "class_date", AttributeValue.fromS(classDate),
+                            "expires_at", AttributeValue.fromN(Long.toString(nowSeconds() + ttlSeconds))))
+                    .build();
+            clients.dynamoDB().putItem(request);
+        } catch (Exception e) {
+            RequestMetrics.current().failure("Failed to store check-in result: " + e.getMessage());
+        }
+    }
+
+    // Drops the claim of a check-in that failed, so a retry runs it again right away
+    public void release(String key) {
+        if (tableName.isEmpty()) {
+            return;
+        }
+        try {
+            clients.dynamoDB().deleteItem(builder -> builder
+                    .tableName(tableName)
+                    .key(Map.of("idempotency_key", AttributeValue.fromS(key)))
+                    .conditionExpression("#status = :inProgress")
+                    .expressionAttributeNames(Map.of("#status", "status"))
+                    .expressionAttributeValues(Map.of(":inProgress", AttributeValue.fromS(STATUS_IN_PROGRESS))));
+        } catch (Exception e) {
+            // The claim expires on its own
+        }
+    }
+
+    private Map<String, AttributeValue> read(String key) {
+        try {
+            GetItemRequest request = GetItemRequest.builder()
+                    .tableName(tableName)
+                    .key(Map.of("idempotency_key", AttributeValue.fromS(key)))
+                    .consistentRead(true)
+                    .build();
+            Map<String, AttributeValue> item = clients.dynamoDB().getItem(request).item();
+            if (item == null || item.isEmpty()) {
+                return null;
+            }
+            // TTL deletion lags behind; expired items are treated as absent
+            AttributeValue expiresAt = item.get("expires_at");
+            return expiresAt != null && Long.parseLong(expiresAt.n()) < nowSeconds() ? null : item;
+        } catch (Exception e) {
+            RequestMetrics.current().failure("Idempotency lookup failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private synchronized String localResult(String key) {
+        LocalResult result = local.get(key);
+        if (result == null) {
+            return null;
+        }
+        if (result.expiresAtMillis < System.currentTimeMillis()) {
+            local.remove(key);
+            return null;
+        }
+        return result.response;
+    }
+
+    private synchronized void remember(String key, String response) {
+        local.put(key, new LocalResult(response, System.currentTimeMillis() + ttlSeconds * 1000));
+        while (local.size() > maxLocalEntries) {
+            local.remove(local.keySet().iterator().next());
+        }
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static String text(AttributeValue value) {
+        return value != null ? value.s() : null;
+    }
+
+    private static class LocalResult {
+
+        private final String response;
+        private final long expiresAtMillis;
+
+        LocalResult(String response, long expiresAtMillis) {
+            this.response = response;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package hackathonproj;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+// Body of a class photo check-in: a verdict per listed student, in the order of the class list, and how many
+// of the faces found in the photo could be matched to one of them.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"class_date", "section_id", "uploaded_image_key", "faces_detected", "faces_unmatched", "present",
+        "write_status", "error", "students"})
+public class ClassPhotoResponse {
+
+    private final String classDate;
+    private final String sectionId;
+    private final String uploadedKey;
+    private int facesDetected;
+    private int facesUnmatched;
+    private int present;
+    private String writeStatus;
+    private String error;
+    private final List<StudentResult> students = new ArrayList<>();
+
+    public ClassPhotoResponse(String classDate, String sectionId, String uploadedKey) {
+        this.classDate = classDate;
+        this.sectionId = sectionId;
+        this.uploadedKey = uploadedKey;
+    }
+
+    public void add(StudentResult student) {
+        students.add(student);
+        if (ParticipationResponse.PRESENT.equals(student.getVerdict())) {
+            present++;
+        }
+    }
+
+    @JsonProperty("class_date")
+    public String getClassDate() {
+        return classDate;
+    }
+
+    @JsonProperty("section_id")
+    public String getSectionId() {
+        return sectionId;
+    }
+
+    @JsonProperty("uploaded_image_key")
+    public String getUploadedKey() {
+        return uploadedKey;
+    }
+
+    @JsonProperty("faces_detected")
+    public int getFacesDetected() {
+        return facesDetected;
+    }
+
+    public void setFacesDetected(int facesDetected) {
+        this.facesDetected = facesDetected;
+    }
+
+    @JsonProperty("faces_unmatched")
+    public int getFacesUnmatched() {
+        return facesUnmatched;
+    }
+
+    public void setFacesUnmatched(int facesUnmatched) {
+        this.facesUnmatched = facesUnmatched;
+    }
+
+    @JsonProperty("present")
+    public int getPresent() {
+        return present;
+    }
+
+    // written, or failed when some records could not be written; see each student's write_status
+    @JsonProperty("write_status")
+    public String getWriteStatus() {
+        return writeStatus;
+    }
+
+    public void setWriteStatus(String writeStatus) {
+        this.writeStatus = writeStatus;
+    }
+
+    @JsonProperty("error")
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    @JsonProperty("students")
+    public List<StudentResult> getStudents() {
+        return students;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonPropertyOrder({"name", "email", "verdict", "name_match", "face_match", "name_score", "similarity",
+            "write_status"})
+    public static class StudentResult {
+
+        private final String name;
+        private final String email;
+        private final String verdict;
+        private final boolean nameMatch;
+        private final boolean faceMatch;
+        private final float nameScore;
+        private final Float similarity;
+        private String writeStatus;
+
+        public StudentResult(String name, String email, String verdict, boolean nameMatch, boolean faceMatch, float nameScore,
+                Float similarity) {
+            this.name = name;
+            this.email = email;
+            this.verdict = verdict;
+            this.nameMatch = nameMatch;
+            this.faceMatch = faceMatch;
+            this.nameScore = nameScore;
+            this.similarity = similarity;
+        }
+
+        @JsonProperty("name")
+        public String getName() {
+            return name;
+        }
+
+        @JsonProperty("email")
+        public String getEmail() {
+            return email;
+        }
+
+        @JsonProperty("verdict")
+        public String getVerdict() {
+            return verdict;
+        }
+
+        @JsonProperty("name_match")
+        public boolean isNameMatch() {
+            return nameMatch;
+        }
+
+        @JsonProperty("face_match")
+        public boolean isFaceMatch() {
+            return faceMatch;
+        }
+
+        @JsonProperty("name_score")
+        public float getNameScore() {
+            return nameScore;
+        }
+
+        @JsonProperty("similarity")
+        public Float getSimilarity() {
+            return similarity;
+        }
+
+        // Only present students are recorded: written, failed, or skipped for everyone else
+        @JsonProperty("write_status")
+        public String getWriteStatus() {
+            return writeStatus;
+        }
+
+        public void setWriteStatus(String writeStatus) {
+            this.writeStatus = writeStatus;
+        }
+    }
+}
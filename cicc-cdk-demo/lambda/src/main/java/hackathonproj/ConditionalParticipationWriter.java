@@ -0,0 +1,112 @@
+package hackathonproj;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.RequestLimitExceededException;
+
+// Writes participation records with one conditional PutItem each, run concurrently on a FanOut.
+// BatchWriteItem cannot carry the condition that keeps an earlier verdict delivered late from replacing a
+// later one, so records are not grouped into BatchWriteItem calls. Throttled writes are retried with capped
+// exponential backoff and full jitter, until the attempts or the deadline run out; a write whose condition
+// fails was superseded by a later verdict and counts as written.
+public class ConditionalParticipationWriter {
+
+    private final AwsClients clients;
+    private final String tableName;
+    private final FanOut fanOut;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+
+    public ConditionalParticipationWriter(AwsClients clients, String tableName, FanOut fanOut, int maxAttempts, long baseBackoffMillis,
+            long maxBackoffMillis) {
+        this.clients = clients;
+        this.tableName = tableName;
+        this.fanOut = fanOut;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    // Returns the records that could not be written
+    public List<ParticipationRecord> write(List<ParticipationRecord> records, Deadline deadline) {
+        // Only the latest verdict for a student and class is written
+        Map<String, ParticipationRecord> latest = new LinkedHashMap<>();
+        for (ParticipationRecord record : records) {
+            ParticipationRecord current = latest.get(record.recordKey());
+            if (current == null || record.getCheckedInAt() >= current.getCheckedInAt()) {
+                latest.put(record.recordKey(), record);
+            }
+        }
+
+        List<ParticipationRecord> unique = new ArrayList<>(latest.values());
+        List<Boolean> written = fanOut.map(unique, record -> writeRecord(record, deadline), false, deadline);
+        List<ParticipationRecord> failed = new ArrayList<>();
+        for (int i = 0; i < unique.size(); i++) {
+            if (!written.get(i)) {
+                failed.add(unique.get(i));
+            }
+        }
+
+        // Records superseded within this call are written exactly when their replacement is
+        if (failed.isEmpty() || unique.size() == records.size()) {
+            return failed;
+        }
+        Set<String> failedKeys = new HashSet<>();
+        failed.forEach(record -> failedKeys.add(record.recordKey()));
+        List<ParticipationRecord> failedWithDuplicates = new ArrayList<>();
+        for (ParticipationRecord record : records) {
+            if (failedKeys.contains(record.recordKey())) {
+                failedWithDuplicates.add(record);
+            }
+        }
+        return failedWithDuplicates;
+    }
+
+    private boolean writeRecord(ParticipationRecord record, Deadline deadline) {
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            if (attempt > 0 && !backOff(attempt, deadline)) {
+                return false;
+            }
+            try {
+                clients.dynamoDB().putItem(record.putRequest(tableName).toBuilder()
+                        .overrideConfiguration(o -> o.apiCallTimeout(deadline.callTimeout()))
+                        .build());
+                return true;
+            } catch (ConditionalCheckFailedException e) {
+                // A later verdict for the student and class is already stored
+                return true;
+            } catch (ProvisionedThroughputExceededException | RequestLimitExceededException e) {
+                // Throttled; retry unchanged
+            } catch (Exception e) {
+                RequestMetrics.current().failure("PutItem failed for " + record.recordKey() + ": " + e.getMessage());
+                return false;
+            }
+        }
+        return false;
+    }
+
+    // Sleeps a random time up to the capped exponential backoff; false when the deadline does not allow it
+    private boolean backOff(int attempt, Deadline deadline) {
+        long cap = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt, 20));
+        long sleep = ThreadLocalRandom.current().nextLong(cap + 1);
+        if (deadline.remainingMillis() <= sleep) {
+            return false;
+        }
+        try {
+            Thread.sleep(sleep);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
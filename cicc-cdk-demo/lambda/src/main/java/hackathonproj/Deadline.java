@@ -0,0 +1,52 @@
+package hackathonproj;
+
+import java.time.Duration;
+
+import com.amazonaws.services.lambda.runtime.Context;
+
+// Point in time by which a request has to finish, derived from the remaining Lambda execution time,
+// together with the upper bound for any single remote call made on its behalf.
+public class Deadline {
+
+    private final long expiresAtNanos;
+    private final long maxCallMillis;
+
+    private Deadline(long expiresAtNanos, long maxCallMillis) {
+        this.expiresAtNanos = expiresAtNanos;
+        this.maxCallMillis = maxCallMillis;
+    }
+
+    // Keeps marginMillis in reserve so the handler can still write its result and respond
+    public static Deadline fromContext(Context context, long marginMillis, long maxCallMillis) {
+        if (context == null || context.getRemainingTimeInMillis() <= 0) {
+            return new Deadline(Long.MAX_VALUE, maxCallMillis);
+        }
+        return after(Math.max(0, context.getRemainingTimeInMillis() - marginMillis), maxCallMillis);
+    }
+
+    public static Deadline after(long millis, long maxCallMillis) {
+        return new Deadline(System.nanoTime() + Duration.ofMillis(millis).toNanos(), maxCallMillis);
+    }
+
+    public static Deadline none() {
+        return new Deadline(Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    public long remainingMillis() {
+        if (expiresAtNanos == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, Duration.ofNanos(expiresAtNanos - System.nanoTime()).toMillis());
+    }
+
+    public boolean expired() {
+        return remainingMillis() == 0;
+    }
+
+    // SDK apiCallTimeout for the next call: the per-call limit, shortened to whatever is left of the deadline.
+    // Null leaves the client's own timeout in place.
+    public Duration callTimeout() {
+        long millis = Math.min(maxCallMillis, remainingMillis());
+        return millis == Long.MAX_VALUE ? null : Duration.ofMillis(Math.max(1, millis));
+    }
+}
@@ -0,0 +1,116 @@
+package hackathonproj;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
+
+// Presigned PUT URLs for check-in photos, so the browser uploads the file straight to
+// proj/proj-images/direct-uploads/... instead of sending it base64-encoded through API Gateway and Lambda.
+// The content type, length and job id are signed, so the upload has to carry exactly the headers returned
+// with the URL; the job id lets UploadedImageHandler start the check-in once the photo has arrived.
+public class DirectUploads {
+
+    // S3 returns user metadata without the x-amz-meta- prefix
+    public static final String JOB_ID_METADATA = "job-id";
+
+    private static final Set<String> CONTENT_TYPES = Set.of("image/jpeg", "image/png");
+
+    private final AwsClients clients;
+    private final String bucket;
+    private final long ttlSeconds;
+    private final long maxBytes;
+
+    public DirectUploads(AwsClients clients, String bucket, long ttlSeconds, long maxBytes) {
+        this.clients = clients;
+        this.bucket = bucket;
+        this.ttlSeconds = ttlSeconds;
+        this.maxBytes = maxBytes;
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    public static boolean isSupportedType(String contentType) {
+        return CONTENT_TYPES.contains(contentType);
+    }
+
+    // A URL for a single PUT of contentLength bytes to key; jobId is null when no job waits for the upload
+    public Ticket presign(String key, String contentType, long contentLength, String jobId) {
+        PutObjectRequest.Builder object = PutObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentType(contentType)
+                .contentLength(contentLength);
+        if (jobId != null) {
+            object.metadata(Map.of(JOB_ID_METADATA, jobId));
+        }
+        PresignedPutObjectRequest presigned = clients.s3Presigner().presignPutObject(PutObjectPresignRequest.builder()
+                .signatureDuration(Duration.ofSeconds(ttlSeconds))
+                .putObjectRequest(object.build())
+                .build());
+
+        // Host and Content-Length are set by the browser itself
+        Map<String, String> headers = new HashMap<>();
+        presigned.signedHeaders().forEach((name, values) -> {
+            if (!"host".equalsIgnoreCase(name) && !"content-length".equalsIgnoreCase(name)) {
+                headers.put(name, String.join(",", values));
+            }
+        });
+        return new Ticket(jobId, key, presigned.url().toString(), headers, ttlSeconds);
+    }
+
+    // Body of the upload URL response
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonPropertyOrder({"job_id", "uploaded_image_key", "upload_url", "upload_headers", "expires_in"})
+    public static class Ticket {
+
+        private final String jobId;
+        private final String uploadedKey;
+        private final String uploadUrl;
+        private final Map<String, String> uploadHeaders;
+        private final long expiresIn;
+
+        public Ticket(String jobId, String uploadedKey, String uploadUrl, Map<String, String> uploadHeaders, long expiresIn) {
+            this.jobId = jobId;
+            this.uploadedKey = uploadedKey;
+            this.uploadUrl = uploadUrl;
+            this.uploadHeaders = uploadHeaders;
+            this.expiresIn = expiresIn;
+        }
+
+        @JsonProperty("job_id")
+        public String getJobId() {
+            return jobId;
+        }
+
+        @JsonProperty("uploaded_image_key")
+        public String getUploadedKey() {
+            return uploadedKey;
+        }
+
+        @JsonProperty("upload_url")
+        public String getUploadUrl() {
+            return uploadUrl;
+        }
+
+        @JsonProperty("upload_headers")
+        public Map<String, String> getUploadHeaders() {
+            return uploadHeaders;
+        }
+
+        @JsonProperty("expires_in")
+        public long getExpiresIn() {
+            return expiresIn;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package hackathonproj;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import software.amazon.awssdk.services.rekognition.model.BoundingBox;
+import software.amazon.awssdk.services.rekognition.model.FaceDetail;
+
+// Persisted DetectFaces result of one reference image: the faces found, with their bounding boxes and
+// quality scores. The ETag ties it to the image version it was computed for.
+public class FaceAnalysis {
+
+    private String sourceKey;
+    private String eTag;
+    private List<Face> faces = Collections.emptyList();
+
+    public FaceAnalysis() {
+    }
+
+    public FaceAnalysis(String sourceKey, String eTag, List<FaceDetail> details) {
+        this.sourceKey = sourceKey;
+        this.eTag = eTag;
+        this.faces = new ArrayList<>(details.size());
+        for (FaceDetail detail : details) {
+            this.faces.add(Face.of(detail));
+        }
+    }
+
+    public String getSourceKey() {
+        return sourceKey;
+    }
+
+    public void setSourceKey(String sourceKey) {
+        this.sourceKey = sourceKey;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public void setETag(String eTag) {
+        this.eTag = eTag;
+    }
+
+    public List<Face> getFaces() {
+        return faces;
+    }
+
+    public void setFaces(List<Face> faces) {
+        this.faces = faces;
+    }
+
+    // The parts of a FaceDetail the participation response and face cropping use; absent values are not stored
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Face {
+
+        private Float confidence;
+        private String gender;
+        private Boolean smile;
+        private Float left;
+        private Float top;
+        private Float width;
+        private Float height;
+        private Float brightness;
+        private Float sharpness;
+
+        public static Face of(FaceDetail detail) {
+            Face face = new Face();
+            face.confidence = detail.confidence();
+            face.gender = detail.gender() != null ? detail.gender().toString() : null;
+            face.smile = detail.smile() != null ? detail.smile().value() : null;
+            BoundingBox box = detail.boundingBox();
+            if (box != null) {
+                face.left = box.left();
+                face.top = box.top();
+                face.width = box.width();
+                face.height = box.height();
+            }
+            if (detail.quality() != null) {
+                face.brightness = detail.quality().brightness();
+                face.sharpness = detail.quality().sharpness();
+            }
+            return face;
+        }
+
+        public Float getConfidence() {
+            return confidence;
+        }
+
+        public void setConfidence(Float confidence) {
+            this.confidence = confidence;
+        }
+
+        public String getGender() {
+            return gender;
+        }
+
+        public void setGender(String gender) {
+            this.gender = gender;
+        }
+
+        public Boolean getSmile() {
+            return smile;
+        }
+
+        public void setSmile(Boolean smile) {
+            this.smile = smile;
+        }
+
+        public Float getLeft() {
+            return left;
+        }
+
+        public void setLeft(Float left) {
+            this.left = left;
+        }
+
+        public Float getTop() {
+            return top;
+        }
+
+        public void setTop(Float top) {
+            this.top = top;
+        }
+
+        public Float getWidth() {
+            return width;
+        }
+
+        public void setWidth(Float width) {
+            this.width = width;
+        }
+
+        public Float getHeight() {
+            return height;
+        }
+
+        public void setHeight(Float height) {
+            this.height = height;
+        }
+
+        public Float getBrightness() {
+            return brightness;
+        }
+
+        public void setBrightness(Float brightness) {
+            this.brightness = brightness;
+        }
+
+        public Float getSharpness() {
+            return sharpness;
+        }
+
+        public void setSharpness(Float sharpness) {
+            this.sharpness = sharpness;
+        }
+    }
+}
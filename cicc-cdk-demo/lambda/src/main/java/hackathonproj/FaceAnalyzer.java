@@ -0,0 +1,120 @@
+package hackathonproj;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.rekognition.model.Attribute;
+import software.amazon.awssdk.services.rekognition.model.DetectFacesRequest;
+import software.amazon.awssdk.services.rekognition.model.FaceDetail;
+import software.amazon.awssdk.services.rekognition.model.Image;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+// Runs DetectFaces once per reference image and persists the result as a sidecar under the faces index prefix.
+// Analyses are held in memory across warm invocations and only recomputed when the image ETag changes,
+// so full diagnostics no longer pays a DetectFaces call per reference face on every request.
+public class FaceAnalyzer {
+
+    private static final Map<String, FaceAnalysis> ANALYSES = new ConcurrentHashMap<>();
+
+    private final AwsClients clients;
+    private final ObjectMapper mapper;
+    private final String bucket;
+
+    public FaceAnalyzer(AwsClients clients, ObjectMapper mapper, String bucket) {
+        this.clients = clients;
+        this.mapper = mapper;
+        this.bucket = bucket;
+    }
+
+    // Returns the analysis of a reference image, analysing it on first miss; null when DetectFaces failed
+    public FaceAnalysis analysis(S3Object reference, Deadline deadline) {
+        String expected = RosterIndexer.normalizeETag(reference.eTag());
+
+        FaceAnalysis cached = ANALYSES.get(reference.key());
+        if (cached != null && cached.getETag().equals(expected)) {
+            return cached;
+        }
+
+        FaceAnalysis stored = readSidecar(reference.key());
+        if (stored != null && expected.equals(stored.getETag())) {
+            ANALYSES.put(reference.key(), stored);
+            return stored;
+        }
+
+        return index(reference.key(), expected, deadline);
+    }
+
+    public FaceAnalysis index(String imageKey, String eTag, Deadline deadline) {
+        List<FaceDetail> details = detectFaces(imageKey, deadline);
+        if (details == null) {
+            return null;
+        }
+
+        FaceAnalysis analysis = new FaceAnalysis(imageKey, RosterIndexer.normalizeETag(eTag), details);
+        writeSidecar(analysis);
+        ANALYSES.put(imageKey, analysis);
+        return analysis;
+    }
+
+    public void remove(String imageKey) {
+        ANALYSES.remove(imageKey);
+        try {
+            clients.s3().deleteObject(builder -> builder.bucket(bucket).key(ReferenceLayout.faceAnalysisKey(imageKey)));
+        } catch (Exception e) {
+            RequestMetrics.current().failure("Failed to delete face analysis for " + imageKey + ": " + e.getMessage());
+        }
+    }
+
+    private List<FaceDetail> detectFaces(String imageKey, Deadline deadline) {
+        long start = System.nanoTime();
+        try {
+            // Rekognition reads the image straight from S3, so analysing never downloads it into the function
+            DetectFacesRequest request = DetectFacesRequest.builder()
+                    .image(Image.builder().s3Object(o -> o.bucket(bucket).name(imageKey)).build())
+                    .attributes(Attribute.DEFAULT)
+                    .overrideConfiguration(o -> o.apiCallTimeout(deadline.callTimeout()))
+                    .build();
+            return clients.rekognitionGuard().call(() -> clients.rekognition().detectFaces(request), deadline).faceDetails();
+        } catch (Exception e) {
+            RequestMetrics.current().failure("DetectFaces failed for " + imageKey + ": " + e.getMessage());
+            return null;
+        } finally {
+            RequestMetrics.current().stop(RequestMetrics.Stage.DETECT, start);
+        }
+    }
+
+    private FaceAnalysis readSidecar(String imageKey) {
+        try {
+            GetObjectRequest request = GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(ReferenceLayout.faceAnalysisKey(imageKey))
+                    .build();
+            return mapper.readValue(clients.s3().getObjectAsBytes(request).asByteArray(), FaceAnalysis.class);
+        } catch (NoSuchKeyException e) {
+            return null;
+        } catch (Exception e) {
+            RequestMetrics.current().failure("Failed to read face analysis for " + imageKey + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeSidecar(FaceAnalysis analysis) {
+        try {
+            PutObjectRequest request = PutObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(ReferenceLayout.faceAnalysisKey(analysis.getSourceKey()))
+                    .contentType("application/json")
+                    .build();
+            clients.s3().putObject(request, RequestBody.fromBytes(mapper.writeValueAsBytes(analysis)));
+        } catch (Exception e) {
+            RequestMetrics.current().failure("Failed to write face analysis for " + analysis.getSourceKey() + ": " + e.getMessage());
+        }
+    }
+}
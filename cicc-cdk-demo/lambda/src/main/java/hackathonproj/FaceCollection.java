@@ -0,0 +1,42 @@
+package hackathonproj;
+
+import java.util.List;
+
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+// Persisted set of reference faces that an uploaded image can be searched against in one call,
+// instead of comparing it with every reference image pair by pair.
+public interface FaceCollection {
+
+    // Registers the reference images that are not in the collection yet
+    void register(List<S3Object> references, FanOut fanOut, Deadline deadline);
+
+    // (Re)indexes one reference image, replacing faces indexed for an older version of it
+    boolean index(String imageKey, Deadline deadline);
+
+    void remove(String imageKey);
+
+    // Best matches at or above the threshold, highest similarity first.
+    // Returns null when no face could be found in the searched image, and throws ServiceUnavailableException
+    // when the search could not be made.
+    List<Match> search(byte[] image, float threshold, int maxMatches, Deadline deadline);
+
+    class Match {
+
+        private final String imageKey;
+        private final float similarity;
+
+        public Match(String imageKey, float similarity) {
+            this.imageKey = imageKey;
+            this.similarity = similarity;
+        }
+
+        public String getImageKey() {
+            return imageKey;
+        }
+
+        public float getSimilarity() {
+            return similarity;
+        }
+    }
+}
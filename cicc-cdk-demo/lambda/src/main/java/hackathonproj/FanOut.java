@@ -0,0 +1,152 @@
+package hackathonproj;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+// Runs independent remote calls concurrently on a bounded pool that lives as long as the container.
+// The pool size is the concurrency limit and can be changed while the container runs; calls that fail or are still running at the deadline
+// yield the fallback value and are cancelled. Calls are recorded in the RequestMetrics of the submitting invocation.
+public class FanOut {
+
+    private final ThreadPoolExecutor executor;
+    private volatile int concurrency;
+
+    public FanOut(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(this.concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "participation-fanout-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int concurrency() {
+        return concurrency;
+    }
+
+    // Running calls finish; a smaller pool retires the surplus threads as they become idle
+    public synchronized void resize(int concurrency) {
+        int size = Math.max(1, concurrency);
+        if (size > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(size);
+            executor.setCorePoolSize(size);
+        } else {
+            executor.setCorePoolSize(size);
+            executor.setMaximumPoolSize(size);
+        }
+        this.concurrency = size;
+    }
+
+    // Applies call to every input concurrently and returns the results in input order
+    public <T, R> List<R> map(List<T> inputs, Function<T, R> call, R fallback, Deadline deadline) {
+        if (inputs.size() == 1) {
+            return List.of(applySafely(call, inputs.get(0), fallback));
+        }
+
+        List<Future<R>> futures = new ArrayList<>(inputs.size());
+        for (T input : inputs) {
+            futures.add(executor.submit(task(call, input)));
+        }
+
+        List<R> results = new ArrayList<>(inputs.size());
+        for (Future<R> future : futures) {
+            results.add(await(future, fallback, deadline));
+        }
+        return results;
+    }
+
+    // Like map, but each call is submitted as soon as the stream yields its input, so a lazily listed source
+    // is already being fetched while its later pages are still being listed
+    public <T, R> List<R> map(Stream<T> inputs, Function<T, R> call, R fallback, Deadline deadline) {
+        List<Future<R>> futures = new ArrayList<>();
+        inputs.forEach(input -> futures.add(executor.submit(task(call, input))));
+
+        List<R> results = new ArrayList<>(futures.size());
+        for (Future<R> future : futures) {
+            results.add(await(future, fallback, deadline));
+        }
+        return results;
+    }
+
+    // Runs the calls concurrently, in input order as pool slots free up, and returns the first result
+    // that satisfies accept. All calls still queued or running at that point are cancelled. Without an
+    // accepted result, returns fallback when a call failed or the deadline passed first, null otherwise.
+    public <T, R> R first(List<T> inputs, Function<T, R> call, Predicate<R> accept, R fallback, Deadline deadline) {
+        CompletionService<R> completion = new ExecutorCompletionService<>(executor);
+        List<Future<R>> futures = new ArrayList<>(inputs.size());
+        boolean failed = false;
+        try {
+            for (T input : inputs) {
+                futures.add(completion.submit(task(call, input)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                Future<R> done = completion.poll(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+                if (done == null) {
+                    return fallback;
+                }
+                R result;
+                try {
+                    result = done.get();
+                } catch (ExecutionException e) {
+                    failed = true;
+                    continue;
+                }
+                if (result != null && accept.test(result)) {
+                    return result;
+                }
+            }
+            return failed ? fallback : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return fallback;
+        } finally {
+            for (Future<R> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static <T, R> Callable<R> task(Function<T, R> call, T input) {
+        RequestMetrics metrics = RequestMetrics.current();
+        return () -> RequestMetrics.within(metrics, () -> call.apply(input));
+    }
+
+    private <R> R await(Future<R> future, R fallback, Deadline deadline) {
+        try {
+            R result = future.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+            return result != null ? result : fallback;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            return fallback;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return fallback;
+        } catch (ExecutionException e) {
+            return fallback;
+        }
+    }
+
+    private static <T, R> R applySafely(Function<T, R> call, T input, R fallback) {
+        try {
+            R result = call.apply(input);
+            return result != null ? result : fallback;
+        } catch (Exception e) {
+            return fallback;
+        }
+    }
+}
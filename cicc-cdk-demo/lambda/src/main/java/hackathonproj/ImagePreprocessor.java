@@ -0,0 +1,255 @@
+package hackathonproj;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import software.amazon.awssdk.services.rekognition.model.BoundingBox;
+
+// Normalizes uploaded photos before they are stored and sent to Rekognition: applies the EXIF
+// orientation, downsizes to maxEdge pixels on the longest side and re-encodes as JPEG.
+// Images that are already upright, small enough and within the Rekognition byte limit are returned as-is.
+public class ImagePreprocessor {
+
+    // Rekognition rejects image bytes above 5 MB
+    public static final int MAX_IMAGE_BYTES = 5 * 1024 * 1024;
+
+    private static final float FACE_CROP_MARGIN = 0.25f;
+
+    static {
+        System.setProperty("java.awt.headless", "true");
+        ImageIO.setUseCache(false);
+    }
+
+    private final int maxEdge;
+    private final float jpegQuality;
+
+    public ImagePreprocessor(int maxEdge, float jpegQuality) {
+        this.maxEdge = maxEdge;
+        this.jpegQuality = jpegQuality;
+    }
+
+    public byte[] normalize(byte[] image) throws IOException {
+        int orientation = exifOrientation(image);
+        int[] size = dimensions(image);
+        if (size == null) {
+            throw new IOException("Unsupported image format");
+        }
+
+        boolean oversized = Math.max(size[0], size[1]) > maxEdge;
+        if (orientation == 1 && !oversized && image.length <= MAX_IMAGE_BYTES && isJpeg(image)) {
+            return image;
+        }
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(image));
+        if (decoded == null) {
+            throw new IOException("Unsupported image format");
+        }
+        double scale = oversized ? (double) maxEdge / Math.max(decoded.getWidth(), decoded.getHeight()) : 1.0;
+        BufferedImage upright = transform(decoded, orientation, scale);
+        byte[] encoded = encodeJpeg(upright, jpegQuality);
+
+        // Quality is lowered step by step for the rare image that is still too large after downsizing
+        float quality = jpegQuality;
+        while (encoded.length > MAX_IMAGE_BYTES && quality > 0.3f) {
+            quality -= 0.15f;
+            encoded = encodeJpeg(upright, quality);
+        }
+        return encoded;
+    }
+
+    // Crops an (already normalized) image to a Rekognition bounding box plus a margin around the face
+    public byte[] cropToFace(byte[] image, BoundingBox box) throws IOException {
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(image));
+        if (decoded == null || box == null || box.width() == null || box.height() == null) {
+            return image;
+        }
+        return crop(decoded, box);
+    }
+
+    // One crop per box, decoding the image once; used for the faces of a class photo
+    public List<byte[]> cropFaces(byte[] image, List<BoundingBox> boxes) throws IOException {
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(image));
+        List<byte[]> crops = new ArrayList<>();
+        for (BoundingBox box : boxes) {
+            crops.add(decoded == null || box == null || box.width() == null || box.height() == null ? image : crop(decoded, box));
+        }
+        return crops;
+    }
+
+    private byte[] crop(BufferedImage decoded, BoundingBox box) throws IOException {
+        int width = decoded.getWidth();
+        int height = decoded.getHeight();
+        float marginX = box.width() * FACE_CROP_MARGIN;
+        float marginY = box.height() * FACE_CROP_MARGIN;
+        int x = clamp((int) ((box.left() - marginX) * width), 0, width - 1);
+        int y = clamp((int) ((box.top() - marginY) * height), 0, height - 1);
+        int right = clamp((int) Math.ceil((box.left() + box.width() + marginX) * width), x + 1, width);
+        int bottom = clamp((int) Math.ceil((box.top() + box.height() + marginY) * height), y + 1, height);
+        return encodeJpeg(decoded.getSubimage(x, y, right - x, bottom - y), jpegQuality);
+    }
+
+    private static BufferedImage transform(BufferedImage source, int orientation, double scale) {
+        int width = (int) Math.max(1, Math.round(source.getWidth() * scale));
+        int height = (int) Math.max(1, Math.round(source.getHeight() * scale));
+        boolean swap = orientation >= 5 && orientation <= 8;
+
+        BufferedImage target = new BufferedImage(swap ? height : width, swap ? width : height, BufferedImage.TYPE_INT_RGB);
+        AffineTransform transform = orientationTransform(orientation, width, height);
+        transform.concatenate(AffineTransform.getScaleInstance(scale, scale));
+
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    // Maps an image of the given (scaled) size to its upright position for EXIF orientations 1-8
+    private static AffineTransform orientationTransform(int orientation, int w, int h) {
+        switch (orientation) {
+            case 2:
+                return new AffineTransform(-1, 0, 0, 1, w, 0);
+            case 3:
+                return new AffineTransform(-1, 0, 0, -1, w, h);
+            case 4:
+                return new AffineTransform(1, 0, 0, -1, 0, h);
+            case 5:
+                return new AffineTransform(0, 1, 1, 0, 0, 0);
+            case 6:
+                return new AffineTransform(0, 1, -1, 0, h, 0);
+            case 7:
+                return new AffineTransform(0, -1, -1, 0, h, w);
+            case 8:
+                return new AffineTransform(0, -1, 1, 0, 0, w);
+            default:
+                return new AffineTransform();
+        }
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        if (image.getType() != BufferedImage.TYPE_INT_RGB) {
+            BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = rgb.createGraphics();
+            graphics.drawImage(image, 0, 0, null);
+            graphics.dispose();
+            image = rgb;
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    // Reads the pixel size from the image header without decoding the pixels
+    private static int[] dimensions(byte[] image) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(image))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return new int[] {reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static boolean isJpeg(byte[] image) {
+        return image.length > 2 && (image[0] & 0xFF) == 0xFF && (image[1] & 0xFF) == 0xD8;
+    }
+
+    // Orientation tag (0x0112) of the EXIF APP1 segment of a JPEG, 1 (upright) when absent
+    static int exifOrientation(byte[] jpeg) {
+        if (!isJpeg(jpeg)) {
+            return 1;
+        }
+        int offset = 2;
+        while (offset + 4 <= jpeg.length && (jpeg[offset] & 0xFF) == 0xFF) {
+            int marker = jpeg[offset + 1] & 0xFF;
+            int length = u16(jpeg, offset + 2, false);
+            if (marker == 0xDA || length < 2) {
+                break;
+            }
+            int segment = offset + 4;
+            if (marker == 0xE1 && segment + 14 <= jpeg.length
+                    && jpeg[segment] == 'E' && jpeg[segment + 1] == 'x' && jpeg[segment + 2] == 'i' && jpeg[segment + 3] == 'f') {
+                return orientationFromTiff(jpeg, segment + 6, Math.min(jpeg.length, offset + 2 + length));
+            }
+            offset += 2 + length;
+        }
+        return 1;
+    }
+
+    // The IFD offset comes from the photo, so it is checked against the segment before it is used as an index
+    private static int orientationFromTiff(byte[] data, int tiff, int end) {
+        if (tiff + 8 > end) {
+            return 1;
+        }
+        boolean littleEndian = data[tiff] == 'I' && data[tiff + 1] == 'I';
+        long ifdOffset = u32(data, tiff + 4, littleEndian);
+        if (ifdOffset < 8 || tiff + ifdOffset + 2 > end) {
+            return 1;
+        }
+        int ifd = tiff + (int) ifdOffset;
+        int entries = u16(data, ifd, littleEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                break;
+            }
+            if (u16(data, entry, littleEndian) == 0x0112) {
+                int orientation = u16(data, entry + 8, littleEndian);
+                return orientation >= 1 && orientation <= 8 ? orientation : 1;
+            }
+        }
+        return 1;
+    }
+
+    private static int u16(byte[] data, int offset, boolean littleEndian) {
+        int a = data[offset] & 0xFF;
+        int b = data[offset + 1] & 0xFF;
+        return littleEndian ? (b << 8) | a : (a << 8) | b;
+    }
+
+    private static long u32(byte[] data, int offset, boolean littleEndian) {
+        long high = u16(data, offset + (littleEndian ? 2 : 0), littleEndian);
+        long low = u16(data, offset + (littleEndian ? 0 : 2), littleEndian);
+        return (high << 16) | low;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,126 @@
+package hackathonproj;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+// Images used while handling one request. Every object is loaded at most once, even when several
+// stages ask for it concurrently, and the same byte array is handed to every stage that needs it.
+public class ImageWorkspace {
+
+    private final S3Client s3;
+    private final String bucket;
+    private final ReferenceImageCache referenceCache;
+    private final Map<String, CompletableFuture<byte[]>> images = new ConcurrentHashMap<>();
+    private final AtomicLong objectsFetched = new AtomicLong();
+    private final AtomicLong bytesFetched = new AtomicLong();
+
+    public ImageWorkspace(S3Client s3, String bucket, ReferenceImageCache referenceCache) {
+        this.s3 = s3;
+        this.bucket = bucket;
+        this.referenceCache = referenceCache;
+    }
+
+    // Seeds the workspace with bytes the request already holds, e.g. the image it just uploaded
+    public void put(String key, byte[] bytes) {
+        images.put(key, CompletableFuture.completedFuture(bytes));
+    }
+
+    public byte[] get(String key, Deadline deadline) {
+        return load(key, () -> fetch(key, deadline));
+    }
+
+    public byte[] getReference(S3Object object, Deadline deadline) {
+        return load(object.key(), () -> fetchReference(object, deadline));
+    }
+
+    public long objectsFetched() {
+        return objectsFetched.get();
+    }
+
+    public long bytesFetched() {
+        return bytesFetched.get();
+    }
+
+    private byte[] load(String key, Supplier<byte[]> loader) {
+        CompletableFuture<byte[]> pending = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = images.putIfAbsent(key, pending);
+        if (existing != null) {
+            return existing.join();
+        }
+
+        byte[] bytes = null;
+        long start = System.nanoTime();
+        try {
+            bytes = loader.get();
+        } finally {
+            RequestMetrics.current().stop(RequestMetrics.Stage.FETCH, start);
+            pending.complete(bytes);
+        }
+        return bytes;
+    }
+
+    private byte[] fetch(String key, Deadline deadline) {
+        try {
+            GetObjectRequest request = GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .overrideConfiguration(o -> o.apiCallTimeout(deadline.callTimeout()))
+                    .build();
+            return record(s3.getObjectAsBytes(request).asByteArrayUnsafe());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // Serves reference images from the container cache while the listed ETag/Last-Modified still match,
+    // otherwise revalidates the cached copy with a conditional GET before downloading it again.
+    private byte[] fetchReference(S3Object object, Deadline deadline) {
+        byte[] cached = referenceCache.get(object.key(), object.eTag(), object.lastModified());
+        if (cached != null) {
+            RequestMetrics.current().count(RequestMetrics.Counter.CACHE_HITS);
+            return cached;
+        }
+
+        String cachedETag = referenceCache.cachedETag(object.key());
+        try {
+            GetObjectRequest.Builder request = GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(object.key())
+                    .overrideConfiguration(o -> o.apiCallTimeout(deadline.callTimeout()));
+            if (cachedETag != null) {
+                request.ifNoneMatch(cachedETag);
+            }
+            ResponseBytes<GetObjectResponse> response = s3.getObjectAsBytes(request.build());
+            byte[] bytes = record(response.asByteArrayUnsafe());
+            RequestMetrics.current().count(RequestMetrics.Counter.CACHE_MISSES);
+            referenceCache.put(object.key(), response.response().eTag(), response.response().lastModified(), bytes);
+            return bytes;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 304) {
+                RequestMetrics.current().count(RequestMetrics.Counter.CACHE_HITS);
+                return referenceCache.revalidated(object.key(), object.lastModified());
+            }
+            referenceCache.invalidate(object.key());
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private byte[] record(byte[] bytes) {
+        objectsFetched.incrementAndGet();
+        bytesFetched.addAndGet(bytes.length);
+        RequestMetrics.current().add(RequestMetrics.Counter.S3_BYTES, bytes.length);
+        return bytes;
+    }
+}
@@ -0,0 +1,70 @@
+package hackathonproj;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+// Local stand-in for a Rekognition face collection, for tests and benchmarks.
+// Reference images are loaded through imageLoader and scored against the searched image with similarity,
+// which returns a value between 0 and 100, or null when the searched image holds no face.
+public class InMemoryFaceCollection implements FaceCollection {
+
+    private final Function<String, byte[]> imageLoader;
+    private final BiFunction<byte[], byte[], Float> similarity;
+    private final Map<String, byte[]> faces = new ConcurrentHashMap<>();
+
+    public InMemoryFaceCollection(Function<String, byte[]> imageLoader, BiFunction<byte[], byte[], Float> similarity) {
+        this.imageLoader = imageLoader;
+        this.similarity = similarity;
+    }
+
+    @Override
+    public void register(List<S3Object> references, FanOut fanOut, Deadline deadline) {
+        for (S3Object reference : references) {
+            if (!faces.containsKey(reference.key())) {
+                index(reference.key(), deadline);
+            }
+        }
+    }
+
+    @Override
+    public boolean index(String imageKey, Deadline deadline) {
+        byte[] image = imageLoader.apply(imageKey);
+        if (image == null) {
+            return false;
+        }
+        faces.put(imageKey, image);
+        return true;
+    }
+
+    @Override
+    public void remove(String imageKey) {
+        faces.remove(imageKey);
+    }
+
+    @Override
+    public List<Match> search(byte[] image, float threshold, int maxMatches, Deadline deadline) {
+        List<Match> matches = new ArrayList<>();
+        for (Map.Entry<String, byte[]> face : faces.entrySet()) {
+            Float score = similarity.apply(image, face.getValue());
+            if (score == null) {
+                return null;
+            }
+            if (score >= threshold) {
+                matches.add(new Match(face.getKey(), score));
+            }
+        }
+        matches.sort(Comparator.comparing(Match::getSimilarity).reversed());
+        return matches.size() > maxMatches ? new ArrayList<>(matches.subList(0, maxMatches)) : matches;
+    }
+
+    public int size() {
+        return faces.size();
+    }
+}
@@ -0,0 +1,56 @@
+package hackathonproj;
+
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+
+// Counts the SDK calls of every client per service into the running invocation's RequestMetrics, along with
+// the attempts the SDK retried and the calls that failed in the end.
+public class MetricsInterceptor implements ExecutionInterceptor {
+
+    private static final ExecutionAttribute<Boolean> ATTEMPTED = new ExecutionAttribute<>("ParticipationMetricsAttempted");
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+        RequestMetrics.Counter calls = callsOf(executionAttributes.getAttribute(SdkExecutionAttribute.SERVICE_NAME));
+        if (calls != null) {
+            RequestMetrics.current().count(calls);
+        }
+    }
+
+    @Override
+    public void beforeTransmission(Context.BeforeTransmission context, ExecutionAttributes executionAttributes) {
+        if (executionAttributes.getAttribute(ATTEMPTED) != null) {
+            RequestMetrics.current().count(RequestMetrics.Counter.RETRIES);
+        } else {
+            executionAttributes.putAttribute(ATTEMPTED, Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes executionAttributes) {
+        RequestMetrics.current().count(RequestMetrics.Counter.ERRORS);
+    }
+
+    private static RequestMetrics.Counter callsOf(String serviceName) {
+        if (serviceName == null) {
+            return null;
+        }
+        switch (serviceName) {
+            case "S3":
+                return RequestMetrics.Counter.S3_CALLS;
+            case "Textract":
+                return RequestMetrics.Counter.TEXTRACT_CALLS;
+            case "Rekognition":
+                return RequestMetrics.Counter.REKOGNITION_CALLS;
+            case "DynamoDb":
+                return RequestMetrics.Counter.DYNAMODB_CALLS;
+            case "Sqs":
+                return RequestMetrics.Counter.SQS_CALLS;
+            default:
+                return null;
+        }
+    }
+}
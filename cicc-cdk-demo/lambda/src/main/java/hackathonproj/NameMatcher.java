@@ -0,0 +1,343 @@
+package hackathonproj;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Fuzzy lookup of a name in the OCR lines of one sign-in sheet. The lines are folded once, when the matcher is
+// built: accents are dropped, common OCR confusions are mapped to one spelling, and every run of up to
+// MAX_PHRASE_TOKENS tokens is stored both as written and with its tokens sorted, so "Sharma, Aakash" is found
+// for "Aakash Sharma". A lookup is a set probe for the exact phrase first. Only on a miss is the edit distance
+// computed, and only for phrases that share enough trigrams with the name to be within reach of the threshold.
+public class NameMatcher {
+
+    static final int MAX_PHRASE_TOKENS = 6;
+
+    private final Set<String> exact = new HashSet<>();
+    private final char[][] phrases;
+    private final byte[] phraseTokens;
+    // Trigram inverted index: the phrases of gramKeys[g] are postings[gramOffsets[g] .. gramOffsets[g + 1])
+    private final int[] gramKeys;
+    private final int[] gramOffsets;
+    private final int[] postings;
+
+    public NameMatcher(List<String> lines) {
+        List<char[]> phraseList = new ArrayList<>();
+        List<Integer> tokenCounts = new ArrayList<>();
+        for (String line : lines) {
+            List<String> tokens = tokens(line);
+            for (int start = 0; start < tokens.size(); start++) {
+                for (int end = start + 1; end <= tokens.size() && end - start <= MAX_PHRASE_TOKENS; end++) {
+                    List<String> window = tokens.subList(start, end);
+                    for (String phrase : new String[] {String.join(" ", window), sorted(window)}) {
+                        if (exact.add(phrase)) {
+                            phraseList.add(phrase.toCharArray());
+                            tokenCounts.add(end - start);
+                        }
+                    }
+                }
+            }
+        }
+        phrases = phraseList.toArray(new char[0][]);
+        phraseTokens = new byte[phrases.length];
+        for (int i = 0; i < phrases.length; i++) {
+            phraseTokens[i] = tokenCounts.get(i).byteValue();
+        }
+
+        // (gram, phrase) pairs sorted by gram, then split into keys, offsets and postings
+        int pairCount = 0;
+        long[] pairs = new long[0];
+        for (int id = 0; id < phrases.length; id++) {
+            int[] grams = grams(phrases[id]);
+            if (pairCount + grams.length > pairs.length) {
+                pairs = Arrays.copyOf(pairs, Math.max(pairs.length * 2, pairCount + grams.length));
+            }
+            for (int gram : grams) {
+                pairs[pairCount++] = (long) gram << 32 | id;
+            }
+        }
+        Arrays.sort(pairs, 0, pairCount);
+        int[] keys = new int[pairCount];
+        int[] offsets = new int[pairCount + 1];
+        postings = new int[pairCount];
+        int keyCount = 0;
+        for (int i = 0; i < pairCount; i++) {
+            int gram = (int) (pairs[i] >>> 32);
+            if (keyCount == 0 || keys[keyCount - 1] != gram) {
+                keys[keyCount] = gram;
+                offsets[keyCount++] = i;
+            }
+            postings[i] = (int) pairs[i];
+        }
+        offsets[keyCount] = pairCount;
+        gramKeys = Arrays.copyOf(keys, keyCount);
+        gramOffsets = Arrays.copyOf(offsets, keyCount + 1);
+    }
+
+    public int phraseCount() {
+        return phrases.length;
+    }
+
+    public Match match(String name, float threshold) {
+        Query query = new Query(name);
+        return contains(query) ? new Match(1f, threshold) : closest(query, threshold);
+    }
+
+    // Whether the name is on the sheet as written or with its tokens reordered
+    public boolean contains(Query query) {
+        return query.tokens > 0 && (exact.contains(query.sorted) || exact.contains(query.written));
+    }
+
+    // Best score of the name against the phrases of this sheet: 1 - edit distance / length of the longer of the
+    // two, and 0 when no phrase is close enough to reach the threshold
+    public Match closest(Query query, float threshold) {
+        float best = 0f;
+        query.reserve(phrases.length);
+        for (int f = 0; f < query.forms.length; f++) {
+            char[] form = query.forms[f];
+            // Any pair scoring at least the threshold differs by at most this many edits
+            int max = threshold <= 0f ? form.length : (int) ((1f - threshold) * form.length / threshold);
+            if (max == 0) {
+                continue;
+            }
+            // Each edit removes at most three of the form's distinct trigrams
+            int[] grams = query.grams[f];
+            int needed = grams.length - 3 * max;
+            if (needed <= 0) {
+                for (int id = 0; id < phrases.length; id++) {
+                    best = Math.max(best, score(query, form, id, max));
+                }
+                continue;
+            }
+            int touched = 0;
+            for (int gram : grams) {
+                int key = Arrays.binarySearch(gramKeys, gram);
+                if (key < 0) {
+                    continue;
+                }
+                for (int p = gramOffsets[key]; p < gramOffsets[key + 1]; p++) {
+                    int id = postings[p];
+                    if (query.counts[id]++ == 0) {
+                        query.touched[touched++] = id;
+                    }
+                }
+            }
+            for (int t = 0; t < touched; t++) {
+                int id = query.touched[t];
+                if (query.counts[id] >= needed) {
+                    best = Math.max(best, score(query, form, id, max));
+                }
+                query.counts[id] = 0;
+            }
+        }
+        return new Match(best, threshold);
+    }
+
+    // Phrases with one token more or less than the name are compared too, for tokens OCR split or merged
+    private float score(Query query, char[] form, int id, int max) {
+        char[] phrase = phrases[id];
+        if (Math.abs(phraseTokens[id] - query.tokens) > 1 || Math.abs(phrase.length - form.length) > max) {
+            return 0f;
+        }
+        int distance = distance(phrase, form, max, query.previous, query.current);
+        return distance <= max ? 1f - distance / (float) Math.max(form.length, phrase.length) : 0f;
+    }
+
+    // Distinct trigrams of a phrase, each packed into an int (exact for characters below U+0400)
+    static int[] grams(char[] phrase) {
+        if (phrase.length < 3) {
+            return new int[0];
+        }
+        int[] grams = new int[phrase.length - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = (phrase[i] & 0x3FF) << 20 | (phrase[i + 1] & 0x3FF) << 10 | (phrase[i + 2] & 0x3FF);
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    // Levenshtein distance between a phrase and the query form, or max + 1 as soon as it must exceed max.
+    // Only the band of cells within max of the diagonal is filled, in the two rows owned by the query.
+    static int distance(char[] phrase, char[] form, int max, int[] previous, int[] current) {
+        int columns = form.length;
+        if (Math.abs(phrase.length - columns) > max) {
+            return max + 1;
+        }
+        for (int j = 0; j <= columns; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= phrase.length; i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(columns, i + max);
+            current[0] = i;
+            current[from - 1] = from == 1 ? i : max + 1;
+            int rowMin = from == 1 ? i : max + 1;
+            char c = phrase[i - 1];
+            for (int j = from; j <= to; j++) {
+                int value = Math.min(Math.min(current[j - 1], previous[j]) + 1, previous[j - 1] + (c == form[j - 1] ? 0 : 1));
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (to < columns) {
+                current[to + 1] = max + 1;
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[columns], max + 1);
+    }
+
+    // Folded tokens of a line: accents removed, lowercased, apostrophes dropped and everything else that is not a
+    // letter or digit a separator. Within tokens that have letters, 0/1/5/8, "rn" and "vv" read as o/l/s/b, m and w.
+    static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFKD);
+        StringBuilder token = new StringBuilder();
+        boolean letters = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK || c == '\'' || c == '\u2019') {
+                continue;
+            }
+            String folded = fold(Character.toLowerCase(c));
+            if (folded != null) {
+                token.append(folded);
+                letters |= Character.isLetter(c);
+            } else if (token.length() > 0) {
+                tokens.add(letters ? ocrFold(token) : token.toString());
+                token.setLength(0);
+                letters = false;
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(letters ? ocrFold(token) : token.toString());
+        }
+        return tokens;
+    }
+
+    // Letters that do not decompose into a base letter and a mark; null for separators
+    private static String fold(char c) {
+        switch (c) {
+            case '\u00df': // sharp s
+                return "ss";
+            case '\u00e6': // ae
+                return "ae";
+            case '\u0153': // oe
+                return "oe";
+            case '\u00f8': // o with stroke
+                return "o";
+            case '\u0142': // l with stroke
+                return "l";
+            case '\u0111': // d with stroke
+                return "d";
+            case '\u0131': // dotless i
+                return "i";
+            default:
+                return Character.isLetterOrDigit(c) ? String.valueOf(c) : null;
+        }
+    }
+
+    private static String ocrFold(StringBuilder token) {
+        for (int i = 0; i < token.length(); i++) {
+            switch (token.charAt(i)) {
+                case '0':
+                    token.setCharAt(i, 'o');
+                    break;
+                case '1':
+                    token.setCharAt(i, 'l');
+                    break;
+                case '5':
+                    token.setCharAt(i, 's');
+                    break;
+                case '8':
+                    token.setCharAt(i, 'b');
+                    break;
+                default:
+                    break;
+            }
+        }
+        return token.toString().replace("rn", "m").replace("vv", "w");
+    }
+
+    private static String sorted(List<String> tokens) {
+        String[] copy = tokens.toArray(new String[0]);
+        Arrays.sort(copy);
+        return String.join(" ", copy);
+    }
+
+    // A name folded once for lookups in any number of sheets, with the buffers every lookup reuses: the two
+    // distance rows, and the per-phrase trigram counts with the phrases touched while counting
+    public static class Query {
+
+        private final int tokens;
+        private final String written;
+        private final String sorted;
+        private final char[][] forms;
+        private final int[][] grams;
+        private final int[] previous;
+        private final int[] current;
+        private int[] counts = new int[0];
+        private int[] touched = new int[0];
+
+        public Query(String name) {
+            List<String> folded = tokens(name);
+            this.tokens = folded.size();
+            this.written = String.join(" ", folded);
+            this.sorted = sorted(folded);
+            this.forms = written.equals(sorted) ? new char[][] {written.toCharArray()}
+                    : new char[][] {written.toCharArray(), sorted.toCharArray()};
+            this.grams = new int[forms.length][];
+            for (int i = 0; i < forms.length; i++) {
+                grams[i] = grams(forms[i]);
+            }
+            this.previous = new int[written.length() + 1];
+            this.current = new int[written.length() + 1];
+        }
+
+        private void reserve(int phrases) {
+            if (counts.length < phrases) {
+                counts = new int[phrases];
+                touched = new int[phrases];
+            }
+        }
+    }
+
+    public static class Match {
+
+        private final float score;
+        private final float threshold;
+
+        public Match(float score, float threshold) {
+            this.score = score;
+            this.threshold = threshold;
+        }
+
+        public float getScore() {
+            return score;
+        }
+
+        public float getThreshold() {
+            return threshold;
+        }
+
+        public boolean isMatch() {
+            return score > 0f && score >= threshold;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package hackathonproj;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import hackathonproj.ParticipationResponse.Detail;
+
+// Configuration of the participation functions. Deployment settings (region, bucket, tables, queues, face collection
+// and match mode, idempotency window, upload limits, and the limits of the functions that never read the parameter
+// document) come from environment variables set by the stack and hold for the life of the container; a change to one
+// of them is a deployment. Tuning knobs start from
+// environment variables of the same name and can be overridden by a parameter document: a flat JSON object in the bucket, e.g.
+// {"SIMILARITY_THRESHOLD": 90, "FANOUT_CONCURRENCY": 16}. The document is read again with If-None-Match once
+// its TTL has passed, so warm containers pick up a change within the TTL, without a deployment or a cold start.
+public class ParticipationConfig {
+
+    public static final Region REGION = Region.of(env("SERVICE_REGION", env("AWS_REGION", "us-east-2")));
+    public static final String BUCKET = env("BUCKET_NAME", "proj-hackathon-bucket-cdk");
+    public static final String TABLE = env("TABLE_NAME", "ParticipationAttendanceCdkproj");
+    public static final String FACE_COLLECTION_ID = env("FACE_COLLECTION_ID", "proj-participation-faces");
+    // "collection" searches the face collection once; "pairwise" compares against every reference image
+    public static final String FACE_MATCH_MODE = env("FACE_MATCH_MODE", "pairwise");
+    // Results of completed check-ins are replayed to duplicates for this long; without a table only within the
+    // container. The TTL is written into each stored result.
+    public static final String IDEMPOTENCY_TABLE = env("IDEMPOTENCY_TABLE", "");
+    public static final long IDEMPOTENCY_TTL_SECONDS = Long.parseLong(env("IDEMPOTENCY_TTL_SECONDS", "3600"));
+    // Signed into the presigned upload URLs by ParticipationHandler and checked again by UploadedImageHandler, so
+    // both functions have to see the same values
+    public static final long UPLOAD_URL_TTL_SECONDS = Long.parseLong(env("UPLOAD_URL_TTL_SECONDS", "300"));
+    public static final long MAX_UPLOAD_BYTES = Long.parseLong(env("MAX_UPLOAD_BYTES", "15728640"));
+    // Participation records go through this queue to ParticipationWriterHandler; without one they are written directly
+    public static final String PARTICIPATION_QUEUE_URL = env("PARTICIPATION_QUEUE_URL", "");
+    public static final int WRITE_MAX_ATTEMPTS = Integer.parseInt(env("WRITE_MAX_ATTEMPTS", "6"));
+    // Asynchronous check-ins; without a job table and queue every check-in runs synchronously
+    public static final String JOBS_TABLE = env("JOBS_TABLE", "");
+    public static final String JOB_QUEUE_URL = env("JOB_QUEUE_URL", "");
+    public static final long JOB_TTL_SECONDS = Long.parseLong(env("JOB_TTL_SECONDS", "86400"));
+    public static final int JOB_MAX_ATTEMPTS = Integer.parseInt(env("JOB_MAX_ATTEMPTS", "3"));
+    public static final int JOB_RETRY_DELAY_SECONDS = Integer.parseInt(env("JOB_RETRY_DELAY_SECONDS", "30"));
+    // Attendance queries: the counts table kept by AttendanceCounterHandler (none: no counts), the email index
+    // and the page size when ?limit= is not given
+    public static final String COUNTS_TABLE = env("COUNTS_TABLE", "");
+    public static final String EMAIL_INDEX = env("EMAIL_INDEX", "email-index");
+    public static final int DEFAULT_PAGE_SIZE = Integer.parseInt(env("DEFAULT_PAGE_SIZE", "100"));
+    public static final String METRICS_NAMESPACE = env("METRICS_NAMESPACE", "ParticipationService");
+    // Runs the priming hook during init when SnapStart does not run it before the snapshot
+    public static final boolean PRIME_ON_INIT = Boolean.parseBoolean(env("PRIME_ON_INIT", "false"));
+
+    // A slow read keeps the current settings rather than holding up the request that triggered it
+    private static final Duration FETCH_TIMEOUT = Duration.ofSeconds(1);
+
+    private final AwsClients clients;
+    private final String bucket;
+    private final String key;
+    private final long ttlNanos;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile Settings settings = new Settings(Map.of());
+    private volatile long nextRefreshNanos = System.nanoTime();
+    private String eTag;
+
+    // An empty key disables the document, so only the environment applies
+    public ParticipationConfig(AwsClients clients, String bucket, String key, long ttlSeconds) {
+        this.clients = clients;
+        this.bucket = bucket;
+        this.key = key;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    // Configured from CONFIG_KEY and CONFIG_TTL_SECONDS
+    public static ParticipationConfig fromEnvironment(AwsClients clients) {
+        return new ParticipationConfig(clients, BUCKET, env("CONFIG_KEY", ""), Long.parseLong(env("CONFIG_TTL_SECONDS", "60")));
+    }
+
+    // The settings to use now, after reading the document again if its TTL has passed. One caller reads it while
+    // concurrent callers go on with the previous settings.
+    public Settings current() {
+        if (key.isEmpty() || System.nanoTime() - nextRefreshNanos < 0 || !refreshing.compareAndSet(false, true)) {
+            return settings;
+        }
+        try {
+            refresh();
+        } finally {
+            nextRefreshNanos = System.nanoTime() + ttlNanos;
+            refreshing.set(false);
+        }
+        return settings;
+    }
+
+    private void refresh() {
+        try {
+            GetObjectRequest.Builder request = GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .overrideConfiguration(o -> o.apiCallTimeout(FETCH_TIMEOUT));
+            if (eTag != null) {
+                request.ifNoneMatch(eTag);
+            }
+            ResponseBytes<GetObjectResponse> response = clients.s3().getObjectAsBytes(request.build());
+            settings = new Settings(document(response.asByteArrayUnsafe()));
+            eTag = response.response().eTag();
+        } catch (S3Exception e) {
+            if (e.statusCode() == 304) {
+                return;
+            }
+            if (e instanceof NoSuchKeyException) {
+                // No document, or it was deleted: back to the environment
+                if (eTag != null) {
+                    settings = new Settings(Map.of());
+                    eTag = null;
+                }
+                return;
+            }
+            System.err.println("Failed to read configuration " + key + ", keeping the current settings: " + e.getMessage());
+        } catch (Exception e) {
+            System.err.println("Failed to read configuration " + key + ", keeping the current settings: " + e.getMessage());
+        }
+    }
+
+    private Map<String, String> document(byte[] bytes) throws IOException {
+        JsonNode root = mapper.readTree(bytes);
+        if (root == null || !root.isObject()) {
+            throw new IllegalArgumentException("the document is not a JSON object");
+        }
+        Map<String, String> values = new HashMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> fields = root.fields(); fields.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (!Settings.NAMES.contains(field.getKey())) {
+                System.err.println("Ignoring unknown configuration setting " + field.getKey());
+                continue;
+            }
+            values.put(field.getKey(), field.getValue().asText());
+        }
+        return values;
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isEmpty() ? value : defaultValue;
+    }
+
+    // One consistent set of tuning knobs. A value that does not parse or is out of range is logged and replaced by
+    // the environment's value, then by the default.
+    public static class Settings {
+
+        static final Set<String> NAMES = Set.of("FANOUT_CONCURRENCY", "REFERENCE_CACHE_MAX_BYTES", "CALL_TIMEOUT_MS",
+                "DEADLINE_MARGIN_MS", "SIMILARITY_THRESHOLD", "MAX_COLLECTION_MATCHES", "MAX_SECTION_COLLECTION_MATCHES",
+                "NAME_MATCH_THRESHOLD", "IMAGE_MAX_EDGE", "IMAGE_JPEG_QUALITY", "CROP_TO_FACE", "DEFAULT_DETAIL",
+                "DIAGNOSTICS_MAX_LINES", "DIAGNOSTICS_MAX_REFERENCES", "TIMING_HEADER", "RETRY_MAX_ATTEMPTS",
+                "CIRCUIT_FAILURE_THRESHOLD", "CIRCUIT_OPEN_MS");
+
+        private final Map<String, String> document;
+        // Concurrent Textract/Rekognition/S3 calls per container
+        private final int fanOutConcurrency;
+        private final long referenceCacheMaxBytes;
+        // Upper bound for a single remote call, and the time kept back to write the result and respond
+        private final long callTimeoutMillis;
+        private final long deadlineMarginMillis;
+        private final float similarityThreshold;
+        private final int maxCollectionMatches;
+        // The collection holds every section's faces; matches outside the section are dropped after the search
+        private final int maxSectionCollectionMatches;
+        // Lowest name score (1 - edit distance / length) that counts as a name match on the sign-in sheets
+        private final float nameMatchThreshold;
+        private final int imageMaxEdge;
+        private final float imageJpegQuality;
+        private final boolean cropToFace;
+        // Detail of responses that ask for none with ?detail= or full_diagnostics
+        private final Detail defaultDetail;
+        private final int diagnosticsMaxLines;
+        private final int diagnosticsMaxReferences;
+        private final boolean timingHeader;
+        // Rekognition and Textract calls: attempts per call, failed calls in a row that open the circuit, and how
+        // long it stays open
+        private final int retryMaxAttempts;
+        private final int circuitFailureThreshold;
+        private final long circuitOpenMillis;
+
+        Settings(Map<String, String> document) {
+            this.document = document;
+            this.fanOutConcurrency = (int) number("FANOUT_CONCURRENCY", 10, 1, 256);
+            this.referenceCacheMaxBytes = (long) number("REFERENCE_CACHE_MAX_BYTES", 256L * 1024 * 1024, 0, Long.MAX_VALUE);
+            this.callTimeoutMillis = (long) number("CALL_TIMEOUT_MS", 10000, 100, 900000);
+            this.deadlineMarginMillis = (long) number("DEADLINE_MARGIN_MS", 1500, 0, 60000);
+            this.similarityThreshold = (float) number("SIMILARITY_THRESHOLD", 85, 0, 100);
+            this.maxCollectionMatches = (int) number("MAX_COLLECTION_MATCHES", 5, 1, 4096);
+            this.maxSectionCollectionMatches = (int) number("MAX_SECTION_COLLECTION_MATCHES", 20, 1, 4096);
+            this.nameMatchThreshold = (float) number("NAME_MATCH_THRESHOLD", 0.9, 0, 1);
+            this.imageMaxEdge = (int) number("IMAGE_MAX_EDGE", 1600, 64, 8192);
+            this.imageJpegQuality = (float) number("IMAGE_JPEG_QUALITY", 0.85, 0.1, 1);
+            this.cropToFace = flag("CROP_TO_FACE", false);
+            this.defaultDetail = detail("DEFAULT_DETAIL", Detail.VERDICT);
+            this.diagnosticsMaxLines = (int) number("DIAGNOSTICS_MAX_LINES", 500, 0, 100000);
+            this.diagnosticsMaxReferences = (int) number("DIAGNOSTICS_MAX_REFERENCES", 100, 0, 100000);
+            this.timingHeader = flag("TIMING_HEADER", false);
+            this.retryMaxAttempts = (int) number("RETRY_MAX_ATTEMPTS", 3, 1, 20);
+            this.circuitFailureThreshold = (int) number("CIRCUIT_FAILURE_THRESHOLD", 5, 1, 10000);
+            this.circuitOpenMillis = (long) number("CIRCUIT_OPEN_MS", 10000, 100, 3600000);
+        }
+
+        public int fanOutConcurrency() {
+            return fanOutConcurrency;
+        }
+
+        public long referenceCacheMaxBytes() {
+            return referenceCacheMaxBytes;
+        }
+
+        public long callTimeoutMillis() {
+            return callTimeoutMillis;
+        }
+
+        public long deadlineMarginMillis() {
+            return deadlineMarginMillis;
+        }
+
+        public float similarityThreshold() {
+            return similarityThreshold;
+        }
+
+        public int maxCollectionMatches() {
+            return maxCollectionMatches;
+        }
+
+        public int maxSectionCollectionMatches() {
+            return maxSectionCollectionMatches;
+        }
+
+        public float nameMatchThreshold() {
+            return nameMatchThreshold;
+        }
+
+        public int imageMaxEdge() {
+            return imageMaxEdge;
+        }
+
+        public float imageJpegQuality() {
+            return imageJpegQuality;
+        }
+
+        public boolean cropToFace() {
+            return cropToFace;
+        }
+
+        public Detail defaultDetail() {
+            return defaultDetail;
+        }
+
+        public int diagnosticsMaxLines() {
+            return diagnosticsMaxLines;
+        }
+
+        public int diagnosticsMaxReferences() {
+            return diagnosticsMaxReferences;
+        }
+
+        public boolean timingHeader() {
+            return timingHeader;
+        }
+
+        public int retryMaxAttempts() {
+            return retryMaxAttempts;
+        }
+
+        public int circuitFailureThreshold() {
+            return circuitFailureThreshold;
+        }
+
+        public long circuitOpenMillis() {
+            return circuitOpenMillis;
+        }
+
+        private double number(String name, double defaultValue, double min, double max) {
+            for (String value : candidates(name)) {
+                try {
+                    double parsed = Double.parseDouble(value.trim());
+                    if (parsed >= min && parsed <= max) {
+                        return parsed;
+                    }
+                } catch (NumberFormatException e) {
+                    // Reported below like a value out of range
+                }
+                System.err.println("Ignoring " + name + "=" + value + ": expected a number from " + min + " to " + max);
+            }
+            return defaultValue;
+        }
+
+        private boolean flag(String name, boolean defaultValue) {
+            for (String value : candidates(name)) {
+                if ("true".equalsIgnoreCase(value.trim()) || "false".equalsIgnoreCase(value.trim())) {
+                    return Boolean.parseBoolean(value.trim());
+                }
+                System.err.println("Ignoring " + name + "=" + value + ": expected true or false");
+            }
+            return defaultValue;
+        }
+
+        private Detail detail(String name, Detail defaultValue) {
+            for (String value : candidates(name)) {
+                Detail detail = Detail.parse(value.trim());
+                if (detail != null) {
+                    return detail;
+                }
+                System.err.println("Ignoring " + name + "=" + value + ": expected verdict, summary or full");
+            }
+            return defaultValue;
+        }
+
+        // The document's value first, then the environment's
+        private String[] candidates(String name) {
+            String fromDocument = document.get(name);
+            String fromEnvironment = System.getenv(name);
+            if (fromDocument == null) {
+                return fromEnvironment != null ? new String[] {fromEnvironment} : new String[0];
+            }
+            return fromEnvironment != null ? new String[] {fromDocument, fromEnvironment} : new String[] {fromDocument};
+        }
+    }
+}
@@ -1,238 +1,1067 @@
 package hackathonproj;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Base64;
-import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 
-import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.core.SdkBytes;
-import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
-import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
-import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
-import software.amazon.awssdk.services.rekognition.RekognitionClient;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
 import software.amazon.awssdk.services.rekognition.model.Attribute;
+import software.amazon.awssdk.services.rekognition.model.BoundingBox;
+import software.amazon.awssdk.services.rekognition.model.CompareFacesMatch;
 import software.amazon.awssdk.services.rekognition.model.CompareFacesRequest;
 import software.amazon.awssdk.services.rekognition.model.CompareFacesResponse;
 import software.amazon.awssdk.services.rekognition.model.DetectFacesRequest;
 import software.amazon.awssdk.services.rekognition.model.FaceDetail;
 import software.amazon.awssdk.services.rekognition.model.Image;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.rekognition.model.InvalidParameterException;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-import software.amazon.awssdk.services.textract.TextractClient;
-import software.amazon.awssdk.services.textract.model.Block;
-import software.amazon.awssdk.services.textract.model.DetectDocumentTextRequest;
-import software.amazon.awssdk.services.textract.model.Document;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+
+import hackathonproj.ParticipationResponse.Detail;
+import hackathonproj.ParticipationResponse.FaceDetailDTO;
 
 public class ParticipationHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
 
-    private static final String DYNAMODB_TABLE = "ParticipationRecordsCdkproj";
-    private static final String S3_BUCKET_NAME = "proj-hackathon-bucket-cdk";
-    private static final String NAMES_IMAGE_PREFIX = "proj/proj-images/names/";
-    private static final String FACE_IMAGES_PREFIX = "proj/proj-images/faces/";
+    private static final String DYNAMODB_TABLE = ParticipationConfig.TABLE;
+    private static final String S3_BUCKET_NAME = ParticipationConfig.BUCKET;
+    // When set, records are handed to the participation queue and written in batches by ParticipationWriterHandler
+    private static final String PARTICIPATION_QUEUE_URL = ParticipationConfig.PARTICIPATION_QUEUE_URL;
+    // A class photo is stored in uploads/ under this name. Its records are queued for ParticipationWriterHandler
+    // like single check-ins, SendMessageBatch taking up to 10 at a time; those that cannot be queued are written
+    // directly by the conditional writer.
+    private static final String CLASS_PHOTO_NAME = "class photo";
+    private static final int CLASS_PHOTO_WRITE_ATTEMPTS = 4;
+    private static final int QUEUE_BATCH_SIZE = 10;
+    // A running check-in holds its key a little longer than the function timeout
+    private static final long IDEMPOTENCY_CLAIM_SECONDS = 35;
+    private static final int IDEMPOTENCY_LOCAL_ENTRIES = 2000;
 
-    private final RekognitionClient rekognition = RekognitionClient.builder()
-            .region(Region.US_EAST_2)
-            .credentialsProvider(DefaultCredentialsProvider.create())
-            .build();
+    // write_status values: queued for the batch writer, written directly, or lost
+    static final String WRITE_ACCEPTED = "accepted";
+    static final String WRITE_COMPLETED = "written";
+    static final String WRITE_FAILED = "failed";
+    // Indeterminate verdicts are not recorded, so they never overwrite a verdict or stand in for an absence
+    static final String WRITE_SKIPPED = "skipped";
 
-    private final TextractClient textract = TextractClient.builder()
-            .region(Region.US_EAST_2)
-            .credentialsProvider(DefaultCredentialsProvider.create())
-            .build();
+    // Reference face each email last matched, tried first on the next check-in. Once full, the students who
+    // checked in least recently are forgotten first.
+    private static final int LAST_MATCHED_FACE_LIMIT = 10000;
+    private static final Map<String, String> LAST_MATCHED_FACE = Collections.synchronizedMap(
+            new LinkedHashMap<String, String>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > LAST_MATCHED_FACE_LIMIT;
+                }
+            });
 
-    private final S3Client s3 = S3Client.builder()
-            .region(Region.US_EAST_2)
-            .credentialsProvider(DefaultCredentialsProvider.create())
-            .build();
+    private static final CompareFacesResponse NO_MATCH = CompareFacesResponse.builder().faceMatches(Collections.emptyList()).build();
+    // Returned when Rekognition could not answer a comparison; compared by identity
+    private static final CompareFacesResponse UNANSWERED = CompareFacesResponse.builder().faceMatches(Collections.emptyList()).build();
 
-    private final DynamoDbClient dynamoDB = DynamoDbClient.builder()
-            .region(Region.US_EAST_2)
-            .credentialsProvider(DefaultCredentialsProvider.create())
-            .build();
+    private final AwsClients clients;
 
     private final ObjectMapper mapper = new ObjectMapper();
 
-    // DTO for serializing FaceDetail
-    private static class FaceDetailDTO {
+    private final RosterIndexer rosterIndexer;
 
-        private Float confidence;
-        private String gender;
-        private Boolean smile;
+    private final ReferenceListing referenceListing;
 
-        public FaceDetailDTO(FaceDetail faceDetail) {
-            this.confidence = faceDetail.confidence();
-            this.gender = faceDetail.gender() != null ? faceDetail.gender().toString() : null;
-            this.smile = faceDetail.smile() != null ? faceDetail.smile().value() : null;
-        }
+    private final FaceAnalyzer faceAnalyzer;
+
+    private final FaceCollection faceCollection;
+
+    private final CheckInResults checkInResults;
+
+    private final CheckInJobs jobs;
+
+    private final DirectUploads directUploads;
+
+    private final ConditionalParticipationWriter classPhotoWriter;
+
+    // Thresholds, limits and timeouts, from the environment and the parameter document
+    private final ParticipationConfig config;
+
+    // Settings of the running invocation, refreshed when one starts
+    private volatile ParticipationConfig.Settings settings;
 
-        public Float getConfidence() {
-            return confidence;
+    // The pool and the reference image cache belong to the handler instance, i.e. to the container, so handlers
+    // run side by side in one process (the load test) behave like separate containers. Their sizes follow the
+    // settings, as does the preprocessor.
+
+    // Reference images change rarely, so their bytes are kept for the lifetime of the container
+    private final ReferenceImageCache referenceCache;
+
+    // Shared by all invocations of this container; its size is the limit on concurrent remote calls
+    private final FanOut fanOut;
+
+    private volatile ImagePreprocessor preprocessor;
+
+    static {
+        // Warms up the request path during init, or right before the snapshot when SnapStart is enabled
+        Priming.register();
+    }
+
+    public ParticipationHandler() {
+        this(AwsClients.shared());
+    }
+
+    public ParticipationHandler(AwsClients clients) {
+        this(clients, "collection".equalsIgnoreCase(ParticipationConfig.FACE_MATCH_MODE)
+                ? new RekognitionFaceCollection(clients, ParticipationConfig.FACE_COLLECTION_ID, S3_BUCKET_NAME)
+                : null);
+    }
+
+    public ParticipationHandler(AwsClients clients, FaceCollection faceCollection) {
+        this(clients, faceCollection, CheckInJobs.fromEnvironment(clients));
+    }
+
+    public ParticipationHandler(AwsClients clients, FaceCollection faceCollection, CheckInJobs jobs) {
+        this(clients, faceCollection, jobs, ParticipationConfig.fromEnvironment(clients));
+    }
+
+    public ParticipationHandler(AwsClients clients, FaceCollection faceCollection, CheckInJobs jobs, ParticipationConfig config) {
+        this.clients = clients;
+        this.config = config;
+        this.settings = config.current();
+        clients.rekognitionGuard().configure(settings);
+        clients.textractGuard().configure(settings);
+        this.referenceCache = new ReferenceImageCache(settings.referenceCacheMaxBytes());
+        this.fanOut = new FanOut(settings.fanOutConcurrency());
+        this.preprocessor = new ImagePreprocessor(settings.imageMaxEdge(), settings.imageJpegQuality());
+        this.rosterIndexer = new RosterIndexer(clients, mapper, S3_BUCKET_NAME);
+        this.referenceListing = new ReferenceListing(clients, mapper, S3_BUCKET_NAME, ReferenceLayout.MANIFESTS_PREFIX);
+        this.faceAnalyzer = new FaceAnalyzer(clients, mapper, S3_BUCKET_NAME);
+        this.faceCollection = faceCollection;
+        this.checkInResults = new CheckInResults(clients, ParticipationConfig.IDEMPOTENCY_TABLE,
+                ParticipationConfig.IDEMPOTENCY_TTL_SECONDS, IDEMPOTENCY_CLAIM_SECONDS, IDEMPOTENCY_LOCAL_ENTRIES);
+        this.jobs = jobs;
+        this.directUploads = new DirectUploads(clients, S3_BUCKET_NAME, ParticipationConfig.UPLOAD_URL_TTL_SECONDS,
+                ParticipationConfig.MAX_UPLOAD_BYTES);
+        this.classPhotoWriter = new ConditionalParticipationWriter(clients, DYNAMODB_TABLE, fanOut, CLASS_PHOTO_WRITE_ATTEMPTS, 50, 1000);
+    }
+
+    // Takes up the current settings at the start of an invocation, resizing the pool and the cache, handing them to
+    // the service guards and rebuilding the preprocessor when a refreshed parameter document changed them
+    void refreshSettings() {
+        ParticipationConfig.Settings latest = config.current();
+        if (latest == settings) {
+            return;
+        }
+        synchronized (this) {
+            ParticipationConfig.Settings previous = settings;
+            if (latest == previous) {
+                return;
+            }
+            fanOut.resize(latest.fanOutConcurrency());
+            clients.rekognitionGuard().configure(latest);
+            clients.textractGuard().configure(latest);
+            referenceCache.resize(latest.referenceCacheMaxBytes());
+            if (latest.imageMaxEdge() != previous.imageMaxEdge() || latest.imageJpegQuality() != previous.imageJpegQuality()) {
+                preprocessor = new ImagePreprocessor(latest.imageMaxEdge(), latest.imageJpegQuality());
+            }
+            settings = latest;
         }
+    }
+
+    // Outcome of the face stage of a request
+    private static class FaceEvaluation {
+
+        private boolean faceMatch;
+        // Rekognition could not answer for some of the faces, so no match does not mean absent
+        private boolean indeterminate;
+        private String matchedKey;
+        private String error;
+        private List<FaceDetailDTO> uploadedFaces = new ArrayList<>();
+        private final List<List<FaceDetailDTO>> referenceFaces = new ArrayList<>();
+        private final List<Float> scores = new ArrayList<>();
+    }
 
-        public void setConfidence(Float confidence) {
-            this.confidence = confidence;
+    // A reference image fetched for comparison, with its persisted face analysis
+    private static class ReferenceFace {
+
+        private static final ReferenceFace UNREADABLE = new ReferenceFace(null, null);
+
+        private final byte[] image;
+        private final FaceAnalysis analysis;
+
+        ReferenceFace(byte[] image, FaceAnalysis analysis) {
+            this.image = image;
+            this.analysis = analysis;
         }
 
-        public String getGender() {
-            return gender;
+        // A reference that could not be read or analysed is reported without faces
+        List<FaceAnalysis.Face> faces() {
+            return image != null && analysis != null ? analysis.getFaces() : Collections.emptyList();
         }
+    }
 
-        public void setGender(String gender) {
-            this.gender = gender;
+    // Faces of a class photo matched to students, keyed by normalized student name
+    private static class ClassPhotoMatch {
+
+        private int facesDetected;
+        private final Map<String, PhotoFaceMatch> byStudent = new HashMap<>();
+        private boolean indeterminate;
+        private String error;
+    }
+
+    // A reference face found at one of the faces detected in a class photo
+    private static class PhotoFaceMatch {
+
+        private final int face;
+        private final String key;
+        private final float similarity;
+
+        PhotoFaceMatch(int face, String key, float similarity) {
+            this.face = face;
+            this.key = key;
+            this.similarity = similarity;
         }
+    }
+
+    private static class CandidateMatch {
+
+        // Fallback of the staged comparison when it is cut short
+        static final CandidateMatch UNANSWERED = new CandidateMatch(null, null);
 
-        public Boolean getSmile() {
-            return smile;
+        private final String key;
+        private final Float similarity;
+
+        CandidateMatch(String key, Float similarity) {
+            this.key = key;
+            this.similarity = similarity;
         }
 
-        public void setSmile(Boolean smile) {
-            this.smile = smile;
+        boolean matched() {
+            return similarity != null;
         }
     }
 
     @Override
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent event, Context context) {
-        try {
-            if ("OPTIONS".equalsIgnoreCase(event.getHttpMethod())) {
-                return createResponse(200, "{\"message\": \"CORS preflight successful\"}");
-            }
+        if ("OPTIONS".equalsIgnoreCase(event.getHttpMethod())) {
+            return createResponse(200, "{\"message\": \"CORS preflight successful\"}");
+        }
+        if ("GET".equalsIgnoreCase(event.getHttpMethod())) {
+            return jobStatus(event);
+        }
 
+        // Stage times and call counts of this invocation, logged as one EMF line
+        RequestMetrics metrics = RequestMetrics.begin(context.getLogger());
+        refreshSettings();
+        APIGatewayProxyResponseEvent response = isRoute(event, "/uploads") ? issueUpload(event, context, metrics)
+                : isRoute(event, "/class-photo") ? classPhoto(event, context, metrics)
+                : respond(event, context, metrics);
+        metrics.finish();
+        context.getLogger().log(metrics.toEmf(context.getFunctionName(), context.getAwsRequestId()));
+        if (settings.timingHeader()) {
+            Map<String, String> headers = new HashMap<>(response.getHeaders());
+            headers.put("Server-Timing", metrics.toServerTiming());
+            headers.put("Access-Control-Expose-Headers", "Server-Timing");
+            response.setHeaders(headers);
+        }
+        return response;
+    }
+
+    private APIGatewayProxyResponseEvent respond(APIGatewayProxyRequestEvent event, Context context, RequestMetrics metrics) {
+        try {
             if (event.getBody() == null) {
                 return errorResponse("Request body is empty", null, null, null);
             }
 
-            JsonNode jsonNode = mapper.readTree(event.getBody());
+            // Streaming parse: the image is decoded straight from the body, no JSON tree or string copies
+            long parseStart = System.nanoTime();
+            CheckInRequest checkIn = CheckInRequest.parse(mapper.getFactory(), event.getBody());
+            metrics.stop(RequestMetrics.Stage.PARSE, parseStart);
 
-            String name = jsonNode.has("name") ? jsonNode.get("name").asText().trim().toLowerCase() : null;
-            String email = jsonNode.has("email") ? jsonNode.get("email").asText() : null;
-            String classDate = jsonNode.has("class_date") ? jsonNode.get("class_date").asText() : null;
-            String base64Image = jsonNode.has("uploaded_image_data") ? jsonNode.get("uploaded_image_data").asText() : null;
-            String uploadedKey = jsonNode.has("uploaded_image_key") ? jsonNode.get("uploaded_image_key").asText() : null;
+            String name = checkIn.getName();
+            String email = checkIn.getEmail();
+            String classDate = checkIn.getClassDate();
 
             if (name == null || email == null || classDate == null) {
                 return errorResponse("Missing required fields: name, email, or class_date", name, email, classDate);
             }
+            if (checkIn.getSectionId() != null && !ReferenceLayout.isValidSection(checkIn.getSectionId())) {
+                return errorResponse("Invalid section_id: use letters, digits, '-' and '_'", name, email, classDate);
+            }
 
-            if (base64Image != null && !base64Image.isEmpty()) {
-                try {
-                    uploadedKey = uploadBase64Image(base64Image, name, email, classDate);
-                    if (uploadedKey == null) {
-                        return errorResponse("Failed to upload image to S3", name, email, classDate);
-                    }
-                } catch (Exception e) {
-                    context.getLogger().log("Error uploading image to S3: " + e.getMessage());
-                    return errorResponse("Failed to upload image to S3: " + e.getMessage(), name, email, classDate);
-                }
+            Detail detail = requestedDetail(event, checkIn);
+            if (detail == null) {
+                return errorResponse("Invalid detail: use verdict, summary or full", name, email, classDate);
             }
 
-            if (uploadedKey == null) {
-                return errorResponse("No uploaded image provided", name, email, classDate);
+            // ?async=true stores the photo, queues the check-in and answers 202 with a job id to poll;
+            // without a job table and queue the check-in runs synchronously
+            boolean async = event.getQueryStringParameters() != null
+                    && "true".equalsIgnoreCase(event.getQueryStringParameters().get("async"));
+            if (async && jobs.isEnabled()) {
+                return submitJob(checkIn, detail, context, metrics);
+            }
+            return process(checkIn, detail, context, metrics);
+
+        } catch (Exception e) {
+            context.getLogger().log("Unexpected error: " + e.getMessage());
+            ParticipationResponse err = new ParticipationResponse();
+            err.setError("Unexpected error: " + e.getMessage());
+            return createResponse(500, serialize(err));
+        }
+    }
+
+    // DEFAULT_DETAIL (the verdict only) unless more is asked for; full diagnostics exist to be looked at, so they
+    // default to everything. Null for an unknown ?detail= value
+    private Detail requestedDetail(APIGatewayProxyRequestEvent event, CheckInRequest checkIn) {
+        String requested = event.getQueryStringParameters() != null ? event.getQueryStringParameters().get("detail") : null;
+        return requested != null ? Detail.parse(requested)
+                : checkIn.isFullDiagnostics() ? Detail.FULL : settings.defaultDetail();
+    }
+
+    private static boolean isRoute(APIGatewayProxyRequestEvent event, String suffix) {
+        String resource = event.getResource() != null ? event.getResource() : event.getPath();
+        return resource != null && resource.endsWith(suffix);
+    }
+
+    // POST /process-image/uploads: a presigned URL the browser PUTs the photo to, instead of sending it through
+    // API Gateway. With the jobs table the check-in is reserved as a job that starts once the photo arrives;
+    // without it the client sends the returned uploaded_image_key to /process-image itself
+    private APIGatewayProxyResponseEvent issueUpload(APIGatewayProxyRequestEvent event, Context context, RequestMetrics metrics) {
+        try {
+            if (event.getBody() == null) {
+                return errorResponse("Request body is empty", null, null, null);
+            }
+            long parseStart = System.nanoTime();
+            CheckInRequest checkIn = CheckInRequest.parse(mapper.getFactory(), event.getBody());
+            metrics.stop(RequestMetrics.Stage.PARSE, parseStart);
+            String name = checkIn.getName();
+            String email = checkIn.getEmail();
+            String classDate = checkIn.getClassDate();
+
+            if (name == null || email == null || classDate == null) {
+                return errorResponse("Missing required fields: name, email, or class_date", name, email, classDate);
+            }
+            if (checkIn.getSectionId() != null && !ReferenceLayout.isValidSection(checkIn.getSectionId())) {
+                return errorResponse("Invalid section_id: use letters, digits, '-' and '_'", name, email, classDate);
+            }
+            Detail detail = requestedDetail(event, checkIn);
+            if (detail == null) {
+                return errorResponse("Invalid detail: use verdict, summary or full", name, email, classDate);
+            }
+            String contentType = checkIn.getContentType() != null ? checkIn.getContentType() : "image/jpeg";
+            if (!DirectUploads.isSupportedType(contentType)) {
+                return errorResponse("Unsupported content_type: use image/jpeg or image/png", name, email, classDate);
+            }
+            if (checkIn.getContentLength() <= 0 || checkIn.getContentLength() > directUploads.maxBytes()) {
+                return errorResponse("Invalid content_length: at most " + directUploads.maxBytes() + " bytes", name, email, classDate);
             }
 
-            byte[] uploadedImage = getS3Object(uploadedKey);
-            List<String> namesKeys = listS3Keys(NAMES_IMAGE_PREFIX);
-            List<String> faceKeys = listS3Keys(FACE_IMAGES_PREFIX);
+            String key = ReferenceLayout.directUploadKey(checkIn.getSectionId(), classDate, name);
+            String jobId = null;
+            if (jobs.isEnabled()) {
+                CheckInJob job = new CheckInJob(UUID.randomUUID().toString(), CheckInRequest.stored(name, email, classDate,
+                        checkIn.getSectionId(), key, null, checkIn.isFullDiagnostics()), detail.name());
+                long persistStart = System.nanoTime();
+                boolean reserved = jobs.reserve(job);
+                metrics.stop(RequestMetrics.Stage.PERSIST, persistStart);
+                if (!reserved) {
+                    return errorResponse("Failed to reserve check-in", name, email, classDate);
+                }
+                jobId = job.getJobId();
+            }
+            context.getLogger().log("Issued upload URL for " + key + (jobId != null ? " (job " + jobId + ")" : ""));
+            return createResponse(200, serialize(directUploads.presign(key, contentType, checkIn.getContentLength(), jobId)));
+        } catch (Exception e) {
+            context.getLogger().log("Unexpected error: " + e.getMessage());
+            ParticipationResponse err = new ParticipationResponse();
+            err.setError("Unexpected error: " + e.getMessage());
+            return createResponse(500, serialize(err));
+        }
+    }
 
-            if (uploadedImage == null || namesKeys.isEmpty() || faceKeys.isEmpty()) {
-                return errorResponse("Failed to retrieve required images from S3", name, email, classDate);
+    // POST /process-image/class-photo: one photo of the class, with the class list, instead of a selfie per student.
+    // The references, roster and faces are loaded and detected once for everyone, and the students found present
+    // are recorded together through the participation queue. Students who are not recognised are reported but not
+    // recorded, so their own check-in still counts
+    private APIGatewayProxyResponseEvent classPhoto(APIGatewayProxyRequestEvent event, Context context, RequestMetrics metrics) {
+        try {
+            if (event.getBody() == null) {
+                return errorResponse("Request body is empty", null, null, null);
             }
+            long parseStart = System.nanoTime();
+            CheckInRequest request = CheckInRequest.parse(mapper.getFactory(), event.getBody());
+            metrics.stop(RequestMetrics.Stage.PARSE, parseStart);
+            String classDate = request.getClassDate();
+            String section = request.getSectionId();
 
-            List<List<String>> extractedNames = new ArrayList<>();
-            ExecutorService executor = Executors.newFixedThreadPool(10);
+            if (classDate == null || request.getStudents() == null || request.getStudents().isEmpty()) {
+                return errorResponse("Missing required fields: class_date or students", null, null, classDate);
+            }
+            if (section != null && !ReferenceLayout.isValidSection(section)) {
+                return errorResponse("Invalid section_id: use letters, digits, '-' and '_'", null, null, classDate);
+            }
+            Map<String, CheckInRequest.Student> students = new LinkedHashMap<>();
+            for (CheckInRequest.Student student : request.getStudents()) {
+                students.putIfAbsent(RosterIndex.normalize(student.getName()), student);
+            }
 
-            try {
-                for (String key : namesKeys) {
-                    byte[] image = getS3Object(key);
-                    if (image != null) {
-                        extractedNames.add(extractTextFromImage(image));
-                    }
+            Deadline deadline = Deadline.fromContext(context, settings.deadlineMarginMillis(), settings.callTimeoutMillis());
+            ImageWorkspace workspace = new ImageWorkspace(clients.s3(), S3_BUCKET_NAME, referenceCache);
+            CheckInRequest photo = CheckInRequest.stored(CLASS_PHOTO_NAME, null, classDate, section, request.getUploadedKey(),
+                    null, false);
+            if (request.getImage() != null) {
+                photo.setStoredImage(request.getImage(), null, null);
+            }
+            APIGatewayProxyResponseEvent uploadError = storeImage(photo, workspace, context, metrics);
+            if (uploadError != null) {
+                return uploadError;
+            }
+            String uploadedKey = photo.getUploadedKey();
+            if (uploadedKey == null) {
+                return errorResponse("No uploaded image provided", null, null, classDate);
+            }
+            byte[] image = workspace.get(uploadedKey, deadline);
+            if (image != null && image != photo.getImage()) {
+                try {
+                    image = preprocessor.normalize(image);
+                } catch (IOException e) {
+                    return errorResponse("Unsupported image: " + e.getMessage(), null, null, classDate);
                 }
-            } finally {
-                executor.shutdown();
             }
 
-            List<FaceDetail> uploadedFaces = detectFaces(uploadedImage);
-            List<FaceDetailDTO> uploadedFacesDTO = uploadedFaces.stream()
-                    .map(FaceDetailDTO::new)
+            long listStart = System.nanoTime();
+            List<S3Object> faceKeys = referenceListing.references(ReferenceLayout.facesPrefix(section), deadline)
                     .collect(Collectors.toList());
+            metrics.stop(RequestMetrics.Stage.LIST, listStart);
+            if (image == null || faceKeys.isEmpty()) {
+                return errorResponse("Failed to retrieve required images from S3", null, null, classDate);
+            }
+            long ocrStart = System.nanoTime();
+            RosterIndex roster = rosterIndexer.load(referenceListing.references(ReferenceLayout.namesPrefix(section), deadline),
+                    fanOut, deadline);
+            metrics.stop(RequestMetrics.Stage.OCR, ocrStart);
+            if (roster == null) {
+                return errorResponse("Failed to retrieve required images from S3", null, null, classDate);
+            }
 
-            List<List<FaceDetailDTO>> referenceFaces = new ArrayList<>();
-            for (String key : faceKeys) {
-                byte[] refImg = getS3Object(key);
-                if (refImg != null) {
-                    List<FaceDetail> faces = detectFaces(refImg);
-                    referenceFaces.add(faces.stream().map(FaceDetailDTO::new).collect(Collectors.toList()));
-                } else {
-                    referenceFaces.add(Collections.emptyList());
+            ClassPhotoMatch faces = matchClassPhoto(image, faceKeys, students.keySet(), workspace, deadline);
+            if (faces.error != null) {
+                return errorResponse(faces.error, null, null, classDate);
+            }
+            if (faces.indeterminate) {
+                metrics.count(RequestMetrics.Counter.INDETERMINATE);
+                context.getLogger().log("Class photo for " + classDate + " partly unanswered: face recognition unavailable");
+            }
+
+            ClassPhotoResponse response = new ClassPhotoResponse(classDate, section, uploadedKey);
+            response.setFacesDetected(faces.facesDetected);
+            response.setFacesUnmatched(faces.facesDetected - faces.byStudent.size());
+            List<ParticipationRecord> records = new ArrayList<>();
+            Map<String, ClassPhotoResponse.StudentResult> recorded = new HashMap<>();
+            for (Map.Entry<String, CheckInRequest.Student> entry : students.entrySet()) {
+                CheckInRequest.Student student = entry.getValue();
+                PhotoFaceMatch match = faces.byStudent.get(entry.getKey());
+                NameMatcher.Match nameScore = roster.match(student.getName(), settings.nameMatchThreshold());
+                boolean nameMatch = nameScore.isMatch();
+                boolean faceMatch = match != null;
+                boolean participation = nameMatch || faceMatch;
+                boolean indeterminate = !participation && (faces.indeterminate || !roster.isComplete());
+
+                ClassPhotoResponse.StudentResult result = new ClassPhotoResponse.StudentResult(student.getName(), student.getEmail(),
+                        indeterminate ? ParticipationResponse.INDETERMINATE
+                                : participation ? ParticipationResponse.PRESENT : ParticipationResponse.ABSENT,
+                        nameMatch, faceMatch, nameScore.getScore(), match != null ? match.similarity : null);
+                result.setWriteStatus(WRITE_SKIPPED);
+                response.add(result);
+                if (participation) {
+                    ParticipationRecord record = new ParticipationRecord(student.getName(), student.getEmail(), classDate, true,
+                            nameMatch, faceMatch, uploadedKey, match != null ? match.key : null);
+                    record.setSectionId(section);
+                    records.add(record);
+                    recorded.put(record.recordKey(), result);
+                }
+                if (match != null) {
+                    rememberMatchedFace(student.getEmail(), match.key);
                 }
             }
 
-            if (uploadedFaces.isEmpty() || referenceFaces.stream().allMatch(List::isEmpty)) {
-                return errorResponse("No faces detected", name, email, classDate);
+            long persistStart = System.nanoTime();
+            List<ParticipationRecord> unqueued = queueRecords(records, context);
+            List<ParticipationRecord> failed = unqueued.isEmpty() ? Collections.emptyList()
+                    : classPhotoWriter.write(unqueued, deadline);
+            metrics.stop(RequestMetrics.Stage.PERSIST, persistStart);
+            recorded.values().forEach(result -> result.setWriteStatus(WRITE_ACCEPTED));
+            unqueued.forEach(record -> recorded.get(record.recordKey()).setWriteStatus(WRITE_COMPLETED));
+            failed.forEach(record -> recorded.get(record.recordKey()).setWriteStatus(WRITE_FAILED));
+            response.setWriteStatus(!failed.isEmpty() ? WRITE_FAILED
+                    : unqueued.size() < records.size() ? WRITE_ACCEPTED : WRITE_COMPLETED);
+            if (!failed.isEmpty()) {
+                response.setError("Failed to write " + failed.size() + " of " + records.size() + " records to DynamoDB");
+            }
+            context.getLogger().log("Class photo for " + classDate + ": " + faces.facesDetected + " faces, "
+                    + response.getPresent() + " of " + students.size() + " students present");
+            return createResponse(200, serialize(response));
+        } catch (Exception e) {
+            context.getLogger().log("Unexpected error: " + e.getMessage());
+            ParticipationResponse err = new ParticipationResponse();
+            err.setError("Unexpected error: " + e.getMessage());
+            return createResponse(500, serialize(err));
+        }
+    }
+
+    // Runs a validated check-in, synchronously or from the job queue
+    APIGatewayProxyResponseEvent process(CheckInRequest checkIn, Detail detail, Context context, RequestMetrics metrics)
+            throws Exception {
+        String email = checkIn.getEmail();
+        String classDate = checkIn.getClassDate();
+        Deadline deadline = Deadline.fromContext(context, settings.deadlineMarginMillis(), settings.callTimeoutMillis());
+
+        // A photo sent by key alone is identified by its current ETag, since the key is reused for every photo
+        // sent on a class date; when the ETag cannot be read the check-in runs without idempotency
+        String uploadedETag = checkIn.getUploadedETag();
+        if (checkIn.getImage() == null && checkIn.getUploadedKey() != null && uploadedETag == null) {
+            uploadedETag = storedETag(checkIn.getUploadedKey(), deadline);
+            if (uploadedETag == null) {
+                context.getLogger().log("Could not read the ETag of " + checkIn.getUploadedKey() + ", skipping idempotency");
+            }
+        }
+        boolean identified = checkIn.getImage() != null || uploadedETag != null;
+
+        // A retried or double-submitted check-in gets the verdict of the first one back
+        String idempotencyKey = identified ? CheckInResults.key(email, classDate, checkIn.getSectionId(), checkIn.getName(),
+                checkIn.isFullDiagnostics(), detail.name(), checkIn.getImage(), checkIn.getUploadedKey(), uploadedETag) : null;
+        String previous = null;
+        if (idempotencyKey != null) {
+            previous = checkInResults.lookup(idempotencyKey);
+            if (previous == null && !checkInResults.claim(idempotencyKey)) {
+                previous = checkInResults.await(idempotencyKey, deadline);
             }
+        }
+        if (previous != null) {
+            metrics.count(RequestMetrics.Counter.REPLAYS);
+            context.getLogger().log("Returning stored check-in result for " + email + " on " + classDate);
+            return createResponse(200, previous);
+        }
 
-            List<Boolean> matches = new ArrayList<>();
-            List<Float> scores = new ArrayList<>();
-            for (String faceKey : faceKeys) {
-                byte[] faceImage = getS3Object(faceKey);
-                if (faceImage != null) {
-                    CompareFacesResponse compare = compareFaces(uploadedImage, faceImage);
-                    if (!compare.faceMatches().isEmpty()) {
-                        matches.add(true);
-                        scores.add(compare.faceMatches().get(0).similarity());
-                    }
-                }
+        APIGatewayProxyResponseEvent response = null;
+        try {
+            response = checkIn(checkIn, detail, idempotencyKey, deadline, context, metrics);
+            return response;
+        } finally {
+            if (idempotencyKey != null && (response == null || response.getStatusCode() != 200)) {
+                checkInResults.release(idempotencyKey);
             }
+        }
+    }
+
+    // Only the upload happens within the API request; ParticipationJobHandler runs the rest
+    private APIGatewayProxyResponseEvent submitJob(CheckInRequest checkIn, Detail detail, Context context, RequestMetrics metrics) {
+        String name = checkIn.getName();
+        String email = checkIn.getEmail();
+        String classDate = checkIn.getClassDate();
+
+        APIGatewayProxyResponseEvent uploadError = storeImage(checkIn, new ImageWorkspace(clients.s3(), S3_BUCKET_NAME, referenceCache),
+                context, metrics);
+        if (uploadError != null) {
+            return uploadError;
+        }
+        if (checkIn.getUploadedKey() == null) {
+            return errorResponse("No uploaded image provided", name, email, classDate);
+        }
+
+        CheckInJob job = new CheckInJob(UUID.randomUUID().toString(), checkIn, detail.name());
+        long persistStart = System.nanoTime();
+        boolean submitted = jobs.submit(job);
+        metrics.stop(RequestMetrics.Stage.PERSIST, persistStart);
+        if (!submitted) {
+            return errorResponse("Failed to queue check-in", name, email, classDate);
+        }
+        context.getLogger().log("Queued check-in job " + job.getJobId() + " for " + email + " on " + classDate);
+        return createResponse(202, serialize(new CheckInJobs.Status(job.getJobId(), CheckInJobs.QUEUED, 0, null)));
+    }
+
+    // GET /process-image/jobs/{jobId}: the job's status, with the check-in response once it has finished
+    private APIGatewayProxyResponseEvent jobStatus(APIGatewayProxyRequestEvent event) {
+        String jobId = event.getPathParameters() != null ? event.getPathParameters().get("jobId") : null;
+        CheckInJobs.Status status = jobId != null && jobs.isEnabled() ? jobs.status(jobId) : null;
+        if (status == null) {
+            return createResponse(404, "{\"error\": \"Unknown check-in job\"}");
+        }
+        APIGatewayProxyResponseEvent response = createResponse(200, serialize(status));
+        if (!status.isFinished()) {
+            // Polling hint while the job is queued or running
+            Map<String, String> headers = new HashMap<>(response.getHeaders());
+            headers.put("Retry-After", "2");
+            response.setHeaders(headers);
+        }
+        return response;
+    }
+
+    private APIGatewayProxyResponseEvent checkIn(CheckInRequest checkIn, Detail detail, String idempotencyKey, Deadline deadline, Context context,
+            RequestMetrics metrics) throws Exception {
+        String name = checkIn.getName();
+        String email = checkIn.getEmail();
+        String classDate = checkIn.getClassDate();
+        String section = checkIn.getSectionId();
+        boolean fullDiagnostics = checkIn.isFullDiagnostics();
+
+        ImageWorkspace workspace = new ImageWorkspace(clients.s3(), S3_BUCKET_NAME, referenceCache);
+
+        APIGatewayProxyResponseEvent uploadError = storeImage(checkIn, workspace, context, metrics);
+        if (uploadError != null) {
+            return uploadError;
+        }
+        byte[] imageBytes = checkIn.getImage();
+        String uploadedKey = checkIn.getUploadedKey();
+
+        if (uploadedKey == null) {
+            return errorResponse("No uploaded image provided", name, email, classDate);
+        }
+
+        // Already in the workspace (and normalized) when the image was uploaded with this request
+        byte[] uploadedImage = workspace.get(uploadedKey, deadline);
+        if (uploadedImage != null && uploadedImage != imageBytes) {
+            try {
+                uploadedImage = preprocessor.normalize(uploadedImage);
+            } catch (IOException e) {
+                return errorResponse("Unsupported image: " + e.getMessage(), name, email, classDate);
+            }
+        }
+        // Only the section's references when the check-in names one, otherwise the whole school's
+        long listStart = System.nanoTime();
+        List<S3Object> faceKeys = referenceListing.references(ReferenceLayout.facesPrefix(section), deadline)
+                .collect(Collectors.toList());
+        metrics.stop(RequestMetrics.Stage.LIST, listStart);
+        if (uploadedImage == null || faceKeys.isEmpty()) {
+            return errorResponse("Failed to retrieve required images from S3", name, email, classDate);
+        }
+
+        // OCR results come from the persisted roster index; Textract only runs for sheets not indexed yet.
+        // Sheets start loading while later pages of names images are still being listed.
+        // Listing the names prefix is interleaved with loading the sheets, so it counts as OCR time
+        long ocrStart = System.nanoTime();
+        RosterIndex roster = rosterIndexer.load(referenceListing.references(ReferenceLayout.namesPrefix(section), deadline),
+                fanOut, deadline);
+        metrics.stop(RequestMetrics.Stage.OCR, ocrStart);
+        if (roster == null) {
+            return errorResponse("Failed to retrieve required images from S3", name, email, classDate);
+        }
+        NameMatcher.Match nameScore = roster.match(name, settings.nameMatchThreshold());
+        boolean nameMatch = nameScore.isMatch();
 
-            boolean faceMatch = !matches.isEmpty();
-            boolean nameMatch = extractedNames.stream()
-                    .flatMap(Collection::stream)
-                    .anyMatch(text -> text != null && text.toLowerCase().contains(name.toLowerCase()));
+        FaceEvaluation faces = fullDiagnostics
+                ? evaluateAllFaces(uploadedImage, faceKeys, workspace, deadline)
+                : evaluateFacesStaged(uploadedImage, faceKeys, name, email, section, nameMatch, workspace, deadline);
+        if (faces.error != null) {
+            return errorResponse(faces.error, name, email, classDate);
+        }
 
-            boolean participation = faceMatch || nameMatch;
+        boolean faceMatch = faces.faceMatch;
+        if (faces.matchedKey != null) {
+            rememberMatchedFace(email, faces.matchedKey);
+        }
 
-            boolean dynamoSuccess = writeToDynamoDB(name, email, classDate, participation, nameMatch, faceMatch, uploadedKey);
+        boolean participation = faceMatch || nameMatch;
+        // Without a match, faces or sign-in sheets that could not be checked leave the verdict open rather than absent
+        boolean indeterminate = !participation && (faces.indeterminate || !roster.isComplete());
+        if (indeterminate) {
+            metrics.count(RequestMetrics.Counter.INDETERMINATE);
+            context.getLogger().log("Indeterminate verdict for " + email + " on " + classDate
+                    + (faces.indeterminate ? ": face recognition unavailable" : ": sign-in sheets unreadable"));
+        }
 
-            ObjectNode response = mapper.createObjectNode();
-            response.put("participation", participation);
-            response.put("name", name);
-            response.put("email", email);
-            response.put("class_date", classDate);
-            response.put("name_match", nameMatch);
-            response.put("face_match", faceMatch);
-            response.set("extracted_names", mapper.valueToTree(extractedNames));
-            response.set("uploaded_faces", mapper.valueToTree(uploadedFacesDTO));
-            response.set("reference_faces", mapper.valueToTree(referenceFaces));
-            response.set("similarity_scores", mapper.valueToTree(scores));
-            response.put("error", dynamoSuccess ? null : "Failed to write to DynamoDB");
+        ParticipationRecord record = new ParticipationRecord(name, email, classDate, participation,
+                nameMatch, faceMatch, uploadedKey, faces.matchedKey);
+        record.setSectionId(section);
+        long persistStart = System.nanoTime();
+        String writeStatus = indeterminate ? WRITE_SKIPPED : recordParticipation(record, context);
+        metrics.stop(RequestMetrics.Stage.PERSIST, persistStart);
+
+        ParticipationResponse response = new ParticipationResponse(participation, name, email, classDate, nameMatch, faceMatch);
+        response.setSectionId(section);
+        response.setVerdict(indeterminate ? ParticipationResponse.INDETERMINATE
+                : participation ? ParticipationResponse.PRESENT : ParticipationResponse.ABSENT);
+        response.setWriteStatus(writeStatus);
+        if (indeterminate) {
+            response.setError("Recognition is temporarily unavailable, please try again");
+        } else if (WRITE_FAILED.equals(writeStatus)) {
+            response.setError("Failed to write to DynamoDB");
+        }
+        if (detail.includes(Detail.SUMMARY)) {
+            response.setFullDiagnostics(fullDiagnostics);
+            response.setNameScore(nameScore.getScore());
+            response.setSimilarityScores(faces.scores);
+            response.setMetrics(new ParticipationResponse.Metrics(workspace.objectsFetched(), workspace.bytesFetched()));
+        }
+        if (detail.includes(Detail.FULL)) {
+            response.setExtractedNames(roster.lines(), settings.diagnosticsMaxLines());
+            response.setUploadedFaces(faces.uploadedFaces);
+            response.setReferenceFaces(faces.referenceFaces, settings.diagnosticsMaxReferences());
+        }
 
-            return createResponse(200, mapper.writeValueAsString(response));
+        String body = mapper.writeValueAsString(response);
+        persistStart = System.nanoTime();
+        if (idempotencyKey != null && (WRITE_FAILED.equals(writeStatus) || indeterminate)) {
+            // Not stored, so a retry gets another chance to record the verdict
+            checkInResults.release(idempotencyKey);
+        } else if (idempotencyKey != null) {
+            checkInResults.complete(idempotencyKey, email, classDate, body);
+        }
+        metrics.stop(RequestMetrics.Stage.PERSIST, persistStart);
+        return createResponse(200, body);
+    }
 
+    // Normalizes and stores a photo sent with the request, leaving it in the workspace; the error response
+    // when that fails, otherwise null
+    private APIGatewayProxyResponseEvent storeImage(CheckInRequest checkIn, ImageWorkspace workspace, Context context,
+            RequestMetrics metrics) {
+        byte[] imageBytes = checkIn.getImage();
+        if (imageBytes == null || imageBytes.length == 0) {
+            return null;
+        }
+        String name = checkIn.getName();
+        String email = checkIn.getEmail();
+        String classDate = checkIn.getClassDate();
+        long uploadStart = System.nanoTime();
+        try {
+            // Stored and recognised in its upright, downsized form
+            imageBytes = preprocessor.normalize(imageBytes);
+        } catch (IOException e) {
+            return errorResponse("Unsupported image: " + e.getMessage(), name, email, classDate);
+        }
+        try {
+            String uploadedKey = ReferenceLayout.uploadKey(checkIn.getSectionId(), classDate, name);
+            String eTag = uploadImage(imageBytes, uploadedKey, workspace);
+            checkIn.setStoredImage(imageBytes, uploadedKey, eTag);
+            return null;
         } catch (Exception e) {
-            context.getLogger().log("Unexpected error: " + e.getMessage());
-            ObjectNode err = mapper.createObjectNode();
-            err.put("participation", false);
-            err.put("error", "Unexpected error: " + e.getMessage());
-            return createResponse(500, err.toString());
+            context.getLogger().log("Error uploading image to S3: " + e.getMessage());
+            return errorResponse("Failed to upload image to S3: " + e.getMessage(), name, email, classDate);
+        } finally {
+            metrics.stop(RequestMetrics.Stage.UPLOAD, uploadStart);
+        }
+    }
+
+    // Exhaustive evaluation: analyses and compares every reference face, as needed for full diagnostics.
+    // Reference analyses come from FaceAnalyzer, so DetectFaces only runs for the uploaded image and for
+    // reference images not yet analysed at their current ETag.
+    private FaceEvaluation evaluateAllFaces(byte[] uploadedImage, List<S3Object> faceKeys, ImageWorkspace workspace, Deadline deadline) {
+        FaceEvaluation result = new FaceEvaluation();
+
+        // One task per reference fetches it for comparison and looks up its analysis
+        List<ReferenceFace> references = fanOut.map(faceKeys,
+                key -> new ReferenceFace(workspace.getReference(key, deadline), faceAnalyzer.analysis(key, deadline)),
+                ReferenceFace.UNREADABLE, deadline);
+
+        List<FaceDetail> uploadedFaces = detectFaces(uploadedImage, deadline);
+        if (uploadedFaces == null) {
+            result.indeterminate = true;
+            return result;
+        }
+        result.uploadedFaces = uploadedFaces.stream()
+                .map(FaceDetailDTO::new)
+                .collect(Collectors.toList());
+
+        List<byte[]> referenceImages = new ArrayList<>(references.size());
+        for (ReferenceFace reference : references) {
+            referenceImages.add(reference.image);
+            result.referenceFaces.add(reference.faces().stream().map(FaceDetailDTO::new).collect(Collectors.toList()));
+        }
+
+        if (uploadedFaces.isEmpty() || result.referenceFaces.stream().allMatch(List::isEmpty)) {
+            result.error = "No faces detected";
+            return result;
+        }
+
+        byte[] source = comparisonSource(uploadedImage, uploadedFaces);
+        List<CompareFacesResponse> comparisons = fanOut.map(referenceImages,
+                faceImage -> faceImage != null ? compareFaces(source, faceImage, deadline) : NO_MATCH,
+                UNANSWERED, deadline);
+
+        for (int i = 0; i < comparisons.size(); i++) {
+            CompareFacesResponse compare = comparisons.get(i);
+            if (compare == UNANSWERED) {
+                result.indeterminate = true;
+            }
+            if (!compare.faceMatches().isEmpty()) {
+                result.faceMatch = true;
+                result.scores.add(compare.faceMatches().get(0).similarity());
+                if (result.matchedKey == null) {
+                    result.matchedKey = faceKeys.get(i).key();
+                }
+            }
+        }
+        result.indeterminate &= !result.faceMatch;
+        return result;
+    }
+
+    // Staged evaluation: a name match settles the verdict without any Rekognition call; otherwise the
+    // most likely reference faces are compared first and the remaining comparisons are cancelled as
+    // soon as one of them reaches the similarity threshold.
+    private FaceEvaluation evaluateFacesStaged(byte[] uploadedImage, List<S3Object> faceKeys, String name, String email, String section,
+            boolean nameMatch, ImageWorkspace workspace, Deadline deadline) {
+        FaceEvaluation result = new FaceEvaluation();
+        if (nameMatch) {
+            return result;
+        }
+        if (faceCollection != null) {
+            return searchFaceCollection(uploadedImage, faceKeys, section, deadline);
+        }
+
+        List<FaceDetail> uploadedFaces = detectFaces(uploadedImage, deadline);
+        if (uploadedFaces == null) {
+            result.indeterminate = true;
+            return result;
+        }
+        result.uploadedFaces = uploadedFaces.stream()
+                .map(FaceDetailDTO::new)
+                .collect(Collectors.toList());
+        if (uploadedFaces.isEmpty()) {
+            result.error = "No faces detected";
+            return result;
+        }
+
+        byte[] source = comparisonSource(uploadedImage, uploadedFaces);
+
+        // Faces this email matched before come first, then faces whose owner (manifest entry or file name) carries the student's name
+        String previous = LAST_MATCHED_FACE.get(email);
+        String normalizedName = RosterIndex.normalize(name);
+        List<S3Object> ordered = new ArrayList<>(faceKeys);
+        ordered.sort(Comparator.comparingInt(key -> likelihoodRank(key, previous, normalizedName)));
+        int likely = (int) ordered.stream().filter(key -> likelihoodRank(key, previous, normalizedName) < 2).count();
+
+        AtomicBoolean unanswered = new AtomicBoolean();
+        CandidateMatch match = null;
+        if (likely > 0) {
+            match = fanOut.first(ordered.subList(0, likely), key -> compareCandidate(source, key, workspace, unanswered, deadline),
+                    CandidateMatch::matched, CandidateMatch.UNANSWERED, deadline);
+        }
+        if ((match == null || match == CandidateMatch.UNANSWERED) && likely < ordered.size()) {
+            CandidateMatch rest = fanOut.first(ordered.subList(likely, ordered.size()),
+                    key -> compareCandidate(source, key, workspace, unanswered, deadline), CandidateMatch::matched,
+                    CandidateMatch.UNANSWERED, deadline);
+            match = match == CandidateMatch.UNANSWERED && rest == null ? match : rest;
+        }
+        if (match == CandidateMatch.UNANSWERED) {
+            // The deadline passed or a comparison failed before any reference matched
+            unanswered.set(true);
+            match = null;
+        }
+
+        if (match != null) {
+            result.faceMatch = true;
+            result.matchedKey = match.key;
+            result.scores.add(match.similarity);
+        } else {
+            result.indeterminate = unanswered.get();
+        }
+        return result;
+    }
+
+    // With CROP_TO_FACE, CompareFaces receives only the largest detected face instead of the whole photo
+    private byte[] comparisonSource(byte[] uploadedImage, List<FaceDetail> uploadedFaces) {
+        if (!settings.cropToFace() || uploadedFaces.isEmpty()) {
+            return uploadedImage;
+        }
+        FaceDetail largest = Collections.max(uploadedFaces, Comparator.comparingDouble(
+                face -> face.boundingBox() != null ? face.boundingBox().width() * face.boundingBox().height() : 0));
+        try {
+            return preprocessor.cropToFace(uploadedImage, largest.boundingBox());
+        } catch (IOException e) {
+            return uploadedImage;
+        }
+    }
+
+    // Collection mode: a single SearchFacesByImage call against the indexed reference faces
+    private FaceEvaluation searchFaceCollection(byte[] uploadedImage, List<S3Object> faceKeys, String section, Deadline deadline) {
+        FaceEvaluation result = new FaceEvaluation();
+
+        // Only references that were never indexed (e.g. uploaded before the index function existed) cost a call here
+        faceCollection.register(faceKeys, fanOut, deadline);
+
+        int maxMatches = section != null ? settings.maxSectionCollectionMatches() : settings.maxCollectionMatches();
+        long searchStart = System.nanoTime();
+        List<FaceCollection.Match> matches;
+        try {
+            matches = faceCollection.search(uploadedImage, settings.similarityThreshold(), maxMatches, deadline);
+        } catch (ServiceUnavailableException e) {
+            result.indeterminate = true;
+            return result;
+        } finally {
+            RequestMetrics.current().stop(RequestMetrics.Stage.COMPARE, searchStart);
+        }
+        if (matches == null) {
+            result.error = "No faces detected";
+            return result;
+        }
+
+        Set<String> listed = faceKeys.stream().map(S3Object::key).collect(Collectors.toSet());
+        for (FaceCollection.Match match : matches) {
+            if (!listed.contains(match.getImageKey())) {
+                continue;
+            }
+            if (result.matchedKey == null) {
+                result.faceMatch = true;
+                result.matchedKey = match.getImageKey();
+            }
+            result.scores.add(match.getSimilarity());
+        }
+        return result;
+    }
+
+    // Faces are detected once. In collection mode every face is cropped and searched; otherwise every reference face
+    // is compared with the whole photo, one CompareFaces call per reference rather than one per face and reference.
+    // Matches are then handed out by similarity, so a face names at most one student and a student at most one face
+    private ClassPhotoMatch matchClassPhoto(byte[] photo, List<S3Object> faceKeys, Set<String> students, ImageWorkspace workspace,
+            Deadline deadline) {
+        ClassPhotoMatch result = new ClassPhotoMatch();
+        List<FaceDetail> faces = detectFaces(photo, deadline);
+        if (faces == null) {
+            result.indeterminate = true;
+            return result;
+        }
+        if (faces.isEmpty()) {
+            result.error = "No faces detected";
+            return result;
+        }
+        result.facesDetected = faces.size();
+
+        // References of students who are not on the class list cannot name anyone
+        List<S3Object> candidates = faceKeys.stream()
+                .filter(key -> students.contains(RosterIndex.normalize(ReferenceListing.owner(key.key()))))
+                .collect(Collectors.toList());
+        AtomicBoolean unanswered = new AtomicBoolean();
+        List<PhotoFaceMatch> matches = new ArrayList<>();
+        if (faceCollection != null) {
+            faceCollection.register(faceKeys, fanOut, deadline);
+            Set<String> listed = candidates.stream().map(S3Object::key).collect(Collectors.toSet());
+            List<byte[]> crops;
+            try {
+                crops = preprocessor.cropFaces(photo, faces.stream().map(FaceDetail::boundingBox).collect(Collectors.toList()));
+            } catch (IOException e) {
+                result.error = "Could not read the class photo";
+                return result;
+            }
+            List<Integer> indexes = new ArrayList<>();
+            for (int i = 0; i < faces.size(); i++) {
+                indexes.add(i);
+            }
+            fanOut.map(indexes, i -> searchPhotoFace(crops.get(i), i, listed, unanswered, deadline),
+                    Collections.<PhotoFaceMatch>emptyList(), deadline).forEach(matches::addAll);
+        } else {
+            List<CompareFacesResponse> comparisons = fanOut.map(candidates, key -> {
+                byte[] reference = workspace.getReference(key, deadline);
+                return reference != null ? compareFaces(reference, photo, deadline) : NO_MATCH;
+            }, UNANSWERED, deadline);
+            for (int i = 0; i < comparisons.size(); i++) {
+                if (comparisons.get(i) == UNANSWERED) {
+                    unanswered.set(true);
+                }
+                for (CompareFacesMatch match : comparisons.get(i).faceMatches()) {
+                    matches.add(new PhotoFaceMatch(nearestFace(faces, match.face().boundingBox()), candidates.get(i).key(),
+                            match.similarity()));
+                }
+            }
         }
+
+        matches.sort(Comparator.comparingDouble((PhotoFaceMatch match) -> match.similarity).reversed());
+        Set<Integer> assigned = new HashSet<>();
+        for (PhotoFaceMatch match : matches) {
+            String student = RosterIndex.normalize(ReferenceListing.owner(match.key));
+            if (!assigned.contains(match.face) && !result.byStudent.containsKey(student)) {
+                result.byStudent.put(student, match);
+                assigned.add(match.face);
+            }
+        }
+        result.indeterminate = unanswered.get();
+        return result;
+    }
+
+    // The listed references found at one face of a class photo, searched in the collection as a crop of that face
+    private List<PhotoFaceMatch> searchPhotoFace(byte[] crop, int index, Set<String> listed, AtomicBoolean unanswered,
+            Deadline deadline) {
+        long searchStart = System.nanoTime();
+        try {
+            List<FaceCollection.Match> found = faceCollection.search(crop, settings.similarityThreshold(),
+                    settings.maxSectionCollectionMatches(), deadline);
+            List<PhotoFaceMatch> matches = new ArrayList<>();
+            if (found != null) {
+                for (FaceCollection.Match match : found) {
+                    if (listed.contains(match.getImageKey())) {
+                        matches.add(new PhotoFaceMatch(index, match.getImageKey(), match.getSimilarity()));
+                    }
+                }
+            }
+            return matches;
+        } catch (ServiceUnavailableException e) {
+            unanswered.set(true);
+            return Collections.emptyList();
+        } finally {
+            RequestMetrics.current().stop(RequestMetrics.Stage.COMPARE, searchStart);
+        }
+    }
+
+    // The detected face whose centre is closest to a face CompareFaces reported
+    private static int nearestFace(List<FaceDetail> faces, BoundingBox box) {
+        int nearest = 0;
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < faces.size(); i++) {
+            BoundingBox face = faces.get(i).boundingBox();
+            if (face == null || box == null) {
+                continue;
+            }
+            double dx = (face.left() + face.width() / 2) - (box.left() + box.width() / 2);
+            double dy = (face.top() + face.height() / 2) - (box.top() + box.height() / 2);
+            if (dx * dx + dy * dy < best) {
+                best = dx * dx + dy * dy;
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+
+    private CandidateMatch compareCandidate(byte[] uploadedImage, S3Object key, ImageWorkspace workspace, AtomicBoolean unanswered,
+            Deadline deadline) {
+        byte[] faceImage = workspace.getReference(key, deadline);
+        if (faceImage == null) {
+            return new CandidateMatch(key.key(), null);
+        }
+        CompareFacesResponse compare = compareFaces(uploadedImage, faceImage, deadline);
+        if (compare == UNANSWERED) {
+            unanswered.set(true);
+        }
+        return new CandidateMatch(key.key(), compare.faceMatches().isEmpty() ? null : compare.faceMatches().get(0).similarity());
+    }
+
+    private static int likelihoodRank(S3Object key, String previousMatch, String normalizedName) {
+        if (key.key().equals(previousMatch)) {
+            return 0;
+        }
+        return RosterIndex.normalize(ReferenceListing.owner(key.key())).contains(normalizedName) ? 1 : 2;
+    }
+
+    private static void rememberMatchedFace(String email, String faceKey) {
+        LAST_MATCHED_FACE.put(email, faceKey);
     }
 
     private APIGatewayProxyResponseEvent createResponse(int statusCode, String body) {
@@ -248,138 +1077,148 @@ public class ParticipationHandler implements RequestHandler<APIGatewayProxyReque
     }
 
     private APIGatewayProxyResponseEvent errorResponse(String msg, String name, String email, String classDate) {
-        ObjectNode res = mapper.createObjectNode();
-        res.put("participation", false);
-        res.put("name", name != null ? name : "");
-        res.put("email", email != null ? email : "");
-        res.put("class_date", classDate != null ? classDate : "");
-        res.set("extracted_names", mapper.createArrayNode());
-        res.put("name_match", false);
-        res.put("face_match", false);
-        res.set("uploaded_faces", mapper.createArrayNode());
-        res.set("reference_faces", mapper.createArrayNode());
-        res.set("similarity_scores", mapper.createArrayNode());
-        res.put("error", msg);
-        return createResponse(500, res.toString());
-    }
-
-    private String uploadBase64Image(String base64, String name, String email, String classDate) {
-        try {
-            System.out.println("Starting base64 decoding...");
-
-            if (base64.contains(",")) {
-                base64 = base64.split(",")[1];
-            }
-
-            byte[] bytes = Base64.getDecoder().decode(base64);
-            System.out.println("Decoded image byte length: " + bytes.length);
-
-            String key = String.format("proj/proj-images/uploads/%s/%s.jpg", classDate, name);
-            System.out.println("Uploading to S3 with key: " + key);
-
-            PutObjectRequest request = PutObjectRequest.builder()
-                    .bucket(S3_BUCKET_NAME)
-                    .key(key)
-                    .contentType("image/jpeg")
-                    .build();
-
-            s3.putObject(request, software.amazon.awssdk.core.sync.RequestBody.fromBytes(bytes));
+        return createResponse(500, serialize(ParticipationResponse.error(msg, name, email, classDate)));
+    }
 
-            System.out.println("Successfully uploaded to S3!");
-            return key;
+    private String serialize(Object response) {
+        try {
+            return mapper.writeValueAsString(response);
         } catch (Exception e) {
-            System.err.println("S3 Upload Error: " + e.getMessage());
-            e.printStackTrace();
-            return null;
+            return "{\"participation\": false, \"error\": \"Failed to serialize response\"}";
         }
     }
 
-    private byte[] getS3Object(String key) {
+    // The stored object's ETag; S3 failures are left to the caller, which logs them and answers with an error
+    private String uploadImage(byte[] bytes, String key, ImageWorkspace workspace) {
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(S3_BUCKET_NAME)
+                .key(key)
+                .contentType("image/jpeg")
+                .build();
+
+        // fromContentProvider streams the decoded array as-is, where fromBytes would copy it
+        String eTag = clients.s3().putObject(request, software.amazon.awssdk.core.sync.RequestBody.fromContentProvider(
+                () -> new ByteArrayInputStream(bytes), bytes.length, "image/jpeg")).eTag();
+        workspace.put(key, bytes);
+        return eTag != null ? eTag : "";
+    }
+
+    // The ETag of a photo already in the bucket, or null when it cannot be read
+    private String storedETag(String key, Deadline deadline) {
         try {
-            GetObjectRequest request = GetObjectRequest.builder()
+            HeadObjectRequest request = HeadObjectRequest.builder()
                     .bucket(S3_BUCKET_NAME)
                     .key(key)
+                    .overrideConfiguration(o -> o.apiCallTimeout(deadline.callTimeout()))
                     .build();
-            return s3.getObjectAsBytes(request).asByteArray();
+            return clients.s3().headObject(request).eTag();
         } catch (Exception e) {
             return null;
         }
     }
 
-    private List<String> listS3Keys(String prefix) {
+    // Null when Rekognition could not answer
+    private List<FaceDetail> detectFaces(byte[] image, Deadline deadline) {
+        long start = System.nanoTime();
         try {
-            ListObjectsV2Request request = ListObjectsV2Request.builder()
-                    .bucket(S3_BUCKET_NAME)
-                    .prefix(prefix)
+            DetectFacesRequest request = DetectFacesRequest.builder()
+                    .image(Image.builder().bytes(SdkBytes.fromByteArrayUnsafe(image)).build())
+                    .attributes(Attribute.DEFAULT)
+                    .overrideConfiguration(o -> o.apiCallTimeout(deadline.callTimeout()))
                     .build();
-            return s3.listObjectsV2(request).contents().stream()
-                    .map(software.amazon.awssdk.services.s3.model.S3Object::key)
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
+
+            return clients.rekognitionGuard().call(() -> clients.rekognition().detectFaces(request), deadline).faceDetails();
+        } catch (InvalidParameterException e) {
+            // Not an image Rekognition can find faces in
             return Collections.emptyList();
+        } catch (Exception e) {
+            // Rejections by the open circuit and failed calls are counted in the request's metrics, and the
+            // indeterminate verdict is logged by the caller
+            return null;
+        } finally {
+            RequestMetrics.current().stop(RequestMetrics.Stage.DETECT, start);
         }
     }
 
-    private List<String> extractTextFromImage(byte[] imageBytes) {
+    private CompareFacesResponse compareFaces(byte[] source, byte[] target, Deadline deadline) {
+        long start = System.nanoTime();
         try {
-            DetectDocumentTextRequest request = DetectDocumentTextRequest.builder()
-                    .document(Document.builder().bytes(SdkBytes.fromByteArray(imageBytes)).build())
+            CompareFacesRequest request = CompareFacesRequest.builder()
+                    .sourceImage(Image.builder().bytes(SdkBytes.fromByteArrayUnsafe(source)).build())
+                    .targetImage(Image.builder().bytes(SdkBytes.fromByteArrayUnsafe(target)).build())
+                    .similarityThreshold(settings.similarityThreshold())
+                    .overrideConfiguration(o -> o.apiCallTimeout(deadline.callTimeout()))
                     .build();
 
-            return textract.detectDocumentText(request).blocks().stream()
-                    .filter(b -> b.blockTypeAsString().equals("LINE"))
-                    .map(Block::text)
-                    .filter(text -> text != null)
-                    .collect(Collectors.toList());
+            return clients.rekognitionGuard().call(() -> clients.rekognition().compareFaces(request), deadline);
+        } catch (InvalidParameterException e) {
+            // Rekognition found no face to compare in one of the images, which is an answer
+            return NO_MATCH;
         } catch (Exception e) {
-            return Collections.emptyList();
+            // Timeouts, cancelled comparisons and service errors leave the comparison unanswered;
+            // failures are counted by the SDK interceptor
+            return UNANSWERED;
+        } finally {
+            RequestMetrics.current().stop(RequestMetrics.Stage.COMPARE, start);
         }
     }
 
-    private List<FaceDetail> detectFaces(byte[] image) {
-        try {
-            DetectFacesRequest request = DetectFacesRequest.builder()
-                    .image(Image.builder().bytes(SdkBytes.fromByteArray(image)).build())
-                    .attributes(Attribute.DEFAULT)
-                    .build();
-
-            return rekognition.detectFaces(request).faceDetails();
-        } catch (Exception e) {
-            return Collections.emptyList();
+    // Queues the record for the batch writer so the response does not wait for DynamoDB; without a queue,
+    // or when queueing fails, the record is written directly.
+    private String recordParticipation(ParticipationRecord record, Context context) {
+        if (!PARTICIPATION_QUEUE_URL.isEmpty()) {
+            try {
+                SendMessageRequest request = SendMessageRequest.builder()
+                        .queueUrl(PARTICIPATION_QUEUE_URL)
+                        .messageBody(mapper.writeValueAsString(record))
+                        .build();
+                clients.sqs().sendMessage(request);
+                return WRITE_ACCEPTED;
+            } catch (Exception e) {
+                context.getLogger().log("Failed to queue participation record, writing directly: " + e.getMessage());
+            }
         }
+        return writeToDynamoDB(record) ? WRITE_COMPLETED : WRITE_FAILED;
     }
 
-    private CompareFacesResponse compareFaces(byte[] source, byte[] target) {
-        try {
-            CompareFacesRequest request = CompareFacesRequest.builder()
-                    .sourceImage(Image.builder().bytes(SdkBytes.fromByteArray(source)).build())
-                    .targetImage(Image.builder().bytes(SdkBytes.fromByteArray(target)).build())
-                    .similarityThreshold(85f)
-                    .build();
-
-            return rekognition.compareFaces(request);
-        } catch (Exception e) {
-            return CompareFacesResponse.builder().faceMatches(Collections.emptyList()).build();
+    // Queues the records of a class photo in batches; returns those that could not be queued, all of them
+    // without a queue
+    private List<ParticipationRecord> queueRecords(List<ParticipationRecord> records, Context context) {
+        if (PARTICIPATION_QUEUE_URL.isEmpty() || records.isEmpty()) {
+            return records;
         }
+        List<ParticipationRecord> unqueued = new ArrayList<>();
+        for (int from = 0; from < records.size(); from += QUEUE_BATCH_SIZE) {
+            List<ParticipationRecord> batch = records.subList(from, Math.min(records.size(), from + QUEUE_BATCH_SIZE));
+            try {
+                List<SendMessageBatchRequestEntry> entries = new ArrayList<>();
+                for (int i = 0; i < batch.size(); i++) {
+                    entries.add(SendMessageBatchRequestEntry.builder()
+                            .id(Integer.toString(i))
+                            .messageBody(mapper.writeValueAsString(batch.get(i)))
+                            .build());
+                }
+                SendMessageBatchResponse response = clients.sqs().sendMessageBatch(SendMessageBatchRequest.builder()
+                        .queueUrl(PARTICIPATION_QUEUE_URL)
+                        .entries(entries)
+                        .build());
+                for (BatchResultErrorEntry entry : response.failed()) {
+                    unqueued.add(batch.get(Integer.parseInt(entry.id())));
+                }
+            } catch (Exception e) {
+                context.getLogger().log("Failed to queue class photo records, writing directly: " + e.getMessage());
+                unqueued.addAll(batch);
+            }
+        }
+        return unqueued;
     }
 
-    private boolean writeToDynamoDB(String name, String email, String date, boolean participation, boolean nameMatch, boolean faceMatch, String imageKey) {
+    private boolean writeToDynamoDB(ParticipationRecord record) {
         try {
-            Map<String, AttributeValue> item = new HashMap<>();
-            item.put("name", AttributeValue.fromS(name));
-            item.put("email", AttributeValue.fromS(email));
-            item.put("class_date", AttributeValue.fromS(date));
-            item.put("participation", AttributeValue.fromBool(participation));
-            item.put("name_match", AttributeValue.fromBool(nameMatch));
-            item.put("face_match", AttributeValue.fromBool(faceMatch));
-            item.put("uploaded_image_key", AttributeValue.fromS(imageKey));
-
-            PutItemRequest request = PutItemRequest.builder()
-                    .tableName(DYNAMODB_TABLE)
-                    .item(item)
-                    .build();
-
-            dynamoDB.putItem(request);
+            clients.dynamoDB().putItem(record.putRequest(DYNAMODB_TABLE));
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            // A later verdict for the student and class is already stored
             return true;
         } catch (Exception e) {
             return false;
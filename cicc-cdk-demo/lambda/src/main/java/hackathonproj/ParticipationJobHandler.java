@@ -0,0 +1,98 @@
+package hackathonproj;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import hackathonproj.ParticipationResponse.Detail;
+
+// Runs check-ins queued with ?async=true, within the worker's own timeout instead of API Gateway's 29 seconds.
+// A job goes through the same path as a synchronous check-in, including the stored check-in results, and its
+// response is kept in the jobs table for the client to poll. An indeterminate verdict is queued again with a
+// delay, up to JOB_MAX_ATTEMPTS runs; a job that throws is left to SQS redelivery until its last attempt.
+public class ParticipationJobHandler implements RequestHandler<SQSEvent, SQSBatchResponse> {
+
+    private static final int MAX_ATTEMPTS = ParticipationConfig.JOB_MAX_ATTEMPTS;
+    private static final int RETRY_DELAY_SECONDS = ParticipationConfig.JOB_RETRY_DELAY_SECONDS;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final ParticipationHandler handler;
+
+    private final CheckInJobs jobs;
+
+    public ParticipationJobHandler() {
+        this(AwsClients.shared());
+    }
+
+    public ParticipationJobHandler(AwsClients clients) {
+        this(new ParticipationHandler(clients), CheckInJobs.fromEnvironment(clients));
+    }
+
+    public ParticipationJobHandler(ParticipationHandler handler, CheckInJobs jobs) {
+        this.handler = handler;
+        this.jobs = jobs;
+    }
+
+    @Override
+    public SQSBatchResponse handleRequest(SQSEvent event, Context context) {
+        List<SQSBatchResponse.BatchItemFailure> failures = new ArrayList<>();
+        for (SQSEvent.SQSMessage message : event.getRecords()) {
+            try {
+                CheckInJob job = mapper.readValue(message.getBody(), CheckInJob.class);
+                if (!run(job, context)) {
+                    failures.add(new SQSBatchResponse.BatchItemFailure(message.getMessageId()));
+                }
+            } catch (Exception e) {
+                // Unreadable messages and jobs that could not be started are retried, then dead-lettered
+                context.getLogger().log("Check-in job message " + message.getMessageId() + " failed: " + e.getMessage());
+                failures.add(new SQSBatchResponse.BatchItemFailure(message.getMessageId()));
+            }
+        }
+        return new SQSBatchResponse(failures);
+    }
+
+    // False when the message has to be delivered again
+    private boolean run(CheckInJob job, Context context) throws Exception {
+        RequestMetrics metrics = RequestMetrics.begin(context.getLogger());
+        int attempt = jobs.start(job);
+        if (attempt == 0) {
+            context.getLogger().log("Check-in job " + job.getJobId() + " already finished or running");
+            return true;
+        }
+
+        handler.refreshSettings();
+        APIGatewayProxyResponseEvent response;
+        try {
+            response = handler.process(job.toRequest(), Detail.valueOf(job.getDetail()), context, metrics);
+        } catch (Exception e) {
+            context.getLogger().log("Check-in job " + job.getJobId() + " attempt " + attempt + " failed: " + e.getMessage());
+            if (attempt < MAX_ATTEMPTS) {
+                return false;
+            }
+            return jobs.finish(job, attempt, CheckInJobs.FAILED,
+                    mapper.writeValueAsString(ParticipationResponse.error("Unexpected error: " + e.getMessage(),
+                            job.getName(), job.getEmail(), job.getClassDate())));
+        } finally {
+            metrics.finish();
+            context.getLogger().log(metrics.toEmf(context.getFunctionName(), context.getAwsRequestId()));
+        }
+
+        String body = response.getBody();
+        if (response.getStatusCode() != 200) {
+            return jobs.finish(job, attempt, CheckInJobs.FAILED, body);
+        }
+        if (attempt < MAX_ATTEMPTS
+                && ParticipationResponse.INDETERMINATE.equals(mapper.readTree(body).path("verdict").asText())) {
+            context.getLogger().log("Check-in job " + job.getJobId() + " indeterminate, retrying in " + RETRY_DELAY_SECONDS + "s");
+            return jobs.requeue(job, attempt, RETRY_DELAY_SECONDS);
+        }
+        return jobs.finish(job, attempt, CheckInJobs.COMPLETED, body);
+    }
+}
@@ -0,0 +1,170 @@
+package hackathonproj;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+// One participation verdict as stored in the participation table. It travels as JSON through the
+// participation queue, so it has a no-argument constructor and bean accessors. The check-in time orders
+// verdicts for the same student and class, however late the queue or a retry delivers them.
+public class ParticipationRecord {
+
+    private String name;
+    private String email;
+    private String classDate;
+    private boolean participation;
+    private boolean nameMatch;
+    private boolean faceMatch;
+    private String uploadedImageKey;
+    private String matchedFaceKey;
+    private String sectionId;
+    // Epoch milliseconds at which the verdict was reached
+    private long checkedInAt;
+
+    // Sort key of the attendance table: the section, '#', then the email. A student has one record per section
+    // and class date, and the records of one section of a class are the key range of sectionPrefix.
+    public static final String SORT_KEY = "section_email";
+
+    public ParticipationRecord() {
+    }
+
+    public ParticipationRecord(String name, String email, String classDate, boolean participation, boolean nameMatch,
+            boolean faceMatch, String uploadedImageKey, String matchedFaceKey) {
+        this.name = name;
+        this.email = email;
+        this.classDate = classDate;
+        this.participation = participation;
+        this.nameMatch = nameMatch;
+        this.faceMatch = faceMatch;
+        this.uploadedImageKey = uploadedImageKey;
+        this.matchedFaceKey = matchedFaceKey;
+        this.checkedInAt = System.currentTimeMillis();
+    }
+
+    public Map<String, AttributeValue> toItem() {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("name", AttributeValue.fromS(name));
+        item.put("email", AttributeValue.fromS(email));
+        item.put(SORT_KEY, AttributeValue.fromS(sortKey(sectionId, email)));
+        item.put("class_date", AttributeValue.fromS(classDate));
+        item.put("participation", AttributeValue.fromBool(participation));
+        item.put("name_match", AttributeValue.fromBool(nameMatch));
+        item.put("face_match", AttributeValue.fromBool(faceMatch));
+        item.put("uploaded_image_key", AttributeValue.fromS(uploadedImageKey));
+        if (matchedFaceKey != null) {
+            item.put("matched_face_key", AttributeValue.fromS(matchedFaceKey));
+        }
+        if (sectionId != null) {
+            item.put("section_id", AttributeValue.fromS(sectionId));
+        }
+        item.put("checked_in_at", AttributeValue.fromN(Long.toString(checkedInAt)));
+        return item;
+    }
+
+    // Stores the record unless the table already holds a later verdict for the student, class and section;
+    // records written before check-in times were stored are always replaced
+    public PutItemRequest putRequest(String tableName) {
+        return PutItemRequest.builder()
+                .tableName(tableName)
+                .item(toItem())
+                .conditionExpression("attribute_not_exists(checked_in_at) OR checked_in_at <= :checkedInAt")
+                .expressionAttributeValues(Map.of(":checkedInAt", AttributeValue.fromN(Long.toString(checkedInAt))))
+                .build();
+    }
+
+    // A student checks in once per class and section; a later verdict for the same ones replaces the earlier one
+    public String recordKey() {
+        return email + "|" + classDate + "|" + (sectionId != null ? sectionId : "");
+    }
+
+    public static String sortKey(String sectionId, String email) {
+        return sectionPrefix(sectionId) + email;
+    }
+
+    // Section names cannot contain '#' (see ReferenceLayout.isValidSection); records without one start with '#'
+    public static String sectionPrefix(String sectionId) {
+        return (sectionId != null ? sectionId : "") + "#";
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getClassDate() {
+        return classDate;
+    }
+
+    public void setClassDate(String classDate) {
+        this.classDate = classDate;
+    }
+
+    public boolean isParticipation() {
+        return participation;
+    }
+
+    public void setParticipation(boolean participation) {
+        this.participation = participation;
+    }
+
+    public boolean isNameMatch() {
+        return nameMatch;
+    }
+
+    public void setNameMatch(boolean nameMatch) {
+        this.nameMatch = nameMatch;
+    }
+
+    public boolean isFaceMatch() {
+        return faceMatch;
+    }
+
+    public void setFaceMatch(boolean faceMatch) {
+        this.faceMatch = faceMatch;
+    }
+
+    public String getUploadedImageKey() {
+        return uploadedImageKey;
+    }
+
+    public void setUploadedImageKey(String uploadedImageKey) {
+        this.uploadedImageKey = uploadedImageKey;
+    }
+
+    public String getMatchedFaceKey() {
+        return matchedFaceKey;
+    }
+
+    public void setMatchedFaceKey(String matchedFaceKey) {
+        this.matchedFaceKey = matchedFaceKey;
+    }
+
+    public String getSectionId() {
+        return sectionId;
+    }
+
+    public void setSectionId(String sectionId) {
+        this.sectionId = sectionId;
+    }
+
+    public long getCheckedInAt() {
+        return checkedInAt;
+    }
+
+    public void setCheckedInAt(long checkedInAt) {
+        this.checkedInAt = checkedInAt;
+    }
+}
@@ -0,0 +1,324 @@
+package hackathonproj;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import software.amazon.awssdk.services.rekognition.model.FaceDetail;
+
+// Body of a participation response, serialized straight to a String without an intermediate JSON tree.
+// The verdict fields are always present; diagnostics are only filled in for the requested detail level
+// and left out of the JSON otherwise.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"participation", "verdict", "name", "email", "class_date", "section_id", "name_match", "face_match",
+        "write_status", "error", "full_diagnostics", "name_score", "similarity_scores", "metrics", "extracted_names",
+        "uploaded_faces", "reference_faces", "truncated"})
+public class ParticipationResponse {
+
+    // ?detail= levels: the verdict alone, plus scores and metrics, or everything including OCR lines and face details
+    public enum Detail {
+        VERDICT, SUMMARY, FULL;
+
+        // Null for an unknown level
+        public static Detail parse(String value) {
+            for (Detail detail : values()) {
+                if (detail.name().equalsIgnoreCase(value)) {
+                    return detail;
+                }
+            }
+            return null;
+        }
+
+        public boolean includes(Detail level) {
+            return compareTo(level) >= 0;
+        }
+    }
+
+    // verdict values: a match was found, none was found, or recognition could not be completed
+    public static final String PRESENT = "present";
+    public static final String ABSENT = "absent";
+    public static final String INDETERMINATE = "indeterminate";
+
+    private boolean participation;
+    private String verdict;
+    private String name;
+    private String email;
+    private String classDate;
+    private String sectionId;
+    private boolean nameMatch;
+    private boolean faceMatch;
+    private String writeStatus;
+    private String error;
+    private Boolean fullDiagnostics;
+    private Float nameScore;
+    private List<Float> similarityScores;
+    private Metrics metrics;
+    private List<List<String>> extractedNames;
+    private List<FaceDetailDTO> uploadedFaces;
+    private List<List<FaceDetailDTO>> referenceFaces;
+    private Boolean truncated;
+
+    public ParticipationResponse() {
+    }
+
+    public ParticipationResponse(boolean participation, String name, String email, String classDate, boolean nameMatch,
+            boolean faceMatch) {
+        this.participation = participation;
+        this.name = name;
+        this.email = email;
+        this.classDate = classDate;
+        this.nameMatch = nameMatch;
+        this.faceMatch = faceMatch;
+    }
+
+    public static ParticipationResponse error(String msg, String name, String email, String classDate) {
+        ParticipationResponse response = new ParticipationResponse(false, name != null ? name : "",
+                email != null ? email : "", classDate != null ? classDate : "", false, false);
+        response.error = msg;
+        return response;
+    }
+
+    // Keeps at most maxLines OCR lines across all sheets; a cut-off roster marks the response as truncated
+    public void setExtractedNames(List<List<String>> sheets, int maxLines) {
+        List<List<String>> bounded = new ArrayList<>(sheets.size());
+        int remaining = maxLines;
+        for (List<String> sheet : sheets) {
+            if (remaining <= 0) {
+                truncated = true;
+                break;
+            }
+            if (sheet.size() > remaining) {
+                bounded.add(sheet.subList(0, remaining));
+                truncated = true;
+            } else {
+                bounded.add(sheet);
+            }
+            remaining -= sheet.size();
+        }
+        this.extractedNames = bounded;
+    }
+
+    // Keeps the faces of at most maxReferences reference images
+    public void setReferenceFaces(List<List<FaceDetailDTO>> referenceFaces, int maxReferences) {
+        if (referenceFaces.size() > maxReferences) {
+            this.referenceFaces = referenceFaces.subList(0, maxReferences);
+            truncated = true;
+        } else {
+            this.referenceFaces = referenceFaces;
+        }
+    }
+
+    public boolean isParticipation() {
+        return participation;
+    }
+
+    public void setParticipation(boolean participation) {
+        this.participation = participation;
+    }
+
+    public String getVerdict() {
+        return verdict;
+    }
+
+    public void setVerdict(String verdict) {
+        this.verdict = verdict;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    @JsonProperty("class_date")
+    public String getClassDate() {
+        return classDate;
+    }
+
+    public void setClassDate(String classDate) {
+        this.classDate = classDate;
+    }
+
+    @JsonProperty("section_id")
+    public String getSectionId() {
+        return sectionId;
+    }
+
+    public void setSectionId(String sectionId) {
+        this.sectionId = sectionId;
+    }
+
+    @JsonProperty("name_match")
+    public boolean isNameMatch() {
+        return nameMatch;
+    }
+
+    public void setNameMatch(boolean nameMatch) {
+        this.nameMatch = nameMatch;
+    }
+
+    @JsonProperty("face_match")
+    public boolean isFaceMatch() {
+        return faceMatch;
+    }
+
+    public void setFaceMatch(boolean faceMatch) {
+        this.faceMatch = faceMatch;
+    }
+
+    @JsonProperty("write_status")
+    public String getWriteStatus() {
+        return writeStatus;
+    }
+
+    public void setWriteStatus(String writeStatus) {
+        this.writeStatus = writeStatus;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    @JsonProperty("full_diagnostics")
+    public Boolean getFullDiagnostics() {
+        return fullDiagnostics;
+    }
+
+    public void setFullDiagnostics(Boolean fullDiagnostics) {
+        this.fullDiagnostics = fullDiagnostics;
+    }
+
+    // Best score of the name on the sign-in sheets: 1 for an exact match, 0 when nothing came close
+    @JsonProperty("name_score")
+    public Float getNameScore() {
+        return nameScore;
+    }
+
+    public void setNameScore(Float nameScore) {
+        this.nameScore = nameScore;
+    }
+
+    @JsonProperty("similarity_scores")
+    public List<Float> getSimilarityScores() {
+        return similarityScores;
+    }
+
+    public void setSimilarityScores(List<Float> similarityScores) {
+        this.similarityScores = similarityScores;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @JsonProperty("extracted_names")
+    public List<List<String>> getExtractedNames() {
+        return extractedNames;
+    }
+
+    @JsonProperty("uploaded_faces")
+    public List<FaceDetailDTO> getUploadedFaces() {
+        return uploadedFaces;
+    }
+
+    public void setUploadedFaces(List<FaceDetailDTO> uploadedFaces) {
+        this.uploadedFaces = uploadedFaces;
+    }
+
+    @JsonProperty("reference_faces")
+    public List<List<FaceDetailDTO>> getReferenceFaces() {
+        return referenceFaces;
+    }
+
+    public Boolean getTruncated() {
+        return truncated;
+    }
+
+    // S3 traffic of the request
+    public static class Metrics {
+
+        private final long s3ObjectsFetched;
+        private final long s3BytesFetched;
+
+        public Metrics(long s3ObjectsFetched, long s3BytesFetched) {
+            this.s3ObjectsFetched = s3ObjectsFetched;
+            this.s3BytesFetched = s3BytesFetched;
+        }
+
+        @JsonProperty("s3_objects_fetched")
+        public long getS3ObjectsFetched() {
+            return s3ObjectsFetched;
+        }
+
+        @JsonProperty("s3_bytes_fetched")
+        public long getS3BytesFetched() {
+            return s3BytesFetched;
+        }
+    }
+
+    // DTO for serializing FaceDetail
+    @JsonInclude(JsonInclude.Include.ALWAYS)
+    public static class FaceDetailDTO {
+
+        private Float confidence;
+        private String gender;
+        private Boolean smile;
+
+        public FaceDetailDTO(FaceDetail faceDetail) {
+            this.confidence = faceDetail.confidence();
+            this.gender = faceDetail.gender() != null ? faceDetail.gender().toString() : null;
+            this.smile = faceDetail.smile() != null ? faceDetail.smile().value() : null;
+        }
+
+        public FaceDetailDTO(FaceAnalysis.Face face) {
+            this.confidence = face.getConfidence();
+            this.gender = face.getGender();
+            this.smile = face.getSmile();
+        }
+
+        public Float getConfidence() {
+            return confidence;
+        }
+
+        public void setConfidence(Float confidence) {
+            this.confidence = confidence;
+        }
+
+        public String getGender() {
+            return gender;
+        }
+
+        public void setGender(String gender) {
+            this.gender = gender;
+        }
+
+        public Boolean getSmile() {
+            return smile;
+        }
+
+        public void setSmile(Boolean smile) {
+            this.smile = smile;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package hackathonproj;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+
+// One-off copy of the participation records in the unmanaged table the functions used to write
+// (ParticipationRecordsCdkproj) into the attendance table the stack now defines, with the section_email sort key
+// the old table did not have. A record is only put when the attendance table has none for that student, class and
+// section yet, so verdicts written since the deployment are kept, and a run that was interrupted can simply be
+// started again. The attendance table's stream counts the copies.
+// Run once after deploying, with credentials for both tables:
+//   java -cp lambda/target/Participation.jar hackathonproj.ParticipationTableMigration [source table] [target table]
+public class ParticipationTableMigration {
+
+    public static final String LEGACY_TABLE = "ParticipationRecordsCdkproj";
+
+    private static final int PAGE_SIZE = 500;
+
+    private final AwsClients clients;
+    private final String source;
+    private final String target;
+
+    public ParticipationTableMigration(AwsClients clients, String source, String target) {
+        this.clients = clients;
+        this.source = source;
+        this.target = target;
+    }
+
+    // Copies every record of the source table
+    public Result run() {
+        long copied = 0;
+        long present = 0;
+        Map<String, AttributeValue> startKey = null;
+        do {
+            ScanRequest.Builder request = ScanRequest.builder()
+                    .tableName(source)
+                    .limit(PAGE_SIZE);
+            if (startKey != null) {
+                request.exclusiveStartKey(startKey);
+            }
+            ScanResponse response = clients.dynamoDB().scan(request.build());
+            for (Map<String, AttributeValue> item : response.items()) {
+                if (copy(item)) {
+                    copied++;
+                } else {
+                    present++;
+                }
+            }
+            startKey = response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                    ? response.lastEvaluatedKey() : null;
+        } while (startKey != null);
+        return new Result(copied, present);
+    }
+
+    // False when the target already holds a record for the student, class and section
+    private boolean copy(Map<String, AttributeValue> item) {
+        // The old table was keyed by email and class date alone; the section goes into the new sort key
+        Map<String, AttributeValue> copy = new HashMap<>(item);
+        AttributeValue section = item.get("section_id");
+        copy.put(ParticipationRecord.SORT_KEY, AttributeValue.fromS(
+                ParticipationRecord.sortKey(section != null ? section.s() : null, item.get("email").s())));
+        try {
+            clients.dynamoDB().putItem(PutItemRequest.builder()
+                    .tableName(target)
+                    .item(copy)
+                    .conditionExpression("attribute_not_exists(email)")
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+
+    public static void main(String[] args) {
+        String source = args.length > 0 ? args[0] : LEGACY_TABLE;
+        String target = args.length > 1 ? args[1] : ParticipationConfig.TABLE;
+        Result result = new ParticipationTableMigration(AwsClients.shared(), source, target).run();
+        System.out.println("Copied " + result.copied + " records from " + source + " to " + target + ", "
+                + result.present + " already present");
+    }
+
+    public static class Result {
+
+        private final long copied;
+        private final long present;
+
+        Result(long copied, long present) {
+            this.copied = copied;
+            this.present = present;
+        }
+
+        public long getCopied() {
+            return copied;
+        }
+
+        // Records the target already held, which were left as they were
+        public long getPresent() {
+            return present;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package hackathonproj;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Drains the participation queue: the records of a whole batch of check-ins are written concurrently, and
+// only the messages whose records could not be written are reported back for redelivery.
+public class ParticipationWriterHandler implements RequestHandler<SQSEvent, SQSBatchResponse> {
+
+    private static final int MAX_ATTEMPTS = ParticipationConfig.WRITE_MAX_ATTEMPTS;
+    private static final long BASE_BACKOFF_MILLIS = 50;
+    private static final long MAX_BACKOFF_MILLIS = 2000;
+    private static final long DEADLINE_MARGIN_MILLIS = 1000;
+    // Conditional PutItems in flight per batch of up to 100 messages
+    private static final int WRITE_CONCURRENCY = 16;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final ConditionalParticipationWriter writer;
+
+    public ParticipationWriterHandler() {
+        this(AwsClients.shared());
+    }
+
+    public ParticipationWriterHandler(AwsClients clients) {
+        this.writer = new ConditionalParticipationWriter(clients, ParticipationConfig.TABLE, new FanOut(WRITE_CONCURRENCY),
+                MAX_ATTEMPTS, BASE_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS);
+    }
+
+    @Override
+    public SQSBatchResponse handleRequest(SQSEvent event, Context context) {
+        RequestMetrics metrics = RequestMetrics.begin(context.getLogger());
+        List<SQSBatchResponse.BatchItemFailure> failures = new ArrayList<>();
+        List<ParticipationRecord> records = new ArrayList<>();
+        Map<ParticipationRecord, String> messageIds = new IdentityHashMap<>();
+
+        for (SQSEvent.SQSMessage message : event.getRecords()) {
+            try {
+                ParticipationRecord record = mapper.readValue(message.getBody(), ParticipationRecord.class);
+                records.add(record);
+                messageIds.put(record, message.getMessageId());
+            } catch (Exception e) {
+                // Unreadable messages are retried and eventually land in the dead-letter queue
+                context.getLogger().log("Unreadable participation message " + message.getMessageId() + ": " + e.getMessage());
+                failures.add(new SQSBatchResponse.BatchItemFailure(message.getMessageId()));
+            }
+        }
+
+        Deadline deadline = Deadline.fromContext(context, DEADLINE_MARGIN_MILLIS, Long.MAX_VALUE);
+        List<ParticipationRecord> failed = writer.write(records, deadline);
+
+        Map<String, Boolean> reported = new HashMap<>();
+        for (ParticipationRecord record : failed) {
+            String messageId = messageIds.get(record);
+            if (messageId != null && reported.putIfAbsent(messageId, true) == null) {
+                failures.add(new SQSBatchResponse.BatchItemFailure(messageId));
+            }
+        }
+        context.getLogger().log("Wrote " + (records.size() - failed.size()) + " participation records, "
+                + failures.size() + " messages left for retry");
+        metrics.finish();
+        context.getLogger().log(metrics.toEmf(context.getFunctionName(), context.getAwsRequestId()));
+        return new SQSBatchResponse(failures);
+    }
+}
@@ -0,0 +1,88 @@
+package hackathonproj;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Base64;
+import java.util.Collections;
+
+import javax.imageio.ImageIO;
+
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+// Runs the request path once without touching AWS, so class loading and JIT warm-up of Jackson,
+// the body parser, ImageIO and the SDK clients happen before the first real request.
+// With SnapStart the work runs right before the snapshot is taken; otherwise it can run during init
+// (PRIME_ON_INIT=true), which moves the cost out of the first invocation's billed duration.
+public class Priming implements Resource {
+
+    private static final boolean PRIME_ON_INIT = ParticipationConfig.PRIME_ON_INIT;
+
+    // Core keeps only weak references to registered resources
+    private static final Priming INSTANCE = new Priming();
+
+    private static boolean registered;
+
+    public static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        registered = true;
+        Core.getGlobalContext().register(INSTANCE);
+        if (PRIME_ON_INIT) {
+            prime();
+        }
+    }
+
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) {
+        prime();
+    }
+
+    @Override
+    public void afterRestore(Context<? extends Resource> context) {
+        // Clients built before the snapshot resolve credentials lazily, so nothing needs refreshing here
+    }
+
+    static void prime() {
+        try {
+            AwsClients.shared().initializeAll();
+
+            ObjectMapper mapper = new ObjectMapper();
+            byte[] sample = sampleJpeg();
+            ObjectNode body = mapper.createObjectNode();
+            body.put("name", "Priming Student");
+            body.put("email", "priming@example.com");
+            body.put("class_date", "2000-01-01");
+            body.put("uploaded_image_data", "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(sample));
+            CheckInRequest request = CheckInRequest.parse(mapper.getFactory(), mapper.writeValueAsString(body));
+
+            new ImagePreprocessor(64, 0.85f).normalize(request.getImage());
+            // A misspelt line, so the fuzzy path and the Unicode normalizer are loaded as well
+            new NameMatcher(Collections.singletonList("1. Priming Studnet")).match(request.getName(), 0.9f);
+
+            // Loads the response bean serializers, including the diagnostics of a detailed response
+            ParticipationResponse response = new ParticipationResponse(false, request.getName(), request.getEmail(),
+                    request.getClassDate(), false, false);
+            response.setNameScore(1f);
+            response.setSimilarityScores(Collections.emptyList());
+            response.setMetrics(new ParticipationResponse.Metrics(0, 0));
+            response.setExtractedNames(Collections.emptyList(), 1);
+            response.setReferenceFaces(Collections.emptyList(), 1);
+            mapper.writeValueAsString(response);
+        } catch (Exception e) {
+            RequestMetrics.current().failure("Priming failed: " + e.getMessage());
+        }
+    }
+
+    private static byte[] sampleJpeg() throws Exception {
+        BufferedImage image = new BufferedImage(128, 96, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        return out.toByteArray();
+    }
+}
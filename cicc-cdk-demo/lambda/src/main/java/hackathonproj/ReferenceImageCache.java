@@ -0,0 +1,117 @@
+package hackathonproj;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+// Container-lifetime cache of reference image bytes keyed by S3 key.
+// An entry is only served while the ETag (and Last-Modified, when known) reported by S3 still matches,
+// and the least recently used entries are evicted once the cached bytes exceed maxBytes, which can be lowered or raised
+// while the container runs.
+public class ReferenceImageCache {
+
+    private long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+    private long hits;
+    private long misses;
+
+    public ReferenceImageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized byte[] get(String key, String eTag, Instant lastModified) {
+        Entry entry = entries.get(key);
+        if (entry == null || !entry.matches(eTag, lastModified)) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.bytes;
+    }
+
+    // Returns the ETag of the cached copy so callers can revalidate with a conditional GET.
+    public synchronized String cachedETag(String key) {
+        Entry entry = entries.get(key);
+        return entry != null ? entry.eTag : null;
+    }
+
+    // Serves the cached copy after S3 answered 304 Not Modified for it.
+    public synchronized byte[] revalidated(String key, Instant lastModified) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (lastModified != null) {
+            entry.lastModified = lastModified;
+        }
+        hits++;
+        return entry.bytes;
+    }
+
+    public synchronized void put(String key, String eTag, Instant lastModified, byte[] bytes) {
+        if (key == null || eTag == null || bytes == null || bytes.length > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(eTag, lastModified, bytes));
+        if (previous != null) {
+            totalBytes -= previous.bytes.length;
+        }
+        totalBytes += bytes.length;
+        evict();
+    }
+
+    public synchronized void resize(long maxBytes) {
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    public synchronized void invalidate(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            totalBytes -= removed.bytes.length;
+        }
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long sizeInBytes() {
+        return totalBytes;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            totalBytes -= eldest.next().getValue().bytes.length;
+            eldest.remove();
+        }
+    }
+
+    private static class Entry {
+
+        private final String eTag;
+        private Instant lastModified;
+        private final byte[] bytes;
+
+        Entry(String eTag, Instant lastModified, byte[] bytes) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.bytes = bytes;
+        }
+
+        boolean matches(String eTag, Instant lastModified) {
+            if (!this.eTag.equals(eTag)) {
+                return false;
+            }
+            return lastModified == null || this.lastModified == null || Objects.equals(this.lastModified, lastModified);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package hackathonproj;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.S3Event;
+import com.amazonaws.services.lambda.runtime.events.models.s3.S3EventNotification.S3EventNotificationRecord;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Keeps the persisted reference indexes in sync when reference images are uploaded or removed,
+// flat or per section, so the participation request path finds them already built. The manifest of every prefix touched by
+// the event is rebuilt afterwards, letting the request path read it instead of listing the prefix.
+public class ReferenceIndexHandler implements RequestHandler<S3Event, Void> {
+
+    private final AwsClients clients = AwsClients.shared();
+
+    private final FaceCollection faceCollection = new RekognitionFaceCollection(clients,
+            ParticipationConfig.FACE_COLLECTION_ID, ParticipationConfig.BUCKET);
+
+    private final RosterIndexer rosterIndexer = new RosterIndexer(clients, new ObjectMapper(), ParticipationConfig.BUCKET);
+
+    private final FaceAnalyzer faceAnalyzer = new FaceAnalyzer(clients, new ObjectMapper(), ParticipationConfig.BUCKET);
+
+    private final ReferenceListing referenceListing = new ReferenceListing(clients, new ObjectMapper(),
+            ParticipationConfig.BUCKET, ReferenceLayout.MANIFESTS_PREFIX);
+
+    @Override
+    public Void handleRequest(S3Event event, Context context) {
+        RequestMetrics metrics = RequestMetrics.begin(context.getLogger());
+        Set<String> changedPrefixes = new LinkedHashSet<>();
+        for (S3EventNotificationRecord record : event.getRecords()) {
+            String key = record.getS3().getObject().getUrlDecodedKey();
+            boolean removed = record.getEventName().startsWith("ObjectRemoved");
+
+            if (rosterIndexer.isNamesImage(key)) {
+                changedPrefixes.add(ReferenceLayout.prefixOf(key));
+                if (removed) {
+                    rosterIndexer.remove(key);
+                    context.getLogger().log("Removed roster index for " + key);
+                } else if (rosterIndexer.index(key, record.getS3().getObject().geteTag(), Deadline.none()) != null) {
+                    context.getLogger().log("Indexed roster image " + key);
+                } else {
+                    context.getLogger().log("Failed to index roster image " + key);
+                }
+            } else if (ReferenceLayout.isFaceImage(key)) {
+                changedPrefixes.add(ReferenceLayout.prefixOf(key));
+                if (removed) {
+                    faceCollection.remove(key);
+                    faceAnalyzer.remove(key);
+                    context.getLogger().log("Removed reference face " + key);
+                    continue;
+                }
+                if (faceCollection.index(key, Deadline.none())) {
+                    context.getLogger().log("Indexed reference face " + key);
+                } else {
+                    context.getLogger().log("No face indexed for " + key);
+                }
+                if (faceAnalyzer.index(key, record.getS3().getObject().geteTag(), Deadline.none()) == null) {
+                    context.getLogger().log("Failed to analyse reference face " + key);
+                }
+            }
+        }
+
+        for (String prefix : changedPrefixes) {
+            int count = referenceListing.writeManifest(prefix, Deadline.none());
+            if (count >= 0) {
+                context.getLogger().log("Wrote manifest of " + count + " images for " + prefix);
+            }
+        }
+        metrics.finish();
+        context.getLogger().log(metrics.toEmf(context.getFunctionName(), context.getAwsRequestId()));
+        return null;
+    }
+}
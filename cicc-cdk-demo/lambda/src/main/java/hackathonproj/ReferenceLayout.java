@@ -0,0 +1,125 @@
+package hackathonproj;
+
+import java.util.regex.Pattern;
+
+// Where reference images, their index sidecars and uploads live in the bucket. Check-ins without a section use the
+// flat school-wide prefixes; a section keeps its own sign-in sheets and reference faces under
+//   proj/proj-images/sections/{section}/names/
+//   proj/proj-images/sections/{section}/faces/
+// so a check-in only reads and compares against the students of that section.
+public class ReferenceLayout {
+
+    public static final String ROOT = "proj/proj-images/";
+    public static final String NAMES_PREFIX = ROOT + "names/";
+    public static final String FACES_PREFIX = ROOT + "faces/";
+    public static final String SECTIONS_PREFIX = ROOT + "sections/";
+    public static final String NAMES_INDEX_PREFIX = ROOT + "names-index/";
+    public static final String FACES_INDEX_PREFIX = ROOT + "faces-index/";
+    public static final String UPLOADS_PREFIX = ROOT + "uploads/";
+    // Photos the browser uploads with a presigned URL; only these start a check-in job when they arrive
+    public static final String DIRECT_UPLOADS_PREFIX = ROOT + "direct-uploads/";
+    // Listing manifests, one per reference prefix, mirror the prefixes they list
+    public static final String MANIFESTS_PREFIX = "manifests/";
+
+    private static final String NAMES = "names/";
+    private static final String FACES = "faces/";
+
+    // Section ids become a single path segment
+    private static final Pattern SECTION_ID = Pattern.compile("[A-Za-z0-9][A-Za-z0-9_-]{0,63}");
+
+    private ReferenceLayout() {
+    }
+
+    public static boolean isValidSection(String section) {
+        return section != null && SECTION_ID.matcher(section).matches();
+    }
+
+    public static String namesPrefix(String section) {
+        return section == null ? NAMES_PREFIX : SECTIONS_PREFIX + section + "/" + NAMES;
+    }
+
+    public static String facesPrefix(String section) {
+        return section == null ? FACES_PREFIX : SECTIONS_PREFIX + section + "/" + FACES;
+    }
+
+    // proj/proj-images/uploads/[{section}/]{class date}/{name}.jpg
+    public static String uploadKey(String section, String classDate, String name) {
+        return UPLOADS_PREFIX + (section == null ? "" : section + "/") + classDate + "/" + name + ".jpg";
+    }
+
+    // proj/proj-images/direct-uploads/[{section}/]{class date}/{name}.jpg
+    public static String directUploadKey(String section, String classDate, String name) {
+        return DIRECT_UPLOADS_PREFIX + (section == null ? "" : section + "/") + classDate + "/" + name + ".jpg";
+    }
+
+    public static boolean isNamesImage(String key) {
+        return NAMES.equals(folder(key));
+    }
+
+    public static boolean isFaceImage(String key) {
+        return FACES.equals(folder(key));
+    }
+
+    // The names or faces prefix an image is listed under, or null for any other key
+    public static String prefixOf(String key) {
+        String folder = folder(key);
+        if (folder == null) {
+            return null;
+        }
+        String section = section(key);
+        return NAMES.equals(folder) ? namesPrefix(section) : facesPrefix(section);
+    }
+
+    // The section of a names or faces image, null for the flat prefixes
+    public static String section(String key) {
+        if (!key.startsWith(SECTIONS_PREFIX)) {
+            return null;
+        }
+        int end = key.indexOf('/', SECTIONS_PREFIX.length());
+        return end > SECTIONS_PREFIX.length() ? key.substring(SECTIONS_PREFIX.length(), end) : null;
+    }
+
+    // Flat sheets keep their existing sidecars (names-index/{file}.json); section sheets are indexed under
+    // names-index/sections/{section}/names/{file}.json
+    public static String rosterIndexKey(String namesImageKey) {
+        return sidecarKey(NAMES_INDEX_PREFIX, NAMES_PREFIX, namesImageKey);
+    }
+
+    // faces-index/{file}.json, or faces-index/sections/{section}/faces/{file}.json
+    public static String faceAnalysisKey(String faceImageKey) {
+        return sidecarKey(FACES_INDEX_PREFIX, FACES_PREFIX, faceImageKey);
+    }
+
+    private static String sidecarKey(String indexPrefix, String flatPrefix, String imageKey) {
+        if (imageKey.startsWith(flatPrefix)) {
+            return indexPrefix + imageKey.substring(flatPrefix.length()) + ".json";
+        }
+        return indexPrefix + imageKey.substring(ROOT.length()) + ".json";
+    }
+
+    // "names/" or "faces/" for an image (not a folder marker) under one of the reference prefixes
+    private static String folder(String key) {
+        if (key.endsWith("/")) {
+            return null;
+        }
+        String rest;
+        if (key.startsWith(SECTIONS_PREFIX)) {
+            String section = section(key);
+            if (section == null) {
+                return null;
+            }
+            rest = key.substring(SECTIONS_PREFIX.length() + section.length() + 1);
+        } else if (key.startsWith(ROOT)) {
+            rest = key.substring(ROOT.length());
+        } else {
+            return null;
+        }
+        if (rest.startsWith(NAMES) && rest.length() > NAMES.length()) {
+            return NAMES;
+        }
+        if (rest.startsWith(FACES) && rest.length() > FACES.length()) {
+            return FACES;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,283 @@
+package hackathonproj;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+// Lists the reference images under a prefix. A manifest (key, ETag, size and owner of every image) kept under
+// the manifest prefix is read with one conditional GET; without one, the prefix is listed page by page as the
+// returned stream is consumed, following continuation tokens past the 1000 keys of a single ListObjectsV2 call.
+// Manifests are rebuilt by ReferenceIndexHandler whenever a reference image is added or removed.
+public class ReferenceListing {
+
+    // Parsed manifests by prefix, revalidated against S3 with If-None-Match on every read
+    private static final Map<String, CachedManifest> MANIFESTS = new ConcurrentHashMap<>();
+    // Owners named in a manifest; keys not in any manifest are owned by their file name
+    private static final Map<String, String> OWNERS = new ConcurrentHashMap<>();
+
+    private final AwsClients clients;
+    private final ObjectMapper mapper;
+    private final String bucket;
+    private final String manifestPrefix;
+
+    public ReferenceListing(AwsClients clients, ObjectMapper mapper, String bucket, String manifestPrefix) {
+        this.clients = clients;
+        this.mapper = mapper;
+        this.bucket = bucket;
+        this.manifestPrefix = manifestPrefix;
+    }
+
+    // The reference images under prefix, from its manifest when there is one
+    public Stream<S3Object> references(String prefix, Deadline deadline) {
+        List<S3Object> manifest = readManifest(prefix, deadline);
+        return manifest != null ? manifest.stream() : list(prefix, deadline);
+    }
+
+    // Every image under prefix, fetched one page at a time; a failed page ends the stream
+    public Stream<S3Object> list(String prefix, Deadline deadline) {
+        Iterator<S3Object> pages = new PageIterator(prefix, deadline);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .filter(object -> !object.key().endsWith("/"));
+    }
+
+    // Lists prefix and stores the result as its manifest; returns the number of images or -1 on failure
+    public int writeManifest(String prefix, Deadline deadline) {
+        Manifest manifest = new Manifest();
+        manifest.setPrefix(prefix);
+        manifest.setGeneratedAt(Instant.now().toString());
+        manifest.setObjects(list(prefix, deadline)
+                .map(object -> new Manifest.Entry(object.key(), object.eTag(), object.size(), owner(object.key())))
+                .collect(Collectors.toList()));
+        try {
+            PutObjectRequest request = PutObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(manifestKey(prefix))
+                    .contentType("application/json")
+                    .build();
+            clients.s3().putObject(request, RequestBody.fromBytes(mapper.writeValueAsBytes(manifest)));
+            return manifest.getObjects().size();
+        } catch (Exception e) {
+            RequestMetrics.current().failure("Failed to write manifest for " + prefix + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+    // The student a reference image belongs to: as named in its manifest, otherwise its file name without extension
+    public static String owner(String key) {
+        String owner = OWNERS.get(key);
+        if (owner != null) {
+            return owner;
+        }
+        String fileName = key.substring(key.lastIndexOf('/') + 1);
+        int extension = fileName.lastIndexOf('.');
+        return extension > 0 ? fileName.substring(0, extension) : fileName;
+    }
+
+    // proj/proj-images/faces/ -> manifests/proj/proj-images/faces.json
+    String manifestKey(String prefix) {
+        String path = prefix.endsWith("/") ? prefix.substring(0, prefix.length() - 1) : prefix;
+        return manifestPrefix + path + ".json";
+    }
+
+    private List<S3Object> readManifest(String prefix, Deadline deadline) {
+        CachedManifest cached = MANIFESTS.get(prefix);
+        try {
+            GetObjectRequest.Builder request = GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(manifestKey(prefix))
+                    .overrideConfiguration(o -> o.apiCallTimeout(deadline.callTimeout()));
+            if (cached != null) {
+                request.ifNoneMatch(cached.eTag);
+            }
+            ResponseBytes<GetObjectResponse> response = clients.s3().getObjectAsBytes(request.build());
+            Manifest manifest = mapper.readValue(response.asByteArrayUnsafe(), Manifest.class);
+
+            List<S3Object> objects = new ArrayList<>(manifest.getObjects().size());
+            for (Manifest.Entry entry : manifest.getObjects()) {
+                objects.add(S3Object.builder().key(entry.getKey()).eTag(entry.getEtag()).size(entry.getSize()).build());
+                if (entry.getOwner() != null) {
+                    OWNERS.put(entry.getKey(), entry.getOwner());
+                }
+            }
+            objects = Collections.unmodifiableList(objects);
+            MANIFESTS.put(prefix, new CachedManifest(response.response().eTag(), objects));
+            return objects;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 304 && cached != null) {
+                return cached.objects;
+            }
+            if (!(e instanceof NoSuchKeyException)) {
+                RequestMetrics.current().failure("Failed to read manifest for " + prefix + ": " + e.getMessage());
+            }
+            MANIFESTS.remove(prefix);
+            return null;
+        } catch (Exception e) {
+            RequestMetrics.current().failure("Failed to read manifest for " + prefix + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private class PageIterator implements Iterator<S3Object> {
+
+        private final String prefix;
+        private final Deadline deadline;
+        private Iterator<S3Object> page = Collections.emptyIterator();
+        private String continuationToken;
+        private boolean lastPage;
+
+        PageIterator(String prefix, Deadline deadline) {
+            this.prefix = prefix;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!page.hasNext() && !lastPage) {
+                fetchPage();
+            }
+            return page.hasNext();
+        }
+
+        @Override
+        public S3Object next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.next();
+        }
+
+        private void fetchPage() {
+            try {
+                ListObjectsV2Request request = ListObjectsV2Request.builder()
+                        .bucket(bucket)
+                        .prefix(prefix)
+                        .continuationToken(continuationToken)
+                        .overrideConfiguration(o -> o.apiCallTimeout(deadline.callTimeout()))
+                        .build();
+                ListObjectsV2Response response = clients.s3().listObjectsV2(request);
+                page = response.contents().iterator();
+                continuationToken = response.nextContinuationToken();
+                lastPage = !Boolean.TRUE.equals(response.isTruncated()) || continuationToken == null;
+            } catch (Exception e) {
+                RequestMetrics.current().failure("Failed to list " + prefix + ": " + e.getMessage());
+                page = Collections.emptyIterator();
+                lastPage = true;
+            }
+        }
+    }
+
+    private static class CachedManifest {
+
+        private final String eTag;
+        private final List<S3Object> objects;
+
+        CachedManifest(String eTag, List<S3Object> objects) {
+            this.eTag = eTag;
+            this.objects = objects;
+        }
+    }
+
+    public static class Manifest {
+
+        private String prefix;
+        private String generatedAt;
+        private List<Entry> objects = new ArrayList<>();
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public void setPrefix(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public String getGeneratedAt() {
+            return generatedAt;
+        }
+
+        public void setGeneratedAt(String generatedAt) {
+            this.generatedAt = generatedAt;
+        }
+
+        public List<Entry> getObjects() {
+            return objects;
+        }
+
+        public void setObjects(List<Entry> objects) {
+            this.objects = objects;
+        }
+
+        public static class Entry {
+
+            private String key;
+            private String etag;
+            private Long size;
+            private String owner;
+
+            public Entry() {
+            }
+
+            public Entry(String key, String etag, Long size, String owner) {
+                this.key = key;
+                this.etag = etag;
+                this.size = size;
+                this.owner = owner;
+            }
+
+            public String getKey() {
+                return key;
+            }
+
+            public void setKey(String key) {
+                this.key = key;
+            }
+
+            public String getEtag() {
+                return etag;
+            }
+
+            public void setEtag(String etag) {
+                this.etag = etag;
+            }
+
+            public Long getSize() {
+                return size;
+            }
+
+            public void setSize(Long size) {
+                this.size = size;
+            }
+
+            public String getOwner() {
+                return owner;
+            }
+
+            public void setOwner(String owner) {
+                this.owner = owner;
+            }
+        }
+    }
+}
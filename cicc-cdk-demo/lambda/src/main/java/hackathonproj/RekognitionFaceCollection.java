@@ -0,0 +1,171 @@
+package hackathonproj;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.rekognition.model.Face;
+import software.amazon.awssdk.services.rekognition.model.FaceMatch;
+import software.amazon.awssdk.services.rekognition.model.Image;
+import software.amazon.awssdk.services.rekognition.model.IndexFacesRequest;
+import software.amazon.awssdk.services.rekognition.model.IndexFacesResponse;
+import software.amazon.awssdk.services.rekognition.model.InvalidParameterException;
+import software.amazon.awssdk.services.rekognition.model.SearchFacesByImageRequest;
+import software.amazon.awssdk.services.rekognition.model.SearchFacesByImageResponse;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+// Face collection backed by a Rekognition collection. Each reference image contributes its largest face,
+// tagged with an ExternalImageId derived from the S3 key; the key-to-face registry is read from the
+// collection once per container and then maintained in memory.
+public class RekognitionFaceCollection implements FaceCollection {
+
+    private static final Map<String, Map<String, List<String>>> REGISTRIES = new ConcurrentHashMap<>();
+    // ExternalImageId -> S3 key, for keys whose characters had to be replaced
+    private static final Map<String, String> IMAGE_KEYS = new ConcurrentHashMap<>();
+
+    private final AwsClients clients;
+    private final String collectionId;
+    private final String bucket;
+
+    public RekognitionFaceCollection(AwsClients clients, String collectionId, String bucket) {
+        this.clients = clients;
+        this.collectionId = collectionId;
+        this.bucket = bucket;
+    }
+
+    @Override
+    public void register(List<S3Object> references, FanOut fanOut, Deadline deadline) {
+        Map<String, List<String>> registry = registry();
+        List<String> missing = new ArrayList<>();
+        for (S3Object reference : references) {
+            String externalImageId = externalImageId(reference.key());
+            IMAGE_KEYS.putIfAbsent(externalImageId, reference.key());
+            if (!registry.containsKey(externalImageId)) {
+                missing.add(reference.key());
+            }
+        }
+        if (!missing.isEmpty()) {
+            fanOut.map(missing, key -> index(key, deadline), false, deadline);
+        }
+    }
+
+    @Override
+    public boolean index(String imageKey, Deadline deadline) {
+        try {
+            // Loaded before indexing: a registry first listed afterwards would hold the new face as a previous one
+            Map<String, List<String>> registry = registry();
+            String externalImageId = externalImageId(imageKey);
+            IMAGE_KEYS.put(externalImageId, imageKey);
+            IndexFacesRequest request = IndexFacesRequest.builder()
+                    .collectionId(collectionId)
+                    .image(Image.builder().s3Object(o -> o.bucket(bucket).name(imageKey)).build())
+                    .externalImageId(externalImageId)
+                    .maxFaces(1)
+                    .overrideConfiguration(o -> o.apiCallTimeout(deadline.callTimeout()))
+                    .build();
+            IndexFacesResponse response = clients.rekognitionGuard().call(() -> clients.rekognition().indexFaces(request), deadline);
+            if (response.faceRecords().isEmpty()) {
+                return false;
+            }
+
+            List<String> faceIds = new ArrayList<>();
+            response.faceRecords().forEach(record -> faceIds.add(record.face().faceId()));
+            List<String> previous = registry.put(externalImageId, faceIds);
+            if (previous != null && !previous.isEmpty()) {
+                clients.rekognition().deleteFaces(builder -> builder.collectionId(collectionId).faceIds(previous));
+            }
+            return true;
+        } catch (Exception e) {
+            RequestMetrics.current().failure("IndexFaces failed for " + imageKey + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void remove(String imageKey) {
+        List<String> faceIds = registry().remove(externalImageId(imageKey));
+        if (faceIds == null || faceIds.isEmpty()) {
+            return;
+        }
+        try {
+            clients.rekognition().deleteFaces(builder -> builder.collectionId(collectionId).faceIds(faceIds));
+        } catch (Exception e) {
+            RequestMetrics.current().failure("DeleteFaces failed for " + imageKey + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public List<Match> search(byte[] image, float threshold, int maxMatches, Deadline deadline) {
+        try {
+            SearchFacesByImageRequest request = SearchFacesByImageRequest.builder()
+                    .collectionId(collectionId)
+                    .image(Image.builder().bytes(SdkBytes.fromByteArrayUnsafe(image)).build())
+                    .faceMatchThreshold(threshold)
+                    .maxFaces(maxMatches)
+                    .overrideConfiguration(o -> o.apiCallTimeout(deadline.callTimeout()))
+                    .build();
+
+            List<Match> matches = new ArrayList<>();
+            SearchFacesByImageResponse response = clients.rekognitionGuard().call(
+                    () -> clients.rekognition().searchFacesByImage(request), deadline);
+            for (FaceMatch match : response.faceMatches()) {
+                String key = imageKey(match.face());
+                if (key != null) {
+                    matches.add(new Match(key, match.similarity()));
+                }
+            }
+            return matches;
+        } catch (InvalidParameterException e) {
+            // Rekognition rejects images in which it cannot find a face to search with
+            return null;
+        } catch (ServiceUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            // An empty result would read as "no match"; without an answer the outcome is unknown
+            RequestMetrics.current().failure("SearchFacesByImage failed: " + e.getMessage());
+            throw new ServiceUnavailableException("SearchFacesByImage failed: " + e.getMessage(), e);
+        }
+    }
+
+    private Map<String, List<String>> registry() {
+        return REGISTRIES.computeIfAbsent(collectionId, id -> {
+            Map<String, List<String>> registry = new ConcurrentHashMap<>();
+            try {
+                for (Face face : clients.rekognition().listFacesPaginator(builder -> builder.collectionId(id)).faces()) {
+                    if (face.externalImageId() != null) {
+                        registry.computeIfAbsent(face.externalImageId(), k -> new ArrayList<>()).add(face.faceId());
+                    }
+                }
+            } catch (Exception e) {
+                RequestMetrics.current().failure("ListFaces failed for " + id + ": " + e.getMessage());
+            }
+            return registry;
+        });
+    }
+
+    private String imageKey(Face face) {
+        String externalImageId = face.externalImageId();
+        if (externalImageId == null) {
+            return null;
+        }
+        return IMAGE_KEYS.getOrDefault(externalImageId, externalImageId.replace(':', '/'));
+    }
+
+    // ExternalImageId only allows [a-zA-Z0-9_.\-:], so path separators become ':' and anything else '_'
+    static String externalImageId(String imageKey) {
+        StringBuilder id = new StringBuilder(imageKey.length());
+        for (int i = 0; i < imageKey.length(); i++) {
+            char c = imageKey.charAt(i);
+            if (c == '/') {
+                id.append(':');
+            } else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '.' || c == '-') {
+                id.append(c);
+            } else {
+                id.append('_');
+            }
+        }
+        return id.toString();
+    }
+}
@@ -0,0 +1,199 @@
+package hackathonproj;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+
+// Per-invocation stage timers and counters of the participation handler, written as one CloudWatch Embedded
+// Metric Format line at the end of the request and optionally as a Server-Timing response header.
+// The recorder of the running invocation is bound to the thread that runs it, and FanOut runs its tasks bound to
+// the recorder of the invocation that submitted them, so the SDK interceptor, the image workspace and fan-out
+// tasks all find it, also when several invocations share a process (as in the load test). Calls on threads
+// without a binding go to the invocation begun last. Recording is two array slots per invocation and no
+// allocation per call.
+// The recorder also carries the invocation's logger, so components that catch a failure and carry on without the
+// result (returning null or false) log it to the invocation that hit it and count it as a handled failure.
+public class RequestMetrics {
+
+    // Stage times are summed over every call of the stage, so stages that fan out can add up to more than the
+    // wall time of the request
+    public enum Stage {
+        PARSE("parse"), UPLOAD("upload"), LIST("list"), FETCH("fetch"), OCR("ocr"), DETECT("detect"),
+        COMPARE("compare"), PERSIST("persist");
+
+        private final String label;
+        private final String metricName;
+
+        Stage(String label) {
+            this.label = label;
+            this.metricName = Character.toUpperCase(label.charAt(0)) + label.substring(1) + "Time";
+        }
+    }
+
+    public enum Counter {
+        S3_CALLS("S3Calls", "Count"), TEXTRACT_CALLS("TextractCalls", "Count"), REKOGNITION_CALLS("RekognitionCalls", "Count"),
+        DYNAMODB_CALLS("DynamoDbCalls", "Count"), SQS_CALLS("SqsCalls", "Count"), RETRIES("Retries", "Count"),
+        ERRORS("CallErrors", "Count"), S3_BYTES("S3BytesFetched", "Bytes"), CACHE_HITS("ReferenceCacheHits", "Count"),
+        CACHE_MISSES("ReferenceCacheMisses", "Count"), REPLAYS("ReplayedResults", "Count"),
+        CIRCUIT_OPEN("CircuitOpenRejections", "Count"), INDETERMINATE("IndeterminateVerdicts", "Count"),
+        FAILURES("HandledFailures", "Count");
+
+        private final String metricName;
+        private final String unit;
+
+        Counter(String metricName, String unit) {
+            this.metricName = metricName;
+            this.unit = unit;
+        }
+    }
+
+    private static final String NAMESPACE = ParticipationConfig.METRICS_NAMESPACE;
+    private static final Stage[] STAGES = Stage.values();
+    private static final Counter[] COUNTERS = Counter.values();
+    // The "_aws" metadata only changes in its timestamp, so everything after it is built once
+    private static final String METRIC_DEFINITIONS = metricDefinitions();
+
+    // Receives the calls made outside an invocation, e.g. by the priming hook
+    private static volatile RequestMetrics latest = new RequestMetrics(null);
+    private static final ThreadLocal<RequestMetrics> BOUND = new ThreadLocal<>();
+
+    private final long startNanos = System.nanoTime();
+    private final AtomicLongArray stageNanos = new AtomicLongArray(STAGES.length);
+    private final AtomicLongArray counters = new AtomicLongArray(COUNTERS.length);
+    private volatile long durationNanos = -1;
+    // Null outside an invocation, where messages go to standard error
+    private final LambdaLogger logger;
+
+    private RequestMetrics(LambdaLogger logger) {
+        this.logger = logger;
+    }
+
+    // Starts recording a new invocation whose messages go to logger, i.e. context.getLogger()
+    public static RequestMetrics begin(LambdaLogger logger) {
+        RequestMetrics metrics = new RequestMetrics(logger);
+        latest = metrics;
+        BOUND.set(metrics);
+        return metrics;
+    }
+
+    public static RequestMetrics current() {
+        RequestMetrics bound = BOUND.get();
+        return bound != null ? bound : latest;
+    }
+
+    // Runs work on the calling thread on behalf of the invocation that metrics records, e.g. a fan-out task
+    public static <R> R within(RequestMetrics metrics, Supplier<R> work) {
+        RequestMetrics previous = BOUND.get();
+        BOUND.set(metrics);
+        try {
+            return work.get();
+        } finally {
+            if (previous != null) {
+                BOUND.set(previous);
+            } else {
+                BOUND.remove();
+            }
+        }
+    }
+
+    // Usage: long start = System.nanoTime(); ... metrics.stop(Stage.X, start)
+    public void stop(Stage stage, long startNanos) {
+        stageNanos.addAndGet(stage.ordinal(), System.nanoTime() - startNanos);
+    }
+
+    public void count(Counter counter) {
+        counters.incrementAndGet(counter.ordinal());
+    }
+
+    public void add(Counter counter, long amount) {
+        counters.addAndGet(counter.ordinal(), amount);
+    }
+
+    public void log(String message) {
+        if (logger != null) {
+            logger.log(message);
+        } else {
+            System.err.println(message);
+        }
+    }
+
+    // A failure that was caught and answered without the result, e.g. a lookup treated as a miss
+    public void failure(String message) {
+        count(Counter.FAILURES);
+        log(message);
+    }
+
+    public long get(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    public double millis(Stage stage) {
+        return stageNanos.get(stage.ordinal()) / 1_000_000.0;
+    }
+
+    // Fixes the handler duration; later calls (e.g. late fan-out tasks) are still counted but no longer reported
+    public void finish() {
+        durationNanos = System.nanoTime() - startNanos;
+    }
+
+    public double durationMillis() {
+        return (durationNanos >= 0 ? durationNanos : System.nanoTime() - startNanos) / 1_000_000.0;
+    }
+
+    // One EMF log line; CloudWatch extracts every stage time and counter as a metric of the function
+    public String toEmf(String functionName, String requestId) {
+        StringBuilder line = new StringBuilder(1024 + METRIC_DEFINITIONS.length());
+        line.append("{\"_aws\":{\"Timestamp\":").append(System.currentTimeMillis()).append(METRIC_DEFINITIONS);
+        line.append(",\"FunctionName\":\"").append(functionName).append('"');
+        line.append(",\"RequestId\":\"").append(requestId).append('"');
+        line.append(",\"HandlerTime\":");
+        appendMillis(line, durationMillis());
+        for (Stage stage : STAGES) {
+            line.append(",\"").append(stage.metricName).append("\":");
+            appendMillis(line, millis(stage));
+        }
+        for (Counter counter : COUNTERS) {
+            line.append(",\"").append(counter.metricName).append("\":").append(get(counter));
+        }
+        return line.append('}').toString();
+    }
+
+    // Server-Timing header value: stages that took time, then the counters that are not zero
+    public String toServerTiming() {
+        StringBuilder header = new StringBuilder(256);
+        header.append("total;dur=");
+        appendMillis(header, durationMillis());
+        for (Stage stage : STAGES) {
+            if (stageNanos.get(stage.ordinal()) > 0) {
+                header.append(", ").append(stage.label).append(";dur=");
+                appendMillis(header, millis(stage));
+            }
+        }
+        for (Counter counter : COUNTERS) {
+            long value = get(counter);
+            if (value > 0) {
+                header.append(", ").append(counter.metricName).append(";desc=").append(value);
+            }
+        }
+        return header.toString();
+    }
+
+    // Microsecond precision without going through a Formatter
+    private static void appendMillis(StringBuilder out, double millis) {
+        out.append(Math.round(millis * 1000) / 1000.0);
+    }
+
+    private static String metricDefinitions() {
+        StringBuilder definitions = new StringBuilder(",\"CloudWatchMetrics\":[{\"Namespace\":\"")
+                .append(NAMESPACE)
+                .append("\",\"Dimensions\":[[\"FunctionName\"]],\"Metrics\":[{\"Name\":\"HandlerTime\",\"Unit\":\"Milliseconds\"}");
+        for (Stage stage : STAGES) {
+            definitions.append(",{\"Name\":\"").append(stage.metricName).append("\",\"Unit\":\"Milliseconds\"}");
+        }
+        for (Counter counter : COUNTERS) {
+            definitions.append(",{\"Name\":\"").append(counter.metricName).append("\",\"Unit\":\"").append(counter.unit).append("\"}");
+        }
+        return definitions.append("]}]}").toString();
+    }
+}
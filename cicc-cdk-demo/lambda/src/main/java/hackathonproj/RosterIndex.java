@@ -0,0 +1,136 @@
+package hackathonproj;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+// Lookup structure over the OCR lines of the names (sign-in sheet) images. Each sheet carries a NameMatcher
+// built once from its lines and kept with the sheet across warm invocations, so a lookup costs a set probe
+// per sheet, plus a bounded fuzzy comparison when the name is not spelled out exactly.
+public class RosterIndex {
+
+    private final List<Sheet> sheets;
+    private final int unreadSheets;
+
+    public RosterIndex(List<Sheet> sheets) {
+        this(sheets, 0);
+    }
+
+    public RosterIndex(List<Sheet> sheets, int unreadSheets) {
+        this.sheets = sheets;
+        this.unreadSheets = unreadSheets;
+    }
+
+    // The best match of the name over all sheets: an exact phrase on any sheet first, only then the fuzzy search
+    public NameMatcher.Match match(String name, float threshold) {
+        NameMatcher.Query query = new NameMatcher.Query(name);
+        for (Sheet sheet : sheets) {
+            if (sheet.matcher().contains(query)) {
+                return new NameMatcher.Match(1f, threshold);
+            }
+        }
+        NameMatcher.Match best = new NameMatcher.Match(0f, threshold);
+        for (Sheet sheet : sheets) {
+            NameMatcher.Match match = sheet.matcher().closest(query, threshold);
+            if (match.getScore() > best.getScore()) {
+                best = match;
+            }
+        }
+        return best;
+    }
+
+    // Raw OCR lines per sheet, kept for the diagnostic part of the response
+    public List<List<String>> lines() {
+        List<List<String>> lines = new ArrayList<>(sheets.size());
+        for (Sheet sheet : sheets) {
+            lines.add(sheet.getLines());
+        }
+        return lines;
+    }
+
+    // False when some listed sheets could not be read, so a name missing from the index may still be on one of them
+    public boolean isComplete() {
+        return unreadSheets == 0;
+    }
+
+    // Lowercases and collapses everything that is not a letter or digit into single spaces
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && out.length() > 0) {
+                    out.append(' ');
+                }
+                pendingSpace = false;
+                out.append(Character.toLowerCase(c));
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return out.toString();
+    }
+
+    // Persisted OCR result of one names image, stored as a JSON sidecar next to the images.
+    // Sidecars written before the matcher also carry the lines' normalized "names", which are no longer used.
+    @JsonIgnoreProperties({"names"})
+    public static class Sheet {
+
+        private String sourceKey;
+        private String eTag;
+        private List<String> lines = Collections.emptyList();
+        private volatile NameMatcher matcher;
+
+        public Sheet() {
+        }
+
+        public Sheet(String sourceKey, String eTag, List<String> lines) {
+            this.sourceKey = sourceKey;
+            this.eTag = eTag;
+            this.lines = lines;
+        }
+
+        public String getSourceKey() {
+            return sourceKey;
+        }
+
+        public void setSourceKey(String sourceKey) {
+            this.sourceKey = sourceKey;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public void setETag(String eTag) {
+            this.eTag = eTag;
+        }
+
+        public List<String> getLines() {
+            return lines;
+        }
+
+        public void setLines(List<String> lines) {
+            this.lines = lines;
+            this.matcher = null;
+        }
+
+        // Built on first use; a race only builds it twice
+        @JsonIgnore
+        public NameMatcher matcher() {
+            NameMatcher built = matcher;
+            if (built == null) {
+                built = new NameMatcher(lines);
+                matcher = built;
+            }
+            return built;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package hackathonproj;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.textract.model.Block;
+import software.amazon.awssdk.services.textract.model.DetectDocumentTextRequest;
+import software.amazon.awssdk.services.textract.model.Document;
+
+// Runs Textract once per names image and persists the result as a sidecar under the index prefix.
+// Sheets are held in memory across warm invocations and only re-read when the image ETag changes,
+// so the request path never calls Textract unless a names image has not been indexed yet.
+public class RosterIndexer {
+
+    private static final Map<String, RosterIndex.Sheet> SHEETS = new ConcurrentHashMap<>();
+
+    private final AwsClients clients;
+    private final ObjectMapper mapper;
+    private final String bucket;
+
+    public RosterIndexer(AwsClients clients, ObjectMapper mapper, String bucket) {
+        this.clients = clients;
+        this.mapper = mapper;
+        this.bucket = bucket;
+    }
+
+    // Sheets are loaded while the names images are still being listed; null when no names image was listed.
+    // Sheets that could not be read (e.g. Textract unavailable) leave the roster incomplete.
+    public RosterIndex load(Stream<S3Object> namesImages, FanOut fanOut, Deadline deadline) {
+        List<RosterIndex.Sheet> loaded = fanOut.map(namesImages, image -> sheet(image.key(), image.eTag(), deadline), null, deadline);
+        if (loaded.isEmpty()) {
+            return null;
+        }
+        List<RosterIndex.Sheet> sheets = new ArrayList<>(loaded.size());
+        for (RosterIndex.Sheet sheet : loaded) {
+            if (sheet != null) {
+                sheets.add(sheet);
+            }
+        }
+        return new RosterIndex(sheets, loaded.size() - sheets.size());
+    }
+
+    // Returns the indexed sheet for a names image, indexing it on first miss
+    public RosterIndex.Sheet sheet(String imageKey, String eTag, Deadline deadline) {
+        String expected = normalizeETag(eTag);
+
+        RosterIndex.Sheet cached = SHEETS.get(imageKey);
+        if (cached != null && cached.getETag().equals(expected)) {
+            return cached;
+        }
+
+        RosterIndex.Sheet stored = readSidecar(imageKey);
+        if (stored != null && expected.equals(stored.getETag())) {
+            SHEETS.put(imageKey, stored);
+            return stored;
+        }
+
+        return index(imageKey, expected, deadline);
+    }
+
+    public RosterIndex.Sheet index(String imageKey, String eTag, Deadline deadline) {
+        List<String> lines = extractText(imageKey, deadline);
+        if (lines == null) {
+            return null;
+        }
+
+        RosterIndex.Sheet sheet = new RosterIndex.Sheet(imageKey, normalizeETag(eTag), lines);
+        writeSidecar(sheet);
+        SHEETS.put(imageKey, sheet);
+        return sheet;
+    }
+
+    public void remove(String imageKey) {
+        SHEETS.remove(imageKey);
+        try {
+            clients.s3().deleteObject(builder -> builder.bucket(bucket).key(sidecarKey(imageKey)));
+        } catch (Exception e) {
+            RequestMetrics.current().failure("Failed to delete roster index for " + imageKey + ": " + e.getMessage());
+        }
+    }
+
+    public boolean isNamesImage(String key) {
+        return ReferenceLayout.isNamesImage(key);
+    }
+
+    String sidecarKey(String imageKey) {
+        return ReferenceLayout.rosterIndexKey(imageKey);
+    }
+
+    private List<String> extractText(String imageKey, Deadline deadline) {
+        try {
+            // Textract reads the image straight from S3, so indexing never downloads it into the function
+            DetectDocumentTextRequest request = DetectDocumentTextRequest.builder()
+                    .document(Document.builder()
+                            .s3Object(o -> o.bucket(bucket).name(imageKey))
+                            .build())
+                    .overrideConfiguration(o -> o.apiCallTimeout(deadline.callTimeout()))
+                    .build();
+
+            return clients.textractGuard().call(() -> clients.textract().detectDocumentText(request), deadline).blocks().stream()
+                    .filter(b -> b.blockTypeAsString().equals("LINE"))
+                    .map(Block::text)
+                    .filter(text -> text != null)
+                    .collect(Collectors.toList());
+        } catch (Exception e) {
+            RequestMetrics.current().failure("Textract failed for " + imageKey + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private RosterIndex.Sheet readSidecar(String imageKey) {
+        try {
+            GetObjectRequest request = GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(sidecarKey(imageKey))
+                    .build();
+            return mapper.readValue(clients.s3().getObjectAsBytes(request).asByteArray(), RosterIndex.Sheet.class);
+        } catch (NoSuchKeyException e) {
+            return null;
+        } catch (Exception e) {
+            RequestMetrics.current().failure("Failed to read roster index for " + imageKey + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeSidecar(RosterIndex.Sheet sheet) {
+        try {
+            PutObjectRequest request = PutObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(sidecarKey(sheet.getSourceKey()))
+                    .contentType("application/json")
+                    .build();
+            clients.s3().putObject(request, RequestBody.fromBytes(mapper.writeValueAsBytes(sheet)));
+        } catch (Exception e) {
+            RequestMetrics.current().failure("Failed to write roster index for " + sheet.getSourceKey() + ": " + e.getMessage());
+        }
+    }
+
+    // Listings quote ETags while S3 event notifications do not
+    static String normalizeETag(String eTag) {
+        if (eTag == null) {
+            return "";
+        }
+        return eTag.replace("\"", "");
+    }
+}
@@ -0,0 +1,138 @@
+package hackathonproj;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.AbortedException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+// Retries and circuit breaking around one remote service. Throttling, 5xx responses and client-side failures
+// (timeouts, connection errors) are retried with full-jitter exponential backoff as long as the request deadline
+// leaves room for the wait; any other error, e.g. an image without a face, goes straight back to the caller.
+// A call that still fails that way ends in ServiceUnavailableException, so callers can tell "the service could
+// not answer" from "no match". After CIRCUIT_FAILURE_THRESHOLD such calls in a row the circuit opens and calls fail
+// fast for CIRCUIT_OPEN_MS; then a single probe call decides whether it closes again. These limits and
+// RETRY_MAX_ATTEMPTS come from the settings last handed to configure(), read afresh by every call.
+// Client-side rate limiting is left to the SDK's adaptive retry mode, whose token bucket is shared by all
+// concurrent calls of a client.
+public class ServiceGuard {
+
+    private static final long BASE_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 1000;
+
+    private final String service;
+    private volatile ParticipationConfig.Settings settings;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean probing = new AtomicBoolean();
+    private volatile boolean open;
+    private volatile long openUntilNanos;
+
+    public ServiceGuard(String service, ParticipationConfig.Settings settings) {
+        this.service = service;
+        this.settings = settings;
+    }
+
+    // Configured from the environment until a handler hands over the parameter document's settings
+    public static ServiceGuard forService(String service) {
+        return new ServiceGuard(service, new ParticipationConfig.Settings(Map.of()));
+    }
+
+    // Takes up refreshed settings; calls already running finish with the ones they started with
+    public void configure(ParticipationConfig.Settings settings) {
+        this.settings = settings;
+    }
+
+    public <T> T call(Supplier<T> call, Deadline deadline) {
+        ParticipationConfig.Settings limits = settings;
+        boolean probe = admit();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                T result = call.get();
+                succeeded(probe);
+                return result;
+            } catch (RuntimeException e) {
+                if (!isTransient(e)) {
+                    // The service answered, so it counts as up
+                    if (!isCancellation(e)) {
+                        succeeded(probe);
+                    } else if (probe) {
+                        probing.set(false);
+                    }
+                    throw e;
+                }
+                long backoff = ThreadLocalRandom.current().nextLong(
+                        Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempt - 1, 10)) + 1);
+                if (attempt >= limits.retryMaxAttempts() || probe || deadline.remainingMillis() <= backoff) {
+                    failed(probe, limits);
+                    throw new ServiceUnavailableException(service + " call failed: " + e.getMessage(), e);
+                }
+                RequestMetrics.current().count(RequestMetrics.Counter.RETRIES);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    // Cancelled while waiting: the caller is no longer interested in the outcome
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    public boolean isOpen() {
+        return open && System.nanoTime() < openUntilNanos;
+    }
+
+    // Throws while the circuit is open; past the open period, lets exactly one probe call through
+    private boolean admit() {
+        if (!open) {
+            return false;
+        }
+        if (System.nanoTime() >= openUntilNanos && probing.compareAndSet(false, true)) {
+            return true;
+        }
+        RequestMetrics.current().count(RequestMetrics.Counter.CIRCUIT_OPEN);
+        throw new ServiceUnavailableException(service + " circuit is open", null);
+    }
+
+    private void succeeded(boolean probe) {
+        consecutiveFailures.set(0);
+        if (open) {
+            open = false;
+            RequestMetrics.current().log(service + " circuit closed");
+        }
+        if (probe) {
+            probing.set(false);
+        }
+    }
+
+    private void failed(boolean probe, ParticipationConfig.Settings limits) {
+        if (probe || consecutiveFailures.incrementAndGet() >= limits.circuitFailureThreshold()) {
+            openUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(limits.circuitOpenMillis());
+            if (!open) {
+                RequestMetrics.current().log(service + " circuit opened after " + consecutiveFailures.get() + " failed calls");
+            }
+            open = true;
+        }
+        if (probe) {
+            probing.set(false);
+        }
+    }
+
+    private static boolean isTransient(RuntimeException e) {
+        if (e instanceof AwsServiceException) {
+            AwsServiceException service = (AwsServiceException) e;
+            return service.isThrottlingException() || service.statusCode() >= 500;
+        }
+        return e instanceof SdkClientException && !isCancellation(e);
+    }
+
+    private static boolean isCancellation(RuntimeException e) {
+        return e instanceof AbortedException || Thread.currentThread().isInterrupted();
+    }
+}
@@ -0,0 +1,10 @@
+package hackathonproj;
+
+// A remote service could not answer: it kept throttling or failing until the retries or the deadline ran out,
+// or its circuit is open. Unlike an empty result, this leaves the outcome of the call unknown.
+public class ServiceUnavailableException extends RuntimeException {
+
+    public ServiceUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,80 @@
+package hackathonproj;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.S3Event;
+import com.amazonaws.services.lambda.runtime.events.models.s3.S3EventNotification.S3EventNotificationRecord;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+
+// Starts check-ins whose photo was uploaded straight to S3 with a presigned URL: the upload carries the id of the
+// job reserved for it as object metadata, and that job is handed to ParticipationJobHandler through the job queue.
+// Only the direct uploads prefix is notified; a photo there without a job id is left alone. When a job cannot be
+// queued the invocation fails, so Lambda retries the event; jobs queued by the first attempt are not queued twice.
+public class UploadedImageHandler implements RequestHandler<S3Event, Void> {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final AwsClients clients;
+
+    private final CheckInJobs jobs;
+
+    private final long maxUploadBytes;
+
+    public UploadedImageHandler() {
+        this(AwsClients.shared(), CheckInJobs.fromEnvironment(AwsClients.shared()), ParticipationConfig.MAX_UPLOAD_BYTES);
+    }
+
+    public UploadedImageHandler(AwsClients clients, CheckInJobs jobs, long maxUploadBytes) {
+        this.clients = clients;
+        this.jobs = jobs;
+        this.maxUploadBytes = maxUploadBytes;
+    }
+
+    @Override
+    public Void handleRequest(S3Event event, Context context) {
+        RequestMetrics metrics = RequestMetrics.begin(context.getLogger());
+        int failed = 0;
+        for (S3EventNotificationRecord record : event.getRecords()) {
+            String key = record.getS3().getObject().getUrlDecodedKey();
+            if (!record.getEventName().startsWith("ObjectCreated") || !key.startsWith(ReferenceLayout.DIRECT_UPLOADS_PREFIX)) {
+                continue;
+            }
+            try {
+                String jobId = clients.s3().headObject(HeadObjectRequest.builder()
+                        .bucket(record.getS3().getBucket().getName())
+                        .key(key)
+                        .build()).metadata().get(DirectUploads.JOB_ID_METADATA);
+                if (jobId == null) {
+                    continue;
+                }
+                CheckInJob job = jobs.awaitingUpload(jobId);
+                if (job == null || !key.equals(job.getUploadedKey())) {
+                    context.getLogger().log("No check-in job waiting for " + key + " (job " + jobId + ")");
+                    continue;
+                }
+                Long size = record.getS3().getObject().getSizeAsLong();
+                if (size != null && size > maxUploadBytes) {
+                    jobs.finish(job, 0, CheckInJobs.FAILED, mapper.writeValueAsString(ParticipationResponse.error(
+                            "Image too large: at most " + maxUploadBytes + " bytes", job.getName(), job.getEmail(), job.getClassDate())));
+                    context.getLogger().log("Rejected upload " + key + " of " + size + " bytes");
+                } else {
+                    job.setUploadedETag(record.getS3().getObject().geteTag());
+                    if (jobs.uploaded(job)) {
+                        context.getLogger().log("Queued check-in job " + jobId + " for " + key);
+                    }
+                }
+            } catch (Exception e) {
+                context.getLogger().log("Failed to start check-in for " + key + ": " + e.getMessage());
+                failed++;
+            }
+        }
+        metrics.finish();
+        context.getLogger().log(metrics.toEmf(context.getFunctionName(), context.getAwsRequestId()));
+        if (failed > 0) {
+            throw new IllegalStateException(failed + " uploaded check-ins could not be queued");
+        }
+        return null;
+    }
+}
@@ -0,0 +1,107 @@
+package hackathonproj;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SqsException;
+
+public class CheckInJobsTest {
+
+    private static final String JOB_ID = "job-1";
+
+    private StubDynamoDbClient dynamoDB;
+    private StubSqsClient sqs;
+    private CheckInJobs jobs;
+    private CheckInJob job;
+
+    @BeforeEach
+    public void setUp() {
+        dynamoDB = new StubDynamoDbClient("job_id");
+        sqs = new StubSqsClient();
+        jobs = new CheckInJobs(AwsClients.of(null, null, null, dynamoDB, sqs), "jobs", "https://sqs/jobs", 3600);
+        job = new CheckInJob();
+        job.setJobId(JOB_ID);
+        job.setName("Sofia Garcia");
+        job.setEmail("sofia@example.edu");
+        job.setClassDate("2025-03-10");
+    }
+
+    @Test
+    public void firstDeliveryStartsAttemptOne() {
+        assertTrue(jobs.submit(job));
+        assertEquals(1, jobs.start(job));
+
+        PutItemRequest start = last(dynamoDB.puts(JOB_ID));
+        assertEquals("attempts = :attempts", start.conditionExpression());
+        assertEquals("0", start.expressionAttributeValues().get(":attempts").n());
+        assertEquals(CheckInJobs.RUNNING, dynamoDB.item(JOB_ID).get("status").s());
+    }
+
+    // A message whose job item is gone, e.g. removed by its TTL, starts the job only if no other delivery did
+    @Test
+    public void unrecordedJobStartsOnlyWhileStillAbsent() {
+        assertEquals(1, jobs.start(job));
+        assertEquals("attribute_not_exists(job_id)", last(dynamoDB.puts(JOB_ID)).conditionExpression());
+    }
+
+    @Test
+    public void deliveryThatLosesTheRaceDoesNotStart() {
+        jobs.submit(job);
+        dynamoDB.failPuts(JOB_ID, ConditionalCheckFailedException.builder().message("attempts changed").build());
+        assertEquals(0, jobs.start(job));
+        assertEquals(CheckInJobs.QUEUED, dynamoDB.item(JOB_ID).get("status").s());
+    }
+
+    @Test
+    public void requeuedJobKeepsItsAttempts() {
+        jobs.submit(job);
+        assertEquals(1, jobs.start(job));
+
+        assertTrue(jobs.requeue(job, 1, 30));
+        Map<String, AttributeValue> item = dynamoDB.item(JOB_ID);
+        assertEquals(CheckInJobs.QUEUED, item.get("status").s());
+        assertEquals("1", item.get("attempts").n());
+        SendMessageRequest message = last(sqs.sent());
+        assertEquals(30, (int) message.delaySeconds());
+
+        assertEquals(2, jobs.start(job));
+        assertEquals("1", last(dynamoDB.puts(JOB_ID)).expressionAttributeValues().get(":attempts").n());
+    }
+
+    @Test
+    public void finishedJobIsNotStartedAgain() {
+        jobs.submit(job);
+        jobs.start(job);
+        assertTrue(jobs.finish(job, 1, CheckInJobs.COMPLETED, "{\"participation\": true}"));
+        int puts = dynamoDB.putCount();
+
+        assertEquals(0, jobs.start(job));
+        assertEquals(puts, dynamoDB.putCount());
+        CheckInJobs.Status status = jobs.status(JOB_ID);
+        assertTrue(status.isFinished());
+        assertEquals(1, status.getAttempts());
+    }
+
+    @Test
+    public void requeueFailsWhenTheMessageCannotBeSent() {
+        jobs.submit(job);
+        jobs.start(job);
+        sqs.failSends(SqsException.builder().message("queue unavailable").build());
+        assertFalse(jobs.requeue(job, 1, 30));
+    }
+
+    private static <T> T last(List<T> list) {
+        return list.get(list.size() - 1);
+    }
+}
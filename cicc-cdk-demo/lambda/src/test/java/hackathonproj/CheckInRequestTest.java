@@ -0,0 +1,85 @@
+package hackathonproj;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Base64;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+
+public class CheckInRequestTest {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    // Long enough that the base64 text contains '/' and '+' and wraps at 76 characters
+    private static final byte[] IMAGE = image(300);
+
+    @Test
+    public void decodesPlainImageData() throws IOException {
+        CheckInRequest request = parse("\"" + base64() + "\"");
+        assertArrayEquals(IMAGE, request.getImage());
+        assertEquals("sofia garcia", request.getName());
+        assertEquals("2025-03-10", request.getClassDate());
+    }
+
+    @Test
+    public void dropsDataUrlPrefix() throws IOException {
+        assertArrayEquals(IMAGE, parse("\"data:image/jpeg;base64," + base64() + "\"").getImage());
+    }
+
+    @Test
+    public void decodesEscapedLineBreaks() throws IOException {
+        String wrapped = Base64.getMimeEncoder().encodeToString(IMAGE);
+        assertTrue(wrapped.contains("\r\n"));
+        assertArrayEquals(IMAGE, parse("\"" + wrapped.replace("\r", "\\r").replace("\n", "\\n") + "\"").getImage());
+    }
+
+    @Test
+    public void decodesUnicodeEscapedLineBreaks() throws IOException {
+        String wrapped = Base64.getMimeEncoder().encodeToString(IMAGE).replace("\r\n", "\\u000a");
+        assertArrayEquals(IMAGE, parse("\"" + wrapped + "\"").getImage());
+    }
+
+    @Test
+    public void decodesEscapedSlashes() throws IOException {
+        String data = base64();
+        assertTrue(data.contains("/"));
+        assertArrayEquals(IMAGE, parse("\"" + data.replace("/", "\\/") + "\"").getImage());
+    }
+
+    @Test
+    public void emptyImageDataIsNoImage() throws IOException {
+        assertNull(parse("\"\"").getImage());
+        assertNull(parse("\"data:image/jpeg;base64,\"").getImage());
+    }
+
+    @Test
+    public void detectsEscapes() {
+        assertFalse(CheckInRequest.hasEscapes("{\"a\": \"abc\", \"b\": \"x\\ny\"}", 6));
+        assertTrue(CheckInRequest.hasEscapes("{\"a\": \"a\\nc\"}", 6));
+        assertTrue(CheckInRequest.hasEscapes("{\"a\": \"a\\\"c\"}", 6));
+    }
+
+    private static CheckInRequest parse(String imageValue) throws IOException {
+        return CheckInRequest.parse(FACTORY, "{\"name\": \"Sofia Garcia\", \"email\": \"sofia.garcia@example.edu\", "
+                + "\"uploaded_image_data\": " + imageValue + ", \"class_date\": \"2025-03-10\"}");
+    }
+
+    private static String base64() {
+        return Base64.getEncoder().encodeToString(IMAGE);
+    }
+
+    private static byte[] image(int length) {
+        byte[] image = new byte[length];
+        for (int i = 0; i < length; i++) {
+            image[i] = (byte) (i * 37 + 11);
+        }
+        return image;
+    }
+}
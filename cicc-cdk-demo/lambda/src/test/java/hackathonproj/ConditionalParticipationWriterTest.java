@@ -0,0 +1,128 @@
+package hackathonproj;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.RequestLimitExceededException;
+
+public class ConditionalParticipationWriterTest {
+
+    private static final int MAX_ATTEMPTS = 4;
+    private static final FanOut FAN_OUT = new FanOut(4);
+
+    private static final String SOFIA = "sofia@example.edu|2025-03-10";
+    private static final String WEI = "wei@example.edu|2025-03-10";
+
+    private StubDynamoDbClient dynamoDB;
+    private ConditionalParticipationWriter writer;
+
+    @BeforeEach
+    public void setUp() {
+        dynamoDB = new StubDynamoDbClient("email", "class_date");
+        writer = new ConditionalParticipationWriter(AwsClients.of(null, null, null, dynamoDB, null), "attendance", FAN_OUT,
+                MAX_ATTEMPTS, 1, 2);
+    }
+
+    @Test
+    public void writesOnlyTheLatestVerdictPerStudentAndClass() {
+        ParticipationRecord later = record("sofia@example.edu", true, 2000);
+        ParticipationRecord earlier = record("sofia@example.edu", false, 1000);
+        ParticipationRecord other = record("wei@example.edu", true, 1500);
+
+        assertTrue(writer.write(Arrays.asList(later, earlier, other), Deadline.none()).isEmpty());
+        assertEquals(2, dynamoDB.putCount());
+        List<PutItemRequest> puts = dynamoDB.puts(SOFIA);
+        assertEquals(1, puts.size());
+        assertTrue(dynamoDB.item(SOFIA).get("participation").bool());
+        assertEquals("2000", puts.get(0).expressionAttributeValues().get(":checkedInAt").n());
+        assertEquals(1, dynamoDB.puts(WEI).size());
+    }
+
+    @Test
+    public void retriesThrottledWrites() {
+        dynamoDB.failPuts(SOFIA, ProvisionedThroughputExceededException.builder().message("throttled").build(),
+                RequestLimitExceededException.builder().message("account limit").build());
+
+        assertTrue(writer.write(List.of(record("sofia@example.edu", true, 1000)), Deadline.none()).isEmpty());
+        assertEquals(3, dynamoDB.puts(SOFIA).size());
+        assertTrue(dynamoDB.item(SOFIA).get("participation").bool());
+    }
+
+    // Superseded records are returned with the failed one, so the caller retries the whole set
+    @Test
+    public void returnsRecordsStillThrottledAfterTheLastAttempt() {
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            dynamoDB.failPuts(SOFIA, ProvisionedThroughputExceededException.builder().message("throttled").build());
+        }
+        ParticipationRecord earlier = record("sofia@example.edu", false, 1000);
+        ParticipationRecord later = record("sofia@example.edu", true, 2000);
+        ParticipationRecord other = record("wei@example.edu", true, 1500);
+
+        List<ParticipationRecord> failed = writer.write(Arrays.asList(earlier, later, other), Deadline.none());
+        assertEquals(Arrays.asList(earlier, later), failed);
+        assertEquals(MAX_ATTEMPTS, dynamoDB.puts(SOFIA).size());
+        assertNull(dynamoDB.item(SOFIA));
+        assertTrue(dynamoDB.item(WEI).get("participation").bool());
+    }
+
+    // The table already holds a later verdict
+    @Test
+    public void failedConditionCountsAsWritten() {
+        dynamoDB.failPuts(SOFIA, ConditionalCheckFailedException.builder().message("later verdict stored").build());
+
+        assertTrue(writer.write(List.of(record("sofia@example.edu", false, 1000)), Deadline.none()).isEmpty());
+        assertEquals(1, dynamoDB.puts(SOFIA).size());
+    }
+
+    @Test
+    public void otherErrorsAreNotRetried() {
+        dynamoDB.failPuts(SOFIA, DynamoDbException.builder().message("validation failed").statusCode(400).build());
+        ParticipationRecord record = record("sofia@example.edu", true, 1000);
+
+        assertEquals(List.of(record), writer.write(List.of(record), Deadline.none()));
+        assertEquals(1, dynamoDB.puts(SOFIA).size());
+    }
+
+    // The failure is logged to the invocation and counted, also from the fan-out threads
+    @Test
+    public void failedWritesAreReportedToTheInvocation() {
+        List<String> logged = new CopyOnWriteArrayList<>();
+        RequestMetrics metrics = RequestMetrics.begin(new LambdaLogger() {
+            @Override
+            public void log(String message) {
+                logged.add(message);
+            }
+
+            @Override
+            public void log(byte[] message) {
+                log(new String(message));
+            }
+        });
+        dynamoDB.failPuts(SOFIA, DynamoDbException.builder().message("validation failed").statusCode(400).build());
+
+        writer.write(List.of(record("sofia@example.edu", true, 1000)), Deadline.none());
+        assertEquals(1, metrics.get(RequestMetrics.Counter.FAILURES));
+        assertEquals(List.of("PutItem failed for sofia@example.edu|2025-03-10|: validation failed"), logged);
+    }
+
+    private static ParticipationRecord record(String email, boolean participation, long checkedInAt) {
+        ParticipationRecord record = new ParticipationRecord("Student", email, "2025-03-10", participation, true,
+                participation, "proj/proj-images/uploads/" + email + ".jpg", null);
+        record.setCheckedInAt(checkedInAt);
+        return record;
+    }
+}
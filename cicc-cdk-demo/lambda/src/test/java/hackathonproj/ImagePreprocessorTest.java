@@ -0,0 +1,84 @@
+package hackathonproj;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+public class ImagePreprocessorTest {
+
+    @Test
+    public void readsOrientation() {
+        assertEquals(6, ImagePreprocessor.exifOrientation(jpeg(tiff(true, 8, 6), -1)));
+        assertEquals(8, ImagePreprocessor.exifOrientation(jpeg(tiff(false, 8, 8), -1)));
+    }
+
+    @Test
+    public void uprightWithoutExif() {
+        assertEquals(1, ImagePreprocessor.exifOrientation(new byte[] {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xD9}));
+        assertEquals(1, ImagePreprocessor.exifOrientation(new byte[] {'G', 'I', 'F', '8'}));
+    }
+
+    @Test
+    public void ignoresIfdOffsetOutsideTheSegment() {
+        assertEquals(1, ImagePreprocessor.exifOrientation(jpeg(tiff(true, 0x80000000L, 6), -1)));
+        assertEquals(1, ImagePreprocessor.exifOrientation(jpeg(tiff(true, 0xFFFFFFFFL, 6), -1)));
+        assertEquals(1, ImagePreprocessor.exifOrientation(jpeg(tiff(false, 4000, 6), -1)));
+    }
+
+    @Test
+    public void ignoresIfdOffsetIntoTheHeader() {
+        assertEquals(1, ImagePreprocessor.exifOrientation(jpeg(tiff(true, 0, 6), -1)));
+        assertEquals(1, ImagePreprocessor.exifOrientation(jpeg(tiff(true, 4, 6), -1)));
+    }
+
+    @Test
+    public void ignoresSegmentTooShortForTheTiffHeader() {
+        // The APP1 segment declares a length that ends inside the TIFF header, though the file continues
+        assertEquals(1, ImagePreprocessor.exifOrientation(jpeg(tiff(true, 8, 6), 2 + 6 + 4)));
+    }
+
+    // A TIFF header followed by an IFD with one orientation entry
+    private static byte[] tiff(boolean littleEndian, long ifdOffset, int orientation) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(littleEndian ? new byte[] {'I', 'I', 42, 0} : new byte[] {'M', 'M', 0, 42});
+        u32(out, ifdOffset, littleEndian);
+        u16(out, 1, littleEndian);
+        u16(out, 0x0112, littleEndian);
+        u16(out, 3, littleEndian);
+        u32(out, 1, littleEndian);
+        u16(out, orientation, littleEndian);
+        u16(out, 0, littleEndian);
+        u32(out, 0, littleEndian);
+        return out.toByteArray();
+    }
+
+    // A JPEG with one APP1 Exif segment; declaredLength < 0 declares the segment's real length
+    private static byte[] jpeg(byte[] tiff, int declaredLength) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[] {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE1});
+        u16(out, declaredLength >= 0 ? declaredLength : 2 + 6 + tiff.length, false);
+        out.writeBytes(new byte[] {'E', 'x', 'i', 'f', 0, 0});
+        out.writeBytes(tiff);
+        out.writeBytes(new byte[] {(byte) 0xFF, (byte) 0xD9});
+        return out.toByteArray();
+    }
+
+    private static void u16(ByteArrayOutputStream out, int value, boolean littleEndian) {
+        if (littleEndian) {
+            out.write(value & 0xFF);
+            out.write((value >> 8) & 0xFF);
+        } else {
+            out.write((value >> 8) & 0xFF);
+            out.write(value & 0xFF);
+        }
+    }
+
+    private static void u32(ByteArrayOutputStream out, long value, boolean littleEndian) {
+        int high = (int) (value >>> 16) & 0xFFFF;
+        int low = (int) value & 0xFFFF;
+        u16(out, littleEndian ? low : high, littleEndian);
+        u16(out, littleEndian ? high : low, littleEndian);
+    }
+}
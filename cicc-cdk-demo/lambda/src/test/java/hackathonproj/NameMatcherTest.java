@@ -0,0 +1,71 @@
+package hackathonproj;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class NameMatcherTest {
+
+    private static final float THRESHOLD = 0.9f;
+
+    private static final String HEADER = "CS 5330 Attendance - Sheet 1";
+
+    @Test
+    public void matchesExactNameWithFullScore() {
+        NameMatcher matcher = sheet("1.  Aakash Sharma  ~signed~", "2.  Fatima Khan  ~signed~");
+        assertEquals(1.0, matcher.match("Aakash Sharma", THRESHOLD).getScore(), 0);
+    }
+
+    @Test
+    public void rejectsNameThatIsNotOnTheSheet() {
+        NameMatcher matcher = sheet("1.  Aakash Sharma  ~signed~", "2.  Fatima Khan  ~signed~");
+        assertFalse(matcher.match("walk in visitor", THRESHOLD).isMatch());
+    }
+
+    // Every line of ocr-names-corpus.tsv against a sheet holding only that line
+    @Test
+    public void scoresOcrCorpusAsExpected() throws IOException {
+        List<String> failures = new ArrayList<>();
+        int entries = 0;
+        try (InputStream in = NameMatcherTest.class.getResourceAsStream("/ocr-names-corpus.tsv")) {
+            assertNotNull(in, "ocr-names-corpus.tsv is missing from the test resources");
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t", 3);
+                assertEquals(3, fields.length, "Malformed corpus line '" + line + "'");
+                boolean expected = "match".equals(fields[0]);
+                NameMatcher.Match match = sheet(fields[2]).match(fields[1], THRESHOLD);
+                if (match.isMatch() != expected) {
+                    failures.add((expected ? "missed" : "matched") + " '" + fields[1] + "' / '" + fields[2]
+                            + "' with score " + match.getScore());
+                }
+                entries++;
+            }
+        }
+        assertTrue(entries > 0, "ocr-names-corpus.tsv has no entries");
+        assertTrue(failures.isEmpty(), String.join("\n", failures));
+    }
+
+    private static NameMatcher sheet(String... lines) {
+        List<String> sheet = new ArrayList<>();
+        sheet.add(HEADER);
+        sheet.addAll(Arrays.asList(lines));
+        return new NameMatcher(sheet);
+    }
+}
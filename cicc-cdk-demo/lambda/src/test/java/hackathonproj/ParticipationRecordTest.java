@@ -0,0 +1,34 @@
+package hackathonproj;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class ParticipationRecordTest {
+
+    @Test
+    public void keepsOneRecordPerSection() {
+        ParticipationRecord first = record("cs5330-01");
+        ParticipationRecord second = record("cs5330-02");
+        assertNotEquals(first.recordKey(), second.recordKey());
+        assertNotEquals(first.toItem().get(ParticipationRecord.SORT_KEY), second.toItem().get(ParticipationRecord.SORT_KEY));
+    }
+
+    // A section's records are exactly the sort keys starting with its prefix
+    @Test
+    public void sortKeyStartsWithTheSectionPrefix() {
+        assertEquals("cs5330-01#sofia@example.edu", record("cs5330-01").toItem().get(ParticipationRecord.SORT_KEY).s());
+        assertEquals("#sofia@example.edu", record(null).toItem().get(ParticipationRecord.SORT_KEY).s());
+        assertFalse(ParticipationRecord.sortKey("cs5330-010", "sofia@example.edu")
+                .startsWith(ParticipationRecord.sectionPrefix("cs5330-01")));
+    }
+
+    private static ParticipationRecord record(String section) {
+        ParticipationRecord record = new ParticipationRecord("Sofia Garcia", "sofia@example.edu", "2025-03-10", true, true,
+                false, "proj/proj-images/uploads/2025-03-10/sofia.jpg", null);
+        record.setSectionId(section);
+        return record;
+    }
+}
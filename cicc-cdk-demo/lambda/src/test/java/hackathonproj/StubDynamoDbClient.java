@@ -0,0 +1,89 @@
+package hackathonproj;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.stream.Collectors;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+
+// DynamoDB stand-in for the unit tests: one table, items stored whole under their key attributes, and every
+// PutItem recorded. Condition expressions are not evaluated; a test queues the errors the puts of an item fail
+// with instead, e.g. a ConditionalCheckFailedException for a concurrent writer that got there first.
+class StubDynamoDbClient implements DynamoDbClient {
+
+    private final List<String> keyAttributes;
+    private final Map<String, Map<String, AttributeValue>> items = new ConcurrentHashMap<>();
+    private final Deque<PutItemRequest> puts = new ConcurrentLinkedDeque<>();
+    private final Map<String, Deque<RuntimeException>> failures = new ConcurrentHashMap<>();
+
+    StubDynamoDbClient(String... keyAttributes) {
+        this.keyAttributes = Arrays.asList(keyAttributes);
+    }
+
+    // The next puts of the item fail with these errors, one each, before any is stored
+    void failPuts(String key, RuntimeException... errors) {
+        failures.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<>()).addAll(Arrays.asList(errors));
+    }
+
+    // Key values joined with '|', e.g. "sofia@example.edu|2025-03-10"
+    Map<String, AttributeValue> item(String key) {
+        return items.get(key);
+    }
+
+    // Every PutItem of the item, including the failed ones
+    List<PutItemRequest> puts(String key) {
+        return puts.stream().filter(request -> key(request.item()).equals(key)).collect(Collectors.toList());
+    }
+
+    int putCount() {
+        return puts.size();
+    }
+
+    @Override
+    public PutItemResponse putItem(PutItemRequest request) {
+        String key = key(request.item());
+        puts.add(request);
+        Deque<RuntimeException> errors = failures.get(key);
+        RuntimeException error = errors != null ? errors.poll() : null;
+        if (error != null) {
+            throw error;
+        }
+        items.put(key, new HashMap<>(request.item()));
+        return PutItemResponse.builder().build();
+    }
+
+    @Override
+    public GetItemResponse getItem(GetItemRequest request) {
+        Map<String, AttributeValue> item = items.get(key(request.key()));
+        return GetItemResponse.builder().item(item != null ? new HashMap<>(item) : null).build();
+    }
+
+    @Override
+    public String serviceName() {
+        return "dynamodb";
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private String key(Map<String, AttributeValue> item) {
+        List<String> values = new ArrayList<>();
+        for (String attribute : keyAttributes) {
+            AttributeValue value = item.get(attribute);
+            values.add(value.s() != null ? value.s() : value.n());
+        }
+        return String.join("|", values);
+    }
+}
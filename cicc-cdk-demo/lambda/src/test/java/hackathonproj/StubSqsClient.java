@@ -0,0 +1,45 @@
+package hackathonproj;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageResponse;
+
+// SQS stand-in for the unit tests: records the messages sent, or fails the next sends with queued errors
+class StubSqsClient implements SqsClient {
+
+    private final Deque<SendMessageRequest> sent = new ConcurrentLinkedDeque<>();
+    private final Deque<RuntimeException> failures = new ConcurrentLinkedDeque<>();
+
+    void failSends(RuntimeException... errors) {
+        failures.addAll(Arrays.asList(errors));
+    }
+
+    List<SendMessageRequest> sent() {
+        return new ArrayList<>(sent);
+    }
+
+    @Override
+    public SendMessageResponse sendMessage(SendMessageRequest request) {
+        RuntimeException error = failures.poll();
+        if (error != null) {
+            throw error;
+        }
+        sent.add(request);
+        return SendMessageResponse.builder().messageId("message-" + sent.size()).build();
+    }
+
+    @Override
+    public String serviceName() {
+        return "sqs";
+    }
+
+    @Override
+    public void close() {
+    }
+}
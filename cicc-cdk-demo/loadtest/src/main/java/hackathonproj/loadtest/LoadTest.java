@@ -0,0 +1,463 @@
+package hackathonproj.loadtest;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import hackathonproj.CheckInJobs;
+import hackathonproj.ParticipationHandler;
+import hackathonproj.ParticipationResponse;
+import hackathonproj.RekognitionFaceCollection;
+import hackathonproj.local.ClassFixture;
+import hackathonproj.local.Latency;
+import hackathonproj.local.LocalAws;
+import hackathonproj.local.LocalContext;
+
+// Offline load test of the check-in path: bursts of concurrent check-ins, as when a whole class checks in at the
+// start of a lecture, sent through ParticipationHandler against the local stand-ins. Every container is its own
+// handler instance (its own fan-out pool and reference image cache) and serves one check-in at a time; a check-in
+// waits for a free container, as under Lambda's concurrency limit. Each burst is for a new class date and the
+// first one runs on cold containers. Check-in i is sent by student i % students, so a burst larger than the
+// class contains double submissions.
+// Latency is measured from the start of the burst, so it includes the wait for a container. Call and byte counts
+// per check-in are read from the EMF line of each invocation. Containers share the process-wide metadata caches
+// (roster sheets, reference manifests, face analyses) that each Lambda container fills on its own, so the cold
+// burst here is warmer than in the cloud.
+// Options are --name=value, see OPTIONS. The gates apply to the warm bursts; the exit code is 1 when one fails
+// and 2 for invalid options.
+public class LoadTest {
+
+    private static final String CLASS_DATE = "2025-03-10";
+
+    // Name, default and description of every option; an empty default means unset
+    private static final String[][] OPTIONS = {
+        {"students", "150", "students in the class, i.e. reference faces"},
+        {"listed", "0.8", "share of the students on the sign-in sheets; the others are recognised by face"},
+        {"sheets", "0", "sign-in sheets, 0 for one per 30 students"},
+        {"burst", "60", "check-ins sent at once"},
+        {"bursts", "3", "bursts to send, the first on cold containers"},
+        {"containers", "0", "handler instances serving a burst, 0 for one per check-in"},
+        {"mode", "pairwise", "face matching: pairwise or collection"},
+        {"photo-edge", "640", "width of the photos in pixels"},
+        {"latency-ms", "15", "round trip of every remote call"},
+        {"jitter-ms", "3", "uniform jitter added to every round trip"},
+        {"s3-latency-ms", "", "S3 round trip, overrides latency-ms"},
+        {"textract-latency-ms", "", "Textract round trip, overrides latency-ms"},
+        {"rekognition-latency-ms", "", "Rekognition round trip, overrides latency-ms"},
+        {"dynamodb-latency-ms", "", "DynamoDB round trip, overrides latency-ms"},
+        {"rekognition-throttle", "0", "share of Rekognition calls rejected as throttled"},
+        {"textract-throttle", "0", "share of Textract calls rejected as throttled"},
+        {"dynamodb-throttle", "0", "share of DynamoDB item calls rejected as throttled"},
+        {"timeout-ms", "29000", "function timeout, API Gateway's limit by default"},
+        {"max-p95-ms", "", "gate: highest p95 latency of the warm bursts"},
+        {"max-p99-ms", "", "gate: highest p99 latency of the warm bursts"},
+        {"max-error-rate", "", "gate: highest share of failed warm check-ins"},
+        {"min-throughput", "", "gate: lowest check-ins per second of the warm bursts"},
+    };
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Map<String, String> options;
+    private final int students;
+    private final int burst;
+    private final int bursts;
+    private final int containers;
+    private final String mode;
+    private final long timeoutMillis;
+
+    private LocalAws aws;
+    private BlockingQueue<ParticipationHandler> pool;
+    private List<String> bodies;
+
+    LoadTest(Map<String, String> options) {
+        this.options = options;
+        this.students = positive("students");
+        this.burst = positive("burst");
+        this.bursts = positive("bursts");
+        this.containers = integer("containers") > 0 ? integer("containers") : burst;
+        this.mode = options.get("mode");
+        this.timeoutMillis = positive("timeout-ms");
+        if (!"pairwise".equals(mode) && !"collection".equals(mode)) {
+            throw new IllegalArgumentException("--mode must be pairwise or collection");
+        }
+    }
+
+    public static void main(String[] args) {
+        if (Arrays.asList(args).contains("--help")) {
+            System.out.println(usage());
+            return;
+        }
+        LoadTest test;
+        try {
+            test = new LoadTest(options(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(usage());
+            System.exit(2);
+            return;
+        }
+        System.exit(test.run());
+    }
+
+    int run() {
+        setUp();
+        System.out.println(description());
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%-10s %8s %7s %9s %11s %8s %8s %8s %8s",
+                "burst", "requests", "errors", "wall ms", "requests/s", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+
+        List<Result> warm = new ArrayList<>();
+        List<Double> warmThroughput = new ArrayList<>();
+        ExecutorService senders = Executors.newFixedThreadPool(burst);
+        try {
+            for (int b = 0; b < bursts; b++) {
+                String classDate = LocalDate.parse(CLASS_DATE).plusDays(b).toString();
+                long start = System.nanoTime();
+                List<Result> results = burst(senders, classDate);
+                double wallMillis = (System.nanoTime() - start) / 1_000_000.0;
+                double throughput = results.size() / (wallMillis / 1000);
+                System.out.println(row(b == 0 ? "1 (cold)" : String.valueOf(b + 1), results, wallMillis, throughput));
+                if (b > 0 || bursts == 1) {
+                    warm.addAll(results);
+                    warmThroughput.add(throughput);
+                }
+            }
+        } finally {
+            senders.shutdownNow();
+        }
+
+        double minThroughput = warmThroughput.stream().mapToDouble(Double::doubleValue).min().orElse(0);
+        System.out.println(row(bursts == 1 ? "all" : "warm", warm, Double.NaN, minThroughput));
+        System.out.println();
+        System.out.println(outcomes(warm));
+        System.out.println();
+        System.out.println(perRequest(warm));
+        return gates(warm, minThroughput) ? 0 : 1;
+    }
+
+    private void setUp() {
+        double jitter = number("jitter-ms");
+        aws = new LocalAws(latency("s3", jitter), latency("textract", jitter), latency("rekognition", jitter),
+                latency("dynamodb", jitter));
+        int listed = (int) Math.round(students * number("listed"));
+        int sheets = integer("sheets") > 0 ? integer("sheets") : Math.max(1, (students + 29) / 30);
+        ClassFixture fixture = new ClassFixture(aws, students, listed, sheets, positive("photo-edge"));
+
+        // One collection id per run, so no registry state carries over from an earlier run in the same process
+        String collectionId = "collection".equals(mode) ? "loadtest-" + UUID.randomUUID() : null;
+        if (collectionId != null) {
+            fixture.indexInto(new RekognitionFaceCollection(aws.clients(), collectionId, ClassFixture.BUCKET));
+        }
+        CheckInJobs jobs = new CheckInJobs(aws.clients(), "", "", 0);
+        pool = new ArrayBlockingQueue<>(containers);
+        for (int c = 0; c < containers; c++) {
+            pool.add(new ParticipationHandler(aws.clients(), collectionId == null ? null
+                    : new RekognitionFaceCollection(aws.clients(), collectionId, ClassFixture.BUCKET), jobs));
+        }
+
+        bodies = new ArrayList<>();
+        for (int i = 0; i < Math.min(burst, students); i++) {
+            bodies.add(fixture.checkInBody(i, CLASS_DATE, fixture.photo(i), false));
+        }
+
+        // Only the burst is throttled, not loading the class
+        aws.rekognition().throttle(number("rekognition-throttle"));
+        aws.textract().throttle(number("textract-throttle"));
+        aws.dynamoDB().throttle(number("dynamodb-throttle"));
+    }
+
+    // Sends every check-in of one burst at once and waits for all of them
+    private List<Result> burst(ExecutorService senders, String classDate) {
+        CountDownLatch ready = new CountDownLatch(burst);
+        CountDownLatch go = new CountDownLatch(1);
+        long[] start = new long[1];
+        List<Future<Result>> futures = new ArrayList<>();
+        for (int i = 0; i < burst; i++) {
+            String body = bodies.get(i % bodies.size()).replace("\"" + CLASS_DATE + "\"", "\"" + classDate + "\"");
+            futures.add(senders.submit(() -> {
+                ready.countDown();
+                go.await();
+                return checkIn(body, start[0]);
+            }));
+        }
+        try {
+            ready.await();
+            start[0] = System.nanoTime();
+            go.countDown();
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Load test interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Check-in could not be sent", e.getCause());
+        }
+    }
+
+    private Result checkIn(String body, long burstStart) throws InterruptedException {
+        ParticipationHandler handler = pool.take();
+        LocalContext context = new LocalContext(timeoutMillis, false);
+        APIGatewayProxyResponseEvent response;
+        try {
+            response = handler.handleRequest(new APIGatewayProxyRequestEvent().withHttpMethod("POST").withBody(body), context);
+        } catch (RuntimeException e) {
+            // A handler that throws fails the invocation, as Lambda would report it
+            return new Result(System.nanoTime() - burstStart, 502, "Invocation failed: " + e, null, null, Map.of());
+        } finally {
+            pool.add(handler);
+        }
+        long latency = System.nanoTime() - burstStart;
+
+        String verdict = null;
+        String writeStatus = null;
+        try {
+            JsonNode result = MAPPER.readTree(response.getBody());
+            verdict = result.path("verdict").asText(null);
+            writeStatus = result.path("write_status").asText(null);
+        } catch (JsonProcessingException e) {
+            // Counted as a failure below: a check-in without a verdict
+        }
+        return new Result(latency, response.getStatusCode(), response.getBody(), verdict, writeStatus, emf(context));
+    }
+
+    // Every metric of the invocation's EMF line by name, with its unit as declared in the line
+    private static Map<String, Metric> emf(LocalContext context) {
+        Map<String, Metric> metrics = new LinkedHashMap<>();
+        List<String> logged = context.logged();
+        if (logged.isEmpty()) {
+            return metrics;
+        }
+        try {
+            JsonNode line = MAPPER.readTree(logged.get(logged.size() - 1));
+            for (JsonNode definition : line.path("_aws").path("CloudWatchMetrics").path(0).path("Metrics")) {
+                String name = definition.path("Name").asText();
+                if (line.has(name)) {
+                    metrics.put(name, new Metric(definition.path("Unit").asText(), line.get(name).asDouble()));
+                }
+            }
+        } catch (JsonProcessingException e) {
+            // Not an EMF line; the check-in is reported without metrics
+        }
+        return metrics;
+    }
+
+    private String description() {
+        return String.format(Locale.ROOT, "%d bursts of %d check-ins on %d containers; class of %d students, %s mode%n"
+                        + "latency s3 %s, textract %s, rekognition %s, dynamodb %s%n"
+                        + "throttled rekognition %s, textract %s, dynamodb %s",
+                bursts, burst, containers, students, mode,
+                latency("s3", number("jitter-ms")), latency("textract", number("jitter-ms")),
+                latency("rekognition", number("jitter-ms")), latency("dynamodb", number("jitter-ms")),
+                options.get("rekognition-throttle"), options.get("textract-throttle"), options.get("dynamodb-throttle"));
+    }
+
+    private static String row(String label, List<Result> results, double wallMillis, double throughput) {
+        double[] latencies = latencies(results);
+        return String.format(Locale.ROOT, "%-10s %8d %7d %9s %11.1f %8.1f %8.1f %8.1f %8.1f",
+                label, results.size(), failures(results), Double.isNaN(wallMillis) ? "" : String.format(Locale.ROOT, "%.1f", wallMillis),
+                throughput, percentile(latencies, 50), percentile(latencies, 95), percentile(latencies, 99),
+                latencies.length > 0 ? latencies[latencies.length - 1] : 0);
+    }
+
+    private static String outcomes(List<Result> results) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        String firstError = null;
+        for (Result result : results) {
+            counts.merge(result.outcome(), 1, Integer::sum);
+            if (firstError == null && result.failed()) {
+                firstError = result.body;
+            }
+        }
+        StringBuilder line = new StringBuilder("Outcomes:");
+        counts.forEach((outcome, count) -> line.append(' ').append(outcome).append(' ').append(count));
+        if (firstError != null) {
+            line.append(System.lineSeparator()).append("First failure: ")
+                    .append(firstError.length() > 300 ? firstError.substring(0, 300) + "..." : firstError);
+        }
+        return line.toString();
+    }
+
+    // Time metrics as percentiles, counts and bytes as the mean per check-in; metrics that stayed zero are left out
+    private static String perRequest(List<Result> results) {
+        Map<String, String> units = new LinkedHashMap<>();
+        for (Result result : results) {
+            result.metrics.forEach((name, metric) -> units.putIfAbsent(name, metric.unit));
+        }
+        StringBuilder table = new StringBuilder(String.format(Locale.ROOT, "%-24s %10s %10s %10s %10s",
+                "per check-in", "mean", "p50", "p95", "p99"));
+        units.forEach((name, unit) -> {
+            double[] values = results.stream().filter(r -> r.metrics.containsKey(name))
+                    .mapToDouble(r -> r.metrics.get(name).value).sorted().toArray();
+            double mean = Arrays.stream(values).average().orElse(0);
+            if (mean == 0) {
+                return;
+            }
+            table.append(System.lineSeparator());
+            if ("Milliseconds".equals(unit)) {
+                table.append(String.format(Locale.ROOT, "%-24s %10.1f %10.1f %10.1f %10.1f", name + " ms", mean,
+                        percentile(values, 50), percentile(values, 95), percentile(values, 99)));
+            } else {
+                table.append(String.format(Locale.ROOT, "%-24s %10.2f", "Bytes".equals(unit) ? name + " bytes" : name, mean));
+            }
+        });
+        return table.toString();
+    }
+
+    private boolean gates(List<Result> warm, double minThroughput) {
+        double[] latencies = latencies(warm);
+        double errorRate = warm.isEmpty() ? 0 : failures(warm) / (double) warm.size();
+        boolean passed = true;
+        passed &= gate("max-p95-ms", percentile(latencies, 95), true);
+        passed &= gate("max-p99-ms", percentile(latencies, 99), true);
+        passed &= gate("max-error-rate", errorRate, true);
+        passed &= gate("min-throughput", minThroughput, false);
+        return passed;
+    }
+
+    private boolean gate(String option, double actual, boolean atMost) {
+        String limit = options.get(option);
+        if (limit.isEmpty()) {
+            return true;
+        }
+        boolean passed = atMost ? actual <= Double.parseDouble(limit) : actual >= Double.parseDouble(limit);
+        System.out.println(String.format(Locale.ROOT, "Gate %s=%s: %.3f %s", option, limit, actual, passed ? "passed" : "FAILED"));
+        return passed;
+    }
+
+    private static double[] latencies(List<Result> results) {
+        return results.stream().mapToDouble(r -> r.latencyNanos / 1_000_000.0).sorted().toArray();
+    }
+
+    private static long failures(List<Result> results) {
+        return results.stream().filter(Result::failed).count();
+    }
+
+    // Nearest-rank percentile of sorted values
+    private static double percentile(double[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    private Latency latency(String service, double jitter) {
+        String fixed = options.get(service + "-latency-ms");
+        return Latency.millis(fixed.isEmpty() ? number("latency-ms") : parse(service + "-latency-ms", fixed), jitter);
+    }
+
+    static Map<String, String> options(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String[] option : OPTIONS) {
+            options.put(option[0], option[1]);
+        }
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            String name = arg.startsWith("--") && equals > 2 ? arg.substring(2, equals) : null;
+            if (name == null || !options.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown option " + arg);
+            }
+            options.put(name, arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    private static String usage() {
+        StringBuilder usage = new StringBuilder("Usage: java -jar loadtest.jar [--option=value ...]");
+        for (String[] option : OPTIONS) {
+            usage.append(System.lineSeparator()).append(String.format(Locale.ROOT, "  --%-24s %s%s", option[0], option[2],
+                    option[1].isEmpty() ? "" : " (" + option[1] + ")"));
+        }
+        return usage.toString();
+    }
+
+    private double number(String option) {
+        return parse(option, options.get(option));
+    }
+
+    private int integer(String option) {
+        return (int) number(option);
+    }
+
+    private int positive(String option) {
+        int value = integer(option);
+        if (value <= 0) {
+            throw new IllegalArgumentException("--" + option + " must be positive");
+        }
+        return value;
+    }
+
+    private static double parse(String option, String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + option + " is not a number: " + value);
+        }
+    }
+
+    private static class Metric {
+
+        final String unit;
+        final double value;
+
+        Metric(String unit, double value) {
+            this.unit = unit;
+            this.value = value;
+        }
+    }
+
+    private static class Result {
+
+        final long latencyNanos;
+        final int statusCode;
+        final String body;
+        final String verdict;
+        final String writeStatus;
+        final Map<String, Metric> metrics;
+
+        Result(long latencyNanos, int statusCode, String body, String verdict, String writeStatus, Map<String, Metric> metrics) {
+            this.latencyNanos = latencyNanos;
+            this.statusCode = statusCode;
+            this.body = body;
+            this.verdict = verdict;
+            this.writeStatus = writeStatus;
+            this.metrics = metrics;
+        }
+
+        // Every student of the class is in front of the camera, so anything but a recorded present is a failure
+        boolean failed() {
+            return !ParticipationResponse.PRESENT.equals(outcome());
+        }
+
+        String outcome() {
+            if (statusCode != 200 || verdict == null) {
+                return "error-" + statusCode;
+            }
+            if ("failed".equals(writeStatus)) {
+                return "write-failed";
+            }
+            return verdict;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package hackathonproj.local;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import hackathonproj.Deadline;
+import hackathonproj.ParticipationRecord;
+import hackathonproj.ReferenceLayout;
+import hackathonproj.RekognitionFaceCollection;
+
+// A synthetic class loaded into the local stand-ins: one reference face per student under the faces prefix,
+// and sign-in sheets under the names prefix that list the first `listed` students. Students beyond that
+// forgot to sign in, so they can only be recognised by face. A class with a section uses that section's
+// prefixes; several classes can be loaded side by side, each starting at a different student number.
+public class ClassFixture {
+
+    // Bucket and tables used by the participation functions, keyed as the stack defines them
+    public static final String BUCKET = "proj-hackathon-bucket-cdk";
+    public static final String PARTICIPATION_TABLE = "ParticipationAttendanceCdkproj";
+    public static final String EMAIL_INDEX = "email-index";
+    public static final String COUNTS_TABLE = "ParticipationClassCountsCdkproj";
+
+    private static final String[] FIRST_NAMES = {
+        "Aakash", "Maria", "Wei", "Fatima", "John", "Priya", "Lucas", "Amara", "Kenji", "Sofia",
+        "Omar", "Elena", "Noah", "Aisha", "Mateo", "Hana", "Liam", "Zara", "Diego", "Mei"
+    };
+    private static final String[] LAST_NAMES = {
+        "Sharma", "Garcia", "Zhang", "Khan", "Smith", "Patel", "Silva", "Okafor", "Tanaka", "Rossi",
+        "Haddad", "Petrova", "Brown", "Bello", "Lopez", "Kim", "Murphy", "Ali", "Torres", "Chen"
+    };
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final LocalAws aws;
+    private final String section;
+    private final List<String> names = new ArrayList<>();
+    private final int listed;
+    private final int photoEdge;
+
+    public ClassFixture(LocalAws aws, int students, int listed, int sheets, int photoEdge) {
+        this(aws, null, 0, students, listed, sheets, photoEdge);
+    }
+
+    public ClassFixture(LocalAws aws, String section, int firstStudent, int students, int listed, int sheets, int photoEdge) {
+        this.aws = aws;
+        this.section = section;
+        this.listed = Math.min(listed, students);
+        this.photoEdge = photoEdge;
+        aws.dynamoDB().createTable(PARTICIPATION_TABLE, "class_date", ParticipationRecord.SORT_KEY);
+        aws.dynamoDB().createIndex(PARTICIPATION_TABLE, EMAIL_INDEX, "email", "class_date");
+        aws.dynamoDB().enableStream(PARTICIPATION_TABLE);
+        aws.dynamoDB().createTable(COUNTS_TABLE, "class_date", "section_id");
+
+        for (int i = 0; i < students; i++) {
+            String name = studentName(firstStudent + i);
+            names.add(name);
+            aws.s3().store(BUCKET, faceKey(name), FaceImages.photo(name, 0, photoEdge, photoEdge * 3 / 4), "image/jpeg");
+        }
+
+        int perSheet = (int) Math.ceil(this.listed / (double) Math.max(1, sheets));
+        for (int sheet = 0; sheet < sheets; sheet++) {
+            List<String> lines = new ArrayList<>();
+            lines.add("CS 5330 Attendance - Sheet " + (sheet + 1));
+            lines.add("No.  Name  Signature");
+            for (int i = sheet * perSheet; i < Math.min(this.listed, (sheet + 1) * perSheet); i++) {
+                lines.add((i + 1) + ".  " + names.get(i) + "  ~signed~");
+            }
+            String sheetName = firstStudent == 0 ? "sheet-" + (sheet + 1) : "sheet-" + firstStudent + "-" + (sheet + 1);
+            aws.s3().store(BUCKET, ReferenceLayout.namesPrefix(section) + sheetName + ".png", LocalTextractClient.document(lines), "image/png");
+        }
+    }
+
+    // Null for a class under the flat prefixes
+    public String section() {
+        return section;
+    }
+
+    public int students() {
+        return names.size();
+    }
+
+    public int listed() {
+        return listed;
+    }
+
+    public String name(int student) {
+        return names.get(student);
+    }
+
+    public static String email(String name) {
+        return name.toLowerCase().replace(' ', '.') + "@example.edu";
+    }
+
+    public String faceKey(String name) {
+        return ReferenceLayout.facesPrefix(section) + name.toLowerCase().replace(' ', '_') + ".jpg";
+    }
+
+    // A fresh photo of the student, different in bytes from the reference face
+    public byte[] photo(int student) {
+        return FaceImages.photo(names.get(student), 1, photoEdge, photoEdge * 3 / 4);
+    }
+
+    // A photo of someone who is not in the class
+    public byte[] strangerPhoto() {
+        return FaceImages.photo("stranger-" + UUID.randomUUID(), 1, photoEdge, photoEdge * 3 / 4);
+    }
+
+    // A photo in which no face is found
+    public byte[] emptyPhoto() {
+        return FaceImages.photo(null, 1, photoEdge, photoEdge * 3 / 4);
+    }
+
+    // One photo of the last `present` students together, so they can only be recognised by face
+    public byte[] classPhoto(int present) {
+        return FaceImages.classPhoto(names.subList(names.size() - present, names.size()), photoEdge * 2, photoEdge * 3 / 2);
+    }
+
+    // A class photo check-in listing every student of the class
+    public String classPhotoBody(String classDate, byte[] photo) {
+        ObjectNode body = MAPPER.createObjectNode();
+        if (section != null) {
+            body.put("section_id", section);
+        }
+        body.put("class_date", classDate);
+        body.put("uploaded_image_data", "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(photo));
+        ArrayNode students = body.putArray("students");
+        for (String name : names) {
+            students.addObject().put("name", name).put("email", email(name));
+        }
+        try {
+            return MAPPER.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Indexes every reference face into the collection, as the reference index function does on upload
+    public RekognitionFaceCollection indexedCollection(String collectionId) {
+        RekognitionFaceCollection collection = new RekognitionFaceCollection(aws.clients(), collectionId, BUCKET);
+        indexInto(collection);
+        return collection;
+    }
+
+    public void indexInto(RekognitionFaceCollection collection) {
+        for (String name : names) {
+            collection.index(faceKey(name), Deadline.none());
+        }
+    }
+
+    public List<S3Object> faceObjects() {
+        String prefix = ReferenceLayout.facesPrefix(section);
+        return Collections.unmodifiableList(aws.s3().listObjectsV2(b -> b.bucket(BUCKET).prefix(prefix)).contents());
+    }
+
+    // A check-in for this class, naming its section when it has one
+    public String checkInBody(int student, String classDate, byte[] photo, boolean fullDiagnostics) {
+        return checkInBody(section, names.get(student), classDate, photo, fullDiagnostics);
+    }
+
+    public static String checkInBody(String name, String classDate, byte[] photo, boolean fullDiagnostics) {
+        return checkInBody(null, name, classDate, photo, fullDiagnostics);
+    }
+
+    public static String checkInBody(String section, String name, String classDate, byte[] photo, boolean fullDiagnostics) {
+        ObjectNode body = MAPPER.createObjectNode();
+        if (section != null) {
+            body.put("section_id", section);
+        }
+        body.put("name", name);
+        body.put("email", email(name));
+        body.put("class_date", classDate);
+        if (photo != null) {
+            body.put("uploaded_image_data", "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(photo));
+        }
+        if (fullDiagnostics) {
+            body.put("full_diagnostics", true);
+        }
+        try {
+            return MAPPER.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public int participationRecords() {
+        return aws.dynamoDB().items(PARTICIPATION_TABLE).size();
+    }
+
+    public boolean recordedPresent(String name, String classDate) {
+        return aws.dynamoDB().items(PARTICIPATION_TABLE).stream()
+                .anyMatch(item -> email(name).equals(value(item.get("email")))
+                        && classDate.equals(value(item.get("class_date")))
+                        && Boolean.TRUE.equals(item.get("participation").bool()));
+    }
+
+    private static String value(AttributeValue value) {
+        return value != null ? value.s() : null;
+    }
+
+    private static String studentName(int i) {
+        String name = FIRST_NAMES[i % FIRST_NAMES.length] + " " + LAST_NAMES[(i / FIRST_NAMES.length) % LAST_NAMES.length];
+        int round = i / (FIRST_NAMES.length * LAST_NAMES.length);
+        return round == 0 ? name : name + " " + (char) ('A' + round - 1);
+    }
+}
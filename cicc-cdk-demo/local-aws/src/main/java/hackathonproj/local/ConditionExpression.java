@@ -0,0 +1,106 @@
+package hackathonproj.local;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+
+// The part of the DynamoDB condition syntax the handlers use: attribute_exists / attribute_not_exists and
+// comparisons of attributes with placeholders, joined by AND / OR without parentheses (AND binds tighter).
+class ConditionExpression {
+
+    private static final Pattern FUNCTION = Pattern.compile("(attribute_exists|attribute_not_exists)\\s*\\(\\s*(\\S+?)\\s*\\)");
+    private static final Pattern COMPARISON = Pattern.compile("(\\S+)\\s*(<>|<=|>=|=|<|>)\\s*(\\S+)");
+
+    private final String expression;
+    private final Map<String, String> names;
+    private final Map<String, AttributeValue> values;
+
+    ConditionExpression(String expression, Map<String, String> names, Map<String, AttributeValue> values) {
+        this.expression = expression;
+        this.names = names;
+        this.values = values;
+    }
+
+    // A missing item is evaluated as one without attributes
+    boolean matches(Map<String, AttributeValue> item) {
+        Map<String, AttributeValue> attributes = item != null ? item : Map.of();
+        for (String alternative : expression.split("(?i)\\s+OR\\s+")) {
+            boolean all = true;
+            for (String term : alternative.split("(?i)\\s+AND\\s+")) {
+                if (!term(term.trim(), attributes)) {
+                    all = false;
+                    break;
+                }
+            }
+            if (all) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean term(String term, Map<String, AttributeValue> item) {
+        Matcher function = FUNCTION.matcher(term);
+        if (function.matches()) {
+            boolean exists = item.containsKey(name(function.group(2)));
+            return function.group(1).equals("attribute_exists") == exists;
+        }
+        Matcher comparison = COMPARISON.matcher(term);
+        if (comparison.matches()) {
+            AttributeValue left = operand(comparison.group(1), item);
+            AttributeValue right = operand(comparison.group(3), item);
+            if (left == null || right == null) {
+                return false;
+            }
+            int order = compare(left, right);
+            switch (comparison.group(2)) {
+                case "=": return order == 0;
+                case "<>": return order != 0;
+                case "<": return order < 0;
+                case "<=": return order <= 0;
+                case ">": return order > 0;
+                default: return order >= 0;
+            }
+        }
+        throw DynamoDbException.builder().statusCode(400)
+                .message("Unsupported condition expression: " + expression).build();
+    }
+
+    private AttributeValue operand(String token, Map<String, AttributeValue> item) {
+        if (token.startsWith(":")) {
+            AttributeValue value = values != null ? values.get(token) : null;
+            if (value == null) {
+                throw DynamoDbException.builder().statusCode(400)
+                        .message("An expression attribute value used in expression is not defined: " + token).build();
+            }
+            return value;
+        }
+        return item.get(name(token));
+    }
+
+    private String name(String token) {
+        if (!token.startsWith("#")) {
+            return token;
+        }
+        String name = names != null ? names.get(token) : null;
+        if (name == null) {
+            throw DynamoDbException.builder().statusCode(400)
+                    .message("An expression attribute name used in expression is not defined: " + token).build();
+        }
+        return name;
+    }
+
+    static int compare(AttributeValue left, AttributeValue right) {
+        if (left.n() != null && right.n() != null) {
+            return new BigDecimal(left.n()).compareTo(new BigDecimal(right.n()));
+        }
+        if (left.s() != null && right.s() != null) {
+            return left.s().compareTo(right.s());
+        }
+        return left.equals(right) ? 0 : 1;
+    }
+}
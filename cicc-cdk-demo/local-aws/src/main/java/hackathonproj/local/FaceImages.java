@@ -0,0 +1,268 @@
+package hackathonproj.local;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+// Synthetic JPEG photos for the local stand-ins. The identity of the person "in" a photo is written into
+// a JPEG comment segment, which LocalRekognitionClient reads back instead of running face recognition.
+// Photos of the same identity are byte-for-byte different (the pixels vary by variant), so nothing can
+// match them by equality. The comment survives the upload path as long as ImagePreprocessor leaves the
+// image untouched, i.e. it is upright and within IMAGE_MAX_EDGE.
+// A class photo lists its faces and their bounding boxes in the comment instead. Its faces are also painted
+// in two registered colours (top and bottom half), so a crop of one face, which no longer carries the comment,
+// is still recognised by its pixels; single photos have one-coloured faces and never match those.
+public final class FaceImages {
+
+    private static final String MARKER = "face:";
+    private static final String GROUP_MARKER = "faces:";
+    // Where photo() paints its face, relative to the image
+    private static final float[] SINGLE_BOX = {0.25f, 0.17f, 0.5f, 0.66f};
+    // Eight levels per channel, so JPEG noise never turns one colour into another
+    private static final int PALETTE_SIZE = 512;
+    private static final int COLOUR_TOLERANCE = 12;
+
+    private static final Map<Integer, String> PAINTED = new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT_SLOT = new AtomicInteger();
+
+    private FaceImages() {
+    }
+
+    public static byte[] photo(String identity, int variant, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            int seed = (identity != null ? identity.hashCode() : 0) * 31 + variant;
+            graphics.setColor(new Color(seed & 0xFFFFFF));
+            graphics.fillRect(0, 0, width, height);
+            graphics.setColor(new Color(~seed & 0xFFFFFF));
+            graphics.fillOval(width / 4, height / 6, width / 2, height * 2 / 3);
+        } finally {
+            graphics.dispose();
+        }
+
+        byte[] jpeg = jpeg(image);
+        return identity != null ? withComment(jpeg, MARKER + identity) : jpeg;
+    }
+
+    // A class photo of the given people in a grid, every face clear of the image edges
+    public static byte[] classPhoto(List<String> identities, int width, int height) {
+        int columns = (int) Math.ceil(Math.sqrt(identities.size() * (double) width / height));
+        int rows = (int) Math.ceil(identities.size() / (double) columns);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        StringBuilder comment = new StringBuilder(GROUP_MARKER);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(new Color(0x202020));
+            graphics.fillRect(0, 0, width, height);
+            for (int i = 0; i < identities.size(); i++) {
+                float cellWidth = 1f / columns;
+                float cellHeight = 1f / rows;
+                float[] box = {(i % columns + 0.3f) * cellWidth, (i / columns + 0.2f) * cellHeight, 0.4f * cellWidth, 0.6f * cellHeight};
+                int slot = NEXT_SLOT.getAndIncrement() % PALETTE_SIZE;
+                PAINTED.put(slot, identities.get(i));
+
+                Ellipse2D face = new Ellipse2D.Float(box[0] * width, box[1] * height, box[2] * width, box[3] * height);
+                graphics.setColor(new Color(top(slot)));
+                graphics.fill(face);
+                graphics.setClip((int) (box[0] * width), (int) ((box[1] + box[3] / 2) * height), (int) Math.ceil(box[2] * width) + 1,
+                        (int) Math.ceil(box[3] * height / 2) + 1);
+                graphics.setColor(new Color(bottom(slot)));
+                graphics.fill(face);
+                graphics.setClip(null);
+
+                comment.append(i > 0 ? ";" : "").append(identities.get(i)).append('@')
+                        .append(String.format(Locale.ROOT, "%.4f,%.4f,%.4f,%.4f", box[0], box[1], box[2], box[3]));
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return withComment(jpeg(image), comment.toString());
+    }
+
+    // Identity written by photo(), or null for an image without a face; the first face of a class photo
+    public static String identity(byte[] jpeg) {
+        List<Face> faces = faces(jpeg);
+        return faces.isEmpty() ? null : faces.get(0).identity();
+    }
+
+    // The faces in an image with their bounding boxes, as DetectFaces reports them
+    public static List<Face> faces(byte[] jpeg) {
+        String comment = comment(jpeg);
+        if (comment != null && comment.startsWith(GROUP_MARKER)) {
+            List<Face> faces = new ArrayList<>();
+            for (String entry : comment.substring(GROUP_MARKER.length()).split(";")) {
+                int at = entry.lastIndexOf('@');
+                String[] box = entry.substring(at + 1).split(",");
+                faces.add(new Face(entry.substring(0, at), Float.parseFloat(box[0]), Float.parseFloat(box[1]),
+                        Float.parseFloat(box[2]), Float.parseFloat(box[3])));
+            }
+            return faces;
+        }
+        if (comment != null && comment.startsWith(MARKER)) {
+            return List.of(new Face(comment.substring(MARKER.length()), SINGLE_BOX[0], SINGLE_BOX[1], SINGLE_BOX[2], SINGLE_BOX[3]));
+        }
+        String painted = paintedIdentity(jpeg);
+        return painted != null ? List.of(new Face(painted, SINGLE_BOX[0], SINGLE_BOX[1], SINGLE_BOX[2], SINGLE_BOX[3]))
+                : Collections.emptyList();
+    }
+
+    private static String comment(byte[] jpeg) {
+        if (jpeg == null || jpeg.length < 4 || (jpeg[0] & 0xFF) != 0xFF || (jpeg[1] & 0xFF) != 0xD8) {
+            return null;
+        }
+        int offset = 2;
+        while (offset + 4 <= jpeg.length && (jpeg[offset] & 0xFF) == 0xFF) {
+            int marker = jpeg[offset + 1] & 0xFF;
+            int length = ((jpeg[offset + 2] & 0xFF) << 8) | (jpeg[offset + 3] & 0xFF);
+            if (marker == 0xDA || length < 2) {
+                break;
+            }
+            if (marker == 0xFE && offset + 2 + length <= jpeg.length) {
+                String comment = new String(jpeg, offset + 4, length - 2, StandardCharsets.UTF_8);
+                if (comment.startsWith(MARKER) || comment.startsWith(GROUP_MARKER)) {
+                    return comment;
+                }
+            }
+            offset += 2 + length;
+        }
+        return null;
+    }
+
+    // A crop of one class-photo face: the colours above and below its centre identify the painted face
+    private static String paintedIdentity(byte[] jpeg) {
+        BufferedImage image;
+        try {
+            image = jpeg != null ? ImageIO.read(new ByteArrayInputStream(jpeg)) : null;
+        } catch (IOException e) {
+            return null;
+        }
+        if (image == null) {
+            return null;
+        }
+        int x = image.getWidth() / 2;
+        int upper = sample(image, x, image.getHeight() * 7 / 20);
+        int lower = sample(image, x, image.getHeight() * 13 / 20);
+        for (Map.Entry<Integer, String> painted : PAINTED.entrySet()) {
+            if (close(upper, top(painted.getKey())) && close(lower, bottom(painted.getKey()))) {
+                return painted.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static int top(int slot) {
+        return level(slot) << 16 | level(slot / 8) << 8 | level(slot / 64);
+    }
+
+    // The inverse of the top colour, so the two halves differ in every channel
+    private static int bottom(int slot) {
+        return ~top(slot) & 0xFFFFFF;
+    }
+
+    private static int level(int value) {
+        return 16 + 32 * (value % 8);
+    }
+
+    private static int sample(BufferedImage image, int x, int y) {
+        int r = 0;
+        int g = 0;
+        int b = 0;
+        int n = 0;
+        for (int dx = -2; dx <= 2; dx++) {
+            for (int dy = -2; dy <= 2; dy++) {
+                int rgb = image.getRGB(Math.max(0, Math.min(image.getWidth() - 1, x + dx)), Math.max(0, Math.min(image.getHeight() - 1, y + dy)));
+                r += rgb >> 16 & 0xFF;
+                g += rgb >> 8 & 0xFF;
+                b += rgb & 0xFF;
+                n++;
+            }
+        }
+        return (r / n) << 16 | (g / n) << 8 | (b / n);
+    }
+
+    private static boolean close(int rgb, int expected) {
+        return Math.abs((rgb >> 16 & 0xFF) - (expected >> 16 & 0xFF)) <= COLOUR_TOLERANCE
+                && Math.abs((rgb >> 8 & 0xFF) - (expected >> 8 & 0xFF)) <= COLOUR_TOLERANCE
+                && Math.abs((rgb & 0xFF) - (expected & 0xFF)) <= COLOUR_TOLERANCE;
+    }
+
+    private static byte[] jpeg(BufferedImage image) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "jpeg", out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // A face of a generated photo; the box is relative to the image, as Rekognition reports it
+    public static final class Face {
+
+        private final String identity;
+        private final float left;
+        private final float top;
+        private final float width;
+        private final float height;
+
+        Face(String identity, float left, float top, float width, float height) {
+            this.identity = identity;
+            this.left = left;
+            this.top = top;
+            this.width = width;
+            this.height = height;
+        }
+
+        public String identity() {
+            return identity;
+        }
+
+        public float left() {
+            return left;
+        }
+
+        public float top() {
+            return top;
+        }
+
+        public float width() {
+            return width;
+        }
+
+        public float height() {
+            return height;
+        }
+    }
+
+    // Inserts a COM segment right after the SOI marker
+    private static byte[] withComment(byte[] jpeg, String comment) {
+        byte[] text = comment.getBytes(StandardCharsets.UTF_8);
+        int length = text.length + 2;
+        byte[] result = new byte[jpeg.length + 2 + length];
+        result[0] = jpeg[0];
+        result[1] = jpeg[1];
+        result[2] = (byte) 0xFF;
+        result[3] = (byte) 0xFE;
+        result[4] = (byte) (length >> 8);
+        result[5] = (byte) length;
+        System.arraycopy(text, 0, result, 6, text.length);
+        System.arraycopy(jpeg, 2, result, 6 + text.length, jpeg.length - 2);
+        return result;
+    }
+}
@@ -0,0 +1,114 @@
+package hackathonproj.local;
+
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+
+// The key condition of a Query: equality on the partition key, optionally followed by AND and one condition on
+// the sort key (a comparison, BETWEEN or begins_with), as DynamoDB accepts them.
+class KeyCondition {
+
+    private static final Pattern PARTITION = Pattern.compile("(?is)\\s*(\\S+)\\s*=\\s*(:\\S+)\\s*(?:AND\\s+(.+))?");
+    private static final Pattern BETWEEN = Pattern.compile("(?is)\\s*(\\S+)\\s+BETWEEN\\s+(:\\S+)\\s+AND\\s+(:\\S+)\\s*");
+    private static final Pattern BEGINS_WITH = Pattern.compile("(?is)\\s*begins_with\\s*\\(\\s*([^,\\s]+)\\s*,\\s*(:[^)\\s]+)\\s*\\)\\s*");
+    private static final Pattern COMPARISON = Pattern.compile("\\s*(\\S+)\\s*(<=|>=|=|<|>)\\s*(:\\S+)\\s*");
+
+    private final String partitionKey;
+    private final AttributeValue partitionValue;
+    private final String sortKey;
+    private final String operator;
+    private final AttributeValue low;
+    private final AttributeValue high;
+
+    KeyCondition(String expression, Map<String, String> names, Map<String, AttributeValue> values,
+                 String partitionKey, String sortKey) {
+        Matcher partition = expression != null ? PARTITION.matcher(expression) : null;
+        if (partition == null || !partition.matches() || !partitionKey.equals(name(partition.group(1), names))) {
+            throw invalid("Query condition missed key schema element: " + partitionKey);
+        }
+        this.partitionKey = partitionKey;
+        this.partitionValue = value(partition.group(2), values);
+        this.sortKey = sortKey;
+        String range = partition.group(3);
+        if (range == null) {
+            operator = null;
+            low = null;
+            high = null;
+            return;
+        }
+        Matcher between = BETWEEN.matcher(range);
+        Matcher beginsWith = BEGINS_WITH.matcher(range);
+        Matcher comparison = COMPARISON.matcher(range);
+        String attribute;
+        if (between.matches()) {
+            attribute = between.group(1);
+            operator = "BETWEEN";
+            low = value(between.group(2), values);
+            high = value(between.group(3), values);
+        } else if (beginsWith.matches()) {
+            attribute = beginsWith.group(1);
+            operator = "begins_with";
+            low = value(beginsWith.group(2), values);
+            high = null;
+        } else if (comparison.matches()) {
+            attribute = comparison.group(1);
+            operator = comparison.group(2);
+            low = value(comparison.group(3), values);
+            high = null;
+        } else {
+            throw invalid("Unsupported key condition expression: " + expression);
+        }
+        if (sortKey == null || !sortKey.equals(name(attribute, names))) {
+            throw invalid("Query key condition not supported: " + expression);
+        }
+    }
+
+    boolean matches(Map<String, AttributeValue> item) {
+        AttributeValue partition = item.get(partitionKey);
+        if (partition == null || !partition.equals(partitionValue)) {
+            return false;
+        }
+        if (operator == null) {
+            return true;
+        }
+        AttributeValue sort = item.get(sortKey);
+        if (sort == null) {
+            return false;
+        }
+        switch (operator) {
+            case "BETWEEN": return ConditionExpression.compare(sort, low) >= 0 && ConditionExpression.compare(sort, high) <= 0;
+            case "begins_with": return sort.s() != null && low.s() != null && sort.s().startsWith(low.s());
+            case "=": return ConditionExpression.compare(sort, low) == 0;
+            case "<": return ConditionExpression.compare(sort, low) < 0;
+            case "<=": return ConditionExpression.compare(sort, low) <= 0;
+            case ">": return ConditionExpression.compare(sort, low) > 0;
+            default: return ConditionExpression.compare(sort, low) >= 0;
+        }
+    }
+
+    private static AttributeValue value(String token, Map<String, AttributeValue> values) {
+        AttributeValue value = values != null ? values.get(token) : null;
+        if (value == null) {
+            throw invalid("An expression attribute value used in expression is not defined: " + token);
+        }
+        return value;
+    }
+
+    private static String name(String token, Map<String, String> names) {
+        if (!token.startsWith("#")) {
+            return token;
+        }
+        String name = names != null ? names.get(token) : null;
+        if (name == null) {
+            throw invalid("An expression attribute name used in expression is not defined: " + token);
+        }
+        return name;
+    }
+
+    private static RuntimeException invalid(String message) {
+        return DynamoDbException.builder().statusCode(400).message(message).build();
+    }
+}
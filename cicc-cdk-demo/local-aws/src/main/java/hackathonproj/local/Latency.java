@@ -0,0 +1,58 @@
+package hackathonproj.local;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import hackathonproj.RequestMetrics;
+
+// Simulated service latency: every call sleeps for a fixed time plus a uniformly distributed jitter.
+// A stand-in's latency can also count its calls into RequestMetrics, as the SDK interceptor does for the real clients.
+public class Latency {
+
+    public static final Latency NONE = new Latency(0, 0, null);
+
+    private final long fixedMicros;
+    private final long jitterMicros;
+    private final RequestMetrics.Counter calls;
+
+    private Latency(long fixedMicros, long jitterMicros, RequestMetrics.Counter calls) {
+        this.fixedMicros = fixedMicros;
+        this.jitterMicros = jitterMicros;
+        this.calls = calls;
+    }
+
+    public static Latency millis(double fixed) {
+        return millis(fixed, 0);
+    }
+
+    public static Latency millis(double fixed, double jitter) {
+        return new Latency((long) (fixed * 1000), (long) (jitter * 1000), null);
+    }
+
+    // The same latency, counting every call as one of the given service
+    public Latency counting(RequestMetrics.Counter calls) {
+        return new Latency(fixedMicros, jitterMicros, calls);
+    }
+
+    public void pause() {
+        if (calls != null) {
+            RequestMetrics.current().count(calls);
+        }
+        long micros = fixedMicros + (jitterMicros > 0 ? ThreadLocalRandom.current().nextLong(jitterMicros + 1) : 0);
+        if (micros <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MICROSECONDS.sleep(micros);
+        } catch (InterruptedException e) {
+            // Cancelled fan-out calls are interrupted; the caller treats the call as abandoned
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Call interrupted", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return (fixedMicros / 1000.0) + "ms" + (jitterMicros > 0 ? " +" + (jitterMicros / 1000.0) + "ms" : "");
+    }
+}
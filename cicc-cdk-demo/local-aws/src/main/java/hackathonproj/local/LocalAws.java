@@ -0,0 +1,53 @@
+package hackathonproj.local;
+
+import hackathonproj.AwsClients;
+import hackathonproj.RequestMetrics;
+
+// The local stand-ins wired together, exposed as the AwsClients the handlers take. Their calls are counted
+// per service into RequestMetrics, like the real clients' calls.
+public class LocalAws {
+
+    private final LocalS3Client s3;
+    private final LocalTextractClient textract;
+    private final LocalRekognitionClient rekognition;
+    private final LocalDynamoDbClient dynamoDB;
+    private final LocalSqsClient sqs;
+    private final AwsClients clients;
+
+    public LocalAws(Latency latency) {
+        this(latency, latency, latency, latency);
+    }
+
+    public LocalAws(Latency s3Latency, Latency textractLatency, Latency rekognitionLatency, Latency dynamoLatency) {
+        this.s3 = new LocalS3Client(s3Latency.counting(RequestMetrics.Counter.S3_CALLS));
+        this.textract = new LocalTextractClient(s3, textractLatency.counting(RequestMetrics.Counter.TEXTRACT_CALLS));
+        this.rekognition = new LocalRekognitionClient(s3, rekognitionLatency.counting(RequestMetrics.Counter.REKOGNITION_CALLS));
+        this.dynamoDB = new LocalDynamoDbClient(dynamoLatency.counting(RequestMetrics.Counter.DYNAMODB_CALLS));
+        this.sqs = new LocalSqsClient(dynamoLatency.counting(RequestMetrics.Counter.SQS_CALLS));
+        this.clients = AwsClients.of(s3, textract, rekognition, dynamoDB, sqs);
+    }
+
+    public AwsClients clients() {
+        return clients;
+    }
+
+    public LocalS3Client s3() {
+        return s3;
+    }
+
+    public LocalTextractClient textract() {
+        return textract;
+    }
+
+    public LocalRekognitionClient rekognition() {
+        return rekognition;
+    }
+
+    public LocalDynamoDbClient dynamoDB() {
+        return dynamoDB;
+    }
+
+    public LocalSqsClient sqs() {
+        return sqs;
+    }
+}
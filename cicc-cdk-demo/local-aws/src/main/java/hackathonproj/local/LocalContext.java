@@ -0,0 +1,99 @@
+package hackathonproj.local;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+
+// Lambda context for invoking handlers in-process, with the function timeout counting down from creation.
+// Logged lines are kept, so a caller can read back e.g. the EMF metrics line of the invocation.
+public class LocalContext implements Context {
+
+    private final String requestId = UUID.randomUUID().toString();
+    private final long deadlineMillis;
+    private final boolean verbose;
+    private final List<String> logged = Collections.synchronizedList(new ArrayList<>());
+
+    public LocalContext(long timeoutMillis, boolean verbose) {
+        this.deadlineMillis = System.currentTimeMillis() + timeoutMillis;
+        this.verbose = verbose;
+    }
+
+    public List<String> logged() {
+        return logged;
+    }
+
+    @Override
+    public String getAwsRequestId() {
+        return requestId;
+    }
+
+    @Override
+    public String getLogGroupName() {
+        return "/aws/lambda/local";
+    }
+
+    @Override
+    public String getLogStreamName() {
+        return "local";
+    }
+
+    @Override
+    public String getFunctionName() {
+        return "local";
+    }
+
+    @Override
+    public String getFunctionVersion() {
+        return "$LATEST";
+    }
+
+    @Override
+    public String getInvokedFunctionArn() {
+        return "arn:aws:lambda:us-east-2:000000000000:function:local";
+    }
+
+    @Override
+    public CognitoIdentity getIdentity() {
+        return null;
+    }
+
+    @Override
+    public ClientContext getClientContext() {
+        return null;
+    }
+
+    @Override
+    public int getRemainingTimeInMillis() {
+        return (int) Math.max(0, deadlineMillis - System.currentTimeMillis());
+    }
+
+    @Override
+    public int getMemoryLimitInMB() {
+        return 1024;
+    }
+
+    @Override
+    public LambdaLogger getLogger() {
+        return new LambdaLogger() {
+            @Override
+            public void log(String message) {
+                logged.add(message);
+                if (verbose) {
+                    System.err.println(message);
+                }
+            }
+
+            @Override
+            public void log(byte[] message) {
+                log(new String(message, StandardCharsets.UTF_8));
+            }
+        };
+    }
+}
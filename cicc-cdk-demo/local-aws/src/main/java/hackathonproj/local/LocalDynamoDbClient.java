@@ -0,0 +1,442 @@
+package hackathonproj.local;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.StreamRecord;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.StreamViewType;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+// In-memory DynamoDB for the participation tables. Tables must be declared with their key attributes first,
+// as with CreateTable, and global secondary indexes with theirs; items are stored whole and replaced on put,
+// like the real service. Condition expressions on PutItem, UpdateItem and DeleteItem are evaluated atomically
+// per table. A table with a stream records every change with its old and new image, for the stream handlers.
+// Query and Scan pages are cut by Limit only, not by the 1 MB a real page holds.
+public class LocalDynamoDbClient implements DynamoDbClient {
+
+    private final Map<String, Table> tables = new ConcurrentHashMap<>();
+    private final Latency latency;
+    private final AtomicLong calls = new AtomicLong();
+    private volatile double unprocessedRate;
+    private volatile double throttleRate;
+
+    public LocalDynamoDbClient(Latency latency) {
+        this.latency = latency;
+    }
+
+    // Simulates throttling: each BatchWriteItem request is left unprocessed with this probability
+    public void setUnprocessedRate(double unprocessedRate) {
+        this.unprocessedRate = unprocessedRate;
+    }
+
+    // Share of single-item calls (PutItem, DeleteItem, GetItem) rejected with ProvisionedThroughputExceededException
+    public void throttle(double rate) {
+        this.throttleRate = rate;
+    }
+
+    public void createTable(String name, String partitionKey, String sortKey) {
+        tables.putIfAbsent(name, new Table(partitionKey, sortKey));
+    }
+
+    // A global secondary index projecting all attributes; items without both key attributes are left out of it
+    public void createIndex(String tableName, String indexName, String partitionKey, String sortKey) {
+        table(tableName).indexes.put(indexName, new String[] {partitionKey, sortKey});
+    }
+
+    // Records the table's changes from now on, as a NEW_AND_OLD_IMAGES stream would
+    public void enableStream(String tableName) {
+        Table table = table(tableName);
+        synchronized (table) {
+            if (table.stream == null) {
+                table.stream = new ArrayList<>();
+            }
+        }
+    }
+
+    // The changes recorded since the last call, in order, as the event a stream-triggered function receives
+    public DynamodbEvent drainStream(String tableName) {
+        Table table = table(tableName);
+        DynamodbEvent event = new DynamodbEvent();
+        synchronized (table) {
+            event.setRecords(table.stream != null ? new ArrayList<>(table.stream) : new ArrayList<>());
+            if (table.stream != null) {
+                table.stream.clear();
+            }
+        }
+        return event;
+    }
+
+    public Collection<Map<String, AttributeValue>> items(String tableName) {
+        return table(tableName).items.values();
+    }
+
+    public long callCount() {
+        return calls.get();
+    }
+
+    @Override
+    public PutItemResponse putItem(PutItemRequest request) {
+        call();
+        throttled();
+        Table table = table(request.tableName());
+        List<AttributeValue> key = table.key(request.item());
+        synchronized (table) {
+            check(table, key, request.conditionExpression(), request.expressionAttributeNames(), request.expressionAttributeValues());
+            table.write(key, new HashMap<>(request.item()));
+        }
+        return PutItemResponse.builder().build();
+    }
+
+    @Override
+    public DeleteItemResponse deleteItem(DeleteItemRequest request) {
+        call();
+        throttled();
+        Table table = table(request.tableName());
+        List<AttributeValue> key = table.key(request.key());
+        synchronized (table) {
+            check(table, key, request.conditionExpression(), request.expressionAttributeNames(), request.expressionAttributeValues());
+            table.write(key, null);
+        }
+        return DeleteItemResponse.builder().build();
+    }
+
+    @Override
+    public UpdateItemResponse updateItem(UpdateItemRequest request) {
+        call();
+        throttled();
+        Table table = table(request.tableName());
+        List<AttributeValue> key = table.key(request.key());
+        synchronized (table) {
+            check(table, key, request.conditionExpression(), request.expressionAttributeNames(), request.expressionAttributeValues());
+            UpdateExpression update = new UpdateExpression(request.updateExpression(), request.expressionAttributeNames(),
+                    request.expressionAttributeValues());
+            table.write(key, update.apply(table.items.get(key), request.key()));
+        }
+        return UpdateItemResponse.builder().build();
+    }
+
+    // Key conditions on the table's or an index's keys, in sort key order. Limit counts the items read before
+    // the filter, and a page that reaches it ends with LastEvaluatedKey, even when nothing follows.
+    @Override
+    public QueryResponse query(QueryRequest request) {
+        call();
+        throttled();
+        Table table = table(request.tableName());
+        String[] schema = request.indexName() != null ? table.indexes.get(request.indexName())
+                : new String[] {table.partitionKey, table.sortKey};
+        if (schema == null) {
+            throw DynamoDbException.builder().statusCode(400)
+                    .message("The table does not have the specified index: " + request.indexName()).build();
+        }
+        KeyCondition condition = new KeyCondition(request.keyConditionExpression(), request.expressionAttributeNames(),
+                request.expressionAttributeValues(), schema[0], schema[1]);
+        ConditionExpression filter = request.filterExpression() != null ? new ConditionExpression(request.filterExpression(),
+                request.expressionAttributeNames(), request.expressionAttributeValues()) : null;
+
+        Comparator<Map<String, AttributeValue>> order = table.order(schema);
+        if (Boolean.FALSE.equals(request.scanIndexForward())) {
+            order = order.reversed();
+        }
+        List<Map<String, AttributeValue>> matching = new ArrayList<>();
+        for (Map<String, AttributeValue> item : table.items.values()) {
+            if (item.containsKey(schema[0]) && (schema[1] == null || item.containsKey(schema[1])) && condition.matches(item)) {
+                matching.add(item);
+            }
+        }
+        matching.sort(order);
+
+        int start = 0;
+        if (request.hasExclusiveStartKey() && !request.exclusiveStartKey().isEmpty()) {
+            while (start < matching.size() && order.compare(matching.get(start), request.exclusiveStartKey()) <= 0) {
+                start++;
+            }
+        }
+        int limit = request.limit() != null ? request.limit() : Integer.MAX_VALUE;
+        List<Map<String, AttributeValue>> page = new ArrayList<>();
+        Map<String, AttributeValue> lastKey = null;
+        int scanned = 0;
+        for (int i = start; i < matching.size() && scanned < limit; i++) {
+            Map<String, AttributeValue> item = matching.get(i);
+            scanned++;
+            if (filter == null || filter.matches(item)) {
+                page.add(new HashMap<>(item));
+            }
+            if (scanned == limit) {
+                lastKey = table.lastKey(item, schema);
+            }
+        }
+        return QueryResponse.builder()
+                .items(page)
+                .count(page.size())
+                .scannedCount(scanned)
+                .lastEvaluatedKey(lastKey)
+                .build();
+    }
+
+    // The whole table in key order, without filters or parallel segments
+    @Override
+    public ScanResponse scan(ScanRequest request) {
+        call();
+        throttled();
+        Table table = table(request.tableName());
+        String[] schema = {table.partitionKey, table.sortKey};
+        Comparator<Map<String, AttributeValue>> order = table.order(schema);
+        List<Map<String, AttributeValue>> items = new ArrayList<>(table.items.values());
+        items.sort(order);
+
+        int start = 0;
+        if (request.hasExclusiveStartKey() && !request.exclusiveStartKey().isEmpty()) {
+            while (start < items.size() && order.compare(items.get(start), request.exclusiveStartKey()) <= 0) {
+                start++;
+            }
+        }
+        int limit = request.limit() != null ? request.limit() : Integer.MAX_VALUE;
+        List<Map<String, AttributeValue>> page = new ArrayList<>();
+        for (int i = start; i < items.size() && page.size() < limit; i++) {
+            page.add(new HashMap<>(items.get(i)));
+        }
+        Map<String, AttributeValue> lastKey = page.size() == limit ? table.lastKey(page.get(page.size() - 1), schema) : null;
+        return ScanResponse.builder()
+                .items(page)
+                .count(page.size())
+                .scannedCount(page.size())
+                .lastEvaluatedKey(lastKey)
+                .build();
+    }
+
+    @Override
+    public GetItemResponse getItem(GetItemRequest request) {
+        call();
+        throttled();
+        Table table = table(request.tableName());
+        Map<String, AttributeValue> item = table.items.get(table.key(request.key()));
+        return GetItemResponse.builder().item(item).build();
+    }
+
+    @Override
+    public BatchWriteItemResponse batchWriteItem(BatchWriteItemRequest request) {
+        call();
+        Map<String, List<WriteRequest>> unprocessed = new HashMap<>();
+        for (Map.Entry<String, List<WriteRequest>> entry : request.requestItems().entrySet()) {
+            Table table = table(entry.getKey());
+            if (entry.getValue().size() > 25) {
+                throw DynamoDbException.builder().statusCode(400)
+                        .message("Too many items requested for the BatchWriteItem call").build();
+            }
+            Set<List<AttributeValue>> keys = new HashSet<>();
+            for (WriteRequest write : entry.getValue()) {
+                Map<String, AttributeValue> item = write.putRequest() != null ? write.putRequest().item() : write.deleteRequest().key();
+                if (!keys.add(table.key(item))) {
+                    throw DynamoDbException.builder().statusCode(400)
+                            .message("Provided list of item keys contains duplicates").build();
+                }
+            }
+            for (WriteRequest write : entry.getValue()) {
+                if (unprocessedRate > 0 && ThreadLocalRandom.current().nextDouble() < unprocessedRate) {
+                    unprocessed.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(write);
+                } else if (write.putRequest() != null) {
+                    synchronized (table) {
+                        table.write(table.key(write.putRequest().item()), new HashMap<>(write.putRequest().item()));
+                    }
+                } else {
+                    synchronized (table) {
+                        table.write(table.key(write.deleteRequest().key()), null);
+                    }
+                }
+            }
+        }
+        return BatchWriteItemResponse.builder().unprocessedItems(unprocessed).build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void call() {
+        latency.pause();
+        calls.incrementAndGet();
+    }
+
+    private void throttled() {
+        if (throttleRate > 0 && ThreadLocalRandom.current().nextDouble() < throttleRate) {
+            throw ProvisionedThroughputExceededException.builder()
+                    .statusCode(400)
+                    .awsErrorDetails(AwsErrorDetails.builder()
+                            .errorCode("ProvisionedThroughputExceededException")
+                            .errorMessage("The level of configured provisioned throughput for the table was exceeded")
+                            .serviceName(SERVICE_NAME)
+                            .build())
+                    .build();
+        }
+    }
+
+    private static void check(Table table, List<AttributeValue> key, String condition,
+                              Map<String, String> names, Map<String, AttributeValue> values) {
+        if (condition == null) {
+            return;
+        }
+        if (!new ConditionExpression(condition, names, values).matches(table.items.get(key))) {
+            throw ConditionalCheckFailedException.builder().statusCode(400).message("The conditional request failed").build();
+        }
+    }
+
+    private Table table(String name) {
+        Table table = tables.get(name);
+        if (table == null) {
+            throw ResourceNotFoundException.builder().statusCode(400).message("Requested resource not found: Table: " + name).build();
+        }
+        return table;
+    }
+
+    private static class Table {
+
+        private final String partitionKey;
+        private final String sortKey;
+        private final Map<List<AttributeValue>, Map<String, AttributeValue>> items = new ConcurrentHashMap<>();
+        private final Map<String, String[]> indexes = new ConcurrentHashMap<>();
+        // Guarded by the table's lock, like the writes that append to it
+        private List<DynamodbEvent.DynamodbStreamRecord> stream;
+        private long sequenceNumber = 100000000000000000L;
+
+        Table(String partitionKey, String sortKey) {
+            this.partitionKey = partitionKey;
+            this.sortKey = sortKey;
+        }
+
+        // Stores or (with null) removes the item under the caller's lock on the table
+        void write(List<AttributeValue> key, Map<String, AttributeValue> item) {
+            Map<String, AttributeValue> old = item != null ? items.put(key, item) : items.remove(key);
+            if (stream == null || (old == null && item == null)) {
+                return;
+            }
+            Map<String, AttributeValue> keyItem = item != null ? item : old;
+            StreamRecord change = new StreamRecord()
+                    .withSequenceNumber(String.valueOf(++sequenceNumber))
+                    .withKeys(image(lastKey(keyItem, new String[] {partitionKey, sortKey})))
+                    .withStreamViewType(StreamViewType.NEW_AND_OLD_IMAGES);
+            if (old != null) {
+                change.setOldImage(image(old));
+            }
+            if (item != null) {
+                change.setNewImage(image(item));
+            }
+            DynamodbEvent.DynamodbStreamRecord record = new DynamodbEvent.DynamodbStreamRecord();
+            record.setEventName(old == null ? "INSERT" : item == null ? "REMOVE" : "MODIFY");
+            record.setEventSource("aws:dynamodb");
+            record.setDynamodb(change);
+            stream.add(record);
+        }
+
+        // Sort key order within a partition; index entries with equal keys are ordered by the table's key
+        Comparator<Map<String, AttributeValue>> order(String[] schema) {
+            List<String> attributes = new ArrayList<>();
+            for (String attribute : new String[] {schema[1], partitionKey, sortKey}) {
+                if (attribute != null && !attributes.contains(attribute)) {
+                    attributes.add(attribute);
+                }
+            }
+            return (left, right) -> {
+                for (String attribute : attributes) {
+                    AttributeValue leftValue = left.get(attribute);
+                    AttributeValue rightValue = right.get(attribute);
+                    if (leftValue == null || rightValue == null) {
+                        return leftValue == rightValue ? 0 : leftValue == null ? -1 : 1;
+                    }
+                    int order = ConditionExpression.compare(leftValue, rightValue);
+                    if (order != 0) {
+                        return order;
+                    }
+                }
+                return 0;
+            };
+        }
+
+        // The table's and the index's key attributes of an item, as LastEvaluatedKey carries them
+        Map<String, AttributeValue> lastKey(Map<String, AttributeValue> item, String[] schema) {
+            Map<String, AttributeValue> key = new HashMap<>();
+            for (String attribute : new String[] {partitionKey, sortKey, schema[0], schema[1]}) {
+                if (attribute != null) {
+                    key.put(attribute, item.get(attribute));
+                }
+            }
+            return key;
+        }
+
+        List<AttributeValue> key(Map<String, AttributeValue> item) {
+            List<AttributeValue> key = new ArrayList<>(2);
+            key.add(required(item, partitionKey));
+            if (sortKey != null) {
+                key.add(required(item, sortKey));
+            }
+            return key;
+        }
+
+        // Scalars only: the tables hold strings, numbers and flags
+        private static Map<String, com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue> image(
+                Map<String, AttributeValue> item) {
+            Map<String, com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue> image = new HashMap<>();
+            for (Map.Entry<String, AttributeValue> attribute : item.entrySet()) {
+                AttributeValue value = attribute.getValue();
+                com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue converted =
+                        new com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue();
+                if (value.s() != null) {
+                    converted.setS(value.s());
+                } else if (value.n() != null) {
+                    converted.setN(value.n());
+                } else if (value.bool() != null) {
+                    converted.setBOOL(value.bool());
+                } else {
+                    converted.setNULL(true);
+                }
+                image.put(attribute.getKey(), converted);
+            }
+            return image;
+        }
+
+        private static AttributeValue required(Map<String, AttributeValue> item, String attribute) {
+            AttributeValue value = item.get(attribute);
+            if (value == null) {
+                throw DynamoDbException.builder().statusCode(400)
+                        .message("One of the required keys was not given a value: " + attribute).build();
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package hackathonproj.local;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.rekognition.RekognitionClient;
+import software.amazon.awssdk.services.rekognition.model.BoundingBox;
+import software.amazon.awssdk.services.rekognition.model.CompareFacesMatch;
+import software.amazon.awssdk.services.rekognition.model.CompareFacesRequest;
+import software.amazon.awssdk.services.rekognition.model.CompareFacesResponse;
+import software.amazon.awssdk.services.rekognition.model.ComparedFace;
+import software.amazon.awssdk.services.rekognition.model.ComparedSourceImageFace;
+import software.amazon.awssdk.services.rekognition.model.DeleteFacesRequest;
+import software.amazon.awssdk.services.rekognition.model.DeleteFacesResponse;
+import software.amazon.awssdk.services.rekognition.model.DetectFacesRequest;
+import software.amazon.awssdk.services.rekognition.model.DetectFacesResponse;
+import software.amazon.awssdk.services.rekognition.model.Face;
+import software.amazon.awssdk.services.rekognition.model.FaceDetail;
+import software.amazon.awssdk.services.rekognition.model.FaceMatch;
+import software.amazon.awssdk.services.rekognition.model.FaceRecord;
+import software.amazon.awssdk.services.rekognition.model.Image;
+import software.amazon.awssdk.services.rekognition.model.IndexFacesRequest;
+import software.amazon.awssdk.services.rekognition.model.IndexFacesResponse;
+import software.amazon.awssdk.services.rekognition.model.InvalidParameterException;
+import software.amazon.awssdk.services.rekognition.model.ListFacesRequest;
+import software.amazon.awssdk.services.rekognition.model.ListFacesResponse;
+import software.amazon.awssdk.services.rekognition.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.rekognition.model.SearchFacesByImageRequest;
+import software.amazon.awssdk.services.rekognition.model.SearchFacesByImageResponse;
+import software.amazon.awssdk.services.rekognition.paginators.ListFacesIterable;
+
+// Rekognition stand-in that "recognises" the identity FaceImages writes into a photo: two images match
+// when they carry the same identity, and an image without one has no face. A class photo has one face per
+// listed identity, each with its own bounding box. Collections are created on first use.
+// A throttle rate makes that share of calls fail with ProvisionedThroughputExceededException, as under peak load.
+public class LocalRekognitionClient implements RekognitionClient {
+
+    private static final float MATCH_SIMILARITY = 99.1f;
+    private static final BoundingBox FACE_BOX = BoundingBox.builder().left(0.25f).top(0.17f).width(0.5f).height(0.66f).build();
+    private static final int LIST_PAGE_SIZE = 100;
+
+    private final LocalS3Client s3;
+    private final Latency latency;
+    private final Map<String, Map<String, Face>> collections = new ConcurrentHashMap<>();
+    private final Map<String, String> identities = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private volatile double throttleRate;
+
+    public LocalRekognitionClient(LocalS3Client s3, Latency latency) {
+        this.s3 = s3;
+        this.latency = latency;
+    }
+
+    // Share of calls (0 to 1) rejected as throttled
+    public void throttle(double rate) {
+        this.throttleRate = rate;
+    }
+
+    public long callCount() {
+        return calls.get();
+    }
+
+    public int faceCount(String collectionId) {
+        return collection(collectionId).size();
+    }
+
+    @Override
+    public DetectFacesResponse detectFaces(DetectFacesRequest request) {
+        call();
+        List<FaceDetail> faces = new ArrayList<>();
+        for (FaceImages.Face face : faces(request.image())) {
+            faces.add(FaceDetail.builder().boundingBox(box(face)).confidence(99.9f).build());
+        }
+        return DetectFacesResponse.builder().faceDetails(faces).build();
+    }
+
+    @Override
+    public CompareFacesResponse compareFaces(CompareFacesRequest request) {
+        call();
+        String source = identity(request.sourceImage());
+        if (source == null) {
+            throw InvalidParameterException.builder().statusCode(400).message("Request has invalid parameters").build();
+        }
+        float threshold = request.similarityThreshold() != null ? request.similarityThreshold() : 80f;
+
+        // Every face of the target is compared with the source's face
+        List<CompareFacesMatch> matches = new ArrayList<>();
+        List<ComparedFace> unmatched = new ArrayList<>();
+        for (FaceImages.Face target : faces(request.targetImage())) {
+            ComparedFace face = ComparedFace.builder().boundingBox(box(target)).confidence(99.9f).build();
+            if (target.identity().equals(source) && MATCH_SIMILARITY >= threshold) {
+                matches.add(CompareFacesMatch.builder().similarity(MATCH_SIMILARITY).face(face).build());
+            } else {
+                unmatched.add(face);
+            }
+        }
+        return CompareFacesResponse.builder()
+                .sourceImageFace(ComparedSourceImageFace.builder().boundingBox(FACE_BOX).confidence(99.9f).build())
+                .faceMatches(matches)
+                .unmatchedFaces(unmatched)
+                .build();
+    }
+
+    @Override
+    public IndexFacesResponse indexFaces(IndexFacesRequest request) {
+        call();
+        String identity = identity(request.image());
+        if (identity == null) {
+            return IndexFacesResponse.builder().faceRecords(Collections.emptyList()).build();
+        }
+        Face face = Face.builder()
+                .faceId(UUID.randomUUID().toString())
+                .imageId(UUID.randomUUID().toString())
+                .externalImageId(request.externalImageId())
+                .boundingBox(FACE_BOX)
+                .confidence(99.9f)
+                .build();
+        collection(request.collectionId()).put(face.faceId(), face);
+        identities.put(face.faceId(), identity);
+        return IndexFacesResponse.builder()
+                .faceRecords(FaceRecord.builder().face(face).build())
+                .build();
+    }
+
+    @Override
+    public DeleteFacesResponse deleteFaces(DeleteFacesRequest request) {
+        call();
+        Map<String, Face> faces = collection(request.collectionId());
+        List<String> deleted = new ArrayList<>();
+        for (String faceId : request.faceIds()) {
+            if (faces.remove(faceId) != null) {
+                identities.remove(faceId);
+                deleted.add(faceId);
+            }
+        }
+        return DeleteFacesResponse.builder().deletedFaces(deleted).build();
+    }
+
+    @Override
+    public SearchFacesByImageResponse searchFacesByImage(SearchFacesByImageRequest request) {
+        call();
+        String identity = identity(request.image());
+        if (identity == null) {
+            throw InvalidParameterException.builder().statusCode(400).message("There are no faces in the image").build();
+        }
+        float threshold = request.faceMatchThreshold() != null ? request.faceMatchThreshold() : 80f;
+        int maxFaces = request.maxFaces() != null ? request.maxFaces() : 4096;
+
+        List<FaceMatch> matches = new ArrayList<>();
+        for (Face face : collection(request.collectionId()).values()) {
+            if (matches.size() >= maxFaces) {
+                break;
+            }
+            if (identity.equals(identities.get(face.faceId())) && MATCH_SIMILARITY >= threshold) {
+                matches.add(FaceMatch.builder().face(face).similarity(MATCH_SIMILARITY).build());
+            }
+        }
+        return SearchFacesByImageResponse.builder()
+                .searchedFaceBoundingBox(FACE_BOX)
+                .searchedFaceConfidence(99.9f)
+                .faceMatches(matches)
+                .build();
+    }
+
+    @Override
+    public ListFacesResponse listFaces(ListFacesRequest request) {
+        call();
+        List<Face> faces = new ArrayList<>(collection(request.collectionId()).values());
+        faces.sort((a, b) -> a.faceId().compareTo(b.faceId()));
+        int start = request.nextToken() != null ? Integer.parseInt(request.nextToken()) : 0;
+        int pageSize = request.maxResults() != null ? request.maxResults() : LIST_PAGE_SIZE;
+        int end = Math.min(faces.size(), start + pageSize);
+        return ListFacesResponse.builder()
+                .faces(faces.subList(Math.min(start, end), end))
+                .nextToken(end < faces.size() ? String.valueOf(end) : null)
+                .build();
+    }
+
+    @Override
+    public ListFacesIterable listFacesPaginator(ListFacesRequest request) {
+        return new ListFacesIterable(this, request);
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void call() {
+        latency.pause();
+        calls.incrementAndGet();
+        if (throttleRate > 0 && ThreadLocalRandom.current().nextDouble() < throttleRate) {
+            throw ProvisionedThroughputExceededException.builder()
+                    .statusCode(400)
+                    .awsErrorDetails(AwsErrorDetails.builder()
+                            .errorCode("ProvisionedThroughputExceededException")
+                            .errorMessage("Provisioned rate exceeded")
+                            .serviceName(SERVICE_NAME)
+                            .build())
+                    .build();
+        }
+    }
+
+    private Map<String, Face> collection(String collectionId) {
+        return collections.computeIfAbsent(collectionId, id -> new ConcurrentHashMap<>());
+    }
+
+    // The largest face is the first one; all faces of a generated photo have the same size
+    private String identity(Image image) {
+        List<FaceImages.Face> faces = faces(image);
+        return faces.isEmpty() ? null : faces.get(0).identity();
+    }
+
+    private List<FaceImages.Face> faces(Image image) {
+        if (image.s3Object() != null) {
+            return FaceImages.faces(s3.bytes(image.s3Object().bucket(), image.s3Object().name()));
+        }
+        return image.bytes() != null ? FaceImages.faces(image.bytes().asByteArrayUnsafe()) : Collections.emptyList();
+    }
+
+    private static BoundingBox box(FaceImages.Face face) {
+        return BoundingBox.builder().left(face.left()).top(face.top()).width(face.width()).height(face.height()).build();
+    }
+}
@@ -0,0 +1,254 @@
+package hackathonproj.local;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.services.lambda.runtime.events.S3Event;
+import com.amazonaws.services.lambda.runtime.events.models.s3.S3EventNotification;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.paginators.ListObjectsV2Iterable;
+
+// In-memory S3 covering the calls the participation functions make: put, (conditional) get, head,
+// delete and paginated ListObjectsV2. ETags are quoted MD5 hex digests, as S3 returns them for simple uploads,
+// and user metadata is kept with the object. S3 event notifications are built on request with createdEvent.
+public class LocalS3Client implements S3Client {
+
+    private static final int MAX_KEYS = 1000;
+
+    private final Map<String, NavigableMap<String, StoredObject>> buckets = new ConcurrentHashMap<>();
+    private final Latency latency;
+    private final AtomicLong gets = new AtomicLong();
+    private final AtomicLong puts = new AtomicLong();
+    private final AtomicLong lists = new AtomicLong();
+
+    public LocalS3Client(Latency latency) {
+        this.latency = latency;
+    }
+
+    // Fixture helper: stores an object without simulated latency or call accounting
+    public String store(String bucket, String key, byte[] bytes, String contentType) {
+        return store(bucket, key, bytes, contentType, Collections.emptyMap());
+    }
+
+    // As a presigned PUT carrying x-amz-meta- headers stores it
+    public String store(String bucket, String key, byte[] bytes, String contentType, Map<String, String> metadata) {
+        StoredObject object = new StoredObject(bytes, contentType, metadata);
+        bucket(bucket).put(key, object);
+        return object.eTag;
+    }
+
+    // The ObjectCreated:Put notification S3 sends for a stored object: URL-encoded key, unquoted ETag
+    public S3Event createdEvent(String bucket, String key) {
+        StoredObject object = bucket(bucket).get(key);
+        if (object == null) {
+            throw new IllegalArgumentException("No object " + key + " in " + bucket);
+        }
+        S3EventNotification.S3Entity s3 = new S3EventNotification.S3Entity("local",
+                new S3EventNotification.S3BucketEntity(bucket, null, "arn:aws:s3:::" + bucket),
+                new S3EventNotification.S3ObjectEntity(URLEncoder.encode(key, StandardCharsets.UTF_8),
+                        (long) object.bytes.length, object.eTag.replace("\"", ""), null, null),
+                "1.0");
+        return new S3Event(List.of(new S3EventNotification.S3EventNotificationRecord("us-east-1", "ObjectCreated:Put",
+                "aws:s3", object.lastModified.toString(), "2.1", null, null, s3, null)));
+    }
+
+    public byte[] bytes(String bucket, String key) {
+        StoredObject object = bucket(bucket).get(key);
+        return object != null ? object.bytes : null;
+    }
+
+    public long getCount() {
+        return gets.get();
+    }
+
+    public long putCount() {
+        return puts.get();
+    }
+
+    public long listCount() {
+        return lists.get();
+    }
+
+    @Override
+    public PutObjectResponse putObject(PutObjectRequest request, RequestBody body) {
+        latency.pause();
+        puts.incrementAndGet();
+        byte[] bytes;
+        try (InputStream in = body.contentStreamProvider().newStream()) {
+            bytes = in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        String eTag = store(request.bucket(), request.key(), bytes, request.contentType(), request.metadata());
+        return PutObjectResponse.builder().eTag(eTag).build();
+    }
+
+    @Override
+    public <ReturnT> ReturnT getObject(GetObjectRequest request, ResponseTransformer<GetObjectResponse, ReturnT> transformer) {
+        latency.pause();
+        gets.incrementAndGet();
+        StoredObject object = bucket(request.bucket()).get(request.key());
+        if (object == null) {
+            throw (NoSuchKeyException) NoSuchKeyException.builder().statusCode(404).message("The specified key does not exist.").build();
+        }
+        if (request.ifNoneMatch() != null && request.ifNoneMatch().equals(object.eTag)) {
+            throw (S3Exception) S3Exception.builder().statusCode(304).message("Not Modified").build();
+        }
+        GetObjectResponse response = GetObjectResponse.builder()
+                .eTag(object.eTag)
+                .lastModified(object.lastModified)
+                .contentLength((long) object.bytes.length)
+                .contentType(object.contentType)
+                .build();
+        try {
+            return transformer.transform(response, AbortableInputStream.create(new ByteArrayInputStream(object.bytes)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public ResponseInputStream<GetObjectResponse> getObject(GetObjectRequest request) {
+        return getObject(request, ResponseTransformer.toInputStream());
+    }
+
+    @Override
+    public HeadObjectResponse headObject(HeadObjectRequest request) {
+        latency.pause();
+        StoredObject object = bucket(request.bucket()).get(request.key());
+        if (object == null) {
+            throw (NoSuchKeyException) NoSuchKeyException.builder().statusCode(404).message("Not Found").build();
+        }
+        return HeadObjectResponse.builder()
+                .eTag(object.eTag)
+                .lastModified(object.lastModified)
+                .contentLength((long) object.bytes.length)
+                .contentType(object.contentType)
+                .metadata(object.metadata)
+                .build();
+    }
+
+    @Override
+    public DeleteObjectResponse deleteObject(DeleteObjectRequest request) {
+        latency.pause();
+        bucket(request.bucket()).remove(request.key());
+        return DeleteObjectResponse.builder().build();
+    }
+
+    @Override
+    public ListObjectsV2Response listObjectsV2(ListObjectsV2Request request) {
+        latency.pause();
+        lists.incrementAndGet();
+        NavigableMap<String, StoredObject> objects = bucket(request.bucket());
+        String prefix = request.prefix() != null ? request.prefix() : "";
+        String start = request.continuationToken() != null ? request.continuationToken()
+                : request.startAfter() != null ? request.startAfter() : null;
+        int maxKeys = request.maxKeys() != null ? Math.min(request.maxKeys(), MAX_KEYS) : MAX_KEYS;
+
+        NavigableMap<String, StoredObject> range = start != null ? objects.tailMap(start, false) : objects.tailMap(prefix, true);
+        List<S3Object> contents = new ArrayList<>();
+        String last = null;
+        boolean truncated = false;
+        for (Map.Entry<String, StoredObject> entry : range.entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            if (contents.size() == maxKeys) {
+                truncated = true;
+                break;
+            }
+            StoredObject object = entry.getValue();
+            contents.add(S3Object.builder()
+                    .key(entry.getKey())
+                    .eTag(object.eTag)
+                    .lastModified(object.lastModified)
+                    .size((long) object.bytes.length)
+                    .build());
+            last = entry.getKey();
+        }
+        return ListObjectsV2Response.builder()
+                .name(request.bucket())
+                .prefix(request.prefix())
+                .contents(contents)
+                .keyCount(contents.size())
+                .isTruncated(truncated)
+                .nextContinuationToken(truncated ? last : null)
+                .build();
+    }
+
+    @Override
+    public ListObjectsV2Iterable listObjectsV2Paginator(ListObjectsV2Request request) {
+        return new ListObjectsV2Iterable(this, request);
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private NavigableMap<String, StoredObject> bucket(String name) {
+        return buckets.computeIfAbsent(name, n -> new ConcurrentSkipListMap<>());
+    }
+
+    private static class StoredObject {
+
+        private final byte[] bytes;
+        private final String eTag;
+        private final Instant lastModified = Instant.now();
+        private final String contentType;
+        private final Map<String, String> metadata;
+
+        StoredObject(byte[] bytes, String contentType, Map<String, String> metadata) {
+            this.bytes = bytes;
+            this.eTag = "\"" + md5(bytes) + "\"";
+            this.contentType = contentType;
+            this.metadata = Map.copyOf(metadata);
+        }
+    }
+
+    private static String md5(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package hackathonproj.local;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageResponse;
+
+// SQS stand-in holding sent messages in memory; drain() hands them out as the SQSEvent a queue-triggered
+// function would receive. Queues are not told apart.
+public class LocalSqsClient implements SqsClient {
+
+    private final ConcurrentLinkedQueue<SQSEvent.SQSMessage> messages = new ConcurrentLinkedQueue<>();
+    private final Latency latency;
+
+    public LocalSqsClient(Latency latency) {
+        this.latency = latency;
+    }
+
+    public int size() {
+        return messages.size();
+    }
+
+    // Removes up to batchSize messages
+    public SQSEvent drain(int batchSize) {
+        List<SQSEvent.SQSMessage> batch = new ArrayList<>();
+        SQSEvent.SQSMessage message;
+        while (batch.size() < batchSize && (message = messages.poll()) != null) {
+            batch.add(message);
+        }
+        SQSEvent event = new SQSEvent();
+        event.setRecords(batch);
+        return event;
+    }
+
+    // Puts messages back, as SQS redelivers those reported as batch item failures
+    public void redeliver(List<SQSEvent.SQSMessage> failed) {
+        messages.addAll(failed);
+    }
+
+    @Override
+    public SendMessageResponse sendMessage(SendMessageRequest request) {
+        latency.pause();
+        return SendMessageResponse.builder().messageId(add(request.queueUrl(), request.messageBody())).build();
+    }
+
+    // One call for up to 10 messages, as with SQS; every entry succeeds
+    @Override
+    public SendMessageBatchResponse sendMessageBatch(SendMessageBatchRequest request) {
+        latency.pause();
+        List<SendMessageBatchResultEntry> successful = new ArrayList<>();
+        for (SendMessageBatchRequestEntry entry : request.entries()) {
+            successful.add(SendMessageBatchResultEntry.builder()
+                    .id(entry.id())
+                    .messageId(add(request.queueUrl(), entry.messageBody()))
+                    .build());
+        }
+        return SendMessageBatchResponse.builder().successful(successful).build();
+    }
+
+    private String add(String queueUrl, String body) {
+        SQSEvent.SQSMessage message = new SQSEvent.SQSMessage();
+        message.setMessageId(UUID.randomUUID().toString());
+        message.setBody(body);
+        message.setEventSourceArn(queueUrl);
+        messages.add(message);
+        return message.getMessageId();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,87 @@
+package hackathonproj.local;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.textract.TextractClient;
+import software.amazon.awssdk.services.textract.model.Block;
+import software.amazon.awssdk.services.textract.model.BlockType;
+import software.amazon.awssdk.services.textract.model.DetectDocumentTextRequest;
+import software.amazon.awssdk.services.textract.model.DetectDocumentTextResponse;
+import software.amazon.awssdk.services.textract.model.InvalidS3ObjectException;
+import software.amazon.awssdk.services.textract.model.ProvisionedThroughputExceededException;
+
+// Textract stand-in: a "document" is UTF-8 text, and every non-blank line of it comes back as a LINE block.
+// Documents referenced by S3 location are read from the given LocalS3Client.
+// A throttle rate makes that share of calls fail with ProvisionedThroughputExceededException.
+public class LocalTextractClient implements TextractClient {
+
+    private final LocalS3Client s3;
+    private final Latency latency;
+    private final AtomicLong calls = new AtomicLong();
+    private volatile double throttleRate;
+
+    public LocalTextractClient(LocalS3Client s3, Latency latency) {
+        this.s3 = s3;
+        this.latency = latency;
+    }
+
+    public static byte[] document(List<String> lines) {
+        return String.join("\n", lines).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Share of calls (0 to 1) rejected as throttled
+    public void throttle(double rate) {
+        this.throttleRate = rate;
+    }
+
+    public long callCount() {
+        return calls.get();
+    }
+
+    @Override
+    public DetectDocumentTextResponse detectDocumentText(DetectDocumentTextRequest request) {
+        latency.pause();
+        calls.incrementAndGet();
+        if (throttleRate > 0 && ThreadLocalRandom.current().nextDouble() < throttleRate) {
+            throw ProvisionedThroughputExceededException.builder()
+                    .statusCode(400)
+                    .awsErrorDetails(AwsErrorDetails.builder()
+                            .errorCode("ProvisionedThroughputExceededException")
+                            .errorMessage("Provisioned rate exceeded")
+                            .serviceName(SERVICE_NAME)
+                            .build())
+                    .build();
+        }
+        byte[] bytes;
+        if (request.document().s3Object() != null) {
+            bytes = s3.bytes(request.document().s3Object().bucket(), request.document().s3Object().name());
+            if (bytes == null) {
+                throw InvalidS3ObjectException.builder().statusCode(400).message("Unable to get object metadata from S3").build();
+            }
+        } else {
+            bytes = request.document().bytes().asByteArrayUnsafe();
+        }
+
+        List<Block> blocks = new ArrayList<>();
+        for (String line : new String(bytes, StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isBlank()) {
+                blocks.add(Block.builder().blockType(BlockType.LINE).text(line.trim()).confidence(99f).build());
+            }
+        }
+        return DetectDocumentTextResponse.builder().blocks(blocks).build();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
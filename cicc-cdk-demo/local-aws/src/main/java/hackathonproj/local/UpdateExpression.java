@@ -0,0 +1,103 @@
+package hackathonproj.local;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+
+// The part of the DynamoDB update syntax the handlers use: ADD of numbers (an absent attribute counts as 0)
+// and SET of attributes to placeholders, e.g. "ADD present :p, total :t SET updated_at = :now".
+class UpdateExpression {
+
+    private static final Pattern CLAUSE = Pattern.compile("(?i)\\b(ADD|SET)\\s+");
+    private static final Pattern ADD = Pattern.compile("(\\S+)\\s+(:\\S+)");
+    private static final Pattern SET = Pattern.compile("(\\S+)\\s*=\\s*(:\\S+)");
+
+    private final String expression;
+    private final Map<String, String> names;
+    private final Map<String, AttributeValue> values;
+
+    UpdateExpression(String expression, Map<String, String> names, Map<String, AttributeValue> values) {
+        this.expression = expression;
+        this.names = names;
+        this.values = values;
+    }
+
+    // The item after the update; a missing item starts out as its key
+    Map<String, AttributeValue> apply(Map<String, AttributeValue> item, Map<String, AttributeValue> key) {
+        Map<String, AttributeValue> updated = new HashMap<>(item != null ? item : key);
+        Matcher clause = CLAUSE.matcher(expression);
+        if (!clause.find() || clause.start() != 0) {
+            throw unsupported();
+        }
+        while (true) {
+            String action = clause.group(1).toUpperCase();
+            int from = clause.end();
+            boolean more = clause.find();
+            String actions = expression.substring(from, more ? clause.start() : expression.length()).trim();
+            for (String term : actions.split("\\s*,\\s*")) {
+                if (action.equals("ADD")) {
+                    add(updated, term);
+                } else {
+                    set(updated, term);
+                }
+            }
+            if (!more) {
+                return updated;
+            }
+        }
+    }
+
+    private void add(Map<String, AttributeValue> item, String term) {
+        Matcher add = ADD.matcher(term);
+        if (!add.matches()) {
+            throw unsupported();
+        }
+        AttributeValue value = value(add.group(2));
+        AttributeValue current = item.get(name(add.group(1)));
+        if (value.n() == null || (current != null && current.n() == null)) {
+            throw DynamoDbException.builder().statusCode(400)
+                    .message("An operand in the update expression has an incorrect data type").build();
+        }
+        BigDecimal sum = new BigDecimal(value.n()).add(current != null ? new BigDecimal(current.n()) : BigDecimal.ZERO);
+        item.put(name(add.group(1)), AttributeValue.fromN(sum.toPlainString()));
+    }
+
+    private void set(Map<String, AttributeValue> item, String term) {
+        Matcher set = SET.matcher(term);
+        if (!set.matches()) {
+            throw unsupported();
+        }
+        item.put(name(set.group(1)), value(set.group(2)));
+    }
+
+    private AttributeValue value(String token) {
+        AttributeValue value = values != null ? values.get(token) : null;
+        if (value == null) {
+            throw DynamoDbException.builder().statusCode(400)
+                    .message("An expression attribute value used in expression is not defined: " + token).build();
+        }
+        return value;
+    }
+
+    private String name(String token) {
+        if (!token.startsWith("#")) {
+            return token;
+        }
+        String name = names != null ? names.get(token) : null;
+        if (name == null) {
+            throw DynamoDbException.builder().statusCode(400)
+                    .message("An expression attribute name used in expression is not defined: " + token).build();
+        }
+        return name;
+    }
+
+    private RuntimeException unsupported() {
+        return DynamoDbException.builder().statusCode(400)
+                .message("Unsupported update expression: " + expression).build();
+    }
+}
@@ -6,8 +6,10 @@ import java.util.Map;
 
 import software.amazon.awscdk.CfnOutput;
 import software.amazon.awscdk.Duration;
+import software.amazon.awscdk.RemovalPolicy;
 import software.amazon.awscdk.Stack;
 import software.amazon.awscdk.StackProps;
+import software.amazon.awscdk.services.apigateway.AuthorizationType;
 import software.amazon.awscdk.services.apigateway.CorsOptions;
 import software.amazon.awscdk.services.apigateway.IntegrationResponse;
 import software.amazon.awscdk.services.apigateway.LambdaIntegration;
@@ -17,11 +19,33 @@ import software.amazon.awscdk.services.apigateway.MethodResponse;
 import software.amazon.awscdk.services.apigateway.MockIntegration;
 import software.amazon.awscdk.services.apigateway.Resource;
 import software.amazon.awscdk.services.apigateway.StageOptions;
+import software.amazon.awscdk.services.dynamodb.Attribute;
+import software.amazon.awscdk.services.dynamodb.AttributeType;
+import software.amazon.awscdk.services.dynamodb.BillingMode;
+import software.amazon.awscdk.services.dynamodb.GlobalSecondaryIndexProps;
+import software.amazon.awscdk.services.dynamodb.ProjectionType;
+import software.amazon.awscdk.services.dynamodb.StreamViewType;
+import software.amazon.awscdk.services.dynamodb.Table;
 import software.amazon.awscdk.services.iam.Effect;
+import software.amazon.awscdk.services.iam.ManagedPolicy;
 import software.amazon.awscdk.services.iam.PolicyStatement;
+import software.amazon.awscdk.services.lambda.Alias;
 import software.amazon.awscdk.services.lambda.Code;
 import software.amazon.awscdk.services.lambda.Function;
+import software.amazon.awscdk.services.lambda.IFunction;
 import software.amazon.awscdk.services.lambda.Runtime;
+import software.amazon.awscdk.services.lambda.SnapStartConf;
+import software.amazon.awscdk.services.lambda.StartingPosition;
+import software.amazon.awscdk.services.lambda.eventsources.DynamoEventSource;
+import software.amazon.awscdk.services.lambda.eventsources.SqsEventSource;
+import software.amazon.awscdk.services.rekognition.CfnCollection;
+import software.amazon.awscdk.services.s3.Bucket;
+import software.amazon.awscdk.services.s3.EventType;
+import software.amazon.awscdk.services.s3.IBucket;
+import software.amazon.awscdk.services.s3.NotificationKeyFilter;
+import software.amazon.awscdk.services.s3.notifications.LambdaDestination;
+import software.amazon.awscdk.services.sqs.DeadLetterQueue;
+import software.amazon.awscdk.services.sqs.Queue;
 import software.constructs.Construct;
 
 public class AmplifyParticipationDemoStack extends Stack {
@@ -38,60 +62,372 @@ public class AmplifyParticipationDemoStack extends Stack {
         // final Queue queue = Queue.Builder.create(this, "AmplifyTextractDemoQueue")
         //         .visibilityTimeout(Duration.seconds(300))
         //         .build();
+        // SnapStart for the participation function, e.g. cdk deploy -c snapStart=true
+        boolean snapStart = "true".equals(String.valueOf(this.getNode().tryGetContext("snapStart")));
+
+        // Per-deployment sizing and configuration, e.g. cdk deploy -c participationMemory=1536 -c participationTimeout=29
+        // -c configKey=proj/config/staging.json. Tuning knobs in the document at configKey reach running functions
+        // within CONFIG_TTL_SECONDS, without a deployment.
+        int participationMemory = Integer.parseInt(context("participationMemory", "1024"));
+        int participationTimeout = Integer.parseInt(context("participationTimeout", "30"));
+        String configKey = context("configKey", "proj/config/participation.json");
+        String bucketName = "proj-hackathon-bucket-cdk"; // Replace with your bucket name
+        String serviceRegion = "us-east-2"; // Region of the bucket
+
+        // Participation records, one per class date, section and student: the sort key is "<section>#<email>", so a
+        // student in two sections on one date keeps both records. A class's roster is one partition, read with Query,
+        // and one section of it a key range; the email index serves a student's history in class date order. The
+        // stream feeds the attendance counts.
+        Table attendanceTable = Table.Builder.create(this, "proj-ParticipationAttendance")
+                .tableName("ParticipationAttendanceCdkproj") // The functions' default TABLE_NAME
+                .partitionKey(Attribute.builder().name("class_date").type(AttributeType.STRING).build())
+                .sortKey(Attribute.builder().name("section_email").type(AttributeType.STRING).build())
+                .billingMode(BillingMode.PAY_PER_REQUEST)
+                .stream(StreamViewType.NEW_AND_OLD_IMAGES)
+                .removalPolicy(RemovalPolicy.RETAIN) // Attendance outlives the stack
+                .build();
+        attendanceTable.addGlobalSecondaryIndex(GlobalSecondaryIndexProps.builder()
+                .indexName("email-index")
+                .partitionKey(Attribute.builder().name("email").type(AttributeType.STRING).build())
+                .sortKey(Attribute.builder().name("class_date").type(AttributeType.STRING).build())
+                .projectionType(ProjectionType.ALL)
+                .build());
+        String tableName = attendanceTable.getTableName();
+
+        // Present/absent counts per class date and section, kept up to date from the attendance table's stream
+        Table countsTable = Table.Builder.create(this, "proj-ParticipationClassCounts")
+                .partitionKey(Attribute.builder().name("class_date").type(AttributeType.STRING).build())
+                .sortKey(Attribute.builder().name("section_id").type(AttributeType.STRING).build())
+                .billingMode(BillingMode.PAY_PER_REQUEST)
+                .removalPolicy(RemovalPolicy.RETAIN)
+                .build();
+
+        // Reference faces are indexed once into this collection and searched with a single call per request
+        CfnCollection faceCollection = CfnCollection.Builder.create(this, "proj-ParticipationFaceCollection")
+                .collectionId("proj-participation-faces")
+                .build();
+
+        // Participation records are queued by the request path and written to DynamoDB in batches
+        Queue participationDeadLetterQueue = Queue.Builder.create(this, "proj-ParticipationWritesDLQ")
+                .retentionPeriod(Duration.days(14))
+                .build();
+        Queue participationQueue = Queue.Builder.create(this, "proj-ParticipationWrites")
+                .visibilityTimeout(Duration.seconds(360)) // Six times the writer timeout, as Lambda recommends
+                .deadLetterQueue(DeadLetterQueue.builder()
+                        .queue(participationDeadLetterQueue)
+                        .maxReceiveCount(5)
+                        .build())
+                .build();
+
+        // Results of completed check-ins, so retried and double-submitted requests are answered without re-running them
+        Table checkInTable = Table.Builder.create(this, "proj-ParticipationCheckIns")
+                .partitionKey(Attribute.builder().name("idempotency_key").type(AttributeType.STRING).build())
+                .billingMode(BillingMode.PAY_PER_REQUEST)
+                .timeToLiveAttribute("expires_at")
+                .removalPolicy(RemovalPolicy.DESTROY)
+                .build();
+
+        // Check-ins submitted with ?async=true: the API records and queues them, the job function runs them
+        // and stores their result here for GET /process-image/jobs/{jobId}
+        Table jobsTable = Table.Builder.create(this, "proj-ParticipationJobs")
+                .partitionKey(Attribute.builder().name("job_id").type(AttributeType.STRING).build())
+                .billingMode(BillingMode.PAY_PER_REQUEST)
+                .timeToLiveAttribute("expires_at")
+                .removalPolicy(RemovalPolicy.DESTROY)
+                .build();
+        Queue jobDeadLetterQueue = Queue.Builder.create(this, "proj-ParticipationJobsDLQ")
+                .retentionPeriod(Duration.days(14))
+                .build();
+        Queue jobQueue = Queue.Builder.create(this, "proj-ParticipationJobQueue")
+                .visibilityTimeout(Duration.seconds(720)) // Six times the job function timeout
+                .deadLetterQueue(DeadLetterQueue.builder()
+                        .queue(jobDeadLetterQueue)
+                        .maxReceiveCount(5) // Above JOB_MAX_ATTEMPTS, so a job's last attempt is recorded before it is dead-lettered
+                        .build())
+                .build();
+
+        // Shared by the API function and the job function, which run the same check-in path
+        Map<String, String> checkInEnvironment = Map.ofEntries(
+                Map.entry("SERVICE_REGION", serviceRegion),
+                Map.entry("BUCKET_NAME", bucketName),
+                Map.entry("TABLE_NAME", tableName),
+                Map.entry("CONFIG_KEY", configKey), // Parameter document overriding the tuning knobs below
+                Map.entry("CONFIG_TTL_SECONDS", "60"), // How often warm containers read the document again
+                Map.entry("FANOUT_CONCURRENCY", "10"), // Concurrent Textract/Rekognition/S3 calls per invocation
+                Map.entry("CALL_TIMEOUT_MS", "8000"), // Upper bound for a single remote call
+                Map.entry("DEADLINE_MARGIN_MS", "1500"), // Time kept back to write the result and respond
+                Map.entry("FACE_MATCH_MODE", "collection"),
+                Map.entry("FACE_COLLECTION_ID", faceCollection.getCollectionId()),
+                Map.entry("IMAGE_MAX_EDGE", "1600"), // Uploads are downsized to this many pixels on the longest side
+                Map.entry("IMAGE_JPEG_QUALITY", "0.85"),
+                Map.entry("CROP_TO_FACE", "false"), // Compare only the detected face region in pairwise mode
+                Map.entry("NAME_MATCH_THRESHOLD", "0.9"), // Lowest fuzzy name score that counts as signed in
+                Map.entry("SIMILARITY_THRESHOLD", "85"), // Lowest Rekognition similarity that counts as the same face
+                Map.entry("REFERENCE_CACHE_MAX_BYTES", "268435456"), // Reference image bytes kept per container
+                Map.entry("DEFAULT_DETAIL", "verdict"), // Response detail when the request asks for none
+                Map.entry("JAVA_TOOL_OPTIONS", "-XX:+TieredCompilation -XX:TieredStopAtLevel=1"), // Faster JVM start-up
+                Map.entry("PARTICIPATION_QUEUE_URL", participationQueue.getQueueUrl()),
+                Map.entry("IDEMPOTENCY_TABLE", checkInTable.getTableName()),
+                Map.entry("IDEMPOTENCY_TTL_SECONDS", "3600"), // Duplicate check-ins within an hour get the first result
+                Map.entry("JOBS_TABLE", jobsTable.getTableName()),
+                Map.entry("JOB_QUEUE_URL", jobQueue.getQueueUrl()),
+                Map.entry("JOB_TTL_SECONDS", "86400"), // Job results can be polled for a day
+                Map.entry("UPLOAD_URL_TTL_SECONDS", "300"), // Presigned upload URLs of /process-image/uploads
+                Map.entry("MAX_UPLOAD_BYTES", "15728640")
+        );
+
         // 1. Create Lambda function for processing images with Textract
         Function ParticipationFunction = Function.Builder.create(this, "hackathon-proj-ParticipationFunction")
                 .runtime(Runtime.JAVA_17)
                 .code(Code.fromAsset("./lambda/target/Participation.jar"))
                 .handler("hackathonproj.ParticipationHandler::handleRequest")
-                .memorySize(1024)
-                .timeout(Duration.seconds(30))
+                .memorySize(participationMemory)
+                .timeout(Duration.seconds(participationTimeout))
+                .environment(checkInEnvironment)
+                // SnapStart restores new containers from a snapshot taken after init and priming
+                // (cdk deploy -c snapStart=true); it only applies to published versions
+                .snapStart(snapStart ? SnapStartConf.ON_PUBLISHED_VERSIONS : null)
+                .build();
+
+        // The API invokes the "live" alias so SnapStart-enabled versions are the ones serving requests
+        IFunction participationTarget = ParticipationFunction;
+        if (snapStart) {
+            participationTarget = Alias.Builder.create(this, "hackathon-proj-ParticipationLive")
+                    .aliasName("live")
+                    .version(ParticipationFunction.getCurrentVersion())
+                    .build();
+        }
+
+        // Runs queued check-ins with the whole recognition path and a longer timeout than API Gateway allows.
+        // Reserved concurrency caps the Rekognition/Textract load a burst of queued jobs can create.
+        Function ParticipationJobFunction = Function.Builder.create(this, "hackathon-proj-ParticipationJobFunction")
+                .runtime(Runtime.JAVA_17)
+                .code(Code.fromAsset("./lambda/target/Participation.jar"))
+                .handler("hackathonproj.ParticipationJobHandler::handleRequest")
+                .memorySize(participationMemory)
+                .timeout(Duration.seconds(120))
+                .reservedConcurrentExecutions(5)
+                .environment(checkInEnvironment)
+                .build();
+
+        ParticipationJobFunction.addEventSource(SqsEventSource.Builder.create(jobQueue)
+                .batchSize(1) // One check-in per invocation, so a slow job does not hold up others
+                .maxConcurrency(5) // Matches the reserved concurrency, so the poller is not throttled
+                .reportBatchItemFailures(true)
+                .build());
+
+        // 2. Grant both check-in functions access to S3, Textract, Rekognition, DynamoDB and the queues
+        for (Function function : Arrays.asList(ParticipationFunction, ParticipationJobFunction)) {
+            // Grant S3 permissions (Get, Put)
+            function.addToRolePolicy(PolicyStatement.Builder.create()
+                    .effect(Effect.ALLOW)
+                    .actions(Arrays.asList("s3:GetObject", "s3:PutObject"))
+                    .resources(Arrays.asList("arn:aws:s3:::proj-hackathon-bucket-cdk/*")) // Replace with your bucket name
+                    .build());
+
+            // Grant S3 ListBucket permission
+            function.addToRolePolicy(PolicyStatement.Builder.create()
+                    .effect(Effect.ALLOW)
+                    .actions(Arrays.asList("s3:ListBucket"))
+                    .resources(Arrays.asList("arn:aws:s3:::proj-hackathon-bucket-cdk")) // Replace with your bucket name
+                    .build());
+
+            // Grant DynamoDB permissions (PutItem, GetItem)
+            function.addToRolePolicy(PolicyStatement.Builder.create()
+                    .effect(Effect.ALLOW)
+                    .actions(Arrays.asList("dynamodb:PutItem", "dynamodb:GetItem"))
+                    .resources(Arrays.asList(attendanceTable.getTableArn()))
+                    .build());
+
+            // Grant Textract permissions
+            function.addToRolePolicy(PolicyStatement.Builder.create()
+                    .effect(Effect.ALLOW)
+                    .actions(Arrays.asList("textract:DetectDocumentText", "textract:AnalyzeDocument"))
+                    .resources(Arrays.asList("*"))
+                    .build());
+
+            // Grant Rekognition permissions
+            function.addToRolePolicy(PolicyStatement.Builder.create()
+                    .effect(Effect.ALLOW)
+                    .actions(Arrays.asList("rekognition:DetectFaces", "rekognition:CompareFaces"))
+                    .resources(Arrays.asList("*"))
+                    .build());
+
+            // Grant face collection permissions (search, plus indexing of references missed by the index function)
+            function.addToRolePolicy(PolicyStatement.Builder.create()
+                    .effect(Effect.ALLOW)
+                    .actions(Arrays.asList("rekognition:SearchFacesByImage", "rekognition:IndexFaces",
+                            "rekognition:ListFaces", "rekognition:DeleteFaces"))
+                    .resources(Arrays.asList(faceCollection.getAttrArn()))
+                    .build());
+
+            participationQueue.grantSendMessages(function);
+
+            // Grant check-in result permissions (lookup, claim, store, release)
+            function.addToRolePolicy(PolicyStatement.Builder.create()
+                    .effect(Effect.ALLOW)
+                    .actions(Arrays.asList("dynamodb:GetItem", "dynamodb:PutItem", "dynamodb:DeleteItem"))
+                    .resources(Arrays.asList(checkInTable.getTableArn()))
+                    .build());
+
+            jobsTable.grantReadWriteData(function);
+            jobQueue.grantSendMessages(function);
+        }
+
+        // Writes queued participation records with conditional PutItems
+        Function ParticipationWriterFunction = Function.Builder.create(this, "hackathon-proj-ParticipationWriterFunction")
+                .runtime(Runtime.JAVA_17)
+                .code(Code.fromAsset("./lambda/target/Participation.jar"))
+                .handler("hackathonproj.ParticipationWriterHandler::handleRequest")
+                .memorySize(512)
+                .timeout(Duration.seconds(60))
+                .environment(Map.of("SERVICE_REGION", serviceRegion, "TABLE_NAME", tableName))
                 .build();
 
-        // 2. Grant Lambda permissions to access Textract and S3
-        // Grant S3 permissions (Get, Put)
-        ParticipationFunction.addToRolePolicy(PolicyStatement.Builder.create()
+        ParticipationWriterFunction.addToRolePolicy(PolicyStatement.Builder.create()
                 .effect(Effect.ALLOW)
-                .actions(Arrays.asList("s3:GetObject", "s3:PutObject"))
-                .resources(Arrays.asList("arn:aws:s3:::proj-hackathon-bucket-cdk/*")) // Replace with your bucket name
+                .actions(Arrays.asList("dynamodb:PutItem"))
+                .resources(Arrays.asList(attendanceTable.getTableArn()))
+                .build());
+
+        ParticipationWriterFunction.addEventSource(SqsEventSource.Builder.create(participationQueue)
+                .batchSize(100)
+                .maxBatchingWindow(Duration.seconds(2)) // Collects the check-ins of a class into few batches
+                .reportBatchItemFailures(true)
                 .build());
 
-// Grant S3 ListBucket permission
-        ParticipationFunction.addToRolePolicy(PolicyStatement.Builder.create()
+        // Applies the attendance table's changes to the class counts, whichever function wrote the records
+        Function AttendanceCounterFunction = Function.Builder.create(this, "hackathon-proj-AttendanceCounterFunction")
+                .runtime(Runtime.JAVA_17)
+                .code(Code.fromAsset("./lambda/target/Participation.jar"))
+                .handler("hackathonproj.AttendanceCounterHandler::handleRequest")
+                .memorySize(512)
+                .timeout(Duration.seconds(60))
+                .environment(Map.of("SERVICE_REGION", serviceRegion, "COUNTS_TABLE", countsTable.getTableName()))
+                .build();
+
+        AttendanceCounterFunction.addToRolePolicy(PolicyStatement.Builder.create()
                 .effect(Effect.ALLOW)
-                .actions(Arrays.asList("s3:ListBucket"))
-                .resources(Arrays.asList("arn:aws:s3:::proj-hackathon-bucket-cdk")) // Replace with your bucket name
+                .actions(Arrays.asList("dynamodb:UpdateItem", "dynamodb:GetItem"))
+                .resources(Arrays.asList(countsTable.getTableArn()))
+                .build());
+
+        AttendanceCounterFunction.addEventSource(DynamoEventSource.Builder.create(attendanceTable)
+                .startingPosition(StartingPosition.TRIM_HORIZON)
+                .batchSize(500)
+                .maxBatchingWindow(Duration.seconds(2)) // A class checking in together becomes one update per section
+                .retryAttempts(20) // Changes still failing after these are lost to the counts, not to the records
+                .reportBatchItemFailures(true)
+                .build());
+
+        // Rosters and student histories for instructor dashboards, with Query on the attendance table and its index
+        Function AttendanceQueryFunction = Function.Builder.create(this, "hackathon-proj-AttendanceQueryFunction")
+                .runtime(Runtime.JAVA_17)
+                .code(Code.fromAsset("./lambda/target/Participation.jar"))
+                .handler("hackathonproj.AttendanceQueryHandler::handleRequest")
+                .memorySize(512)
+                .timeout(Duration.seconds(29))
+                .environment(Map.of(
+                        "SERVICE_REGION", serviceRegion,
+                        "TABLE_NAME", tableName,
+                        "EMAIL_INDEX", "email-index",
+                        "COUNTS_TABLE", countsTable.getTableName(),
+                        "DEFAULT_PAGE_SIZE", "100"))
+                .build();
+
+        AttendanceQueryFunction.addToRolePolicy(PolicyStatement.Builder.create()
+                .effect(Effect.ALLOW)
+                .actions(Arrays.asList("dynamodb:Query"))
+                .resources(Arrays.asList(attendanceTable.getTableArn(), attendanceTable.getTableArn() + "/index/email-index",
+                        countsTable.getTableArn()))
                 .build());
 
-// Grant DynamoDB permissions (PutItem, GetItem)
-        ParticipationFunction.addToRolePolicy(PolicyStatement.Builder.create()
+        // Index sign-in sheets once when they are uploaded, instead of running Textract on every request
+        Function ReferenceIndexFunction = Function.Builder.create(this, "hackathon-proj-ReferenceIndexFunction")
+                .runtime(Runtime.JAVA_17)
+                .code(Code.fromAsset("./lambda/target/Participation.jar"))
+                .handler("hackathonproj.ReferenceIndexHandler::handleRequest")
+                .memorySize(512)
+                .timeout(Duration.seconds(60))
+                .environment(Map.of("FACE_COLLECTION_ID", faceCollection.getCollectionId(),
+                        "SERVICE_REGION", serviceRegion, "BUCKET_NAME", bucketName))
+                .build();
+
+        ReferenceIndexFunction.addToRolePolicy(PolicyStatement.Builder.create()
                 .effect(Effect.ALLOW)
-                .actions(Arrays.asList("dynamodb:PutItem", "dynamodb:GetItem"))
-                .resources(Arrays.asList("arn:aws:dynamodb:us-east-2:343218204535:table/ParticipationRecordsCdkproj")) // Replace region/account/table name
+                .actions(Arrays.asList("s3:GetObject", "s3:PutObject", "s3:DeleteObject"))
+                .resources(Arrays.asList("arn:aws:s3:::proj-hackathon-bucket-cdk/*"))
                 .build());
 
-// Grant Textract permissions
-        ParticipationFunction.addToRolePolicy(PolicyStatement.Builder.create()
+        // Reference manifests (manifests/...) are rebuilt from a full listing of the changed prefix
+        ReferenceIndexFunction.addToRolePolicy(PolicyStatement.Builder.create()
                 .effect(Effect.ALLOW)
-                .actions(Arrays.asList("textract:DetectDocumentText", "textract:AnalyzeDocument"))
-                .resources(Arrays.asList("*"))
+                .actions(Arrays.asList("s3:ListBucket"))
+                .resources(Arrays.asList("arn:aws:s3:::proj-hackathon-bucket-cdk"))
                 .build());
 
-// Grant Rekognition permissions
-        ParticipationFunction.addToRolePolicy(PolicyStatement.Builder.create()
+        ReferenceIndexFunction.addToRolePolicy(PolicyStatement.Builder.create()
                 .effect(Effect.ALLOW)
-                .actions(Arrays.asList("rekognition:DetectFaces", "rekognition:CompareFaces"))
+                .actions(Arrays.asList("textract:DetectDocumentText", "rekognition:DetectFaces"))
                 .resources(Arrays.asList("*"))
                 .build());
 
+        ReferenceIndexFunction.addToRolePolicy(PolicyStatement.Builder.create()
+                .effect(Effect.ALLOW)
+                .actions(Arrays.asList("rekognition:IndexFaces", "rekognition:ListFaces", "rekognition:DeleteFaces"))
+                .resources(Arrays.asList(faceCollection.getAttrArn()))
+                .build());
+
+        IBucket participationBucket = Bucket.fromBucketName(this, "proj-ParticipationBucket", "proj-hackathon-bucket-cdk");
+        participationBucket.addEventNotification(EventType.OBJECT_CREATED, new LambdaDestination(ReferenceIndexFunction),
+                NotificationKeyFilter.builder().prefix("proj/proj-images/names/").build());
+        participationBucket.addEventNotification(EventType.OBJECT_REMOVED, new LambdaDestination(ReferenceIndexFunction),
+                NotificationKeyFilter.builder().prefix("proj/proj-images/names/").build());
+        participationBucket.addEventNotification(EventType.OBJECT_CREATED, new LambdaDestination(ReferenceIndexFunction),
+                NotificationKeyFilter.builder().prefix("proj/proj-images/faces/").build());
+        participationBucket.addEventNotification(EventType.OBJECT_REMOVED, new LambdaDestination(ReferenceIndexFunction),
+                NotificationKeyFilter.builder().prefix("proj/proj-images/faces/").build());
+        // Per-section references (proj/proj-images/sections/{section}/names|faces/...); the function ignores other keys
+        participationBucket.addEventNotification(EventType.OBJECT_CREATED, new LambdaDestination(ReferenceIndexFunction),
+                NotificationKeyFilter.builder().prefix("proj/proj-images/sections/").build());
+        participationBucket.addEventNotification(EventType.OBJECT_REMOVED, new LambdaDestination(ReferenceIndexFunction),
+                NotificationKeyFilter.builder().prefix("proj/proj-images/sections/").build());
+
+        // Starts the check-in job of a photo uploaded with a presigned URL from /process-image/uploads
+        Function UploadedImageFunction = Function.Builder.create(this, "hackathon-proj-UploadedImageFunction")
+                .runtime(Runtime.JAVA_17)
+                .code(Code.fromAsset("./lambda/target/Participation.jar"))
+                .handler("hackathonproj.UploadedImageHandler::handleRequest")
+                .memorySize(512)
+                .timeout(Duration.seconds(30))
+                .environment(Map.of(
+                        "JOBS_TABLE", jobsTable.getTableName(),
+                        "JOB_QUEUE_URL", jobQueue.getQueueUrl(),
+                        "MAX_UPLOAD_BYTES", "15728640"))
+                .build();
+
+        // HeadObject reads the job id the upload carries as metadata
+        UploadedImageFunction.addToRolePolicy(PolicyStatement.Builder.create()
+                .effect(Effect.ALLOW)
+                .actions(Arrays.asList("s3:GetObject"))
+                .resources(Arrays.asList("arn:aws:s3:::proj-hackathon-bucket-cdk/proj/proj-images/direct-uploads/*"))
+                .build());
+        jobsTable.grantReadWriteData(UploadedImageFunction);
+        jobQueue.grantSendMessages(UploadedImageFunction);
+
+        // Photos the API stores itself go to uploads/, so only presigned uploads invoke the function
+        participationBucket.addEventNotification(EventType.OBJECT_CREATED, new LambdaDestination(UploadedImageFunction),
+                NotificationKeyFilter.builder().prefix("proj/proj-images/direct-uploads/").build());
+
         // 3. Create API Gateway REST API
         LambdaRestApi api = LambdaRestApi.Builder.create(this, "proj-ParticipationApi")
                 .restApiName("proj-ParticipationAPI")
                 .description("API for processing images with AWS Textract & Rekognition")
-                .handler(ParticipationFunction)
+                .handler(participationTarget)
                 .defaultCorsPreflightOptions(CorsOptions.builder()
                         .allowOrigins(Arrays.asList("*")) // For production, restrict to specific origins
-                        .allowMethods(Arrays.asList("POST", "OPTIONS"))
-                        .allowHeaders(Arrays.asList("Content-Type", "X-Amz-Date", "Authorization", "X-Api-Key"))
+                        .allowMethods(Arrays.asList("GET", "POST", "OPTIONS"))
+                        .allowHeaders(Arrays.asList("Content-Type", "X-Amz-Date", "Authorization", "X-Api-Key", "X-Amz-Security-Token"))
                         //  .allowCredentials(true)
                         //  .maxAge(Duration.hours(1))
                         .build())
@@ -105,7 +441,7 @@ public class AmplifyParticipationDemoStack extends Stack {
         Resource processResource = api.getRoot().addResource("process-image");
 
         // Create Lambda integration
-        LambdaIntegration ParticipationIntegration = LambdaIntegration.Builder.create(ParticipationFunction)
+        LambdaIntegration ParticipationIntegration = LambdaIntegration.Builder.create(participationTarget)
                 .proxy(true)
                 .build();
 
@@ -136,6 +472,42 @@ public class AmplifyParticipationDemoStack extends Stack {
         // Add POST method to process resource
         processResource.addMethod("POST", ParticipationIntegration, participationMethodOptions);
 
+        // Status of check-ins submitted with ?async=true
+        Resource jobResource = processResource.addResource("jobs").addResource("{jobId}");
+        jobResource.addMethod("GET", ParticipationIntegration, participationMethodOptions);
+
+        // Presigned URLs for uploading the photo straight to S3
+        Resource uploadResource = processResource.addResource("uploads");
+        uploadResource.addMethod("POST", ParticipationIntegration, participationMethodOptions);
+
+        // One group photo checking in a whole class
+        Resource classPhotoResource = processResource.addResource("class-photo");
+        classPhotoResource.addMethod("POST", ParticipationIntegration, participationMethodOptions);
+
+        // Attendance reads: GET /attendance/classes/{classDate} and GET /attendance/students/{email}.
+        // They return students' emails and attendance history, so callers must sign their requests (SigV4)
+        // with credentials that have the attendance reader policy below.
+        LambdaIntegration attendanceIntegration = LambdaIntegration.Builder.create(AttendanceQueryFunction)
+                .proxy(true)
+                .build();
+        MethodOptions attendanceMethodOptions = MethodOptions.builder()
+                .methodResponses(List.of(participationMethodResponse))
+                .authorizationType(AuthorizationType.IAM)
+                .build();
+        Resource attendanceResource = api.getRoot().addResource("attendance");
+        attendanceResource.addResource("classes").addResource("{classDate}")
+                .addMethod("GET", attendanceIntegration, attendanceMethodOptions);
+        attendanceResource.addResource("students").addResource("{email}")
+                .addMethod("GET", attendanceIntegration, attendanceMethodOptions);
+        ManagedPolicy attendanceReaderPolicy = ManagedPolicy.Builder.create(this, "proj-AttendanceReaders")
+                .description("Read access to the attendance API, for dashboards and staff roles")
+                .statements(Arrays.asList(PolicyStatement.Builder.create()
+                        .effect(Effect.ALLOW)
+                        .actions(Arrays.asList("execute-api:Invoke"))
+                        .resources(Arrays.asList(api.arnForExecuteApi("GET", "/attendance/*", "dev")))
+                        .build()))
+                .build();
+
         try {
                 MethodResponse optionsMethodResponse = MethodResponse.builder()
                         .statusCode("200")
@@ -193,6 +565,27 @@ public class AmplifyParticipationDemoStack extends Stack {
                 .description("API Gateway endpoint URL")
                 .value(apiUrl)
                 .build();
+        CfnOutput.Builder.create(this, "JobStatusEndpoint")
+                .description("Status of a check-in submitted with ?async=true")
+                .value(apiUrl + "/jobs/{jobId}")
+                .build();
+        CfnOutput.Builder.create(this, "UploadEndpoint")
+                .description("Presigned upload URLs for check-in photos")
+                .value(apiUrl + "/uploads")
+                .build();
+        CfnOutput.Builder.create(this, "ClassPhotoEndpoint")
+                .description("Class photo check-ins")
+                .value(apiUrl + "/class-photo")
+                .build();
+        CfnOutput.Builder.create(this, "AttendanceEndpoint")
+                .description("Class rosters (/classes/{classDate}) and student histories (/students/{email})")
+                .value(String.format("https://%s.execute-api.%s.amazonaws.com/dev/attendance",
+                        api.getRestApiId(), Stack.of(this).getRegion()))
+                .build();
+        CfnOutput.Builder.create(this, "AttendanceReaderPolicy")
+                .description("Attach to the roles allowed to call the attendance endpoint")
+                .value(attendanceReaderPolicy.getManagedPolicyArn())
+                .build();
         //  CfnOutput.Builder.create(this, "ApiEndpoint")
         //          .description("API Gateway endpoint URL")
         //          .value(api.getUrl())
@@ -203,4 +596,10 @@ public class AmplifyParticipationDemoStack extends Stack {
         //          .value(amplifyApp.getDefaultDomain())
         //          .build();
     }
+
+    // The value of -c name=value, or the default when it is not given
+    private String context(String name, String defaultValue) {
+        Object value = this.getNode().tryGetContext(name);
+        return value != null ? String.valueOf(value) : defaultValue;
+    }
 }